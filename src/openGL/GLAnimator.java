@@ -144,7 +144,7 @@ public class GLAnimator implements GLEventListener {
 			if(model instanceof AMFModel) {
 				painterList.add(new AMFPainter());
 			}else if(model instanceof NURBSSurfaceModel) {
-				painterList.add(new NURBSSurfacePainter());
+				painterList.add(new NURBSSurfacePainter(true));
 			}
 		}
 	}
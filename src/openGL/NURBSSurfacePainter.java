@@ -3,14 +3,60 @@ package openGL;
 import static com.jogamp.opengl.GL.*;
 import static com.jogamp.opengl.fixedfunc.GLLightingFunc.*;
 
+import java.util.ArrayList;
+import java.util.List;
+
 import com.jogamp.opengl.GL2;
 
+import simulation.function.nurbs.NURBSFunction;
+import simulation.function.nurbs.NURBSUniformSampler;
+import simulation.function.nurbs.geometry.NURBSTessellator;
+import simulation.function.nurbs.geometry.TriangleMesh;
 import simulation.model3d.Model;
 import simulation.model3d.NURBSSurfaceModel;
 
 public class NURBSSurfacePainter implements ModelPainter {
 	int uN = 100,vN = 100; //u方向、v方向の分割数
 
+	/*弦の許容誤差の、コントロールポイントの境界箱の対角線の長さに対する比*/
+	static final double CHORD_RATIO = 1e-3;
+
+	/*trueの場合は、曲率に応じて分割した3角形メッシュで面を描く*/
+	private final boolean adaptive;
+
+	/*
+	 * 以下のキャッシュはモデルの参照だけで区別する。
+	 * NURBSSurfaceModelの形状は不変なので、同じ参照であれば結果も変わらない。
+	 * */
+
+	/*適応的な分割の結果と、その対象のモデル。モデルが変わらない限り使い回す*/
+	private TriangleMesh mesh;
+	private NURBSSurfaceModel meshModel;
+
+	/*等分割した格子点の座標と、その対象のモデル。モデルが変わらない限り使い回す*/
+	private float[] gridVertex;
+	private NURBSSurfaceModel gridModel;
+
+	/*ノットを結ぶ線の頂点座標と、その対象のモデル。モデルが変わらない限り使い回す*/
+	private float[][] knotLines;
+	private NURBSSurfaceModel knotLineModel;
+
+	/*
+	 * 面をu方向、v方向に等分割した格子で描くインスタンスを生成する。
+	 * */
+	public NURBSSurfacePainter() {
+		this(false);
+	}
+
+	/*
+	 * adaptiveがtrueの場合は、面をNURBSTessellatorで曲率に応じて分割した
+	 * 3角形メッシュで描くインスタンスを生成する。
+	 * 平坦な部分は粗く、曲がった部分は細かく分割され、分割は最初の描画の際に一度だけ行う。
+	 * */
+	public NURBSSurfacePainter(boolean adaptive) {
+		this.adaptive = adaptive;
+	}
+
 
 	public void paint(GL2 gl2, Model model) {
 		NURBSSurfaceModel m = null;
@@ -32,89 +78,200 @@ public class NURBSSurfacePainter implements ModelPainter {
 				vMin = m.vknot[0],
 				vMax = m.vknot[m.vknot.length-1];
 
-		float memory[][] = new float[vN+1][];
+		gl2.glDisable(GL_CULL_FACE);
 
+		//NURBSFunctionに変換できない(次数が0等の)モデルは、適応的な分割を行わず格子で描く
+		if(this.adaptive && m.canGiveNURBSFunction()) {
+			paintMesh(gl2, m);
+		}else {
+			paintGrid(gl2, m, uMin, uMax, vMin, vMax);
+		}
 
-		gl2.glDisable(GL_CULL_FACE);
+		gl2.glEnable(GL_CULL_FACE);
 
-		//(u,v)の頂点に対して、
-		//(0,0),(1,0),(0,1),(1,1),...,(1,0),(2,0),(1,1),(2,1)と進めていく
-		//重複する頂点はmemoryに保持しておく
-		for(int j=0;j<=vN;j++) {
-			//一番最初のループでは(0,v)の点の座標を先に計算する必要がある
-			//v0は上の例で言うところの1,3,5...番目の頂点
+		gl2.glDisable(GL_LIGHTING);
 
-			//計算誤差によりfunc()にIllegalArgumentExceptionをスローされるため
-			double v = (j == vN)? vMax : vMin +(vMax -vMin)/vN*j;
+		gl2.glLineWidth(3.0f);
+		//ノットを結ぶ線を引く
+		if(this.knotLines == null || this.knotLineModel != m) {
+			this.knotLines = knotLines(m);
+			this.knotLineModel = m;
+		}
+		for(float[] line:this.knotLines) {
+			gl2.glBegin(GL_LINE_STRIP);
+			for(int i=0;i<line.length;i+=3) {
+				gl2.glVertex3fv(line,i);
+			}
+			gl2.glEnd();
+		}
+
+		gl2.glEnable(GL_LIGHTING);
 
-			double[] vertex0 = m.func(uMin, v);
-			memory[j] = new float[]{(float)vertex0[0],(float)vertex0[1],(float)vertex0[2]};
+		gl2.glLineWidth(1);
+
+	}
+
+	/*
+	 * 面をu方向uN、v方向vN等分した格子で描く。法線は全て{0,0,-1}とする。
+	 * 格子点の座標はNURBSFloatEvaluatorで単精度のまま一括して計算し、
+	 * モデルが変わらない限り使い回す。
+	 * NURBSFunctionに変換できないモデルでは、座標はfunc(u,v)で求める。
+	 * */
+	private void paintGrid(GL2 gl2, NURBSSurfaceModel m, double uMin, double uMax, double vMin, double vMax) {
+		if(this.gridVertex == null || this.gridModel != m) {
+			double[] us = parameters(uMin, uMax, uN), vs = parameters(vMin, vMax, vN);
+			float[] vertex = new float[us.length*vs.length*3];
+			if(m.canGiveNURBSFunction()) {
+				m.giveFloatEvaluator().valueOnGrid(new double[][] {us, vs}, vertex, 0);
+			}else {
+				for(int i=0;i<us.length;i++) {
+					for(int j=0;j<vs.length;j++) {
+						copyToFloat(m.func(us[i], vs[j]), vertex, (i*vs.length+j)*3);
+					}
+				}
+			}
+			this.gridVertex = vertex;
+			this.gridModel = m;
 		}
 
+		//(u,v)の頂点に対して、
+		//(0,0),(1,0),(0,1),(1,1),...,(1,0),(2,0),(1,1),(2,1)と進めていく
+		//格子点(i,j)の座標はgridVertex[(i*(vN+1)+j)*3]から並んでいる
 		for(int i=0;i<uN;i++) {
 			gl2.glBegin(GL_TRIANGLE_STRIP);
 			gl2.glNormal3fv(new float[] {0,0,-1},0);
-
 			for(int j=0;j<=vN;j++) {
-				//以降のループでは前回既に計算済みの頂点座標を使うので、memoryを参照する
-				//memory[j]がv0に対応する
-				gl2.glVertex3fv(memory[j],0);
-
-				//計算誤差によりfunc()にIllegalArgumentExceptionをスローされるため
-				double u = (i == uN-1)? uMax : uMin +(uMax -uMin)/uN*(i+1),
-						v = (j == vN)? vMax : vMin +(vMax -vMin)/vN*j;
-
-				//v1は2,4,6,...番目の頂点に対応する
-				double[] vertex1 = m.func(u, v);
-				float[] fv1 = {(float)vertex1[0],(float)vertex1[1],(float)vertex1[2]};
-				gl2.glVertex3fv(fv1,0);
-				memory[j] = fv1;
+				int v0 = (i*(vN+1)+j)*3, v1 = ((i+1)*(vN+1)+j)*3;
+				gl2.glVertex3fv(this.gridVertex,v0);
+				gl2.glVertex3fv(this.gridVertex,v1);
 			}
 			gl2.glEnd();
 		}
+	}
 
-		gl2.glEnable(GL_CULL_FACE);
+	/*
+	 * 面を曲率に応じて分割した3角形メッシュで描く。
+	 * 許容誤差はコントロールポイントの境界箱の対角線の長さのCHORD_RATIO倍とする。
+	 * */
+	private void paintMesh(GL2 gl2, NURBSSurfaceModel m) {
+		if(this.mesh == null || this.meshModel != m) {
+			this.mesh = new NURBSTessellator(m.giveNURBSFunction(), CHORD_RATIO*diagonal(m)).tessellate();
+			this.meshModel = m;
+		}
+		float[] vertex = mesh.giveVertexArray_Shallow(), normal = mesh.giveNormalArray_Shallow();
+		int[] index = mesh.giveIndexArray_Shallow();
+		float[] down = {0,0,-1};
 
-		gl2.glDisable(GL_LIGHTING);
+		gl2.glBegin(GL_TRIANGLES);
+		for(int i:index) {
+			//曲面が退化していて法線が定まらない点では、格子の場合と同じく{0,0,-1}を用いる
+			if(normal[3*i] == 0 && normal[3*i+1] == 0 && normal[3*i+2] == 0) {
+				gl2.glNormal3fv(down,0);
+			}else {
+				gl2.glNormal3fv(normal,3*i);
+			}
+			gl2.glVertex3fv(vertex,3*i);
+		}
+		gl2.glEnd();
+	}
 
-		gl2.glLineWidth(3.0f);
-		//u方向のノットを結ぶ線を引く(u方向に垂直)
+	/*
+	 * ノットを結ぶ線の頂点座標を、線毎に{x0,y0,z0,x1,...}の配列で返す。
+	 * u=一定(またはv=一定)の線は、曲面からその等パラメータ曲線を1変数のNURBS関数として一度だけ取り出し、
+	 * vN(またはuN)等分した点でNURBSUniformSamplerにより前進差分で評価する。
+	 * 点毎に2変数の曲面を評価するより軽く、1点あたりの計算量も次数にほとんどよらない。
+	 * 多重ノットは同じ線になるので1本だけ引く。
+	 * NURBSFunctionに変換できないモデルでは、点毎にfunc(u,v)で求める。
+	 * */
+	private float[][] knotLines(NURBSSurfaceModel m) {
+		NURBSFunction surface = m.canGiveNURBSFunction()? m.giveNURBSFunction() : null;
+
+		List<float[]> lines = new ArrayList<>();
+		//u方向のノットを結ぶ線(u方向に垂直)
 		for(int i=0;i<m.uknot.length;i++) {
-			//多重ノットは処理してもしょうがないので次のループへ
 			if(i > 0 && m.uknot[i] == m.uknot[i-1]) {
 				continue;
 			}
-			gl2.glBegin(GL_LINE_STRIP);
-			for(int j=0;j<=vN;j++) {
-				double u = m.uknot[i],
-						v = (j == vN)? vMax : vMin +(vMax-vMin)/vN*j;
-
-				double[] vertex = m.func(u, v);
-				gl2.glVertex3fv(new float[] {(float)vertex[0],(float)vertex[1],(float)vertex[2]},0);
+			if(surface != null) {
+				lines.add(toFloat(new NURBSUniformSampler(surface.restrict(0, m.uknot[i])).sample(new int[] {vN}, null)));
+				continue;
 			}
-			gl2.glEnd();
+			double[] vs = parameters(m.vknot[0], m.vknot[m.vknot.length-1], vN);
+			float[] line = new float[vs.length*3];
+			for(int j=0;j<vs.length;j++) {
+				copyToFloat(m.func(m.uknot[i], vs[j]), line, j*3);
+			}
+			lines.add(line);
 		}
-
-		//v方向のノットを結ぶ線を引く(v方向に垂直)
+		//v方向のノットを結ぶ線(v方向に垂直)
 		for(int j=0;j<m.vknot.length;j++) {
-			//多重ノットは処理してもしょうがないので次のループへ
 			if(j > 0 && m.vknot[j] == m.vknot[j-1]) {
 				continue;
 			}
-			gl2.glBegin(GL_LINE_STRIP);
-			for(int i=0;i<=uN;i++) {
-				double u = (i == uN)? uMax : uMin +(uMax -uMin)/uN*i,
-						v = m.vknot[j];
-
-				double[] vertex = m.func(u, v);
-				gl2.glVertex3fv(new float[] {(float)vertex[0],(float)vertex[1],(float)vertex[2]},0);
+			if(surface != null) {
+				lines.add(toFloat(new NURBSUniformSampler(surface.restrict(1, m.vknot[j])).sample(new int[] {uN}, null)));
+				continue;
 			}
-			gl2.glEnd();
+			double[] us = parameters(m.uknot[0], m.uknot[m.uknot.length-1], uN);
+			float[] line = new float[us.length*3];
+			for(int i=0;i<us.length;i++) {
+				copyToFloat(m.func(us[i], m.vknot[j]), line, i*3);
+			}
+			lines.add(line);
 		}
+		return lines.toArray(new float[lines.size()][]);
+	}
 
-		gl2.glEnable(GL_LIGHTING);
+	/*
+	 * [min,max]をn等分したn+1個の変数値を返す。
+	 * */
+	private static double[] parameters(double min, double max, int n) {
+		double[] t = new double[n+1];
+		for(int i=0;i<=n;i++) {
+			//計算誤差によりノットの範囲を超えないように、最後は端の値にする
+			t[i] = (i == n)? max : min +(max -min)/n*i;
+		}
+		return t;
+	}
 
-		gl2.glLineWidth(1);
+	/*
+	 * 3次元の点の座標をdstのoffsetから3要素に単精度で格納する。
+	 * */
+	private static void copyToFloat(double[] point, float[] dst, int offset) {
+		for(int k=0;k<3;k++) {
+			dst[offset+k] = (float)point[k];
+		}
+	}
+
+	private static float[] toFloat(double[] array) {
+		float[] result = new float[array.length];
+		for(int i=0;i<array.length;i++) {
+			result[i] = (float)array[i];
+		}
+		return result;
+	}
 
+	/*
+	 * コントロールポイントの境界箱の対角線の長さを返す。
+	 * ctrlの座標には重みが掛けられているので、重みで割って戻す。
+	 * */
+	private static double diagonal(NURBSSurfaceModel m) {
+		double[] min = {Double.POSITIVE_INFINITY,Double.POSITIVE_INFINITY,Double.POSITIVE_INFINITY},
+				max = {Double.NEGATIVE_INFINITY,Double.NEGATIVE_INFINITY,Double.NEGATIVE_INFINITY};
+		for(double[][] row:m.ctrl) {
+			for(double[] point:row) {
+				for(int k=0;k<3;k++) {
+					double x = point[k+1]/point[0];
+					min[k] = Math.min(min[k], x);
+					max[k] = Math.max(max[k], x);
+				}
+			}
+		}
+		double s = 0;
+		for(int k=0;k<3;k++) {
+			s += (max[k]-min[k])*(max[k]-min[k]);
+		}
+		//全てのコントロールポイントが一致する場合でも許容誤差が正になるようにする
+		return (s > 0)? Math.sqrt(s) : 1;
 	}
 }
@@ -0,0 +1,433 @@
+package simulation.function.nurbs;
+
+/**
+ * <p>NURBS基底関数組のベジエ抽出演算子を保持するクラス。
+ * <p>ノットベクトルの空でないノット範囲(要素)毎に、その要素上で0にならないp+1個の
+ * Bスプライン基底関数N{k-p},...,N{k}を、要素上のp次のバーンスタイン多項式B{0},...,B{p}で
+ * 表す行列C(ベジエ抽出演算子)を計算します。即ち、要素上で
+ * N{k-p+i} = sum_j C[i][j] B{j}
+ * が成り立ちます。多変数の場合、要素は各変数の要素の組であり、演算子は各変数の演算子の
+ * テンソル積になります。
+ *
+ * <p>演算子を一度計算しておくと、要素内の点での基底関数の値は、固定長のバーンスタイン多項式の
+ * 計算と、小さな密行列とベクトルの積だけで求まります。ノット範囲の探索やdeBoorの三角形状の
+ * 漸化式は必要ありません。値の計算には{@link #evaluator()}で得られる{@link Evaluator}を用います。
+ *
+ * <p>このオブジェクトはimmutableであり、複数のスレッドから共有できます。
+ *
+ * @version 2026/10/17 06:46
+ * */
+public class BezierExtraction {
+	/**
+	 * 元の基底関数組
+	 * @version 2026/10/17 06:46
+	 * */
+	private final NURBSBasisFunction basis;
+
+	/**
+	 * 変数の数
+	 * @version 2026/10/17 06:46
+	 * */
+	public final int parameterNum;
+
+	/**
+	 * 基底関数組の{@link NURBSBasisFunction#givePi_p()}と{@link NURBSBasisFunction#givePi_n()}。
+	 * 要素内の局所的な番号とコントロールポイントの通し番号の変換に用いる。
+	 * @version 2026/10/17 06:46
+	 * */
+	private final int[] Pi_p, Pi_n;
+
+	/**
+	 * 各変数の要素のノット範囲の限定パラメータk<br>
+	 * span[l][e]は変数lのe番目の要素について、knot[k] &lt;= t &lt; knot[k+1]となるkです。
+	 * @version 2026/10/17 06:46
+	 * */
+	private final int[][] span;
+
+	/**
+	 * 各変数の要素の区切り点<br>
+	 * 変数lのe番目の要素はbreaks[l][e]からbreaks[l][e+1]までです。
+	 * @version 2026/10/17 06:46
+	 * */
+	private final double[][] breaks;
+
+	/**
+	 * 各変数の要素毎のベジエ抽出演算子<br>
+	 * operator[l][e][i*(p+1)+j]が変数lのe番目の要素の演算子のC[i][j]です。
+	 * @version 2026/10/17 06:46
+	 * */
+	private final double[][][] operator;
+
+	/**
+	 * 指定された基底関数組のベジエ抽出演算子を計算します。
+	 *
+	 * @param basis NURBS基底関数組
+	 * @throws NullPointerException basisがnullの場合
+	 * @version 2026/10/17 06:46
+	 * */
+	public BezierExtraction(NURBSBasisFunction basis) {
+		if(basis == null) {
+			throw new NullPointerException("引数basisがnullです");
+		}
+		this.basis = basis;
+		this.parameterNum = basis.parameterNum;
+		this.Pi_p = basis.givePi_p();
+		this.Pi_n = basis.givePi_n();
+		this.span = new int[parameterNum][];
+		this.breaks = new double[parameterNum][];
+		this.operator = new double[parameterNum][][];
+
+		for(int l=0;l<parameterNum;l++) {
+			KnotSpanLocator locator = basis.locator[l];
+			int elementNum = locator.giveNumberOfBreaks()-1;
+			span[l] = new int[elementNum];
+			breaks[l] = new double[elementNum+1];
+			for(int e=0;e<elementNum;e++) {
+				span[l][e] = locator.giveSpanOfBreak(e);
+				breaks[l][e] = locator.giveBreak(e);
+			}
+			breaks[l][elementNum] = locator.giveBreak(elementNum);
+			operator[l] = extractOperators(basis.knot[l], basis.p[l], elementNum);
+		}
+	}
+
+	/**
+	 * <p>1変数のノットベクトルについて、各要素のベジエ抽出演算子を計算します。
+	 * <p>要素の右端のノットを多重度pまで挿入していく過程で、挿入の係数を演算子に掛けていきます。
+	 * 右端のノットの挿入は次の要素の演算子の一部にもなるため、その分を次の要素に引き継ぎます。
+	 *
+	 * @param knot オープンノットベクトル
+	 * @param p 次数
+	 * @param elementNum 要素の数
+	 * @return 各要素の演算子。[e][i*(p+1)+j]がC[i][j]
+	 * */
+	private static double[][] extractOperators(double[] knot, int p, int elementNum) {
+		final int P = p+1;
+		final int m = knot.length;
+		double[][] C = new double[elementNum][P*P];
+		double[] alphas = new double[P];
+		for(int i=0;i<P;i++) {
+			C[0][i*P+i] = 1;
+		}
+
+		//a:今の要素の左端のノットの最後のインデックス、b:右端のノットの最後のインデックス
+		int a = p, b = p+1, nb = 0;
+		while(b < m-1) {
+			if(nb+1 < elementNum) {
+				for(int i=0;i<P;i++) {
+					C[nb+1][i*P+i] = 1;
+				}
+			}
+			int i0 = b;
+			while(b < m-1 && knot[b+1] == knot[b]) {
+				b++;
+			}
+			int mult = b-i0+1;
+			if(mult < p) {
+				double numer = knot[b] -knot[a];
+				for(int j=p;j>mult;j--) {
+					alphas[j-mult-1] = numer/(knot[a+j] -knot[a]);
+				}
+				int r = p-mult;
+				for(int j=1;j<=r;j++) {
+					int save = r-j;
+					int s = mult+j;
+					for(int kk=p;kk>=s;kk--) {
+						double alpha = alphas[kk-s];
+						//列kkを列kk-1との内分で更新する
+						for(int row=0;row<P;row++) {
+							C[nb][row*P+kk] = alpha*C[nb][row*P+kk] +(1-alpha)*C[nb][row*P+kk-1];
+						}
+					}
+					if(b < m-1 && nb+1 < elementNum) {
+						//次の要素の演算子へ、今の要素の最後の列の一部を引き継ぐ
+						for(int row=0;row<=j;row++) {
+							C[nb+1][(save+row)*P+save] = C[nb][(p-j+row)*P+p];
+						}
+					}
+				}
+			}
+			nb++;
+			if(b < m-1) {
+				a = b;
+				b++;
+			}
+		}
+		return C;
+	}
+
+	/**
+	 * 元の基底関数組を返します。
+	 * @return 基底関数組
+	 * @version 2026/10/17 06:46
+	 * */
+	public NURBSBasisFunction giveBasisFunction() {
+		return this.basis;
+	}
+
+	/**
+	 * 指定した変数方向の要素の数を返します。
+	 * @param ivar 変数のインデックス
+	 * @return 要素の数
+	 * @version 2026/10/17 06:46
+	 * */
+	public int giveNumberOfElements(int ivar) {
+		return this.span[ivar].length;
+	}
+
+	/**
+	 * 全要素の数、即ち各変数方向の要素の数の総積を返します。
+	 * @return 全要素の数
+	 * @version 2026/10/17 06:46
+	 * */
+	public int giveNumberOfElements() {
+		int num = 1;
+		for(int l=0;l<parameterNum;l++) {
+			num *= span[l].length;
+		}
+		return num;
+	}
+
+	/**
+	 * <p>全要素の通し番号を、各変数方向の要素のインデックスの組に変換します。
+	 * <p>通し番号はe{m-1}+e{m-2}*E{m-1}+...+e0*E1*...*E{m-1}です。(E{i}は変数i方向の要素の数)
+	 * @param element 要素の通し番号
+	 * @param e 結果を格納する配列。長さは変数の数以上であること。
+	 * @return 引数e
+	 * @version 2026/10/17 06:46
+	 * */
+	public int[] giveElementIndex(int element, int[] e) {
+		for(int l=parameterNum-1;l>=0;l--) {
+			e[l] = element%span[l].length;
+			element /= span[l].length;
+		}
+		return e;
+	}
+
+	/**
+	 * 指定した変数方向のe番目の要素について、ノット範囲の限定パラメータkを返します。
+	 * この要素で0にならない基底関数はN{k-p},...,N{k}です。
+	 * @param ivar 変数のインデックス
+	 * @param e 要素のインデックス
+	 * @return ノット範囲の限定パラメータ
+	 * @version 2026/10/17 06:46
+	 * */
+	public int giveSpanIndex(int ivar, int e) {
+		return this.span[ivar][e];
+	}
+
+	/**
+	 * 指定した変数方向のe番目の要素の下端の変数値を返します。
+	 * @param ivar 変数のインデックス
+	 * @param e 要素のインデックス
+	 * @return 要素の下端
+	 * @version 2026/10/17 06:46
+	 * */
+	public double giveLowerBound(int ivar, int e) {
+		return this.breaks[ivar][e];
+	}
+
+	/**
+	 * 指定した変数方向のe番目の要素の上端の変数値を返します。
+	 * @param ivar 変数のインデックス
+	 * @param e 要素のインデックス
+	 * @return 要素の上端
+	 * @version 2026/10/17 06:46
+	 * */
+	public double giveUpperBound(int ivar, int e) {
+		return this.breaks[ivar][e+1];
+	}
+
+	/**
+	 * <p>指定した変数方向のe番目の要素のベジエ抽出演算子を返します。
+	 * <p>戻り値の[i*(p+1)+j]がC[i][j]です。配列の参照を渡すので、要素を変更しないでください。
+	 * @param ivar 変数のインデックス
+	 * @param e 要素のインデックス
+	 * @return ベジエ抽出演算子
+	 * @version 2026/10/17 06:46
+	 * */
+	public double[] giveOperator_Shallow(int ivar, int e) {
+		return this.operator[ivar][e];
+	}
+
+	/**
+	 * <p>要素上で0にならない基底関数の、コントロールポイントの通し番号を返します。
+	 * <p>resultのインデックスは要素内の局所的な番号で、各変数の局所インデックスの組
+	 * (a0,...,a{m-1})(0&lt;=a{i}&lt;=p{i})についてa{m-1}+a{m-2}*(p{m-1}+1)+...です。
+	 * @param e 各変数方向の要素のインデックスの組
+	 * @param result 結果を格納する配列。長さは(p0+1)*...*(p{m-1}+1)以上であること。
+	 * @return 引数result
+	 * @version 2026/10/17 06:46
+	 * */
+	public int[] giveGlobalIndices(int[] e, int[] result) {
+		int effNum = Pi_p[0];
+		for(int a=0;a<effNum;a++) {
+			int global = 0;
+			for(int l=0,rem=a;l<parameterNum;l++) {
+				int al = rem/Pi_p[l+1];
+				rem %= Pi_p[l+1];
+				global += (span[l][e[l]]-basis.p[l]+al)*Pi_n[l+1];
+			}
+			result[a] = global;
+		}
+		return result;
+	}
+
+	/**
+	 * 要素単位で基底関数の値を計算する評価器を生成します。
+	 * @return 評価器
+	 * @version 2026/10/17 06:46
+	 * */
+	public Evaluator evaluator() {
+		return new Evaluator();
+	}
+
+	/**
+	 * <p>ベジエ抽出演算子を用いて、要素内の点での基底関数の値を計算する評価器。
+	 * <p>作業用配列を内部に持つため、スレッドセーフではありません。スレッド毎に用意してください。
+	 * @version 2026/10/17 06:46
+	 * */
+	public class Evaluator {
+		/**
+		 * 作業用配列
+		 * <ul>
+		 * 	<li>B,dB:各変数のバーンスタイン多項式とその導関数の値
+		 * 	<li>N,dN:各変数のBスプライン基底関数とその導関数の値
+		 * 	<li>global:要素の基底関数のコントロールポイントの通し番号
+		 * 	<li>Wd:重みの和の導関数
+		 * </ul>
+		 * */
+		private final double[][] B, dB, N, dN;
+		private final int[] global;
+		private final double[] Wd;
+
+		private Evaluator() {
+			B = new double[parameterNum][];
+			dB = new double[parameterNum][];
+			N = new double[parameterNum][];
+			dN = new double[parameterNum][];
+			for(int l=0;l<parameterNum;l++) {
+				int P = basis.p[l]+1;
+				B[l] = new double[P];
+				dB[l] = new double[P];
+				N[l] = new double[P];
+				dN[l] = new double[P];
+			}
+			global = new int[Pi_p[0]];
+			Wd = new double[parameterNum];
+		}
+
+		/**
+		 * <p>要素内の点で0にならない全てのNURBS基底関数の値と、その1階偏導関数の値を計算します。
+		 * <p>点は要素を[0,1]^mに写した参照座標xiで指定します。変数値は
+		 * t{l} = lower{l} +xi{l}*(upper{l}-lower{l})です。
+		 *
+		 * <p>結果の格納順は{@link BezierExtraction#giveGlobalIndices(int[], int[])}の局所的な番号aに従い、
+		 * R[a]が基底関数の値、dR[l*(p0+1)*...*(p{m-1}+1)+a]が変数lについての偏導関数の値(変数値tについての微分)です。
+		 *
+		 * @param e 各変数方向の要素のインデックスの組
+		 * @param xi 参照座標。各成分は0以上1以下であること。
+		 * @param R 基底関数の値を格納する配列
+		 * @param dR 偏導関数の値を格納する配列。nullの場合は計算しない。
+		 * @version 2026/10/17 06:46
+		 * */
+		public void basis(int[] e, double[] xi, double[] R, double[] dR) {
+			final int m = parameterNum;
+			final int effNum = Pi_p[0];
+			final boolean derivative = (dR != null);
+
+			//各変数についてバーンスタイン多項式を計算し、演算子を掛けてBスプライン基底関数にする
+			for(int l=0;l<m;l++) {
+				int p = basis.p[l], P = p+1;
+				bernstein(p, xi[l], B[l], dB[l]);
+				double[] C = operator[l][e[l]];
+				double scale = 1/(breaks[l][e[l]+1] -breaks[l][e[l]]);
+				for(int i=0;i<P;i++) {
+					double v = 0, dv = 0;
+					for(int j=0;j<P;j++) {
+						v += C[i*P+j]*B[l][j];
+						dv += C[i*P+j]*dB[l][j];
+					}
+					N[l][i] = v;
+					dN[l][i] = dv*scale;
+				}
+			}
+
+			giveGlobalIndices(e, global);
+
+			//テンソル積をとり、重みを掛ける
+			double W = 0;
+			for(int l=0;l<m;l++) {
+				Wd[l] = 0;
+			}
+			for(int a=0;a<effNum;a++) {
+				double w = basis.weight[global[a]];
+				double value = w;
+				for(int l=0,rem=a;l<m;l++) {
+					int al = rem/Pi_p[l+1];
+					rem %= Pi_p[l+1];
+					value *= N[l][al];
+				}
+				R[a] = value;
+				W += value;
+				if(derivative) {
+					for(int l=0;l<m;l++) {
+						double d = w;
+						for(int i=0,rem=a;i<m;i++) {
+							int ai = rem/Pi_p[i+1];
+							rem %= Pi_p[i+1];
+							d *= (i == l)? dN[i][ai] : N[i][ai];
+						}
+						dR[l*effNum+a] = d;
+						Wd[l] += d;
+					}
+				}
+			}
+
+			//重みの和で割り、有理関数にする
+			for(int a=0;a<effNum;a++) {
+				R[a] /= W;
+				if(derivative) {
+					for(int l=0;l<m;l++) {
+						dR[l*effNum+a] = (dR[l*effNum+a] -R[a]*Wd[l])/W;
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * p次のバーンスタイン多項式B{0},...,B{p}とその導関数の値を計算します。
+	 * @param p 次数
+	 * @param xi 変数値(0以上1以下)
+	 * @param B 値を格納する配列
+	 * @param dB 導関数の値を格納する配列
+	 * */
+	static void bernstein(int p, double xi, double[] B, double[] dB) {
+		//p-1次のバーンスタイン多項式をまず計算し、導関数dB{j} = p(B'{j-1}-B'{j})に用いる
+		double xi1 = 1-xi;
+		B[0] = 1;
+		for(int j=1;j<p;j++) {
+			double saved = 0;
+			for(int r=0;r<j;r++) {
+				double temp = B[r];
+				B[r] = saved +xi1*temp;
+				saved = xi*temp;
+			}
+			B[j] = saved;
+		}
+		for(int j=0;j<=p;j++) {
+			double left = (j > 0)? B[j-1] : 0;
+			double right = (j < p)? B[j] : 0;
+			dB[j] = p*(left -right);
+		}
+		//p次に上げる
+		double saved = 0;
+		for(int r=0;r<p;r++) {
+			double temp = B[r];
+			B[r] = saved +xi1*temp;
+			saved = xi*temp;
+		}
+		B[p] = saved;
+	}
+}
@@ -0,0 +1,235 @@
+package simulation.function.nurbs;
+
+/**
+ * <p>1つのノットベクトルについて、変数値tを含むノット範囲t_k &lt;= t &lt; t_k+1のkを探すクラス。
+ * <p>インスタンス化の際にノットベクトルの重複した要素を取り除いた配列(区切り点)を作り、
+ * 任意の変数値に対しては区切り点を二分探索します。
+ * また、単調に変化する変数値を続けて探す場合には、{@link #cursor()}で得られる
+ * {@link Cursor}を用いることで、前回の位置から順に進めて探すことができます。
+ *
+ * <p>このオブジェクトはimmutableであり、複数のスレッドから共有できます。
+ * ただし、{@link Cursor}は状態を持つため、スレッド毎に用意してください。
+ *
+ * @version 2026/10/17 06:43
+ * */
+public class KnotSpanLocator {
+	/**
+	 * 元のノットベクトル
+	 * @version 2026/10/17 06:43
+	 * */
+	private final double[] knot;
+
+	/**
+	 * 次数
+	 * @version 2026/10/17 06:43
+	 * */
+	private final int p;
+
+	/**
+	 * ノットベクトルの重複を取り除いた区切り点。単調増加列です。
+	 * @version 2026/10/17 06:43
+	 * */
+	private final double[] breaks;
+
+	/**
+	 * breaks[i] &lt;= t &lt; breaks[i+1]のときのノット範囲の限定パラメータk。
+	 * 即ち、knot[k]==breaks[i]となる最後のインデックスkです。
+	 * @version 2026/10/17 06:43
+	 * */
+	private final int[] span;
+
+	/**
+	 * tがノットの最後端に等しい場合のk
+	 * @version 2026/10/17 06:43
+	 * */
+	private final int lastSpan;
+
+	/**
+	 * 指定されたノットベクトルについてのノット範囲探索インスタンスを生成します。
+	 * 配列knotは複製せずに参照を保持するので、以降変更しないでください。
+	 *
+	 * @param knot ノットベクトル。単調増加列であること。
+	 * @param p 次数
+	 * @throws NullPointerException knotがnullの場合
+	 * @throws IllegalArgumentException knotの要素数が次数に対して足りない場合
+	 * @version 2026/10/17 06:43
+	 * */
+	public KnotSpanLocator(double[] knot, int p) {
+		if(knot == null) {
+			throw new NullPointerException("引数knotがnullです");
+		}
+		if(knot.length < p+2) {
+			throw new IllegalArgumentException("ノットベクトルの要素数が次数に対して足りません");
+		}
+		this.knot = knot;
+		this.p = p;
+
+		int breakNum = 1;
+		for(int j=1;j<knot.length;j++) {
+			if(knot[j] != knot[j-1]) {
+				breakNum++;
+			}
+		}
+		this.breaks = new double[breakNum];
+		this.span = new int[breakNum];
+		for(int j=0,i=-1;j<knot.length;j++) {
+			if(j == 0 || knot[j] != knot[j-1]) {
+				i++;
+				breaks[i] = knot[j];
+			}
+			span[i] = j;
+		}
+
+		//tがノットの最後端に等しい時、（値が違う）一つ前のノットを指定する
+		this.lastSpan = knot.length-p-2; //==n-1
+	}
+
+	/**
+	 * t_k &lt;= t &lt; t_k+1となるようなkを二分探索により探します。
+	 * tがノットの最後端に等しい場合はn-1(nはコントロールポイント数)を返します。
+	 *
+	 * @param t 変数値
+	 * @return ノット範囲の限定パラメータk
+	 * @throws IllegalArgumentException tがノットベクトルの範囲にない場合
+	 * @version 2026/10/17 06:43
+	 * */
+	public int locate(double t) {
+		return spanOfBreak(locateBreak(t));
+	}
+
+	/**
+	 * breaks[i] &lt;= t &lt; breaks[i+1]となるiを二分探索により探します。
+	 * tがノットの最後端に等しい場合はbreaks.length-1を返します。
+	 * */
+	private int locateBreak(double t) {
+		if(!(breaks[0] <= t && t <= breaks[breaks.length-1])) {
+			throw new IllegalArgumentException("変数tはノットベクトルの範囲にありません");
+		}
+		int low = 0, high = breaks.length-1;
+		while(low < high) {
+			int mid = (low+high+1) >>> 1;
+			if(breaks[mid] <= t) {
+				low = mid;
+			}else {
+				high = mid-1;
+			}
+		}
+		return low;
+	}
+
+	/**
+	 * breaks[i]に対応するkを返します。最後端の場合は最後の範囲を返します。
+	 * */
+	private int spanOfBreak(int i) {
+		return (i == breaks.length-1)? lastSpan : span[i];
+	}
+
+	/**
+	 * 単調に変化する変数値を続けて探すためのカーソルを生成します。
+	 * @return カーソル
+	 * @version 2026/10/17 06:43
+	 * */
+	public Cursor cursor() {
+		return new Cursor();
+	}
+
+	/**
+	 * ノットベクトルの重複を取り除いた区切り点の数を返します。
+	 * @return 区切り点の数
+	 * @version 2026/10/17 06:43
+	 * */
+	public int giveNumberOfBreaks() {
+		return this.breaks.length;
+	}
+
+	/**
+	 * i番目の区切り点の値を返します。
+	 * @param i 区切り点のインデックス
+	 * @return 区切り点の値
+	 * @version 2026/10/17 06:43
+	 * */
+	public double giveBreak(int i) {
+		return this.breaks[i];
+	}
+
+	/**
+	 * i番目の区切り点から始まるノット範囲の限定パラメータkを返します。
+	 * 即ち、knot[k]==breaks[i]となる最後のインデックスkです。
+	 * @param i 区切り点のインデックス
+	 * @return ノット範囲の限定パラメータ
+	 * @version 2026/10/17 06:43
+	 * */
+	public int giveSpanOfBreak(int i) {
+		return this.span[i];
+	}
+
+	/**
+	 * このインスタンスが参照するノットベクトルを返します。
+	 * 配列の参照を渡すので、要素を変更しないでください。
+	 * @return ノットベクトル
+	 * @version 2026/10/17 06:43
+	 * */
+	public double[] giveKnotVector_Shallow() {
+		return this.knot;
+	}
+
+	/**
+	 * 次数を返します。
+	 * @return 次数
+	 * @version 2026/10/17 06:43
+	 * */
+	public int giveDegree() {
+		return this.p;
+	}
+
+	/**
+	 * <p>前回探した位置を保持し、そこから順に進めてノット範囲を探すカーソル。
+	 * <p>変数値が前回と同じ範囲にある場合、または前方の近い範囲にある場合は
+	 * 二分探索を行わずに位置を進めます。それ以外の場合は二分探索に切り替えます。
+	 * そのため、単調増加する変数値を続けて探す場合、1回あたりの計算量は概ね定数になります。
+	 *
+	 * <p>このオブジェクトは状態を持つため、スレッドセーフではありません。
+	 * @version 2026/10/17 06:43
+	 * */
+	public class Cursor {
+		/**
+		 * 前方に順に進める最大の回数。これを超える場合は二分探索に切り替える。
+		 * */
+		private static final int MAX_STEP = 8;
+
+		/**
+		 * 前回の区切り点のインデックス
+		 * */
+		private int i = 0;
+
+		private Cursor() {
+		}
+
+		/**
+		 * t_k &lt;= t &lt; t_k+1となるようなkを、前回の位置から探します。
+		 *
+		 * @param t 変数値
+		 * @return ノット範囲の限定パラメータk
+		 * @throws IllegalArgumentException tがノットベクトルの範囲にない場合
+		 * @version 2026/10/17 06:43
+		 * */
+		public int locate(double t) {
+			final int last = breaks.length-1;
+			if(breaks[i] <= t) {
+				int step = 0;
+				while(i < last && breaks[i+1] <= t && step < MAX_STEP) {
+					i++;
+					step++;
+				}
+				if(i == last || t < breaks[i+1]) {
+					if(i == last && t != breaks[last]) {
+						throw new IllegalArgumentException("変数tはノットベクトルの範囲にありません");
+					}
+					return spanOfBreak(i);
+				}
+			}
+			i = locateBreak(t);
+			return spanOfBreak(i);
+		}
+	}
+}
@@ -21,7 +21,7 @@ public class NURBSBasisFunction {
 	 *
 	 * @version 2019/02/22 21:37
 	 * */
-	private final double[][] knot;
+	final double[][] knot;
 	/**
 	 * ノットベクトルを返します。<br>
 	 * 配列の複製を渡します。
@@ -65,7 +65,7 @@ public class NURBSBasisFunction {
 	 *
 	 * @version 2019/02/22 21:38
 	 * */
-	private final int[] p;
+	final int[] p;
 	/**
 	 * 次数の配列を返します。
 	 * 配列は複製を渡します。
@@ -133,7 +133,7 @@ public class NURBSBasisFunction {
 	 * インデックスは0からm-1まであります。(mは変数の数)
 	 * @version 2019/02/22 21:40
 	 * */
-	private final int[] n;
+	final int[] n;
 	/**
 	 * コントロールポイントの数の配列を返します。<br>
 	 * 配列は複製を渡します。
@@ -179,7 +179,7 @@ public class NURBSBasisFunction {
 	public int[] givePi_n() {
 		int[] Pi_n = new int[this.parameterNum+1];
 		Pi_n[this.parameterNum] = 1;
-		for(int i=this.parameterNum-1;i>=0;i++) {
+		for(int i=this.parameterNum-1;i>=0;i--) {
 			Pi_n[i] = this.n[i]*Pi_n[i+1];
 		}
 
@@ -192,7 +192,7 @@ public class NURBSBasisFunction {
 	 * インデックスは0からn-1まであります。(nはコントロールポイントの数)
 	 * @version 2019/02/22 21:41
 	 * */
-	private final double[] weight;
+	final double[] weight;
 	/**
 	 * コントロールポイントの重みの配列を返します。<br>
 	 * 配列は複製を返します。
@@ -225,6 +225,23 @@ public class NURBSBasisFunction {
 	}
 
 
+	/**
+	 * 各変数のノットベクトルについてのノット範囲探索インスタンス<br>
+	 * インデックスは0からm-1(mは変数の数)まであります。
+	 * @version 2026/10/17 06:43
+	 * */
+	final KnotSpanLocator[] locator;
+	/**
+	 * 指定した変数のノットベクトルについてのノット範囲探索インスタンスを返します。
+	 * @param ivar 変数のインデックス
+	 * @return ノット範囲探索インスタンス
+	 * @version 2026/10/17 06:43
+	 * */
+	public KnotSpanLocator giveKnotSpanLocator(int ivar) {
+		return this.locator[ivar];
+	}
+
+
 	/**
 	 * 変数の数
 	 * @version 2019/02/22 21:41
@@ -266,6 +283,31 @@ public class NURBSBasisFunction {
 	 * @version 2019/02/22 21:42
 	 */
 	public NURBSBasisFunction(double[][] knot, int[] p, double[] weight){
+		this(knot, p, weight, true);
+	}
+
+	/**
+	 * <p>ノットベクトルと重みの配列を複製せずに、NURBSBasisFunctionをインスタンス化します。
+	 * <p>検査は{@link #NURBSBasisFunction(double[][], int[], double[])}と同じです。
+	 * 各変数のノットベクトルknot[l]とweightは複製せずにそのまま保持するので、
+	 * 呼び出し側はこれらの配列を以降変更しないでください。
+	 * 同じノットベクトルの配列を複数のインスタンスで共有することができます。
+	 * 精細化の結果のように、生成したばかりの大きな配列から基底関数組を作る場合に、
+	 * 複製によって一時的に必要なメモリが倍になることを避けるためのものです。
+	 *
+	 * @param knot ノットベクトル。各要素の配列を共有する。
+	 * @param p 各変数の基底関数の次数
+	 * @param weight 各コントロールポイントの重み。配列を共有する。
+	 * @return 基底関数組
+	 * @throws NullPointerException knot,p,weightがnullの場合
+	 * @throws IllegalArgumentException {@link #NURBSBasisFunction(double[][], int[], double[])}と同じ
+	 * @version 2026/10/17 07:54
+	 * */
+	public static NURBSBasisFunction wrap(double[][] knot, int[] p, double[] weight) {
+		return new NURBSBasisFunction(knot, p, weight, false);
+	}
+
+	private NURBSBasisFunction(double[][] knot, int[] p, double[] weight, boolean copy){
 		if(knot == null) {
 			throw new NullPointerException("引数knotが指定されていません");
 		}else if(p == null) {
@@ -299,7 +341,7 @@ public class NURBSBasisFunction {
 		NURBSAsserter asserter = new NURBSAsserter(true);
 
 		//ポイントの総数、ノットと次数から推算
-		int AllCtrlNum = 0;
+		int AllCtrlNum = 1;
 		/*ノットベクトルと次数から予想されるコントロールポイント数を計算
 		 * 1変数に対して(コントロールポイントの数)=(ノット要素数)-(次数)-1
 		 * 2変数以上ではそれらの総積
@@ -315,7 +357,7 @@ public class NURBSBasisFunction {
 			asserter.assertArrayIsOpenKnotVector(knot[i], p[i]);
 
 			this.n[i] = knot[i].length-p[i]-1;
-			AllCtrlNum += n[i];
+			AllCtrlNum *= n[i];
 		}
 
 		if(AllCtrlNum != weight.length) {
@@ -329,16 +371,19 @@ public class NURBSBasisFunction {
 		this.p = new int[parameterNum];
 		for(int i=0;i<parameterNum;i++) {
 			this.p[i] = p[i];
-			this.knot[i] = new double[knot[i].length];
-			for(int j=0;j<knot[i].length;j++) {
-				this.knot[i][j] = knot[i][j];
-			}
+			this.knot[i] = copy? knot[i].clone() : knot[i];
 		}
 
-		this.weight = new double[weight.length];
-		for(int i=0;i<weight.length;i++) {
-			this.weight[i] = weight[i];
+		this.weight = copy? weight.clone() : weight;
+
+		this.locator = new KnotSpanLocator[parameterNum];
+		for(int i=0;i<parameterNum;i++) {
+			this.locator[i] = new KnotSpanLocator(this.knot[i], this.p[i]);
 		}
+
+		this.Pi_p = this.givePi_p();
+		this.Pi_n = this.givePi_n();
+		this.effCtrlNum = this.Pi_p[0];
 	}
 
 	/**
@@ -371,9 +416,16 @@ public class NURBSBasisFunction {
 	 * 基底関数w{i,j,..k}N{i,p}N{j,q}...N{k,r}/(sum{a}sum{b}..sum{c} w{a,b,..c}N{a,p}N{b,q}..N{c,r})の値を計算します。
 	 * </p>
 	 *
+	 * <p>
+	 * 各変数について指定された基底関数の値だけを計算し、有理の場合は重みの和で割ります。
+	 * 同じ点で複数の基底関数の値が必要な場合は、{@link #nonzeroValues(double[], int, int[], double[])}で
+	 * まとめて計算してください。また、大量の点で計算する場合は{@link NURBSEvaluator}を使い回してください。
+	 * </p>
+	 *
 	 * @param indexs 各変数のBスプライン基底関数のインデックス{i,j,..k}を指定します。
 	 * @param t 変数値
-	 * @version 2019/02/22 22:03
+	 * @throws IllegalArgumentException 引数がnullの場合、変数値が定義域外の場合、または変数の数が一致しない場合
+	 * @version 2026/10/17 07:34
 	 * */
 	public double value(int[] indexs,double[] t) {
 		if(indexs == null) {
@@ -381,164 +433,63 @@ public class NURBSBasisFunction {
 		}else if(t == null) {
 			throw new IllegalArgumentException("tが指定されていません");
 		}
-
-		NURBSAsserter asserter = new NURBSAsserter(true);
-
-		//変数値が定義域に即しているか
-		asserter.assertVariableIsValid(this, t);
-
+		new NURBSAsserter(true).assertVariableIsValid(this, t);
 		if(indexs.length != t.length) {
 			throw new IllegalArgumentException("基底関数のインデックス組の数と変数値の数が一致していません");
 		}
 
-
 		double result = 1;
-		//各Bスプライン基底関数を掛け合わせていく
-		for(int i=0;i<indexs.length;i++) {
-			//0になる基底関数をかけることになるときはその場で0をreturnするようにする
-			double f = BSplineBasisFunctionValue(i,indexs[i],t[i]);
-			if(f==0) {
+		int weightIndex = 0;
+		for(int i=0;i<parameterNum;i++) {
+			int k = locator[i].locate(t[i]);
+			//t_k <= t < t_k+1で0にならないのはN{k-p},...,N{k}のみ
+			int j = indexs[i] -k +p[i];
+			if(j < 0 || p[i] < j) {
 				return 0;
-			}else {
-				result *= f;
 			}
+			double[] N = new double[p[i]+1], left = new double[p[i]+1], right = new double[p[i]+1];
+			NURBSCalculater.basisFunctions(knot[i], p[i], k, t[i], N, left, right);
+			result *= N[j];
+			weightIndex = weightIndex*n[i] +indexs[i];
 		}
-		/*
-		 * result==N{i}N{j}..N{k}
-		 * */
-
-
-		if(this.isBSpline) {
-			//重みが全て1なので、後の計算結果loopResult[0]やweight[weightIndex]は1になるので省略
+		if(isBSpline) {
 			return result;
 		}
 
-
-		//indexsでの重みを取得する
-		int weightIndex = 0;
-		int[] Pi_n = this.givePi_n();
-		//i0,i1,...,i{m-1}というインデックスを1つの数に置き換える
-		for(int i=0;i<this.parameterNum;i++) {
-			weightIndex += indexs[i] *Pi_n[i+1];
-		}
-		result *= weight[weightIndex];
-		/*
-		 * result==w{ij..k}N{i}N{j}..N{k}
-		 * */
-
-
-		//重みだけでdeBoorを実行し、それでresultを割る
-		//各変数についてt_k <= t < t_k+1となるようなkをさがす
-		int[] k = NURBSCalculater.searchVariablesPosition_InKnotVectors(this, t);
-
-		//以降deBoorアルゴリズムの通り
-		//Q[][0]:計算に必要な重みのみに制限した配列
-		double Q[][] = NURBSCalculater.restrictControlPoint(k, this, null);
-
-		//4つの入れ子ループ部分へ
-		//loopResult[0]:重みの足し合わせ結果
-		double[] loopResult = NURBSCalculater.deBoorsLoop(t, k, Q, this);
-		/*
-		 * loopResult[0]==sum{a}sum{b}..sum{c} w{ab..c}N{a}N{b}..N{c}
-		 * */
-
-		return result/loopResult[0];
-		/*
-		 * return==w{ij..k}N{i}N{j}..N{k}/(sum{a}sum{b}..sum{c} w{ab..c}N{a}N{b}..N{c})
-		 * */
+		//0にならない基底関数についての重みの和で割る
+		double W = NURBSCalculater.pointSum(this, weight, 1, t, new double[1])[0];
+		return weight[weightIndex]*result/W;
 	}
 
-
 	/**
-	 * 1変数Bスプライン基底関数N{i,p}を計算する
-	 * @param ivar 変数値配列のインデックス。どの変数かを指定する。
-	 * @param iN 基底関数のインデックスi
+	 * <p>変数値tで0にならない全ての基底関数の値と、各変数についてorder階までの
+	 * 全ての偏導関数の値を計算し、呼び出し側が用意した配列に格納します。
+	 * <p>ノット範囲の探索と分母(重みの和)の計算は点毎に一度だけ行います。
+	 * 作業用配列は呼び出し毎に次数と階数に応じた大きさで確保します。大量の点で計算する場合は、
+	 * {@link NURBSEvaluator#nonzeroValues(double[], int, int[], double[])}を
+	 * 呼び出し側が保持する評価器で使い回してください。
+	 * 結果の格納順は{@link NURBSEvaluator#nonzeroValues(double[], int, int[], double[])}を参照してください。
+	 *
 	 * @param t 変数値
-	 * @version 2019/02/22 22:03
+	 * @param order 各変数について計算する偏導関数の最大の階数。値だけが必要な場合は0。
+	 * @param span 各変数のノット範囲kを格納する配列。長さは変数の数以上であること。
+	 * @param values 値を格納する配列。長さは(order+1)^m*(p{0}+1)*...*(p{m-1}+1)以上であること。
+	 * @return 引数span
+	 * @throws NullPointerException spanまたはvaluesがnullの場合
+	 * @throws IllegalArgumentException
+	 * <ul>
+	 * 		<li>変数値が定義域外、または変数の数が一致しない場合
+	 * 		<li>orderが負数の場合
+	 * 		<li>spanまたはvaluesの長さが足りない場合
+	 * </ul>
+	 * @version 2026/10/17 07:34
 	 * */
-	private double BSplineBasisFunctionValue(int ivar,int iN,double t) {
-		double[] knot = this.knot[ivar];
-		int p = this.p[ivar];
-
-		//t_k <= t < t_k+1
-		int k = NURBSCalculater.searchVariablePosition_InKnotVector(knot, p, t);
-
-		int h = k-iN;
-		if(h < 0 || iN < k-p) {
-			return 0;
-		}
-
-
-		double[] result;
-
-
-		if(p-h >= h) {
-			result = new double[h+1];
-			result[0] = 1;
-			for(int i=p;i>p-h;i--) {
-				for(int j=p-i+1;j>=0;j--) {
-					if(j==p-i+1) {
-						result[j] = result[j-1]*(knot[iN+p+1]-t)/(knot[iN+p+1]-knot[iN+p-i+1]);
-					}else if(j==0) {
-						result[0] = result[0]*(t-knot[iN])/(knot[iN+i]-knot[iN]);
-					}else {
-						double a = (t-knot[iN+j])/(knot[iN+j+i]-knot[iN+j]);
-						result[j] = a*result[j] +(1-a)*result[j-1];
-					}
-				}
-			}
-			for(int i=p-h;i>h;i--) {
-				for(int j=h;j>=0;j--) {
-					if(j==0) {
-						result[0] = result[0]*(t-knot[iN])/(knot[iN+i]-knot[iN]);
-					}else {
-						double a = (t-knot[iN+j])/(knot[iN+j+i]-knot[iN+j]);
-						result[j] = a*result[j] +(1-a)*result[j-1];
-					}
-				}
-			}
-			for(int i=h;i>0;i--) {
-				for(int j=h;j>=h-i+1;j--) {
-					double a = (t-knot[iN+j])/(knot[iN+j+i]-knot[iN+j]);
-					result[j] = a*result[j] +(1-a)*result[j-1];
-				}
-			}
-
-		}else {
-			result = new double[p-h+1];
-			result[0] = 1;
-
-			for(int i=p;i>h;i--) {
-				for(int j=p-i+1;j>=0;j--) {
-					if(j==p-i+1) {
-						result[p-i+1] = result[p-i]*(knot[iN+j+i]-t)/(knot[iN+j+i]-knot[iN+j]);
-					}else if(j==0) {
-						result[0] = result[0]*(t-knot[iN])/(knot[iN+i]-knot[iN]);
-					}else {
-						double a = (t-knot[iN+j])/(knot[iN+j+i]-knot[iN+j]);
-						result[j] = a*result[j] +(1-a)*result[j-1];
-					}
-				}
-			}
-			for(int i=h;i>p-h;i--) {
-				for(int j=0;j<=p-h;j++) {
-					if(j==p-h) {
-						result[j] = result[j]*(knot[iN+p+1]-t)/(knot[iN+p+1]-knot[iN+p-i+1]);
-					}else {
-						double a = (t-knot[iN+h-i+j+1])/(knot[iN+h+j+1]-knot[iN+h-i+j+1]);
-						result[j] = (1-a)*result[j] +a*result[j+1];
-					}
-				}
-			}
-			for(int i=p-h;i>0;i--) {
-				for(int j=h;j>=h-i+1;j--) {
-					double a = (t-knot[iN+j])/(knot[iN+j+i]-knot[iN+j]);
-					result[j] = a*result[j] +(1-a)*result[j-1];
-				}
-			}
+	public int[] nonzeroValues(double[] t, int order, int[] span, double[] values) {
+		if(order < 0) {
+			throw new IllegalArgumentException("階数orderが負数です");
 		}
-
-		return result[result.length-1];
+		new NURBSAsserter(true).assertVariableIsValid(this, t);
+		return NURBSEvaluator.nonzeroValues(this, t, order, span, values, new NURBSEvaluator.DerivativeWorkspace(this, 1, order));
 	}
 
 }
@@ -8,177 +8,307 @@ public abstract class NURBSCalculater {
 	 * @param t 変数値
 	 * */
 	protected static int[] searchVariablesPosition_InKnotVectors(NURBSBasisFunction basis, double[] t) {
-		int[] k = new int[basis.parameterNum];
+		return searchVariablesPosition_InKnotVectors(basis, t, new int[basis.parameterNum]);
+	}
+
+	/**
+	 * 各変数についてt_k <= t < t_k+1となるようなkを探し、指定された配列に格納します。
+	 * @param basis 基底関数組
+	 * @param t 変数値
+	 * @param k 結果を格納する配列。長さは変数の数以上であること。
+	 * @return 引数k
+	 * */
+	protected static int[] searchVariablesPosition_InKnotVectors(NURBSBasisFunction basis, double[] t, int[] k) {
 		for(int i=0;i<basis.parameterNum;i++) {
-			k[i] = searchVariablePosition_InKnotVector(basis.knot[i],basis.p[i],t[i]);
+			k[i] = basis.locator[i].locate(t[i]);
 		}
 		return k;
 	}
 
 	/**
-	 * 1変数について、t_k <= t < t_k+1となるようなkを探します。
+	 * 1変数について、t_k <= t < t_k+1となるようなkを二分探索により探します。
+	 * 同じノットベクトルについて繰り返し探す場合は{@link KnotSpanLocator}を利用してください。
 	 * @param knot 変数に対応するノットベクトル
 	 * @param p 変数に対応する次数
 	 * @param t 変数値
 	 * */
 	protected static int searchVariablePosition_InKnotVector(double[] knot, int p,double t) {
-		int k=-1;
+		if(!(knot[0] <= t && t <= knot[knot.length-1])) {
+			throw new IllegalArgumentException("変数tはノットベクトルの範囲にありません");
+		}
 		if(t == knot[knot.length-1]) {
 			//tがノットの最後端に等しい時、（値が違う）一つ前のノットを指定する
-			k = knot.length-p-2; //==n-1
-		}else {
-			for(int j=0; j<knot.length; j++) {
-				if(t < knot[j]) {
-					k = j-1; //直前の位置がk
-					break;
-				}
-			}
+			return knot.length-p-2; //==n-1
 		}
-		if(k == -1) {
-			throw new IllegalArgumentException("変数tはノットベクトルの範囲にありません");
+		//knot[k] <= tとなる最後のkを探す
+		int low = 0, high = knot.length-1;
+		while(low < high) {
+			int mid = (low+high+1) >>> 1;
+			if(knot[mid] <= t) {
+				low = mid;
+			}else {
+				high = mid-1;
+			}
 		}
-		return k;
+		return low;
 	}
 
 
 	/**
-	 * 計算に有効なコントロールポイントを返します。
-	 * 返される配列の具体的な意味は、
-	 * <ul>
-	 * 	<li>第1インデックスはコントロールポイントの指定
-	 * 	<li>第2インデックスはコントロールポイントの重み、重み*座標1、...
-	 * </ul>
-	 * です。funcにnullを指定した場合、第2インデックスは0のみで、重みだけが返されます。
-	 * この配列の長さはbasis.effCtrlNumです。
+	 * <p>計算に有効なコントロールポイントを、指定された複数のNURBS関数について
+	 * まとめて1つの連続した配列Qにコピーします。
+	 * <p>限定後のインデックスaのポイントについて、Q[a*S]に重み、
+	 * Q[a*S+1]からfuncs[0]の重み*座標1、...、funcs[1]の重み*座標1、...の順に格納します。
+	 * ここでS=1+(funcsの次元数の和)です。funcsに空の配列を指定した場合、重みだけが格納されます。
 	 *
 	 * @param k ノットの有効範囲パラメータ
 	 * @param basis 基底関数組
-	 * @param func NURBSFunctionインスタンス
+	 * @param Pi_p basis.givePi_p()の結果
+	 * @param Pi_n basis.givePi_n()の結果
+	 * @param funcs basisを基底関数とするNURBSFunctionインスタンスの配列
+	 * @param Q コピー先の配列。長さはPi_p[0]*S以上であること。
+	 * @param indexs 作業用配列。長さはbasis.parameterNumであること。
+	 * @return 引数Q
 	 * */
-	protected static double[][] restrictControlPoint(int[] k, NURBSBasisFunction basis, NURBSFunction func){
-		int dimension;
-		if(func == null) {
-			dimension = 0;
-		}else {
-			dimension = func.ctrl[0].length;
+	protected static double[] restrictControlPoint(int[] k, NURBSBasisFunction basis, int[] Pi_p, int[] Pi_n,
+			NURBSFunction[] funcs, double[] Q, int[] indexs){
+		int S = 1;
+		for(NURBSFunction func:funcs) {
+			S += func.dimension;
+		}
+		for(int i=0;i<indexs.length;i++) {
+			indexs[i] = 0;
+		}
+		//最後の変数方向のp+1個のポイントは元の配列でも連続しているので、まとめてコピーする
+		final int last = basis.parameterNum-1;
+		final int run = basis.p[last]+1;
+		while(true) {
+			int Qindex=0,Pindex=0;
+			for(int i=0;i<last;i++) {
+				Qindex += indexs[i] *Pi_p[i+1];
+				Pindex += (k[i]-basis.p[i]+indexs[i]) *Pi_n[i+1];
+			}
+			Pindex += k[last]-basis.p[last];
+
+			for(int r=0;r<run;r++) {
+				Q[(Qindex+r)*S] = basis.weight[Pindex+r];
+			}
+			for(int f=0,offset=1;f<funcs.length;f++) {
+				double[] P = funcs[f].ctrl;
+				int Sf = funcs[f].dimension+1;
+				for(int r=0;r<run;r++) {
+					System.arraycopy(P, (Pindex+r)*Sf+1, Q, (Qindex+r)*S+offset, Sf-1);
+				}
+				offset += Sf-1;
+			}
+
+			//繰り上がり処理(最後の変数方向は上でまとめて処理した)
+			int i = last-1;
+			for(;i>=0;i--) {
+				indexs[i]++;
+				if(indexs[i]<=basis.p[i]) {
+					break;
+				}
+				indexs[i]=0;
+			}
+			if(i<0) {
+				//全ての組み合わせについて終了
+				break;
+			}
 		}
 
-		double[][] Q = new double[basis.effCtrlNum][dimension+1];
+		return Q;
+	}
 
-		//元のコントロールポイントから必要なものをコピーし初期化する
-		int[] indexs = new int[basis.parameterNum];
-		out:while(true) {
+	/**
+	 * <p>計算に有効なコントロールポイントを、変数0の限定後のインデックス毎に別々の配列にコピーします。
+	 * <p>限定後のインデックスaのポイントを、i0=a/Pi_p[1]、b=a%Pi_p[1]として
+	 * rows[i0][b*S]からrows[i0][b*S+S-1]に格納します。格納する値の並びは
+	 * {@link #restrictControlPoint(int[], NURBSBasisFunction, int[], int[], NURBSFunction[], double[], int[])}と同じです。
+	 *
+	 * @param k ノットの有効範囲パラメータ
+	 * @param basis 基底関数組
+	 * @param Pi_p basis.givePi_p()の結果
+	 * @param Pi_n basis.givePi_n()の結果
+	 * @param funcs basisを基底関数とするNURBSFunctionインスタンスの配列
+	 * @param rows コピー先の配列。長さはbasis.p[0]+1、各要素の長さはPi_p[1]*S以上であること。
+	 * @param indexs 作業用配列。長さはbasis.parameterNumであること。
+	 * @return 引数rows
+	 * */
+	protected static double[][] restrictControlPointByRow(int[] k, NURBSBasisFunction basis, int[] Pi_p, int[] Pi_n,
+			NURBSFunction[] funcs, double[][] rows, int[] indexs){
+		int S = 1;
+		for(NURBSFunction func:funcs) {
+			S += func.dimension;
+		}
+		for(int i=0;i<indexs.length;i++) {
+			indexs[i] = 0;
+		}
+		final int last = basis.parameterNum-1;
+		final int run = basis.p[last]+1;
+		final int rowPoints = Pi_p[1];
+		while(true) {
 			int Qindex=0,Pindex=0;
-			//i0,i1,...,i{m-1}というインデックスを1つの数に置き換える
-			for(int i=0;i<basis.parameterNum;i++) {
-				Qindex += indexs[i] *basis.Pi_p[i+1];
-				Pindex += (k[i]-basis.p[i]+indexs[i]) *basis.Pi_n[i+1];
+			for(int i=0;i<last;i++) {
+				Qindex += indexs[i] *Pi_p[i+1];
+				Pindex += (k[i]-basis.p[i]+indexs[i]) *Pi_n[i+1];
 			}
+			Pindex += k[last]-basis.p[last];
 
-			Q[Qindex][0] = basis.weight[Pindex];
-			for(int i=1;i<dimension+1;i++) {
-				Q[Qindex][i] = func.ctrl[Pindex][i-1];
+			for(int r=0;r<run;r++) {
+				double[] row = rows[(Qindex+r)/rowPoints];
+				int position = (Qindex+r)%rowPoints*S;
+				row[position] = basis.weight[Pindex+r];
+				for(int f=0,offset=1;f<funcs.length;f++) {
+					int Sf = funcs[f].dimension+1;
+					System.arraycopy(funcs[f].ctrl, (Pindex+r)*Sf+1, row, position+offset, Sf-1);
+					offset += Sf-1;
+				}
 			}
 
-			//繰り上がり処理
-			for(int i=indexs.length-1;i>=0;i--) {
+			int i = last-1;
+			for(;i>=0;i--) {
 				indexs[i]++;
 				if(indexs[i]<=basis.p[i]) {
 					break;
-				}else {
-					indexs[i]=0;
-					if(i==0) {
-						//全ての組み合わせについて終了
-						break out;
-					}else {
-						continue;
-					}
 				}
+				indexs[i]=0;
+			}
+			if(i<0) {
+				break;
 			}
 		}
 
-		return Q;
+		return rows;
 	}
 
 
 	/**
-	 * deBoorのアルゴリズムのループ部分です。
-	 *
+	 * <p>deBoorのアルゴリズムのループ部分です。
 	 * これにより、f{i,j,..,k}N{i,p}N{j,q}...N{k,r}を計算したことになります。
-	 *
-	 * ノット範囲の限定、及びそれに基づくコントロールポイントの限定を行ってから、
+	 * <p>ノット範囲の限定、及びそれに基づくコントロールポイントの限定を行ってから、
 	 * このメソッドを呼び出してください。また、引数Qに上書きしながら計算を行うため、
 	 * Qの各要素の値は呼び出し前に対して変わっています。
+	 * <p>限定後のインデックスaのポイントはQ[a*S]からQ[a*S+S-1]に格納されているとします。
+	 * 計算結果はQのインデックス(Pi_p[0]-1)*Sから始まるS個の要素に入ります。
+	 *
+	 * <p>変数0から順に処理します。変数lのインデックスがiであるポイントの集まりはQの中で連続した
+	 * Pi_p[l+1]*S個の区間を占めるので、deBoorの1回の計算(1-a)Q +aQは、変数0から
+	 * l-1のインデックスの組についての繰り上がり処理を伴わず、1つの連続した区間同士の計算になります。
+	 * 変数lの計算が終わると結果はインデックスp{l}の区間に残るので、変数l+1はその区間の中だけで計算します。
 	 *
 	 * @param t 変数値
 	 * @param k ノット範囲の限定パラメータ。
-	 * @param Q 限定後のコントロールポイント。BスプラインのdeBoorアルゴリズムを
-	 * 作用させるものを指定する。
+	 * @param Q 限定後のコントロールポイント。
+	 * @param S 1つのポイントあたりの要素数
 	 * @param basis 基底関数組
+	 * @param Pi_p basis.givePi_p()の結果
+	 * @return 計算結果の先頭のQにおけるインデックス
 	 * */
-	protected static double[] deBoorsLoop(double[] t, int[] k, double[][] Q, NURBSBasisFunction basis) {
-		//4つループの入れ子
-		for(int l=basis.parameterNum-1;l>=0;l--) {
-			for(int r=0;r<=basis.p[l]-1;r++) {
-				for(int i=basis.p[l];i>=r+1;i--) {
-					double alpha
-						= (t[l] -basis.knot[l][i+k[l]-basis.p[l]])
-							/(basis.knot[l][i+k[l]-r] -basis.knot[l][i+k[l]-basis.p[l]]);
-
-
-					//0,0,...,0からp0,p1,...,p{l-1}まで繰り返す
-					int[] indexs = new int[basis.parameterNum];
-					//indexsのインデックスl+1からm-1までは次数pで固定であり、
-					//インデックスlは対象外（他の意味によって指定される）
-					for(int j=l+1;j<basis.parameterNum;j++) {
-						indexs[j] = basis.p[j];
-					}
-					indexs[l] = i;
-
-					out:while(true) {
-						//i{0},i{1},...,i{l-1},i{l},p{l+1},...,p{m-1}を変換したものを格納
-						int convertIndex = 0;
-						for(int j=0;j<basis.parameterNum;j++) {
-							convertIndex += indexs[j]*basis.Pi_p[j+1];
-						}
+	protected static int deBoorsLoop(double[] t, int[] k, double[] Q, int S, NURBSBasisFunction basis, int[] Pi_p) {
+		return deBoorsLoop(t, k, Q, S, basis, Pi_p, 0);
+	}
 
-						//deBoorの計算Q = (1-a)Q +aQの部分
-						for(int d=0;d<Q[0].length;d++) {
-							//コントロールポイントの各成分毎に計算
-							Q[convertIndex][d] =
-								(1-alpha)*Q[convertIndex-basis.Pi_p[l+1]][d]
-									+
-								alpha*Q[convertIndex][d];
-						}
+	/**
+	 * <p>deBoorのアルゴリズムのループ部分です。
+	 * 限定後のコントロールポイントを変数0のインデックス毎に別々の配列rowsに格納している点を除き、
+	 * {@link #deBoorsLoop(double[], int[], double[], int, NURBSBasisFunction, int[])}と同じです。
+	 * rowsの格納順は{@link #restrictControlPointByRow(int[], NURBSBasisFunction, int[], int[], NURBSFunction[], double[][], int[])}
+	 * を参照してください。
+	 *
+	 * <p>変数0については、deBoorの代わりに0にならないp{0}+1個の基底関数の値を求め、
+	 * R[c] = N{0}rows[0][c] +...+N{p0}rows[p0][c]を計算します。全ての配列を同じインデックスcで参照する
+	 * 単純なループになるので、JITコンパイラによりSIMD命令に置き換えられます。
+	 * 変数1以降は結果のR上でdeBoorの計算を行います。
+	 * 計算量の大部分は変数0の計算が占めるので、1つのポイントあたりの要素数Sが大きいほど効果があります。
+	 *
+	 * @param t 変数値
+	 * @param k ノット範囲の限定パラメータ。
+	 * @param rows 限定後のコントロールポイント。内容は変更されません。
+	 * @param S 1つのポイントあたりの要素数
+	 * @param basis 基底関数組
+	 * @param Pi_p basis.givePi_p()の結果
+	 * @param R 作業用配列。長さはPi_p[1]*S以上であること。
+	 * @param N 作業用配列。長さはbasis.p[0]+1以上であること。
+	 * @param left 作業用配列。長さはbasis.p[0]+1以上であること。
+	 * @param right 作業用配列。長さはbasis.p[0]+1以上であること。
+	 * @return 計算結果の先頭のRにおけるインデックス
+	 * */
+	protected static int deBoorsLoop(double[] t, int[] k, double[][] rows, int S, NURBSBasisFunction basis, int[] Pi_p,
+			double[] R, double[] N, double[] left, double[] right) {
+		final int p = basis.p[0];
+		final int length = Pi_p[1]*S;
+		basisFunctions(basis.knot[0], p, k[0], t[0], N, left, right);
 
+		double[] row = rows[0];
+		double Ni = N[0];
+		for(int c=0;c<length;c++) {
+			R[c] = Ni*row[c];
+		}
+		for(int i=1;i<=p;i++) {
+			row = rows[i];
+			Ni = N[i];
+			for(int c=0;c<length;c++) {
+				R[c] += Ni*row[c];
+			}
+		}
 
-						//繰り上がり処理
-						//i0,i1,...,i{l-1}までを弄るのでl-1始まり
-						for(int j=l-1;j>=0;j--) {
-							indexs[j]++;
-							if(indexs[j]<=basis.p[j]) {
-								break;
-							}else {
-								indexs[j]=0;
-								if(j==0) {
-									//全ての組み合わせについて終了
-									break out;
-								}else {
-									continue;
-								}
-							}
-						}
+		return deBoorsLoop(t, k, R, S, basis, Pi_p, 1);
+	}
 
-						if(l==0) {
-							break out;
-						}
-					}
+	/**
+	 * 変数from以降についてのdeBoorのアルゴリズムのループ部分です。
+	 * 変数0からfrom-1までは計算済みで、Qの先頭から結果が並んでいるとします。
+	 * */
+	private static int deBoorsLoop(double[] t, int[] k, double[] Q, int S, NURBSBasisFunction basis, int[] Pi_p, int from) {
+		//変数0,...,l-1のインデックスがp{0},...,p{l-1}に固定された区間の先頭
+		int base = 0;
+		for(int l=from;l<basis.parameterNum;l++) {
+			final double[] knot = basis.knot[l];
+			final int p = basis.p[l], kl = k[l];
+			//変数lのインデックスが1つ異なる区間の間隔(区間の長さに等しい)
+			final int length = Pi_p[l+1]*S;
+			for(int r=0;r<=p-1;r++) {
+				for(int i=p;i>=r+1;i--) {
+					double alpha
+						= (t[l] -knot[i+kl-p])
+							/(knot[i+kl-r] -knot[i+kl-p]);
+					int dst = base +i*length;
+					blend(Q, dst-length, dst, length, alpha);
 				}
 			}
+			base += p*length;
+		}
+
+		return base;
+	}
+
+	/**
+	 * deBoorの計算Q[dst+c] = (1-alpha)Q[src+c] +alpha*Q[dst+c] (c=0,...,length-1)を行います。
+	 * 区間[src,src+length)と[dst,dst+length)は重ならないとします。
+	 * */
+	private static void blend(double[] Q, int src, int dst, int length, double alpha) {
+		final double beta = 1-alpha;
+		for(int c=0;c<length;c++) {
+			Q[dst+c] = beta*Q[src+c] +alpha*Q[dst+c];
 		}
+	}
 
-		//結果を格納しているp{0},p[1],...,p{m-1}はQ.length-1に等しい
-		return Q[Q.length-1];
+	/**
+	 * 連続した配列Qのoffsetから始まる、重み、重み*座標値1、...となっている値を
+	 * 座標値単体に変換し、指定された配列に格納します。
+	 * @param Q 重み、重み*座標値1、...を含む配列
+	 * @param offset 重みのQにおけるインデックス
+	 * @param S 重みを含めた要素数
+	 * @param result 結果を格納する配列。長さはS-1以上であること。
+	 * @return 引数result
+	 * */
+	protected static double[] processWeight(double[] Q, int offset, int S, double[] result) {
+		double w = Q[offset];
+		for(int i=1;i<S;i++) {
+			result[i-1] = Q[offset+i]/w;
+		}
+		return result;
 	}
 
 	/**
@@ -194,11 +324,290 @@ public abstract class NURBSCalculater {
 			throw new IllegalArgumentException("指定された配列の長さは1以下で処理できません");
 		}
 		int dimension = point.length -1;
-		double[] result = new double[dimension];
+		return processWeight(point, new double[dimension]);
+	}
+
+	/**
+	 * 重み*座標値となっている値を座標値単体に変換し、指定された配列に格納します。
+	 * @param point 重み、重み*座標値1、...となっているポイント
+	 * @param result 結果を格納する配列。長さはpoint.length-1以上であること。
+	 * @return 引数result
+	 * */
+	protected static double[] processWeight(double[] point, double[] result) {
+		int dimension = point.length -1;
 		for(int i=0;i<dimension;i++) {
 			result[i] = point[i+1]/point[0];
 		}
 		return result;
 	}
 
+	/**
+	 * <p>1変数について、t_k <= t < t_k+1で値が0にならないp+1個のBスプライン基底関数
+	 * N{k-p,p},...,N{k,p}の値を計算し、Nに格納します。
+	 * <p>作業用配列left、rightを呼び出し側から受け取るため、このメソッドは配列を生成しません。
+	 *
+	 * @param knot 変数に対応するノットベクトル
+	 * @param p 変数に対応する次数
+	 * @param k ノット範囲の限定パラメータ
+	 * @param t 変数値
+	 * @param N 結果を格納する配列。N[j]にN{k-p+j,p}が入る。長さはp+1以上であること。
+	 * @param left 作業用配列。長さはp+1以上であること。
+	 * @param right 作業用配列。長さはp+1以上であること。
+	 * @return 引数N
+	 * */
+	protected static double[] basisFunctions(double[] knot, int p, int k, double t, double[] N, double[] left, double[] right) {
+		N[0] = 1;
+		for(int j=1;j<=p;j++) {
+			left[j] = t -knot[k+1-j];
+			right[j] = knot[k+j] -t;
+			double saved = 0;
+			for(int r=0;r<j;r++) {
+				double temp = N[r]/(right[r+1] +left[j-r]);
+				N[r] = saved +right[r+1]*temp;
+				saved = left[j-r]*temp;
+			}
+			N[j] = saved;
+		}
+		return N;
+	}
+
+	/**
+	 * <p>変数値tで0にならない基底関数の値とポイントの積和を、1点だけ計算します。
+	 * <p>作業用配列は各変数の次数に応じた大きさで呼び出し毎に確保し、ポイントの位置は
+	 * 各変数のポイントの数から直接求めます。{@link NURBSEvaluator}を生成するより軽いので、
+	 * 1点だけを計算する場合に用います。変数値は定義域内であること。
+	 *
+	 * @param basis 基底関数組
+	 * @param P ポイントの配列。ポイント毎にS個の要素が連続して並んでいること。
+	 * @param S 1つのポイントあたりの要素数
+	 * @param t 変数値
+	 * @param acc 積和を格納する配列。長さはS以上であること。
+	 * @return 引数acc
+	 * */
+	protected static double[] pointSum(NURBSBasisFunction basis, double[] P, int S, double[] t, double[] acc) {
+		final int m = basis.parameterNum;
+		int maxp = 0;
+		for(int l=0;l<m;l++) {
+			maxp = Math.max(maxp, basis.p[l]);
+		}
+		double[] left = new double[maxp+1], right = new double[maxp+1];
+
+		//N[l]:変数lの0にならない基底関数の値
+		//base:各変数のインデックスがk{l}-p{l}であるポイントの位置
+		double[][] N = new double[m][];
+		int base = 0;
+		for(int l=0;l<m;l++) {
+			int k = basis.locator[l].locate(t[l]);
+			N[l] = basisFunctions(basis.knot[l], basis.p[l], k, t[l], new double[basis.p[l]+1], left, right);
+			base = base*basis.n[l] +k-basis.p[l];
+		}
+
+		for(int c=0;c<S;c++) {
+			acc[c] = 0;
+		}
+		//a:局所的なインデックスの組。最後の変数から順に進める
+		int[] a = new int[m];
+		while(true) {
+			double v = 1;
+			int g = 0;
+			for(int l=0;l<m;l++) {
+				v *= N[l][a[l]];
+				g = g*basis.n[l] +a[l];
+			}
+			final int o = (base+g)*S;
+			for(int c=0;c<S;c++) {
+				acc[c] += v*P[o+c];
+			}
+
+			int l = m-1;
+			while(l >= 0 && ++a[l] > basis.p[l]) {
+				a[l--] = 0;
+			}
+			if(l < 0) {
+				return acc;
+			}
+		}
+	}
+
+	/**
+	 * <p>格子状に並んだ変数値の全ての点について、NURBS関数の値を計算します。
+	 * <p>テンソル積の分離性を利用し、各変数方向について0にならない基底関数の値を
+	 * 変数値毎に一度だけ計算してから、コントロールポイントと変数の後ろの方向から順に縮約します。
+	 * そのため、1点毎にdeBoorのアルゴリズムを実行する場合と比べ、
+	 * 格子点数とコントロールポイント数の和に概ね比例する計算量になります。
+	 *
+	 * <p>結果の格納順は、変数値のインデックス組(j0,j1,...,j{m-1})について、
+	 * result[(j{m-1}+j{m-2}*L{m-1}+...+j0*L1*...*L{m-1})*dimension+d]です。
+	 * (L{i}はt[i]の長さ)
+	 *
+	 * @param basis 基底関数組
+	 * @param func NURBS関数
+	 * @param t 各変数の変数値の配列。定義域内の単調増加列であること。
+	 * @param result 結果を格納する配列
+	 * @return 引数result
+	 * */
+	protected static double[] gridValues(NURBSBasisFunction basis, NURBSFunction func, double[][] t, double[] result) {
+		final int m = basis.parameterNum;
+		final int S = func.dimension+1;
+
+		//各変数方向について、0にならない基底関数の値とノット範囲を計算しておく
+		//NL[l][j*(p+1)+r]:変数値t[l][j]でのN{k-p+r}の値
+		int[][] kL = new int[m][];
+		double[][] NL = new double[m][];
+		int maxp = 0;
+		for(int l=0;l<m;l++) {
+			maxp = Math.max(maxp, basis.p[l]);
+		}
+		double[] N = new double[maxp+1], left = new double[maxp+1], right = new double[maxp+1];
+		for(int l=0;l<m;l++) {
+			int p = basis.p[l];
+			kL[l] = new int[t[l].length];
+			NL[l] = new double[t[l].length*(p+1)];
+			//t[l]は単調増加列なので、カーソルで前回の位置から探す
+			KnotSpanLocator.Cursor cursor = basis.locator[l].cursor();
+			for(int j=0;j<t[l].length;j++) {
+				int k = cursor.locate(t[l][j]);
+				kL[l][j] = k;
+				basisFunctions(basis.knot[l], p, k, t[l][j], N, left, right);
+				System.arraycopy(N, 0, NL[l], j*(p+1), p+1);
+			}
+		}
+
+		//shape:縮約途中の配列の各変数方向の長さ
+		//最初はコントロールポイントの数で、縮約した方向から変数値の数に置き換わる
+		int[] shape = new int[m];
+		for(int l=0;l<m;l++) {
+			shape[l] = basis.n[l];
+		}
+
+		double[] current = null;
+		for(int l=m-1;l>=0;l--) {
+			int p = basis.p[l];
+			int outer = 1, inner = S;
+			for(int i=0;i<l;i++) {
+				outer *= shape[i];
+			}
+			for(int i=l+1;i<m;i++) {
+				inner *= shape[i];
+			}
+			int nl = shape[l], Ll = t[l].length;
+			double[] next = new double[outer*Ll*inner];
+
+			for(int o=0;o<outer;o++) {
+				for(int j=0;j<Ll;j++) {
+					int dst = (o*Ll+j)*inner;
+					int first = kL[l][j]-p;
+					for(int r=0;r<=p;r++) {
+						double Nr = NL[l][j*(p+1)+r];
+						if(Nr == 0) {
+							continue;
+						}
+						int src = o*nl +first+r;
+						//最初の縮約(l==m-1、inner==S)は元のコントロールポイントから直接読む
+						double[] from = (current == null)? func.ctrl : current;
+						int srcOffset = src*inner;
+						for(int c=0;c<inner;c++) {
+							next[dst+c] += Nr*from[srcOffset+c];
+						}
+					}
+				}
+			}
+
+			current = next;
+			shape[l] = Ll;
+		}
+
+		//重みの分を処理する
+		int pointNum = current.length/S;
+		for(int g=0;g<pointNum;g++) {
+			double w = current[g*S];
+			for(int d=1;d<S;d++) {
+				result[g*(S-1)+d-1] = current[g*S+d]/w;
+			}
+		}
+
+		return result;
+	}
+
+	/**
+	 * <p>1変数について、t_k <= t < t_k+1で値が0にならないp+1個のBスプライン基底関数
+	 * N{k-p,p},...,N{k,p}の値と、そのn階までの導関数の値を計算し、dersに格納します。
+	 * <p>dersの格納順は、r階導関数のN{k-p+j,p}についてders[r*(p+1)+j]です。
+	 * nがpを超える場合、p階を超える導関数の値は0です(このメソッドはp階まで計算し、
+	 * それを超える分は書き換えません)。
+	 *
+	 * @param knot 変数に対応するノットベクトル
+	 * @param p 変数に対応する次数
+	 * @param k ノット範囲の限定パラメータ
+	 * @param t 変数値
+	 * @param n 計算する導関数の最大の階数
+	 * @param ders 結果を格納する配列。長さは(min(n,p)+1)*(p+1)以上であること。
+	 * @param ndu 作業用配列。長さは(p+1)*(p+1)以上であること。
+	 * @param a 作業用配列。長さは2*(p+1)以上であること。
+	 * @param left 作業用配列。長さはp+1以上であること。
+	 * @param right 作業用配列。長さはp+1以上であること。
+	 * @return 引数ders
+	 * */
+	protected static double[] basisFunctionDerivatives(double[] knot, int p, int k, double t, int n,
+			double[] ders, double[] ndu, double[] a, double[] left, double[] right) {
+		final int P = p+1;
+		n = Math.min(n, p);
+
+		//ndu[j*P+r]:j<=rの部分は基底関数の値、j>rの部分はノットの差
+		ndu[0] = 1;
+		for(int j=1;j<=p;j++) {
+			left[j] = t -knot[k+1-j];
+			right[j] = knot[k+j] -t;
+			double saved = 0;
+			for(int r=0;r<j;r++) {
+				ndu[j*P+r] = right[r+1] +left[j-r];
+				double temp = ndu[r*P+j-1]/ndu[j*P+r];
+				ndu[r*P+j] = saved +right[r+1]*temp;
+				saved = left[j-r]*temp;
+			}
+			ndu[j*P+j] = saved;
+		}
+		for(int j=0;j<=p;j++) {
+			ders[j] = ndu[j*P+p];
+		}
+
+		//導関数の計算
+		for(int r=0;r<=p;r++) {
+			int s1 = 0, s2 = P;
+			a[0] = 1;
+			for(int kk=1;kk<=n;kk++) {
+				double d = 0;
+				int rk = r-kk, pk = p-kk;
+				if(r >= kk) {
+					a[s2] = a[s1]/ndu[(pk+1)*P+rk];
+					d = a[s2]*ndu[rk*P+pk];
+				}
+				int j1 = (rk >= -1)? 1 : -rk;
+				int j2 = (r-1 <= pk)? kk-1 : p-r;
+				for(int j=j1;j<=j2;j++) {
+					a[s2+j] = (a[s1+j] -a[s1+j-1])/ndu[(pk+1)*P+rk+j];
+					d += a[s2+j]*ndu[(rk+j)*P+pk];
+				}
+				if(r <= pk) {
+					a[s2+kk] = -a[s1+kk-1]/ndu[(pk+1)*P+r];
+					d += a[s2+kk]*ndu[r*P+pk];
+				}
+				ders[kk*P+r] = d;
+				int temp = s1;
+				s1 = s2;
+				s2 = temp;
+			}
+		}
+
+		//係数p!/(p-kk)!を掛ける
+		int factor = p;
+		for(int kk=1;kk<=n;kk++) {
+			for(int j=0;j<=p;j++) {
+				ders[kk*P+j] *= factor;
+			}
+			factor *= (p-kk);
+		}
+		return ders;
+	}
+
 }
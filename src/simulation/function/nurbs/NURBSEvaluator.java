@@ -0,0 +1,723 @@
+package simulation.function.nurbs;
+
+import java.util.Arrays;
+
+import simulation.function.nurbs.assertion.NURBSAsserter;
+
+/**
+ * <p>NURBS関数、またはNURBS基底関数の値を繰り返し計算するための評価器。
+ * <p>計算に必要な作業用配列(ノット範囲、限定後のコントロールポイント、インデックス等)を
+ * インスタンス化の際に確保し、以降の計算ではそれを使い回します。
+ * そのため、結果を格納する配列を呼び出し側が用意する限り、
+ * 値の計算毎に新たな配列を生成しません。大量の点で関数値を計算する場合に利用してください。
+ *
+ * <p>このオブジェクトは内部に作業用配列を持つため、スレッドセーフではありません。
+ * 複数のスレッドから並列に計算する場合は、スレッドや処理の単位毎に評価器を生成し、
+ * その中で使い回してください。
+ *
+ * @see NURBSFunction#value(double[], double[])
+ * @version 2026/10/17 06:40
+ * */
+public class NURBSEvaluator {
+	/**
+	 * 評価対象の基底関数組
+	 * @version 2026/10/17 06:40
+	 * */
+	private final NURBSBasisFunction basis;
+
+	/**
+	 * 評価対象のNURBS関数。基底関数のみを評価する場合はnull
+	 * @version 2026/10/17 06:40
+	 * */
+	private final NURBSFunction func;
+
+	private static final NURBSFunction[] NO_FUNCTION = new NURBSFunction[0];
+
+	/**
+	 * funcのみを要素とする配列。funcがnullの場合は長さ0
+	 * @version 2026/10/17 06:47
+	 * */
+	private final NURBSFunction[] funcs;
+
+	/**
+	 * 評価する関数値の次元数。基底関数のみを評価する場合は0
+	 * @version 2026/10/17 06:40
+	 * */
+	public final int dimension;
+
+	private final NURBSAsserter asserter = new NURBSAsserter(true);
+
+	/**
+	 * 基底関数組の{@link NURBSBasisFunction#givePi_p()}と{@link NURBSBasisFunction#givePi_n()}。
+	 * インデックスの変換に用いるので、インスタンス化の際に一度だけ求めます。
+	 * @version 2026/10/17 06:40
+	 * */
+	private final int[] Pi_p, Pi_n;
+
+	/**
+	 * 作業用配列
+	 * <ul>
+	 * 	<li>k:各変数のノット範囲の限定パラメータ
+	 * 	<li>Q:限定後のコントロールポイント(ポイント毎に重み、重み*座標1、...の順で連続して格納)
+	 * 	<li>indexs:deBoorのループで用いるインデックス組
+	 * 	<li>N,left,right:1変数Bスプライン基底関数の計算に用いる
+	 * </ul>
+	 * @version 2026/10/17 06:40
+	 * */
+	private final int[] k, indexs;
+	private final double[] Q;
+	private final double[] N, left, right;
+
+	/**
+	 * <p>{@link #value(double[], double[])}で用いる計算方法。インスタンス化の際に一度だけ決定します。
+	 * <ul>
+	 * 	<li>KERNEL_GENERIC:変数の数によらないdeBoorのアルゴリズム(4変数以上)
+	 * 	<li>KERNEL_1,KERNEL_2,KERNEL_3:1,2,3変数に特化し、0にならない基底関数の値と
+	 * コントロールポイントの積和を直接計算するもの
+	 * </ul>
+	 * <p>また、基底関数組がBスプラインの場合(全ての重みが1の場合)は、
+	 * 重みの足し合わせとそれによる除算を省略します。
+	 * @version 2026/10/17 06:53
+	 * */
+	private final int kernel;
+	private final boolean rational;
+	private static final int KERNEL_GENERIC = 0, KERNEL_1 = 1, KERNEL_2 = 2, KERNEL_3 = 3;
+
+	/**
+	 * 変数の数に特化した計算で用いる作業用配列
+	 * <ul>
+	 * 	<li>N0,N1,N2:各変数の0にならない基底関数の値
+	 * 	<li>acc:重みと重み付き座標の積和
+	 * </ul>
+	 * @version 2026/10/17 06:53
+	 * */
+	private final double[] N0, N1, N2, acc;
+
+	/**
+	 * 指定されたNURBS関数の値を計算する評価器を生成します。
+	 * @param func NURBS関数
+	 * @throws NullPointerException funcがnullの場合
+	 * @version 2026/10/17 06:40
+	 * */
+	public NURBSEvaluator(NURBSFunction func) {
+		this(func.giveBasisFunction(), func);
+	}
+
+	/**
+	 * 指定されたNURBS基底関数の値を計算する評価器を生成します。
+	 * この評価器では{@link #value(double[], double[])}は利用できません。
+	 * @param basis NURBS基底関数組
+	 * @throws NullPointerException basisがnullの場合
+	 * @version 2026/10/17 06:40
+	 * */
+	public NURBSEvaluator(NURBSBasisFunction basis) {
+		this(basis, null);
+	}
+
+	private NURBSEvaluator(NURBSBasisFunction basis, NURBSFunction func) {
+		if(basis == null) {
+			throw new NullPointerException("引数basisがnullです");
+		}
+		this.basis = basis;
+		this.func = func;
+		this.funcs = (func == null)? NO_FUNCTION : new NURBSFunction[] {func};
+		this.dimension = (func == null)? 0 : func.dimension;
+		this.Pi_p = basis.givePi_p();
+		this.Pi_n = basis.givePi_n();
+
+		this.k = new int[basis.parameterNum];
+		this.indexs = new int[basis.parameterNum];
+		this.Q = new double[Pi_p[0]*(this.dimension+1)];
+
+		int maxp = 0;
+		for(int i=0;i<basis.parameterNum;i++) {
+			maxp = Math.max(maxp, basis.p[i]);
+		}
+		this.N = new double[maxp+1];
+		this.left = new double[maxp+1];
+		this.right = new double[maxp+1];
+
+		//変数の数と有理性に応じた計算方法をここで一度だけ決める
+		final int m = basis.parameterNum;
+		this.rational = !basis.isBSpline;
+		this.kernel = (func == null || m > 3)? KERNEL_GENERIC : m;
+		this.N0 = new double[basis.p[0]+1];
+		this.N1 = (m > 1)? new double[basis.p[1]+1] : null;
+		this.N2 = (m > 2)? new double[basis.p[2]+1] : null;
+		this.acc = new double[this.dimension+1];
+	}
+
+	/**
+	 * 変数値を引数で指定し、その点でのNURBS関数の値を計算します。
+	 * 結果はresultに格納され、新たな配列は生成しません。
+	 *
+	 * @param t 変数値
+	 * @param result 関数値を格納する配列。長さはdimension以上であること。
+	 * @return 引数result
+	 * @throws IllegalStateException 基底関数のみを評価する評価器の場合
+	 * @throws IllegalArgumentException 変数値が定義域外、または変数の数が一致しない場合
+	 * @version 2026/10/17 06:40
+	 * */
+	public double[] value(double[] t, double[] result) {
+		if(this.func == null) {
+			throw new IllegalStateException("この評価器にはNURBS関数が指定されていません");
+		}
+		//定義域に反していないかをチェック
+		asserter.assertVariableIsValid(this.basis, t);
+
+		switch(this.kernel) {
+		case KERNEL_1:
+			return valueCurve(t, result);
+		case KERNEL_2:
+			return valueSurface(t, result);
+		case KERNEL_3:
+			return valueVolume(t, result);
+		default:
+			break;
+		}
+
+		//各変数についてt_k <= t < t_k+1となるようなkをさがす
+		NURBSCalculater.searchVariablesPosition_InKnotVectors(basis, t, k);
+
+		//以降deBoorアルゴリズムの通り
+		final int S = this.dimension+1;
+		NURBSCalculater.restrictControlPoint(k, basis, Pi_p, Pi_n, funcs, Q, indexs);
+		int offset = NURBSCalculater.deBoorsLoop(t, k, Q, S, basis, Pi_p);
+
+		return NURBSCalculater.processWeight(Q, offset, S, result);
+	}
+
+	/**
+	 * 1変数の場合の計算。0にならないp+1個の基底関数の値を求め、
+	 * 連続して並んでいるコントロールポイントとの積和をとります。
+	 * */
+	private double[] valueCurve(double[] t, double[] result) {
+		final double[] P = func.ctrl;
+		final int S = this.dimension+1, from = rational? 0 : 1;
+		final int p = basis.p[0];
+		final int k0 = basis.locator[0].locate(t[0]);
+		NURBSCalculater.basisFunctions(basis.knot[0], p, k0, t[0], N0, left, right);
+
+		Arrays.fill(acc, 0);
+		final int base = (k0-p)*S;
+		for(int i=0;i<=p;i++) {
+			final double Ni = N0[i];
+			final int o = base+i*S;
+			for(int c=from;c<S;c++) {
+				acc[c] += Ni*P[o+c];
+			}
+		}
+		return processAccumulated(result);
+	}
+
+	/**
+	 * 2変数の場合の計算。変数1方向のq+1個のポイントは連続して並んでいるので、
+	 * 変数0方向の各行について先頭の位置だけを求めて積和をとります。
+	 * */
+	private double[] valueSurface(double[] t, double[] result) {
+		final double[] P = func.ctrl;
+		final int S = this.dimension+1, from = rational? 0 : 1;
+		final int p = basis.p[0], q = basis.p[1];
+		final int n1 = basis.n[1];
+		final int k0 = basis.locator[0].locate(t[0]);
+		final int k1 = basis.locator[1].locate(t[1]);
+		NURBSCalculater.basisFunctions(basis.knot[0], p, k0, t[0], N0, left, right);
+		NURBSCalculater.basisFunctions(basis.knot[1], q, k1, t[1], N1, left, right);
+
+		Arrays.fill(acc, 0);
+		for(int i=0;i<=p;i++) {
+			final double Ni = N0[i];
+			final int row = ((k0-p+i)*n1 +k1-q)*S;
+			for(int j=0;j<=q;j++) {
+				final double Nij = Ni*N1[j];
+				final int o = row+j*S;
+				for(int c=from;c<S;c++) {
+					acc[c] += Nij*P[o+c];
+				}
+			}
+		}
+		return processAccumulated(result);
+	}
+
+	/**
+	 * 3変数の場合の計算。{@link #valueSurface(double[], double[])}と同様に、
+	 * 変数2方向に連続して並んだポイントの先頭の位置だけを求めて積和をとります。
+	 * */
+	private double[] valueVolume(double[] t, double[] result) {
+		final double[] P = func.ctrl;
+		final int S = this.dimension+1, from = rational? 0 : 1;
+		final int p = basis.p[0], q = basis.p[1], r = basis.p[2];
+		final int n1 = basis.n[1], n2 = basis.n[2];
+		final int k0 = basis.locator[0].locate(t[0]);
+		final int k1 = basis.locator[1].locate(t[1]);
+		final int k2 = basis.locator[2].locate(t[2]);
+		NURBSCalculater.basisFunctions(basis.knot[0], p, k0, t[0], N0, left, right);
+		NURBSCalculater.basisFunctions(basis.knot[1], q, k1, t[1], N1, left, right);
+		NURBSCalculater.basisFunctions(basis.knot[2], r, k2, t[2], N2, left, right);
+
+		Arrays.fill(acc, 0);
+		for(int i=0;i<=p;i++) {
+			final double Ni = N0[i];
+			for(int j=0;j<=q;j++) {
+				final double Nij = Ni*N1[j];
+				final int row = (((k0-p+i)*n1 +k1-q+j)*n2 +k2-r)*S;
+				for(int h=0;h<=r;h++) {
+					final double Nijh = Nij*N2[h];
+					final int o = row+h*S;
+					for(int c=from;c<S;c++) {
+						acc[c] += Nijh*P[o+c];
+					}
+				}
+			}
+		}
+		return processAccumulated(result);
+	}
+
+	/**
+	 * 積和accから関数値を求めてresultに格納します。
+	 * Bスプラインの場合は重みの和が1なので、除算を行わずにそのまま格納します。
+	 * */
+	private double[] processAccumulated(double[] result) {
+		if(rational) {
+			final double w = acc[0];
+			for(int d=0;d<this.dimension;d++) {
+				result[d] = acc[d+1]/w;
+			}
+		}else {
+			System.arraycopy(acc, 1, result, 0, this.dimension);
+		}
+		return result;
+	}
+
+	/**
+	 * <p>基底関数の値を返します。
+	 * <p>{@link NURBSBasisFunction#value(int[], double[])}と同じ値を、
+	 * 新たな配列を生成せずに計算します。
+	 *
+	 * @param indexs 各変数のBスプライン基底関数のインデックス{i,j,..k}を指定します。
+	 * @param t 変数値
+	 * @return 基底関数の値
+	 * @throws IllegalArgumentException 変数値が定義域外、または変数の数が一致しない場合
+	 * @version 2026/10/17 06:40
+	 * */
+	public double value(int[] indexs, double[] t) {
+		if(indexs == null) {
+			throw new IllegalArgumentException("indexsが指定されていません");
+		}else if(t == null) {
+			throw new IllegalArgumentException("tが指定されていません");
+		}
+
+		asserter.assertVariableIsValid(this.basis, t);
+
+		if(indexs.length != t.length) {
+			throw new IllegalArgumentException("基底関数のインデックス組の数と変数値の数が一致していません");
+		}
+
+		NURBSCalculater.searchVariablesPosition_InKnotVectors(basis, t, k);
+
+		double result = 1;
+		int weightIndex = 0;
+		for(int i=0;i<basis.parameterNum;i++) {
+			//t_k <= t < t_k+1で0にならないのはN{k-p},...,N{k}のみ
+			int j = indexs[i] -k[i] +basis.p[i];
+			if(j < 0 || basis.p[i] < j) {
+				return 0;
+			}
+			NURBSCalculater.basisFunctions(basis.knot[i], basis.p[i], k[i], t[i], N, left, right);
+			result *= N[j];
+			weightIndex += indexs[i] *Pi_n[i+1];
+		}
+
+		if(basis.isBSpline) {
+			return result;
+		}
+
+		//重みだけでdeBoorを実行し、それでw{ij..k}N{i}N{j}..N{k}を割る
+		NURBSCalculater.restrictControlPoint(k, basis, Pi_p, Pi_n, NO_FUNCTION, Q, this.indexs);
+		int offset = NURBSCalculater.deBoorsLoop(t, k, Q, 1, basis, Pi_p);
+
+		return basis.weight[weightIndex]*result/Q[offset];
+	}
+
+	/**
+	 * <p>変数値tで0にならない全ての有理基底関数の値と、各変数についてorder階までの
+	 * 全ての偏導関数の値を計算し、呼び出し側が用意した配列に格納します。
+	 * <p>t_{k} &lt;= t &lt; t_{k+1}となるノット範囲kを変数毎にspan[l]に格納します。
+	 * このとき0にならないのは、各変数のBスプライン基底関数のインデックスがk{l}-p{l}からk{l}までの
+	 * (p{0}+1)*...*(p{m-1}+1)個の基底関数です。
+	 * 各変数のBスプライン基底関数の値と導関数、重みの和(分母)とその導関数は、点毎に一度だけ計算します。
+	 * 1つずつ{@link #value(int[], double[])}で計算する場合と比べ、ノット範囲の探索、引数の検証、
+	 * 分母の計算の繰り返しがありません。
+	 *
+	 * <p>結果の格納順は、偏微分の階数の組(k0,...,k{m-1})と局所的なインデックスの組(a0,...,a{m-1})
+	 * (0&lt;=a{l}&lt;=p{l})について、values[K*E+a]です。ここで
+	 * K=k{m-1}+k{m-2}*(order+1)+...+k0*(order+1)^(m-1)、
+	 * a=a{m-1}+a{m-2}*(p{m-1}+1)+...+a0*(p{1}+1)*...*(p{m-1}+1)、
+	 * E=(p{0}+1)*...*(p{m-1}+1)です。
+	 * values[a](K=0)が基底関数の値で、対応する全体のBスプライン基底関数のインデックスは
+	 * 各変数についてspan[l]-p{l}+a{l}です。
+	 *
+	 * @param t 変数値
+	 * @param order 各変数について計算する偏導関数の最大の階数。値だけが必要な場合は0。
+	 * @param span ノット範囲を格納する配列。長さは変数の数以上であること。
+	 * @param values 値を格納する配列。長さは(order+1)^m*E以上であること。
+	 * @return 引数span
+	 * @throws NullPointerException spanまたはvaluesがnullの場合
+	 * @throws IllegalArgumentException
+	 * <ul>
+	 * 		<li>変数値が定義域外、または変数の数が一致しない場合
+	 * 		<li>orderが負数の場合
+	 * 		<li>spanまたはvaluesの長さが足りない場合
+	 * </ul>
+	 * @version 2026/10/17 07:34
+	 * */
+	public int[] nonzeroValues(double[] t, int order, int[] span, double[] values) {
+		asserter.assertVariableIsValid(this.basis, t);
+		return nonzeroValues(this.basis, t, order, span, values, workspace(order));
+	}
+
+	/**
+	 * <p>{@link #nonzeroValues(double[], int, int[], double[])}の計算を、指定された作業用配列で行います。
+	 * <p>インデックスの変換用の配列を用いず、重みの位置は各変数のポイントの数から直接求めるので、
+	 * {@link NURBSBasisFunction#nonzeroValues(double[], int, int[], double[])}からは
+	 * 評価器を生成せずに作業用配列だけを確保して呼び出せます。変数値は検証済みであること。
+	 * */
+	static int[] nonzeroValues(NURBSBasisFunction basis, double[] t, int order, int[] span, double[] values, DerivativeWorkspace w) {
+		if(span == null) {
+			throw new NullPointerException("引数spanがnullです");
+		}else if(values == null) {
+			throw new NullPointerException("引数valuesがnullです");
+		}
+		if(order < 0) {
+			throw new IllegalArgumentException("階数orderが負数です");
+		}
+
+		final int m = basis.parameterNum;
+		final int B = order+1;
+		int E = 1, KNum = 1;
+		for(int l=0;l<m;l++) {
+			E *= basis.p[l]+1;
+			KNum *= B;
+		}
+		if(span.length < m) {
+			throw new IllegalArgumentException("spanの長さが足りません:"+m+"以上必要です");
+		}else if(values.length < KNum*E) {
+			throw new IllegalArgumentException("valuesの長さが足りません:"+KNum*E+"以上必要です");
+		}
+		final double[][] ders = w.ders;
+		final int[] kd = w.kd, jd = w.jd;
+		final double[] weightDers = w.weightDers;
+		final boolean rational = !basis.isBSpline;
+
+		int weightBase = 0;
+		for(int l=0;l<m;l++) {
+			int p = basis.p[l];
+			span[l] = basis.locator[l].locate(t[l]);
+			double[] dl = ders[l];
+			Arrays.fill(dl, 0, B*(p+1), 0);
+			NURBSCalculater.basisFunctionDerivatives(basis.knot[l], p, span[l], t[l], order, dl, w.ndu, w.a, w.left, w.right);
+			weightBase = weightBase*basis.n[l] +span[l]-p;
+		}
+
+		//w{a}と各変数の基底関数の導関数の積。分母の導関数W^(K)はその和
+		final double[] weight = basis.weight;
+		for(int K=0;K<KNum;K++) {
+			for(int i=m-1,rem=K;i>=0;i--) {
+				kd[i] = rem%B;
+				rem /= B;
+			}
+			double sum = 0;
+			for(int e=0;e<E;e++) {
+				double v = 1;
+				int g = weightBase, stride = 1;
+				for(int i=m-1,rem=e;i>=0;i--) {
+					int P = basis.p[i]+1, ai = rem%P;
+					rem /= P;
+					v *= ders[i][kd[i]*P+ai];
+					g += ai*stride;
+					stride *= basis.n[i];
+				}
+				if(rational) {
+					v *= weight[g];
+				}
+				values[K*E+e] = v;
+				sum += v;
+			}
+			weightDers[K] = sum;
+		}
+		if(!rational) {
+			//重みが全て1なので分母は1、その導関数は0
+			return span;
+		}
+
+		//商の微分法則
+		//R^(K) = (A^(K) -sum_{0<J<=K} C(K,J) W^(J) R^(K-J))/W
+		final double W = weightDers[0];
+		for(int K=0;K<KNum;K++) {
+			for(int i=m-1,rem=K;i>=0;i--) {
+				kd[i] = rem%B;
+				rem /= B;
+				jd[i] = 0;
+			}
+			int J = 0;
+			out:while(true) {
+				//繰り上がり処理
+				int weightOfDigit = 1;
+				for(int i=m-1;i>=0;i--) {
+					if(jd[i] < kd[i]) {
+						jd[i]++;
+						J += weightOfDigit;
+						break;
+					}else {
+						J -= jd[i]*weightOfDigit;
+						jd[i] = 0;
+						if(i == 0) {
+							break out;
+						}
+					}
+					weightOfDigit *= B;
+				}
+
+				double coef = weightDers[J];
+				for(int i=0;i<m;i++) {
+					coef *= w.binom[kd[i]][jd[i]];
+				}
+				if(coef == 0) {
+					continue;
+				}
+				int KmJ = K-J;
+				for(int e=0;e<E;e++) {
+					values[K*E+e] -= coef*values[KmJ*E+e];
+				}
+			}
+			for(int e=0;e<E;e++) {
+				values[K*E+e] /= W;
+			}
+		}
+		return span;
+	}
+
+	/**
+	 * 導関数の計算に用いる作業用配列。
+	 * 要求された階数に対して足りない場合にのみ確保し直します。
+	 * @version 2026/10/17 07:34
+	 * */
+	private DerivativeWorkspace workspace;
+
+	/**
+	 * order階までの導関数の計算に用いる作業用配列を返します。
+	 * */
+	private DerivativeWorkspace workspace(int order) {
+		if(this.workspace == null || this.workspace.order < order) {
+			this.workspace = new DerivativeWorkspace(this.basis, this.dimension+1, order);
+		}
+		return this.workspace;
+	}
+
+	/**
+	 * <p>order階までの導関数の計算に用いる作業用配列。
+	 * <ul>
+	 * 	<li>ders:各変数の基底関数の導関数の値
+	 * 	<li>ndu,a,left,right:基底関数の導関数の計算に用いる
+	 * 	<li>bufA,bufB:重み付きコントロールポイントの縮約結果
+	 * 	<li>binom:二項係数
+	 * 	<li>kd,jd:偏微分の階数の組
+	 * 	<li>weightDers:{@link NURBSEvaluator#nonzeroValues(double[], int, int[], double[])}での分母の偏導関数
+	 * </ul>
+	 * */
+	static final class DerivativeWorkspace {
+		final int order;
+		final double[][] ders;
+		final double[] ndu, a, left, right, bufA, bufB, weightDers;
+		final int[][] binom;
+		final int[] kd, jd;
+
+		/**
+		 * @param basis 基底関数組
+		 * @param S 1つのポイントあたりの要素数。基底関数のみを計算する場合は1
+		 * @param order 計算する偏導関数の最大の階数
+		 * */
+		DerivativeWorkspace(NURBSBasisFunction basis, int S, int order) {
+			final int m = basis.parameterNum;
+			int maxp = 0;
+			for(int l=0;l<m;l++) {
+				maxp = Math.max(maxp, basis.p[l]);
+			}
+
+			this.ders = new double[m][];
+			int size = S;
+			for(int l=0;l<m;l++) {
+				this.ders[l] = new double[(order+1)*(basis.p[l]+1)];
+				size *= Math.max(order+1, basis.p[l]+1);
+			}
+			this.ndu = new double[(maxp+1)*(maxp+1)];
+			this.a = new double[2*(maxp+1)];
+			this.left = new double[maxp+1];
+			this.right = new double[maxp+1];
+			this.bufA = new double[size];
+			this.bufB = new double[size];
+			this.binom = new int[order+1][order+1];
+			for(int i=0;i<=order;i++) {
+				binom[i][0] = 1;
+				for(int j=1;j<=i;j++) {
+					binom[i][j] = binom[i-1][j-1] +((j<=i-1)? binom[i-1][j] : 0);
+				}
+			}
+			this.kd = new int[m];
+			this.jd = new int[m];
+			int KNum = 1;
+			for(int l=0;l<m;l++) {
+				KNum *= order+1;
+			}
+			this.weightDers = new double[KNum];
+			this.order = order;
+		}
+	}
+
+	/**
+	 * <p>変数値を引数で指定し、その点でのNURBS関数の値と、各変数についてorder階までの
+	 * 全ての偏導関数(混合偏導関数を含む)の値を計算します。
+	 * <p>重み付きコントロールポイントに対して基底関数の導関数を作用させた後、
+	 * 有理関数の商の微分法則により関数の偏導関数を求めます。
+	 * ノット範囲の探索と基底関数の計算は、関数値と偏導関数とで共有されます。
+	 *
+	 * <p>結果の格納順は、各変数の偏微分の階数の組(k0,k1,...,k{m-1})(0&lt;=k{i}&lt;=order)について、
+	 * result[(k{m-1}+k{m-2}*(order+1)+...+k0*(order+1)^(m-1))*dimension+d]です。
+	 * 例えば2変数の場合、result[0..dimension-1]は関数値、
+	 * result[dimension..]は変数1についての1階偏導関数、
+	 * result[(order+1)*dimension..]は変数0についての1階偏導関数です。
+	 *
+	 * @param t 変数値
+	 * @param order 各変数について計算する偏導関数の最大の階数
+	 * @param result 結果を格納する配列。長さは(order+1)^m*dimension以上であること。
+	 * @return 引数result
+	 * @throws IllegalStateException 基底関数のみを評価する評価器の場合
+	 * @throws IllegalArgumentException
+	 * <ul>
+	 * 		<li>変数値が定義域外、または変数の数が一致しない場合
+	 * 		<li>orderが負数の場合
+	 * </ul>
+	 * @version 2026/10/17 06:45
+	 * */
+	public double[] derivatives(double[] t, int order, double[] result) {
+		if(this.func == null) {
+			throw new IllegalStateException("この評価器にはNURBS関数が指定されていません");
+		}
+		if(order < 0) {
+			throw new IllegalArgumentException("階数orderが負数です");
+		}
+		asserter.assertVariableIsValid(this.basis, t);
+
+		final int m = basis.parameterNum;
+		final int S = this.dimension+1;
+		final int B = order+1;
+		final DerivativeWorkspace work = workspace(order);
+		final double[][] ders = work.ders;
+		final int[] kd = work.kd, jd = work.jd;
+
+		NURBSCalculater.searchVariablesPosition_InKnotVectors(basis, t, k);
+		//限定したコントロールポイントを縮約の作業用配列へ直接コピーする
+		NURBSCalculater.restrictControlPoint(k, basis, Pi_p, Pi_n, funcs, work.bufA, indexs);
+
+		//各変数の基底関数の導関数
+		for(int l=0;l<m;l++) {
+			int p = basis.p[l];
+			double[] dl = ders[l];
+			Arrays.fill(dl, 0, B*(p+1), 0);
+			NURBSCalculater.basisFunctionDerivatives(basis.knot[l], p, k[l], t[l], order, dl, work.ndu, work.a, left, right);
+		}
+
+		//限定したコントロールポイントに、後ろの変数から順に基底関数の導関数を作用させる
+		//縮約後、src[K*S+c]には重み付きコントロールポイントのK番目の偏導関数が入る
+		double[] src = work.bufA, dst = work.bufB;
+		int inner = S;
+		for(int l=m-1;l>=0;l--) {
+			int P = basis.p[l]+1;
+			int outer = Pi_p[0]/Pi_p[l];
+			double[] dl = ders[l];
+			for(int o=0;o<outer;o++) {
+				for(int r=0;r<B;r++) {
+					int dstOffset = (o*B+r)*inner;
+					Arrays.fill(dst, dstOffset, dstOffset+inner, 0);
+					for(int j=0;j<P;j++) {
+						double N = dl[r*P+j];
+						if(N == 0) {
+							continue;
+						}
+						int srcOffset = (o*P+j)*inner;
+						for(int c=0;c<inner;c++) {
+							dst[dstOffset+c] += N*src[srcOffset+c];
+						}
+					}
+				}
+			}
+			inner *= B;
+			double[] temp = src;
+			src = dst;
+			dst = temp;
+		}
+
+		//商の微分法則
+		//S^(k) = (A^(k) -sum_{0<j<=k} C(k,j) w^(j) S^(k-j))/w
+		final int D = this.dimension;
+		final double w = src[0];
+		final int KNum = inner/S;
+		for(int K=0;K<KNum;K++) {
+			//Kを各変数の階数の組に分解する
+			for(int i=m-1,rem=K;i>=0;i--) {
+				kd[i] = rem%B;
+				rem /= B;
+				jd[i] = 0;
+			}
+			for(int d=0;d<D;d++) {
+				result[K*D+d] = src[K*S+d+1];
+			}
+			//j<=kとなるj(j!=0)について繰り返す
+			int J = 0;
+			out:while(true) {
+				//繰り上がり処理
+				int weightOfDigit = 1;
+				for(int i=m-1;i>=0;i--) {
+					if(jd[i] < kd[i]) {
+						jd[i]++;
+						J += weightOfDigit;
+						break;
+					}else {
+						J -= jd[i]*weightOfDigit;
+						jd[i] = 0;
+						if(i == 0) {
+							break out;
+						}
+					}
+					weightOfDigit *= B;
+				}
+
+				double coef = src[J*S];
+				for(int i=0;i<m;i++) {
+					coef *= work.binom[kd[i]][jd[i]];
+				}
+				if(coef == 0) {
+					continue;
+				}
+				int KmJ = K-J;
+				for(int d=0;d<D;d++) {
+					result[K*D+d] -= coef*result[KmJ*D+d];
+				}
+			}
+			for(int d=0;d<D;d++) {
+				result[K*D+d] /= w;
+			}
+		}
+
+		return result;
+	}
+
+	/**
+	 * 評価対象の基底関数組を返します。
+	 * @return 基底関数組
+	 * @version 2026/10/17 06:40
+	 * */
+	public NURBSBasisFunction giveBasisFunction() {
+		return this.basis;
+	}
+}
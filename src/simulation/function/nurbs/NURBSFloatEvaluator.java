@@ -0,0 +1,546 @@
+package simulation.function.nurbs;
+
+import java.nio.FloatBuffer;
+import java.util.Arrays;
+
+import simulation.function.nurbs.assertion.NURBSAsserter;
+
+/**
+ * <p>NURBS関数の値を単精度(float)で計算する評価器。
+ * <p>描画のように倍精度を必要としない用途のためのものです。重み付きコントロールポイントをfloatの配列に
+ * 複製して保持し、基底関数の値とその積和を全てfloatで計算して、結果をfloat[]または{@link FloatBuffer}に
+ * 直接書き込みます。倍精度で計算してからfloatに変換する場合に比べ、読み込むコントロールポイントの量が半分になり、
+ * 中間の倍精度の配列も生成しません。
+ *
+ * <p>誤差について:ノットと変数値の差は倍精度で求めてからfloatに丸めるので、誤差は変数値の絶対値の大きさには
+ * 依存しません。重みが全て正であれば、関数値の各成分の倍精度の計算({@link NURBSFunction#value(double...)})との差は
+ * <pre>
+ * K*ε*max|P|,   K = 2*((5p{0}+4)+...+(5p{m-1}+4))+3
+ * </pre>
+ * 以下です。ここでε=2^-24はfloatの丸めの単位、max|P|はコントロールポイント(重みを掛ける前)の成分の
+ * 絶対値の最大値です。Kは各変数の基底関数の計算(4p+1回の丸め)と積和(p+3回の丸め)を分子と分母について足し、
+ * 除算と格納の丸めを加えたものです。この値は{@link #giveErrorBound()}で得られます。
+ * 法線は偏導関数の外積の向きなので、曲面が退化に近い点(|S_u×S_v|が|S_u||S_v|に比べて小さい点)では
+ * 誤差がその比に応じて大きくなります。
+ *
+ * <p>このインスタンスはimmutableで、作業用配列は呼び出し毎に確保するので、複数のスレッドから利用できます。
+ *
+ * @see NURBSEvaluator
+ * @version 2026/10/17 07:48
+ * */
+public class NURBSFloatEvaluator {
+	/**
+	 * floatの丸めの単位(2^-24)
+	 * @version 2026/10/17 07:48
+	 * */
+	public static final double EPSILON = 0x1p-24;
+
+	private final NURBSBasisFunction basis;
+
+	/**
+	 * 評価する関数値の次元数
+	 * @version 2026/10/17 07:48
+	 * */
+	public final int dimension;
+
+	/**
+	 * floatに丸めた重み付きコントロールポイント。並びは{@link NURBSFunction#giveHomogeneousCtrlArray_Shallow()}と同じです。
+	 * @version 2026/10/17 07:48
+	 * */
+	private final float[] ctrl;
+
+	/**
+	 * 基底関数組の{@link NURBSBasisFunction#givePi_n()}。コントロールポイントのインデックスの変換に用いる。
+	 * @version 2026/10/17 07:48
+	 * */
+	private final int[] Pi_n;
+
+	private final double errorBound;
+
+	private final NURBSAsserter asserter = new NURBSAsserter(true);
+
+	/**
+	 * 指定されたNURBS関数の値を単精度で計算する評価器を生成します。
+	 * @param func NURBS関数
+	 * @throws NullPointerException funcがnullの場合
+	 * @version 2026/10/17 07:48
+	 * */
+	public NURBSFloatEvaluator(NURBSFunction func) {
+		if(func == null) {
+			throw new NullPointerException("引数funcがnullです");
+		}
+		this.basis = func.giveBasisFunction();
+		this.Pi_n = basis.givePi_n();
+		this.dimension = func.dimension;
+		final int S = this.dimension+1;
+		final double[] h = func.ctrl;
+		this.ctrl = new float[h.length];
+		double max = 0;
+		for(int i=0;i<h.length;i++) {
+			this.ctrl[i] = (float)h[i];
+			if(i%S != 0) {
+				max = Math.max(max, Math.abs(h[i]/h[i-i%S]));
+			}
+		}
+		int K = 3;
+		for(int l=0;l<basis.parameterNum;l++) {
+			K += 2*(5*basis.p[l]+4);
+		}
+		this.errorBound = K*EPSILON*max;
+	}
+
+	/**
+	 * 関数値の各成分の、倍精度の計算との差の上限を返します。
+	 * 導出はクラスの説明を参照してください。
+	 * @return 誤差の上限
+	 * @version 2026/10/17 07:48
+	 * */
+	public double giveErrorBound() {
+		return this.errorBound;
+	}
+
+	/**
+	 * 変数値を指定し、その点での関数値を計算してresult[offset]からresult[offset+dimension-1]に格納します。
+	 * @param t 変数値
+	 * @param result 関数値を格納する配列
+	 * @param offset 格納を始める位置
+	 * @return 引数result
+	 * @throws IllegalArgumentException 変数値が定義域外、または変数の数が一致しない場合
+	 * @throws ArrayIndexOutOfBoundsException resultの長さが足りない場合
+	 * @version 2026/10/17 07:48
+	 * */
+	public float[] value(double[] t, float[] result, int offset) {
+		asserter.assertVariableIsValid(this.basis, t);
+		final int m = basis.parameterNum;
+		final int S = this.dimension+1;
+
+		//各変数の0にならない基底関数の値
+		int[] first = new int[m];
+		float[][] N = new float[m][];
+		float[] work = new float[3*(maxDegree()+1)];
+		for(int l=0;l<m;l++) {
+			int p = basis.p[l];
+			int k = basis.locator[l].locate(t[l]);
+			first[l] = k-p;
+			N[l] = new float[p+1];
+			basisFunctions(basis.knot[l], p, k, t[l], N[l], null, work);
+		}
+
+		//限定したコントロールポイントとの積和。a{m-1}が最も速く変わる順に回す
+		float[] acc = new float[S];
+		int[] a = new int[m];
+		while(true) {
+			float coef = 1;
+			int index = 0;
+			for(int l=0;l<m;l++) {
+				coef *= N[l][a[l]];
+				index += (first[l]+a[l])*Pi_n[l+1];
+			}
+			if(coef != 0) {
+				for(int c=0;c<S;c++) {
+					acc[c] += coef*ctrl[index*S+c];
+				}
+			}
+			int l = m-1;
+			for(;l>=0;l--) {
+				if(++a[l] <= basis.p[l]) {
+					break;
+				}
+				a[l] = 0;
+			}
+			if(l < 0) {
+				break;
+			}
+		}
+
+		for(int d=0;d<this.dimension;d++) {
+			result[offset+d] = acc[d+1]/acc[0];
+		}
+		return result;
+	}
+
+	/**
+	 * <p>格子状に並んだ変数値の全ての点について関数値を計算し、result[offset]から格納します。
+	 * <p>格納順は{@link NURBSFunction#valueOnGrid(double[][], double[])}と同じです。
+	 *
+	 * @param t 各変数の変数値の配列。各配列は定義域内の単調増加列であること。
+	 * @param result 関数値を格納する配列
+	 * @param offset 格納を始める位置
+	 * @return 引数result
+	 * @throws NullPointerException tまたはその要素、resultがnullの場合
+	 * @throws IllegalArgumentException tの長さが変数の数に一致しない場合、変数値が定義域外の場合、
+	 * 変数値の配列が単調増加列でない場合、またはresultの長さが足りない場合
+	 * @version 2026/10/17 07:48
+	 * */
+	public float[] valueOnGrid(double[][] t, float[] result, int offset) {
+		if(result == null) {
+			throw new NullPointerException("引数resultがnullです");
+		}
+		int pointNum = checkGrid(t);
+		if(offset < 0 || result.length-offset < (long)pointNum*this.dimension) {
+			throw new IllegalArgumentException("resultの長さが足りません:"+((long)pointNum*this.dimension+offset)+"以上必要です");
+		}
+		if(pointNum == 0) {
+			return result;
+		}
+		float[] current = contractGrid(t);
+		final int S = this.dimension+1;
+		for(int g=0;g<pointNum;g++) {
+			float w = current[g*S];
+			for(int d=1;d<S;d++) {
+				result[offset+g*this.dimension+d-1] = current[g*S+d]/w;
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * <p>格子状に並んだ変数値の全ての点について関数値を計算し、bufferの現在の位置から格納します。
+	 * 格納した要素の数だけ位置を進めます。
+	 * <p>格納順は{@link NURBSFunction#valueOnGrid(double[][], double[])}と同じです。
+	 *
+	 * @param t 各変数の変数値の配列。各配列は定義域内の単調増加列であること。
+	 * @param buffer 関数値を格納するバッファ
+	 * @return 引数buffer
+	 * @throws NullPointerException tまたはその要素、bufferがnullの場合
+	 * @throws IllegalArgumentException tの長さが変数の数に一致しない場合、変数値が定義域外の場合、
+	 * 変数値の配列が単調増加列でない場合、またはbufferの残りが足りない場合
+	 * @version 2026/10/17 07:48
+	 * */
+	public FloatBuffer valueOnGrid(double[][] t, FloatBuffer buffer) {
+		if(buffer == null) {
+			throw new NullPointerException("引数bufferがnullです");
+		}
+		int pointNum = checkGrid(t);
+		if(buffer.remaining() < (long)pointNum*this.dimension) {
+			throw new IllegalArgumentException("bufferの残りが足りません:"+(long)pointNum*this.dimension+"以上必要です");
+		}
+		if(pointNum == 0) {
+			return buffer;
+		}
+		float[] current = contractGrid(t);
+		final int S = this.dimension+1;
+		for(int g=0;g<pointNum;g++) {
+			float w = current[g*S];
+			for(int d=1;d<S;d++) {
+				buffer.put(current[g*S+d]/w);
+			}
+		}
+		return buffer;
+	}
+
+	/**
+	 * <p>3次元の2変数NURBS関数(曲面)について、格子状に並んだ変数値(u[i],v[j])の全ての点での座標と
+	 * 単位法線を計算し、vertexとnormalの[offset+(i*v.length+j)*3]から格納します。
+	 * <p>法線はS_u×S_vの向きです。外積が0になる(曲面が退化している)点では0ベクトルを格納します。
+	 * 変数vの値毎に、vについての基底関数とその導関数を全ての行のコントロールポイントに一度だけ作用させるので、
+	 * 1点あたりの計算量はuの次数にのみ比例します。
+	 *
+	 * @param u 変数0の変数値の配列。定義域内の単調増加列であること。
+	 * @param v 変数1の変数値の配列。定義域内の単調増加列であること。
+	 * @param vertex 座標を格納する配列
+	 * @param normal 単位法線を格納する配列
+	 * @param offset 格納を始める位置
+	 * @throws IllegalStateException 関数が2変数でない、または次元が3でない場合
+	 * @throws NullPointerException 引数がnullの場合
+	 * @throws IllegalArgumentException 変数値が定義域外の場合、単調増加列でない場合、
+	 * またはvertexかnormalの長さが足りない場合
+	 * @version 2026/10/17 07:48
+	 * */
+	public void surfaceOnGrid(double[] u, double[] v, float[] vertex, float[] normal, int offset) {
+		if(vertex == null) {
+			throw new NullPointerException("引数vertexがnullです");
+		}else if(normal == null) {
+			throw new NullPointerException("引数normalがnullです");
+		}
+		long need = checkSurfaceGrid(u, v)*3L+offset;
+		if(offset < 0 || vertex.length < need || normal.length < need) {
+			throw new IllegalArgumentException("vertexまたはnormalの長さが足りません:"+need+"以上必要です");
+		}
+		surfaceOnGrid(u, v, vertex, offset, normal, offset, null, null);
+	}
+
+	/**
+	 * <p>{@link #surfaceOnGrid(double[], double[], float[], float[], int)}と同じ計算を行い、
+	 * 座標と単位法線をvertexとnormalの現在の位置から格納します。格納した要素の数だけ位置を進めます。
+	 *
+	 * @param u 変数0の変数値の配列。定義域内の単調増加列であること。
+	 * @param v 変数1の変数値の配列。定義域内の単調増加列であること。
+	 * @param vertex 座標を格納するバッファ
+	 * @param normal 単位法線を格納するバッファ
+	 * @throws IllegalStateException 関数が2変数でない、または次元が3でない場合
+	 * @throws NullPointerException 引数がnullの場合
+	 * @throws IllegalArgumentException 変数値が定義域外の場合、単調増加列でない場合、
+	 * またはvertexかnormalの残りが足りない場合
+	 * @version 2026/10/17 07:48
+	 * */
+	public void surfaceOnGrid(double[] u, double[] v, FloatBuffer vertex, FloatBuffer normal) {
+		if(vertex == null) {
+			throw new NullPointerException("引数vertexがnullです");
+		}else if(normal == null) {
+			throw new NullPointerException("引数normalがnullです");
+		}
+		long need = checkSurfaceGrid(u, v)*3L;
+		if(vertex.remaining() < need || normal.remaining() < need) {
+			throw new IllegalArgumentException("vertexまたはnormalの残りが足りません:"+need+"以上必要です");
+		}
+		surfaceOnGrid(u, v, null, vertex.position(), null, normal.position(), vertex, normal);
+		vertex.position(vertex.position()+(int)need);
+		normal.position(normal.position()+(int)need);
+	}
+
+	/**
+	 * 曲面の格子点での計算の本体。配列とバッファのうちnullでない方に、絶対位置で書き込みます。
+	 * */
+	private void surfaceOnGrid(double[] u, double[] v, float[] vertexArray, int vertexOffset, float[] normalArray, int normalOffset,
+			FloatBuffer vertexBuffer, FloatBuffer normalBuffer) {
+		final int p = basis.p[0], q = basis.p[1];
+		final int nu = basis.n[0], nv = basis.n[1];
+		final int S = 4;
+		float[] Nu = new float[p+1], Du = new float[p+1], Nv = new float[q+1], Dv = new float[q+1];
+		float[] work = new float[3*(maxDegree()+1)];
+		//C[i*S+c]:u方向の行iにvの基底関数を作用させた結果、CV:その導関数を作用させた結果
+		float[] C = new float[nu*S], CV = new float[nu*S];
+		float[] A = new float[S], AU = new float[S], AV = new float[S];
+
+		//u方向の基底関数はvの値によらないので先に求めておく
+		int[] ku = new int[u.length];
+		float[][] NU = new float[u.length][], DU = new float[u.length][];
+		KnotSpanLocator.Cursor cursor = basis.locator[0].cursor();
+		for(int i=0;i<u.length;i++) {
+			ku[i] = cursor.locate(u[i]);
+			basisFunctions(basis.knot[0], p, ku[i], u[i], Nu, Du, work);
+			NU[i] = Nu.clone();
+			DU[i] = Du.clone();
+		}
+
+		cursor = basis.locator[1].cursor();
+		for(int j=0;j<v.length;j++) {
+			int kv = cursor.locate(v[j]);
+			basisFunctions(basis.knot[1], q, kv, v[j], Nv, Dv, work);
+			Arrays.fill(C, 0);
+			Arrays.fill(CV, 0);
+			for(int row=0;row<nu;row++) {
+				for(int b=0;b<=q;b++) {
+					int src = (row*nv +kv-q+b)*S;
+					float n = Nv[b], dn = Dv[b];
+					for(int c=0;c<S;c++) {
+						C[row*S+c] += n*ctrl[src+c];
+						CV[row*S+c] += dn*ctrl[src+c];
+					}
+				}
+			}
+
+			for(int i=0;i<u.length;i++) {
+				float[] N = NU[i], D = DU[i];
+				Arrays.fill(A, 0);
+				Arrays.fill(AU, 0);
+				Arrays.fill(AV, 0);
+				for(int a=0;a<=p;a++) {
+					int row = (ku[i]-p+a)*S;
+					for(int c=0;c<S;c++) {
+						A[c] += N[a]*C[row+c];
+						AU[c] += D[a]*C[row+c];
+						AV[c] += N[a]*CV[row+c];
+					}
+				}
+				//S_u,S_vのw倍: A_u*w -w_u*A、A_v*w -w_v*A (w^2で割る分は向きに影響しない)
+				float w = A[0];
+				float ux = AU[1]*w -AU[0]*A[1], uy = AU[2]*w -AU[0]*A[2], uz = AU[3]*w -AU[0]*A[3];
+				float vx = AV[1]*w -AV[0]*A[1], vy = AV[2]*w -AV[0]*A[2], vz = AV[3]*w -AV[0]*A[3];
+				float nx = uy*vz -uz*vy, ny = uz*vx -ux*vz, nz = ux*vy -uy*vx;
+				float norm = (float)Math.sqrt(nx*nx +ny*ny +nz*nz);
+				if(norm > 0 && !Float.isInfinite(norm)) {
+					nx /= norm;
+					ny /= norm;
+					nz /= norm;
+				}else {
+					nx = ny = nz = 0;
+				}
+
+				int g = (i*v.length+j)*3;
+				if(vertexArray != null) {
+					vertexArray[vertexOffset+g] = A[1]/w;
+					vertexArray[vertexOffset+g+1] = A[2]/w;
+					vertexArray[vertexOffset+g+2] = A[3]/w;
+					normalArray[normalOffset+g] = nx;
+					normalArray[normalOffset+g+1] = ny;
+					normalArray[normalOffset+g+2] = nz;
+				}else {
+					vertexBuffer.put(vertexOffset+g, A[1]/w);
+					vertexBuffer.put(vertexOffset+g+1, A[2]/w);
+					vertexBuffer.put(vertexOffset+g+2, A[3]/w);
+					normalBuffer.put(normalOffset+g, nx);
+					normalBuffer.put(normalOffset+g+1, ny);
+					normalBuffer.put(normalOffset+g+2, nz);
+				}
+			}
+		}
+	}
+
+	/**
+	 * 格子の変数値を検査し、点の数を返します。
+	 * */
+	private int checkGrid(double[][] t) {
+		if(t == null) {
+			throw new NullPointerException("引数tがnullです");
+		}
+		if(t.length != basis.parameterNum) {
+			throw new IllegalArgumentException("変数の数が要求される数"+basis.parameterNum+"に合いません:"+t.length);
+		}
+		long pointNum = 1;
+		for(int l=0;l<t.length;l++) {
+			checkMonotone(t[l], l);
+			pointNum *= t[l].length;
+		}
+		if(pointNum*(this.dimension+1) > Integer.MAX_VALUE) {
+			throw new IllegalArgumentException("格子点の数が多すぎます:"+pointNum);
+		}
+		return (int)pointNum;
+	}
+
+	private long checkSurfaceGrid(double[] u, double[] v) {
+		if(basis.parameterNum != 2 || this.dimension != 3) {
+			throw new IllegalStateException("3次元の2変数NURBS関数ではありません");
+		}
+		checkMonotone(u, 0);
+		checkMonotone(v, 1);
+		return (long)u.length*v.length;
+	}
+
+	private void checkMonotone(double[] t, int l) {
+		if(t == null) {
+			throw new NullPointerException("引数t["+l+"]がnullです");
+		}
+		double min = basis.knot[l][0], max = basis.knot[l][basis.knot[l].length-1];
+		for(int j=0;j<t.length;j++) {
+			if(t[j] < min || max < t[j]) {
+				throw new IllegalArgumentException("指定された変数値t["+l+"]["+j+"]はノットベクトルの範囲を超えています");
+			}
+			if(j > 0 && t[j-1] > t[j]) {
+				throw new IllegalArgumentException("変数値t["+l+"]が単調増加列でありません");
+			}
+		}
+	}
+
+	/**
+	 * 後ろの変数から順に、各変数値での基底関数の値をコントロールポイント全体に作用させます。
+	 * 結果は格子点毎に重み、重み付きの座標の順に並びます。
+	 * {@link NURBSCalculater#gridValues(NURBSBasisFunction, NURBSFunction, double[][], double[])}のfloat版です。
+	 * */
+	private float[] contractGrid(double[][] t) {
+		final int m = basis.parameterNum;
+		final int S = this.dimension+1;
+		float[] work = new float[3*(maxDegree()+1)];
+		int[][] kL = new int[m][];
+		float[][] NL = new float[m][];
+		for(int l=0;l<m;l++) {
+			int p = basis.p[l];
+			kL[l] = new int[t[l].length];
+			NL[l] = new float[t[l].length*(p+1)];
+			float[] N = new float[p+1];
+			KnotSpanLocator.Cursor cursor = basis.locator[l].cursor();
+			for(int j=0;j<t[l].length;j++) {
+				int k = cursor.locate(t[l][j]);
+				kL[l][j] = k;
+				basisFunctions(basis.knot[l], p, k, t[l][j], N, null, work);
+				System.arraycopy(N, 0, NL[l], j*(p+1), p+1);
+			}
+		}
+
+		int[] shape = new int[m];
+		for(int l=0;l<m;l++) {
+			shape[l] = basis.n[l];
+		}
+		float[] current = this.ctrl;
+		for(int l=m-1;l>=0;l--) {
+			int p = basis.p[l];
+			int outer = 1, inner = S;
+			for(int i=0;i<l;i++) {
+				outer *= shape[i];
+			}
+			for(int i=l+1;i<m;i++) {
+				inner *= shape[i];
+			}
+			int nl = shape[l], Ll = t[l].length;
+			float[] next = new float[outer*Ll*inner];
+			for(int o=0;o<outer;o++) {
+				for(int j=0;j<Ll;j++) {
+					int dst = (o*Ll+j)*inner;
+					int first = kL[l][j]-p;
+					for(int r=0;r<=p;r++) {
+						float Nr = NL[l][j*(p+1)+r];
+						if(Nr == 0) {
+							continue;
+						}
+						int src = (o*nl +first+r)*inner;
+						for(int c=0;c<inner;c++) {
+							next[dst+c] += Nr*current[src+c];
+						}
+					}
+				}
+			}
+			current = next;
+			shape[l] = Ll;
+		}
+		return current;
+	}
+
+	private int maxDegree() {
+		int maxp = 0;
+		for(int l=0;l<basis.parameterNum;l++) {
+			maxp = Math.max(maxp, basis.p[l]);
+		}
+		return maxp;
+	}
+
+	/**
+	 * <p>0にならないp+1個のBスプライン基底関数の値N[0..p]をfloatで計算します。
+	 * Dがnullでなければ、その1階導関数をD[0..p]に格納します。
+	 * <p>ノットと変数値の差は倍精度で求めてからfloatに丸めます。
+	 * {@link NURBSCalculater#basisFunctions(double[], int, int, double, double[], double[], double[])}のfloat版です。
+	 *
+	 * @param work 作業用配列。長さは3*(p+1)以上であること。
+	 * */
+	static void basisFunctions(double[] knot, int p, int k, double t, float[] N, float[] D, float[] work) {
+		//work[0..p]:left、work[p+1..2p+1]:right、work[2p+2..]:p-1次の基底関数の値
+		final int L = 0, R = p+1, LOW = 2*(p+1);
+		N[0] = 1;
+		if(D != null && p == 0) {
+			D[0] = 0;
+		}
+		for(int j=1;j<=p;j++) {
+			if(j == p && D != null) {
+				System.arraycopy(N, 0, work, LOW, p);
+			}
+			work[L+j] = (float)(t -knot[k+1-j]);
+			work[R+j] = (float)(knot[k+j] -t);
+			float saved = 0;
+			for(int r=0;r<j;r++) {
+				float temp = N[r]/(work[R+r+1] +work[L+j-r]);
+				N[r] = saved +work[R+r+1]*temp;
+				saved = work[L+j-r]*temp;
+			}
+			N[j] = saved;
+		}
+		if(D != null && p > 0) {
+			//N'{i,p} = p(N{i,p-1}/(U{i+p}-U{i}) -N{i+1,p-1}/(U{i+p+1}-U{i+1}))、i=k-p+r
+			for(int r=0;r<=p;r++) {
+				float d = 0;
+				if(r > 0) {
+					double span = knot[k+r] -knot[k-p+r];
+					if(span > 0) {
+						d += work[LOW+r-1]/(float)span;
+					}
+				}
+				if(r < p) {
+					double span = knot[k+r+1] -knot[k-p+r+1];
+					if(span > 0) {
+						d -= work[LOW+r]/(float)span;
+					}
+				}
+				D[r] = p*d;
+			}
+		}
+	}
+}
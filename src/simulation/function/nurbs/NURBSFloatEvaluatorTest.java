@@ -0,0 +1,114 @@
+package simulation.function.nurbs;
+
+import static org.junit.Assert.*;
+
+import java.nio.FloatBuffer;
+import java.util.Random;
+
+import org.junit.Test;
+
+public class NURBSFloatEvaluatorTest {
+	/*
+	 * [0,max]をn等分した変数値
+	 * */
+	static double[] parameters(double max, int n) {
+		double[] t = new double[n+1];
+		for(int i=0;i<=n;i++) {
+			t[i] = (i == n)? max : max/n*i;
+		}
+		return t;
+	}
+
+	@Test
+	public void valueIsWithinErrorBound() {
+		int[][] degrees = {{1},{3},{5},{2,2},{3,4},{2,1,3}};
+		Random random = new Random(10);
+		for(int[] p:degrees) {
+			for(boolean rational:new boolean[] {false, true}) {
+				NURBSFunction func = NURBSTestFunctions.createFunction(p, 4, 3, rational, p.length*10+p[0]);
+				NURBSFloatEvaluator evaluator = new NURBSFloatEvaluator(func);
+				double bound = evaluator.giveErrorBound();
+				float[] result = new float[4];
+				for(int n=0;n<200;n++) {
+					double[] t = new double[p.length];
+					for(int l=0;l<t.length;l++) {
+						t[l] = random.nextDouble()*5;
+					}
+					double[] expected = func.value(t);
+					evaluator.value(t, result, 1);
+					for(int d=0;d<3;d++) {
+						assertEquals(expected[d], result[1+d], bound);
+					}
+				}
+			}
+		}
+	}
+
+	@Test
+	public void gridIsWithinErrorBound() {
+		for(int[] p:new int[][] {{2},{3,2},{1,2,2}}) {
+			NURBSFunction func = NURBSTestFunctions.createFunction(p, 3, 2, true, 20+p.length);
+			NURBSFloatEvaluator evaluator = new NURBSFloatEvaluator(func);
+			double[][] t = new double[p.length][];
+			for(int l=0;l<t.length;l++) {
+				t[l] = parameters(4, 7+l);
+			}
+			double[] expected = func.valueOnGrid(t, null);
+
+			float[] array = evaluator.valueOnGrid(t, new float[expected.length+2], 2);
+			FloatBuffer buffer = FloatBuffer.allocate(expected.length+1);
+			buffer.put(0);
+			evaluator.valueOnGrid(t, buffer);
+			assertEquals(expected.length+1, buffer.position());
+			for(int i=0;i<expected.length;i++) {
+				assertEquals(expected[i], array[2+i], evaluator.giveErrorBound());
+				assertEquals(array[2+i], buffer.get(1+i), 0);
+			}
+		}
+	}
+
+	@Test
+	public void surfaceMatchesDoublePrecision() {
+		NURBSFunction func = NURBSTestFunctions.createFunction(new int[] {3,2}, 4, 3, true, 30);
+		NURBSFloatEvaluator evaluator = new NURBSFloatEvaluator(func);
+		double[] u = parameters(5, 20), v = parameters(5, 15);
+		float[] vertex = new float[u.length*v.length*3], normal = new float[vertex.length];
+		evaluator.surfaceOnGrid(u, v, vertex, normal, 0);
+
+		FloatBuffer vertexBuffer = FloatBuffer.allocate(vertex.length), normalBuffer = FloatBuffer.allocate(vertex.length);
+		evaluator.surfaceOnGrid(u, v, vertexBuffer, normalBuffer);
+		assertFalse(vertexBuffer.hasRemaining());
+		assertFalse(normalBuffer.hasRemaining());
+
+		for(int i=0;i<u.length;i++) {
+			for(int j=0;j<v.length;j++) {
+				int o = (i*v.length+j)*3;
+				//D[0..2]:関数値、D[3..5]:S_v、D[6..8]:S_u
+				double[] D = func.derivatives(1, u[i], v[j]);
+				double[] n = {D[7]*D[5]-D[8]*D[4], D[8]*D[3]-D[6]*D[5], D[6]*D[4]-D[7]*D[3]};
+				double nn = Math.sqrt(n[0]*n[0]+n[1]*n[1]+n[2]*n[2]);
+				double su = Math.sqrt(D[6]*D[6]+D[7]*D[7]+D[8]*D[8]), sv = Math.sqrt(D[3]*D[3]+D[4]*D[4]+D[5]*D[5]);
+				//法線の誤差は|S_u||S_v|/|S_u×S_v|に比例する
+				double tolerance = 100*NURBSFloatEvaluator.EPSILON*su*sv/nn;
+				for(int d=0;d<3;d++) {
+					assertEquals(D[d], vertex[o+d], evaluator.giveErrorBound());
+					assertEquals(n[d]/nn, normal[o+d], tolerance);
+					assertEquals(vertex[o+d], vertexBuffer.get(o+d), 0);
+					assertEquals(normal[o+d], normalBuffer.get(o+d), 0);
+				}
+			}
+		}
+	}
+
+	@Test(expected = IllegalStateException.class)
+	public void surfaceRequiresTwoVariables() {
+		NURBSFunction func = NURBSTestFunctions.createFunction(new int[] {2}, 2, 3, false, 40);
+		new NURBSFloatEvaluator(func).surfaceOnGrid(new double[] {0}, new double[] {0}, new float[3], new float[3], 0);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void gridMustBeMonotone() {
+		NURBSFunction func = NURBSTestFunctions.createFunction(new int[] {2,2}, 2, 3, false, 50);
+		new NURBSFloatEvaluator(func).valueOnGrid(new double[][] {{0,1},{2,1}}, new float[12], 0);
+	}
+}
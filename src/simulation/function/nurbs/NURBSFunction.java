@@ -15,14 +15,17 @@ import simulation.function.nurbs.assertion.NURBSAsserter;
 public class NURBSFunction {
 
 	/**
-	 * 重み付きのコントロールポイント。<br>
-	 * w_{i_0,i_1,...,i_{m-2},i_{m-1}} P_{i_0,i_1,...,i_{m-2},i_{m-1}}は
-	 * ctrl[i_{m-1}+i_{m-2}*n_{m-1}+...+i_0*n_1*...*n_{m-1}]に格納されており、
+	 * <p>重み付きのコントロールポイントを、重みと共に1つの連続した配列に格納したもの。<br>
+	 * 1つのポイントあたりdimension+1個の要素を持ち、インデックスi
+	 * (=i_{m-1}+i_{m-2}*n_{m-1}+...+i_0*n_1*...*n_{m-1})のポイントについて、
+	 * ctrl[i*(dimension+1)]に重みw_{i_0,...,i_{m-1}}が、
+	 * ctrl[i*(dimension+1)+1+d]に重み付きの座標w_{i_0,...,i_{m-1}} P_{i_0,...,i_{m-1}}のd成分が格納されています。
 	 * i_{k}=0,1,...,n_{k}-1が有効です。(n_{k}は変数k方向のポイント数)
+	 * <p>インデックスの変換には基底関数組の{@link NURBSBasisFunction#givePi_n()}が使えます。
 	 *
-	 * @version 2019/02/23 0:22
+	 * @version 2026/10/17 06:51
 	 * */
-	private final double[][] ctrl;
+	final double[] ctrl;
 	/**
 	 * <p>重み付きコントロールポイントの配列を返します。
 	 * 即ち、元のポイントに重みが掛けられたものです。
@@ -30,30 +33,59 @@ public class NURBSFunction {
 	 *
 	 * @return 重み付きコントロールポイントの配列
 	 * @see #giveCtrlArray_Shallow()
-	 * @version 2019/02/23 13:58
+	 * @version 2026/10/17 06:51
 	 * */
 	public double[][] giveCtrlArray_Deep(){
-		double[][] ctrl = new double[this.ctrl.length][this.dimension];
-		for(int j=0;j<this.dimension;j++) {
-			for(int i=0;i<ctrl.length;i++) {
-				ctrl[i][j] = this.ctrl[i][j];
-			}
+		final int S = this.dimension+1;
+		int num = this.ctrl.length/S;
+		double[][] ctrl = new double[num][this.dimension];
+		for(int i=0;i<num;i++) {
+			System.arraycopy(this.ctrl, i*S+1, ctrl[i], 0, this.dimension);
 		}
 		return ctrl;
 	}
 	/**
 	 * <p>重み付きコントロールポイントの配列を返します。
+	 * <p>コントロールポイントは1つの連続した配列に格納されているため、
+	 * ポイント毎の配列の形式で参照を渡すことはできません。
+	 * このメソッドは{@link #giveCtrlArray_Deep()}と同じく、呼び出しの度に複製を生成して返します。
+	 * <p>複製をせずにコントロールポイントを参照したい場合は
+	 * {@link #giveHomogeneousCtrlArray_Shallow()}を利用してください。
+	 *
+	 * @return 重み付きコントロールポイントの配列の複製
+	 * @see #giveCtrlArray_Deep()
+	 * @version 2026/10/17 06:51
+	 * @deprecated 配列は複製されるため、{@link #giveCtrlArray_Deep()}を利用してください。
+	 * */
+	@Deprecated
+	public double[][] giveCtrlArray_Shallow(){
+		return this.giveCtrlArray_Deep();
+	}
+	/**
+	 * <p>重みと重み付きコントロールポイントを格納した連続した配列を返します。
+	 * 格納順は、インデックスiのポイントについて、[i*(dimension+1)]に重み、
+	 * [i*(dimension+1)+1+d]に重み付きの座標のd成分です。
+	 * <p>配列は複製を返します。
+	 *
+	 * @return 重みと重み付きコントロールポイントの配列
+	 * @see #giveHomogeneousCtrlArray_Shallow()
+	 * @version 2026/10/17 06:51
+	 * */
+	public double[] giveHomogeneousCtrlArray_Deep(){
+		return this.ctrl.clone();
+	}
+	/**
+	 * <p>重みと重み付きコントロールポイントを格納した連続した配列を返します。
+	 * 格納順は{@link #giveHomogeneousCtrlArray_Deep()}と同じです。
 	 * <p>配列の参照を渡します。そのため、得た配列要素を変更すると
 	 * インスタンスの状態が変化します。それはこのインスタンスの想定された
 	 * 利用ではないので注意してください。
-	 * <p>このメソッドは、配列要素を変化させないコンテキストの中で、
-	 * 複製をするとメモリを圧迫する可能性を考慮したものです。
 	 *
-	 * @return 重み付きコントロールポイントの配列
-	 * @see #giveCtrlArray_Deep()
-	 * @version 2019/02/23 13:58
+	 * @return 重みと重み付きコントロールポイントの配列
+	 * @see #giveHomogeneousCtrlArray_Deep()
+	 * @version 2026/10/17 06:51
 	 * */
-	public double[][] giveCtrlArray_Shallow(){
+	public double[] giveHomogeneousCtrlArray_Shallow(){
 		return this.ctrl;
 	}
 
@@ -121,7 +153,8 @@ public class NURBSFunction {
 		if(dimension == 0) {
 			throw new IllegalArgumentException("コントロールポイントの要素数が足りません:次元d(>0)");
 		}
-		this.ctrl = new double[ctrl.length][dimension];
+		final int S = dimension+1;
+		this.ctrl = new double[ctrl.length*S];
 		double[] weight = basis.giveWeightArray_Shallow();
 		for(int i=0;i<ctrl.length;i++) {
 			if(dimension != ctrl[i].length) {
@@ -129,42 +162,321 @@ public class NURBSFunction {
 			}
 
 			//先に重みを各座標に掛け合わせておく
+			this.ctrl[i*S] = weight[i];
 			for(int d=0;d<dimension;d++) {
-				this.ctrl[i][d] = weight[i] *ctrl[i][d];
+				this.ctrl[i*S+1+d] = weight[i] *ctrl[i][d];
 			}
 		}
 
 		this.basis = basis;
 	}
 
+	/**
+	 * <p>重みと重み付きコントロールポイントを格納した連続した配列から、NURBS関数をインスタンス化させます。
+	 * <p>homogeneousCtrlの格納順は、インデックスi(=i_{m-1}+i_{m-2}*n_{m-1}+...+i_0*n_1*...*n_{m-1})のポイントについて、
+	 * [i*(dimension+1)]に重み、[i*(dimension+1)+1+d]に重み付きの座標のd成分です。
+	 * 重みは基底関数組の重みと一致している必要があります。
+	 * 配列は複製して保持します。
+	 *
+	 * @param homogeneousCtrl 重みと重み付きコントロールポイントの配列
+	 * @param dimension コントロールポイントの次元
+	 * @param basis このNURBS関数が必要とする基底関数組
+	 * @throws NullPointerException homogeneousCtrlまたはbasisがnullの場合
+	 * @throws IllegalArgumentException
+	 * <ul>
+	 * 		<li>dimensionが0以下の場合
+	 * 		<li>配列の長さが(dimension+1)*(コントロールポイントの数)に一致しない場合
+	 * 		<li>配列に格納された重みが基底関数組の重みと一致しない場合
+	 * </ul>
+	 * @version 2026/10/17 06:51
+	 */
+	public NURBSFunction(double[] homogeneousCtrl, int dimension, NURBSBasisFunction basis) {
+		this(homogeneousCtrl, dimension, basis, true);
+	}
+
+	/**
+	 * <p>重みと重み付きコントロールポイントを格納した連続した配列を複製せずに、NURBS関数をインスタンス化します。
+	 * <p>検査は{@link #NURBSFunction(double[], int, NURBSBasisFunction)}と同じです。
+	 * homogeneousCtrlはそのまま保持するので、呼び出し側はこの配列を以降変更しないでください。
+	 * 精細化の結果のように、生成したばかりの大きな配列から関数を作る場合のためのものです。
+	 *
+	 * @param homogeneousCtrl 重みと重み付きコントロールポイントの配列。配列を共有する。
+	 * @param dimension コントロールポイントの次元
+	 * @param basis このNURBS関数が必要とする基底関数組
+	 * @return NURBS関数
+	 * @throws NullPointerException homogeneousCtrlまたはbasisがnullの場合
+	 * @throws IllegalArgumentException {@link #NURBSFunction(double[], int, NURBSBasisFunction)}と同じ
+	 * @version 2026/10/17 07:54
+	 * */
+	public static NURBSFunction wrap(double[] homogeneousCtrl, int dimension, NURBSBasisFunction basis) {
+		return new NURBSFunction(homogeneousCtrl, dimension, basis, false);
+	}
+
+	private NURBSFunction(double[] homogeneousCtrl, int dimension, NURBSBasisFunction basis, boolean copy) {
+		if(homogeneousCtrl == null) {
+			throw new NullPointerException("引数homogeneousCtrlがnullです");
+		}else if(basis == null) {
+			throw new NullPointerException("引数basisがnullです");
+		}
+		if(dimension <= 0) {
+			throw new IllegalArgumentException("コントロールポイントの要素数が足りません:次元d(>0)");
+		}
+		final int S = dimension+1;
+		int num = basis.giveNumberOfAllCtrl();
+		if(homogeneousCtrl.length != num*S) {
+			throw new IllegalArgumentException("配列の長さがコントロールポイントの数と次元に一致しません");
+		}
+		double[] weight = basis.giveWeightArray_Shallow();
+		for(int i=0;i<num;i++) {
+			if(homogeneousCtrl[i*S] != weight[i]) {
+				throw new IllegalArgumentException("コントロールポイント"+i+"の重みが基底関数の重みと一致しません");
+			}
+		}
+
+		this.dimension = dimension;
+		this.ctrl = copy? homogeneousCtrl.clone() : homogeneousCtrl;
+		this.basis = basis;
+	}
+
 	/**
 	 * 変数値を引数で指定し、その点でのNURBS関数の値を計算します。
 	 * @param t 変数値
 	 * @return 関数値
 	 */
 	public double[] value(double... t){
+		return this.value(t, new double[this.dimension]);
+	}
+
+	/**
+	 * <p>変数値を引数で指定し、その点でのNURBS関数の値を計算し、resultに格納します。
+	 * <p>0にならない基底関数の値とコントロールポイントの積和を直接とります。
+	 * 作業用配列は呼び出し毎に次数に応じた大きさで確保するので、大量の点で計算する場合は、
+	 * {@link NURBSEvaluator}を生成して使い回してください。
+	 *
+	 * @param t 変数値
+	 * @param result 関数値を格納する配列。長さはdimension以上であること。
+	 * @return 引数result
+	 * @see NURBSEvaluator
+	 * @version 2026/10/17 06:40
+	 */
+	public double[] value(double[] t, double[] result){
 		//定義域に反していないかをチェック
-		NURBSAsserter asserter = new NURBSAsserter(true);
-		asserter.assertVariableIsValid(this.basis, t);
-
-		//各変数についてt_k <= t < t_k+1となるようなkをさがす
-		int[] k = NURBSCalculater.searchVariablesPosition_InKnotVectors(basis, t);
-
-		//以降deBoorアルゴリズムの通り
-		//Q[][0]:重み
-		//Q[][1]以降:重み*座標値
-		double Q[][] = NURBSCalculater.restrictControlPoint(k, basis, this);
-
-		//4つの入れ子ループ部分へ
-		//loopResult[0]:重みの足し合わせ結果
-		//loopResult[1]以降:重み*座標値の足し合わせ結果
-		double[] loopResult = NURBSCalculater.deBoorsLoop(t, k, Q, basis);
-
-		/*loopResultには{重みの足し合わせ、座標1*重みの足し合わせ、...}が入っているため、
-		 * loopResult[0]で残りの要素を割り、その残りの要素を結果として出さなければならない
-		 * (NURBSの特徴)
-		 * */
-		return NURBSCalculater.processWeight(loopResult);
+		new NURBSAsserter(true).assertVariableIsValid(this.basis, t);
+
+		final int S = this.dimension+1;
+		double[] acc = NURBSCalculater.pointSum(this.basis, this.ctrl, S, t, new double[S]);
+		//Bスプラインの場合は重みの和が1なので、除算を行わない
+		for(int d=0;d<this.dimension;d++) {
+			result[d] = this.basis.isBSpline? acc[d+1] : acc[d+1]/acc[0];
+		}
+		return result;
+	}
+
+	/**
+	 * <p>変数値を引数で指定し、その点でのNURBS関数の値と、各変数についてorder階までの
+	 * 全ての偏導関数の値を計算します。
+	 * <p>結果の格納順は{@link NURBSEvaluator#derivatives(double[], int, double[])}を参照してください。
+	 * <p>呼び出し毎に評価器を生成します。大量の点で計算する場合は{@link NURBSEvaluator}を使い回してください。
+	 *
+	 * @param order 各変数について計算する偏導関数の最大の階数
+	 * @param t 変数値
+	 * @return 関数値と偏導関数の値
+	 * @throws IllegalArgumentException
+	 * <ul>
+	 * 		<li>変数値が定義域外、または変数の数が一致しない場合
+	 * 		<li>orderが負数の場合
+	 * </ul>
+	 * @version 2026/10/17 06:40
+	 * */
+	public double[] derivatives(int order, double... t) {
+		if(order < 0) {
+			throw new IllegalArgumentException("階数orderが負数です");
+		}
+		int size = this.dimension;
+		for(int i=0;i<basis.parameterNum;i++) {
+			size *= order+1;
+		}
+		return new NURBSEvaluator(this).derivatives(t, order, new double[size]);
+	}
+
+	/**
+	 * <p>格子状に並んだ変数値の全ての点について、NURBS関数の値を計算します。
+	 * <p>各変数方向について変数値の配列を指定すると、それらの全ての組み合わせ
+	 * (t[0][j0],t[1][j1],...,t[m-1][j{m-1}])での関数値を計算し、resultに格納します。
+	 * 基底関数の値は各変数方向の変数値毎に一度だけ計算されるため、
+	 * 規則的な格子上の点を{@link #value(double...)}で1点ずつ計算するよりも高速です。
+	 *
+	 * <p>結果の格納順は、変数値のインデックス組(j0,j1,...,j{m-1})について、
+	 * result[(j{m-1}+j{m-2}*L{m-1}+...+j0*L1*...*L{m-1})*dimension+d]です。
+	 * (L{i}はt[i]の長さ、dは関数値の成分)
+	 *
+	 * @param t 各変数の変数値の配列。t.lengthは変数の数に等しく、
+	 * 各配列は定義域内の単調増加列であること。
+	 * @param result 関数値を格納する配列。nullの場合は新たに生成する。
+	 * @return 関数値を格納した配列
+	 * @throws NullPointerException tまたはその要素がnullの場合
+	 * @throws IllegalArgumentException
+	 * <ul>
+	 * 		<li>tの長さが変数の数に一致しない場合
+	 * 		<li>変数値が定義域外の場合
+	 * 		<li>変数値の配列が単調増加列でない場合
+	 * 		<li>resultの長さが足りない場合
+	 * </ul>
+	 * @version 2026/10/17 06:41
+	 * */
+	public double[] valueOnGrid(double[][] t, double[] result) {
+		if(t == null) {
+			throw new NullPointerException("引数tがnullです");
+		}
+		if(t.length != basis.parameterNum) {
+			throw new IllegalArgumentException("変数の数が要求される数"+basis.parameterNum+"に合いません:"+t.length);
+		}
+
+		int pointNum = 1;
+		for(int l=0;l<t.length;l++) {
+			if(t[l] == null) {
+				throw new NullPointerException("引数t["+l+"]がnullです");
+			}
+			double min = basis.knot[l][0], max = basis.knot[l][basis.knot[l].length-1];
+			for(int j=0;j<t[l].length;j++) {
+				if(t[l][j] < min || max < t[l][j]) {
+					throw new IllegalArgumentException("指定された変数値t["+l+"]["+j+"]はノットベクトルの範囲を超えています");
+				}
+				if(j > 0 && t[l][j-1] > t[l][j]) {
+					throw new IllegalArgumentException("変数値t["+l+"]が単調増加列でありません");
+				}
+			}
+			pointNum *= t[l].length;
+		}
+
+		if(result == null) {
+			result = new double[pointNum*this.dimension];
+		}else if(result.length < pointNum*this.dimension) {
+			throw new IllegalArgumentException("resultの長さが足りません:"+pointNum*this.dimension+"以上必要です");
+		}
+
+		if(pointNum == 0) {
+			return result;
+		}
+
+		return NURBSCalculater.gridValues(this.basis, this, t, result);
+	}
+
+	/**
+	 * <p>変数variableの値をtに固定した、残りの変数についてのNURBS関数を返します。
+	 * <p>2変数の曲面であれば、u一定またはv一定の等パラメータ曲線になります。
+	 * 詳細は{@link #restrict(int[], double[])}を参照してください。
+	 *
+	 * @param variable 固定する変数のインデックス
+	 * @param t 固定する変数値
+	 * @return 変数の数が1つ少ないNURBS関数
+	 * @throws IllegalArgumentException
+	 * <ul>
+	 * 		<li>variableが変数のインデックスの範囲外の場合
+	 * 		<li>変数の数が1の場合
+	 * 		<li>tがノットベクトルの範囲にない場合
+	 * </ul>
+	 * @version 2026/10/17 07:32
+	 * */
+	public NURBSFunction restrict(int variable, double t) {
+		return restrict(new int[] {variable}, new double[] {t});
+	}
+
+	/**
+	 * <p>一部の変数の値を固定した、残りの変数についてのNURBS関数を返します。
+	 * <p>m変数の関数のk個の変数を固定すると、(m-k)変数の関数になります。
+	 * 固定した変数l毎に、値tで0にならないp{l}+1個のB-spline基底関数の値を求め、
+	 * 重みを含めた同次座標のコントロールポイントをその方向に縮約します。
+	 * 重みも同時に縮約されるので、結果は近似ではなく元の関数の制限そのものです。
+	 * 残りの変数のノットベクトルと次数は元の関数と同じです。
+	 * 元の関数がBスプラインであれば、結果もBスプラインです。
+	 * <p>曲面上の等パラメータ曲線を多数の点で評価する場合は、一度この方法で曲線を取り出してから
+	 * 評価すると、点毎に多変数のdeBoorのアルゴリズムを行う必要がなくなります。
+	 *
+	 * @param variables 固定する変数のインデックス。重複しないこと。
+	 * @param t 固定する変数値。t[i]が変数variables[i]の値です。
+	 * @return 固定しなかった変数についてのNURBS関数。変数の順番は元の順番のままです。
+	 * @throws NullPointerException variablesまたはtがnullの場合
+	 * @throws IllegalArgumentException
+	 * <ul>
+	 * 		<li>variablesとtの長さが異なる場合
+	 * 		<li>変数のインデックスが範囲外、または重複している場合
+	 * 		<li>全ての変数を固定しようとした場合
+	 * 		<li>変数値がノットベクトルの範囲にない場合
+	 * </ul>
+	 * @version 2026/10/17 07:32
+	 * */
+	public NURBSFunction restrict(int[] variables, double[] t) {
+		if(variables == null) {
+			throw new NullPointerException("引数variablesがnullです");
+		}else if(t == null) {
+			throw new NullPointerException("引数tがnullです");
+		}
+		final int m = basis.parameterNum;
+		if(variables.length != t.length) {
+			throw new IllegalArgumentException("variablesとtの長さが異なります");
+		}
+		boolean[] fixed = new boolean[m];
+		for(int l:variables) {
+			if(l < 0 || m <= l) {
+				throw new IllegalArgumentException("変数のインデックス"+l+"が範囲外です");
+			}else if(fixed[l]) {
+				throw new IllegalArgumentException("変数のインデックス"+l+"が重複しています");
+			}
+			fixed[l] = true;
+		}
+		if(variables.length == m) {
+			throw new IllegalArgumentException("全ての変数を固定することはできません");
+		}
+
+		final int S = this.dimension+1;
+		int[] n = basis.giveNumberArrayOfCtrl();
+		double[] current = this.ctrl;
+		for(int i=0;i<variables.length;i++) {
+			final int l = variables[i], p = basis.p[l];
+			final int k = basis.giveKnotSpanLocator(l).locate(t[i]);
+			double[] N = NURBSCalculater.basisFunctions(basis.knot[l], p, k, t[i], new double[p+1], new double[p+1], new double[p+1]);
+
+			//[outer][n{l}][inner]の配列を、変数l方向にNで縮約して[outer][inner]にする
+			int inner = S;
+			for(int j=l+1;j<m;j++) {
+				inner *= n[j];
+			}
+			final int outer = current.length/(inner*n[l]);
+			double[] next = new double[outer*inner];
+			for(int o=0;o<outer;o++) {
+				for(int j=0;j<=p;j++) {
+					int src = (o*n[l]+k-p+j)*inner, dst = o*inner;
+					for(int c=0;c<inner;c++) {
+						next[dst+c] += N[j]*current[src+c];
+					}
+				}
+			}
+			current = next;
+			//縮約した方向のポイント数は1とみなす
+			n[l] = 1;
+		}
+
+		final int remain = m-variables.length;
+		double[][] knot = new double[remain][];
+		int[] p = new int[remain];
+		for(int l=0,r=0;l<m;l++) {
+			if(!fixed[l]) {
+				//ノットベクトルは変更されないので元の基底関数組と共有する
+				knot[r] = basis.knot[l];
+				p[r++] = basis.p[l];
+			}
+		}
+		double[] weight = new double[current.length/S];
+		for(int i=0;i<weight.length;i++) {
+			//Bスプラインの場合、縮約した重みは基底関数の和なので1になる。丸め誤差で有理にならないよう1とする
+			if(basis.isBSpline) {
+				current[i*S] = 1;
+			}
+			weight[i] = current[i*S];
+		}
+		//縮約した配列は新たに生成したものなので複製しない
+		return wrap(current, this.dimension, NURBSBasisFunction.wrap(knot, p, weight));
 	}
 
 	/**
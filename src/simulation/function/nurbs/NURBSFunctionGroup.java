@@ -31,4 +31,53 @@ public class NURBSFunctionGroup {
 		this.funcs = func;
 	}
 
+	/**
+	 * 全ての関数の次元数の和を返します。
+	 * @return 次元数の和
+	 * @version 2026/10/17 06:47
+	 * */
+	public int giveTotalDimension() {
+		int dimension = 0;
+		for(NURBSFunction f:funcs) {
+			dimension += f.dimension;
+		}
+		return dimension;
+	}
+
+	/**
+	 * <p>変数値を引数で指定し、その点での全ての関数の値をまとめて計算し、resultに格納します。
+	 * <p>ノット範囲の探索とdeBoorのアルゴリズムは全ての関数で共有されます。
+	 * 結果の格納順は{@link NURBSGroupEvaluator#value(double[], double[])}を参照してください。
+	 * <p>呼び出し毎に評価器を生成します。大量の点で計算する場合は、
+	 * {@link NURBSGroupEvaluator}を生成して使い回してください。
+	 * 複数のスレッドから計算する場合は、スレッド毎に評価器を生成してください。
+	 *
+	 * @param t 変数値
+	 * @param result 関数値を格納する配列。長さは{@link #giveTotalDimension()}以上であること。
+	 * @return 引数result
+	 * @throws IllegalArgumentException 変数値が定義域外、または変数の数が一致しない場合
+	 * @version 2026/10/17 06:47
+	 * */
+	public double[] value(double[] t, double[] result) {
+		return new NURBSGroupEvaluator(this).value(t, result);
+	}
+
+	/**
+	 * <p>変数値を引数で指定し、その点での全ての関数の値をまとめて計算します。
+	 * <p>戻り値の[f]がfuncs[f]の関数値です。
+	 * 呼び出し毎に評価器を生成します。
+	 *
+	 * @param t 変数値
+	 * @return 各関数の関数値
+	 * @throws IllegalArgumentException 変数値が定義域外、または変数の数が一致しない場合
+	 * @version 2026/10/17 06:47
+	 * */
+	public double[][] value(double... t) {
+		double[][] results = new double[funcs.length][];
+		for(int f=0;f<funcs.length;f++) {
+			results[f] = new double[funcs[f].dimension];
+		}
+		return new NURBSGroupEvaluator(this).value(t, results);
+	}
+
 }
@@ -0,0 +1,163 @@
+package simulation.function.nurbs;
+
+import simulation.function.nurbs.assertion.NURBSAsserter;
+
+/**
+ * <p>NURBSFunctionGroupに含まれる全てのNURBS関数の値を、まとめて計算するための評価器。
+ * <p>同じ基底関数を持つ関数群について、ノット範囲の探索、コントロールポイントの限定、
+ * deBoorのアルゴリズムを一度だけ実行します。deBoorのアルゴリズムは重みと全ての関数の
+ * 重み付きコントロールポイントを連結したものに対して作用させるため、
+ * 関数毎に{@link NURBSFunction#value(double...)}を呼ぶ場合と比べ、
+ * 重みについての計算と探索の重複がなくなります。
+ * 変数0についての計算は、連結した要素の並びに対する単純なループになるので、
+ * JITコンパイラによりSIMD命令に置き換えられます。関数の数や次元が大きいほど効果があります。
+ *
+ * <p>{@link NURBSEvaluator}と同様に作業用配列を内部に持つため、スレッドセーフではありません。
+ * 複数のスレッドから利用する場合は、スレッドや処理の単位毎に評価器を生成してください。
+ *
+ * @see NURBSFunctionGroup#value(double[], double[])
+ * @version 2026/10/17 07:43
+ * */
+public class NURBSGroupEvaluator {
+	/**
+	 * 評価対象の関数群
+	 * @version 2026/10/17 06:47
+	 * */
+	private final NURBSFunctionGroup group;
+
+	/**
+	 * 全ての関数の次元数の和
+	 * @version 2026/10/17 06:47
+	 * */
+	public final int dimension;
+
+	/**
+	 * offset[f]はfuncs[f]の関数値が結果の配列の中で始まる位置
+	 * @version 2026/10/17 06:47
+	 * */
+	private final int[] offset;
+
+	private final NURBSAsserter asserter = new NURBSAsserter(true);
+
+	/**
+	 * 基底関数組の{@link NURBSBasisFunction#givePi_p()}と{@link NURBSBasisFunction#givePi_n()}。
+	 * インデックスの変換に用いるので、インスタンス化の際に一度だけ求めます。
+	 * @version 2026/10/17 06:47
+	 * */
+	private final int[] Pi_p, Pi_n;
+
+	/**
+	 * 作業用配列
+	 * <ul>
+	 * 	<li>rows:限定後のコントロールポイント(変数0のインデックス毎の配列)
+	 * 	<li>R:変数0について基底関数を作用させた結果。変数1以降のdeBoorのアルゴリズムにも用いる
+	 * 	<li>N,left,right:変数0の基底関数の計算に用いる
+	 * </ul>
+	 * @version 2026/10/17 07:43
+	 * */
+	private final int[] k, indexs;
+	private final double[][] rows;
+	private final double[] R, N, left, right;
+
+	/**
+	 * 指定された関数群の値をまとめて計算する評価器を生成します。
+	 * @param group 関数群
+	 * @throws NullPointerException groupがnullの場合
+	 * @version 2026/10/17 06:47
+	 * */
+	public NURBSGroupEvaluator(NURBSFunctionGroup group) {
+		if(group == null) {
+			throw new NullPointerException("引数groupがnullです");
+		}
+		this.group = group;
+
+		NURBSBasisFunction basis = group.basis;
+		this.offset = new int[group.funcs.length+1];
+		for(int f=0;f<group.funcs.length;f++) {
+			offset[f+1] = offset[f] +group.funcs[f].dimension;
+		}
+		this.dimension = offset[group.funcs.length];
+
+		this.Pi_p = basis.givePi_p();
+		this.Pi_n = basis.givePi_n();
+		this.k = new int[basis.parameterNum];
+		this.indexs = new int[basis.parameterNum];
+		final int length = Pi_p[1]*(this.dimension+1);
+		this.rows = new double[basis.p[0]+1][length];
+		this.R = new double[length];
+		this.N = new double[basis.p[0]+1];
+		this.left = new double[basis.p[0]+1];
+		this.right = new double[basis.p[0]+1];
+	}
+
+	/**
+	 * <p>変数値を引数で指定し、その点での全ての関数の値を計算します。
+	 * <p>結果はfuncs[0]の関数値、funcs[1]の関数値、...の順にresultに連続して格納します。
+	 * funcs[f]の関数値の位置は{@link #giveOffset(int)}で得られます。
+	 *
+	 * @param t 変数値
+	 * @param result 関数値を格納する配列。長さはdimension以上であること。
+	 * @return 引数result
+	 * @throws IllegalArgumentException 変数値が定義域外、または変数の数が一致しない場合
+	 * @version 2026/10/17 06:47
+	 * */
+	public double[] value(double[] t, double[] result) {
+		NURBSBasisFunction basis = group.basis;
+		asserter.assertVariableIsValid(basis, t);
+
+		NURBSCalculater.searchVariablesPosition_InKnotVectors(basis, t, k);
+		NURBSCalculater.restrictControlPointByRow(k, basis, Pi_p, Pi_n, group.funcs, rows, indexs);
+
+		//R[loop]:重みの足し合わせ結果
+		//R[loop+1]以降:全ての関数の重み*座標値の足し合わせ結果
+		int loop = NURBSCalculater.deBoorsLoop(t, k, rows, this.dimension+1, basis, Pi_p, R, N, left, right);
+
+		return NURBSCalculater.processWeight(R, loop, this.dimension+1, result);
+	}
+
+	/**
+	 * <p>変数値を引数で指定し、その点での全ての関数の値を計算します。
+	 * <p>results[f]にfuncs[f]の関数値を格納します。
+	 *
+	 * @param t 変数値
+	 * @param results 関数値を格納する配列の配列。results[f]の長さはfuncs[f].dimension以上であること。
+	 * @return 引数results
+	 * @throws IllegalArgumentException 変数値が定義域外、または変数の数が一致しない場合
+	 * @version 2026/10/17 06:47
+	 * */
+	public double[][] value(double[] t, double[][] results) {
+		NURBSBasisFunction basis = group.basis;
+		asserter.assertVariableIsValid(basis, t);
+
+		NURBSCalculater.searchVariablesPosition_InKnotVectors(basis, t, k);
+		NURBSCalculater.restrictControlPointByRow(k, basis, Pi_p, Pi_n, group.funcs, rows, indexs);
+		int loop = NURBSCalculater.deBoorsLoop(t, k, rows, this.dimension+1, basis, Pi_p, R, N, left, right);
+
+		double w = R[loop];
+		for(int f=0;f<results.length;f++) {
+			for(int d=offset[f];d<offset[f+1];d++) {
+				results[f][d-offset[f]] = R[loop+d+1]/w;
+			}
+		}
+		return results;
+	}
+
+	/**
+	 * funcs[f]の関数値が、{@link #value(double[], double[])}の結果の中で始まる位置を返します。
+	 * @param f 関数のインデックス
+	 * @return 関数値の位置
+	 * @version 2026/10/17 06:47
+	 * */
+	public int giveOffset(int f) {
+		return this.offset[f];
+	}
+
+	/**
+	 * 評価対象の関数群を返します。
+	 * @return 関数群
+	 * @version 2026/10/17 06:47
+	 * */
+	public NURBSFunctionGroup giveFunctionGroup() {
+		return this.group;
+	}
+}
@@ -0,0 +1,57 @@
+package simulation.function.nurbs;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/*
+ * テストで用いるNURBS関数を乱数から構成する
+ * 各変数のノットベクトルは開いた一様ノットで、変数lの定義域は[0,inner[l]+1]
+ * 重みは有理の場合[0.5,1.5)、そうでない場合1、コントロールポイントの成分は[-5,5)の乱数
+ * */
+public class NURBSTestFunctions {
+	private NURBSTestFunctions() {
+	}
+
+	/*
+	 * 同じ基底関数組の上の関数の組を構成する
+	 * 各変数の内部ノットの数はinner、関数fの次元はdimension[f]
+	 * */
+	public static NURBSFunctionGroup createGroup(int[] p, int[] inner, int[] dimension, boolean rational, long seed) {
+		Random random = new Random(seed);
+		final int m = p.length;
+		double[][] knot = new double[m][];
+		int N = 1;
+		for(int l=0;l<m;l++) {
+			knot[l] = new double[2*(p[l]+1)+inner[l]];
+			for(int i=0;i<knot[l].length;i++) {
+				knot[l][i] = Math.min(Math.max(i-p[l], 0), inner[l]+1);
+			}
+			N *= p[l]+1+inner[l];
+		}
+		double[] weight = new double[N];
+		for(int i=0;i<N;i++) {
+			weight[i] = rational? 0.5+random.nextDouble() : 1;
+		}
+		NURBSBasisFunction basis = new NURBSBasisFunction(knot, p, weight);
+		NURBSFunction[] funcs = new NURBSFunction[dimension.length];
+		for(int f=0;f<funcs.length;f++) {
+			double[][] ctrl = new double[N][dimension[f]];
+			for(double[] c:ctrl) {
+				for(int d=0;d<c.length;d++) {
+					c[d] = random.nextDouble()*10-5;
+				}
+			}
+			funcs[f] = new NURBSFunction(ctrl, basis);
+		}
+		return new NURBSFunctionGroup(basis, funcs);
+	}
+
+	/*
+	 * 1つの関数を構成する。全ての変数の内部ノットの数はinner
+	 * */
+	public static NURBSFunction createFunction(int[] p, int inner, int dimension, boolean rational, long seed) {
+		int[] inners = new int[p.length];
+		Arrays.fill(inners, inner);
+		return createGroup(p, inners, new int[] {dimension}, rational, seed).funcs[0];
+	}
+}
@@ -0,0 +1,337 @@
+package simulation.function.nurbs;
+
+import java.util.Arrays;
+
+/**
+ * <p>NURBS関数の値を、各変数の定義域を等分した格子上で前進差分により計算するクラス。
+ *
+ * <p>1つのノット範囲の中では、重み付きコントロールポイントとの積和(分子)と重みとの積和(分母)は
+ * それぞれ変数についてp次の多項式です。等間隔hで並んだ変数値t0,t0+h,t0+2h,...での多項式の値は、
+ * t0での0階からp階までの前進差分を一度求めれば、1点毎にp回の加算で順に得られます。
+ * このクラスはノット範囲毎に、その範囲の最初の変数値での基底関数のp階までの導関数から前進差分を求め、
+ * 範囲内の残りの点を加算だけで計算します。有理関数のままでは差分が有限回で閉じないので、
+ * 分子と分母を別々に差分で計算し、最後に割ります。
+ * 多変数の場合は{@link NURBSFunction#valueOnGrid(double[][], double[])}と同じく、
+ * 変数の後ろの方向から1方向ずつ縮約します。
+ *
+ * <p>1点あたりの計算量は、deBoorのアルゴリズムや基底関数の計算ではpの2乗に比例するのに対し、
+ * ノット範囲毎の前処理を除いてpに比例する加算だけになります。
+ * 描画のように、決まった分割数で定義域全体を評価する用途のためのものです。
+ *
+ * <p>誤差について:前進差分は範囲の先頭で導関数から計算し直すので、誤差は範囲を跨いで蓄積しません。
+ * 範囲内では差分に加わる丸め誤差が加算の度に伝わりますが、j階差分はh^jに比例して小さいので、
+ * 範囲内の点の数をsとすると誤差はおおむねs*ε*max|P|程度です(εは倍精度の丸めの単位)。
+ *
+ * <p>このインスタンスはimmutableで、作業用配列は呼び出し毎に確保するので、複数のスレッドから利用できます。
+ *
+ * @see NURBSCalculater#gridValues(NURBSBasisFunction, NURBSFunction, double[][], double[])
+ * @version 2026/10/17 07:51
+ * */
+public class NURBSUniformSampler {
+	private final NURBSFunction func;
+	private final NURBSBasisFunction basis;
+
+	/**
+	 * 指定されたNURBS関数を等分した格子上で計算するインスタンスを生成します。
+	 * @param func NURBS関数
+	 * @throws NullPointerException funcがnullの場合
+	 * @version 2026/10/17 07:51
+	 * */
+	public NURBSUniformSampler(NURBSFunction func) {
+		if(func == null) {
+			throw new NullPointerException("引数funcがnullです");
+		}
+		this.func = func;
+		this.basis = func.giveBasisFunction();
+	}
+
+	/**
+	 * <p>各変数lの定義域をdivision[l]等分した、(division[l]+1)個の変数値からなる格子の全ての点で、
+	 * 重みとの積和(分母)と重み付きコントロールポイントとの積和(分子)を計算します。
+	 * <p>変数lのj番目の変数値はmin+(max-min)/division[l]*jで、最後はmaxです。
+	 * 格子点の並びは{@link NURBSFunction#valueOnGrid(double[][], double[])}と同じで、
+	 * 各点について分母、分子の各成分の順に(dimension+1)個ずつ格納します。
+	 *
+	 * @param division 各変数の定義域の分割数
+	 * @param result 結果を格納する配列。nullの場合は新たに生成する。
+	 * @return 結果を格納した配列
+	 * @throws NullPointerException divisionがnullの場合
+	 * @throws IllegalArgumentException divisionの長さが変数の数に一致しない場合、
+	 * 分割数が1未満の場合、またはresultの長さが足りない場合
+	 * @version 2026/10/17 07:51
+	 * */
+	public double[] sampleHomogeneous(int[] division, double[] result) {
+		final int S = this.func.dimension+1;
+		int pointNum = checkDivision(division);
+		if(result == null) {
+			result = new double[pointNum*S];
+		}else if(result.length < pointNum*S) {
+			throw new IllegalArgumentException("resultの長さが足りません:"+pointNum*S+"以上必要です");
+		}
+		double[] current = contract(division);
+		System.arraycopy(current, 0, result, 0, pointNum*S);
+		return result;
+	}
+
+	/**
+	 * <p>各変数lの定義域をdivision[l]等分した格子の全ての点で、関数値を計算します。
+	 * 分子と分母を{@link #sampleHomogeneous(int[], double[])}で計算してから割ります。
+	 * <p>格納順は{@link NURBSFunction#valueOnGrid(double[][], double[])}と同じです。
+	 *
+	 * @param division 各変数の定義域の分割数
+	 * @param result 関数値を格納する配列。nullの場合は新たに生成する。
+	 * @return 関数値を格納した配列
+	 * @throws NullPointerException divisionがnullの場合
+	 * @throws IllegalArgumentException divisionの長さが変数の数に一致しない場合、
+	 * 分割数が1未満の場合、またはresultの長さが足りない場合
+	 * @version 2026/10/17 07:51
+	 * */
+	public double[] sample(int[] division, double[] result) {
+		final int dimension = this.func.dimension, S = dimension+1;
+		int pointNum = checkDivision(division);
+		if(result == null) {
+			result = new double[pointNum*dimension];
+		}else if(result.length < pointNum*dimension) {
+			throw new IllegalArgumentException("resultの長さが足りません:"+pointNum*dimension+"以上必要です");
+		}
+		double[] current = contract(division);
+		for(int g=0;g<pointNum;g++) {
+			double w = current[g*S];
+			for(int d=1;d<S;d++) {
+				result[g*dimension+d-1] = current[g*S+d]/w;
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * <p>3次元の2変数NURBS関数(曲面)について、u方向をuDivision等分、v方向をvDivision等分した
+	 * 格子の全ての点(u[i],v[j])での座標と単位法線を計算し、vertexとnormalの
+	 * [offset+(i*(vDivision+1)+j)*3]から格納します。
+	 * <p>法線はS_u×S_vの向きです。分子と分母の偏導関数もそれぞれ多項式なので、同じく前進差分で計算します。
+	 * 外積が0になる(曲面が退化している)点では0ベクトルを格納します。
+	 * 計算は倍精度で行い、格納する際にfloatに丸めます。
+	 *
+	 * @param uDivision u方向の分割数
+	 * @param vDivision v方向の分割数
+	 * @param vertex 座標を格納する配列
+	 * @param normal 単位法線を格納する配列
+	 * @param offset 格納を始める位置
+	 * @throws IllegalStateException 関数が2変数でない、または次元が3でない場合
+	 * @throws NullPointerException vertexまたはnormalがnullの場合
+	 * @throws IllegalArgumentException 分割数が1未満の場合、またはvertexかnormalの長さが足りない場合
+	 * @version 2026/10/17 07:51
+	 * */
+	public void surfaceOnGrid(int uDivision, int vDivision, float[] vertex, float[] normal, int offset) {
+		if(this.basis.parameterNum != 2 || this.func.dimension != 3) {
+			throw new IllegalStateException(this.basis.parameterNum+"変数"+this.func.dimension+"次元の関数は曲面ではありません");
+		}
+		if(vertex == null) {
+			throw new NullPointerException("引数vertexがnullです");
+		}else if(normal == null) {
+			throw new NullPointerException("引数normalがnullです");
+		}
+		int[] division = {uDivision, vDivision};
+		long need = checkDivision(division)*3L+offset;
+		if(offset < 0 || vertex.length < need || normal.length < need) {
+			throw new IllegalArgumentException("vertexまたはnormalの長さが足りません:"+need+"以上必要です");
+		}
+
+		final int S = 4;
+		final int nu = this.basis.n[0], nv = this.basis.n[1];
+		//v方向に縮約した結果と、その導関数で縮約した結果
+		double[] C = contract(1, 0, this.func.ctrl, nu, nv, S, vDivision);
+		double[] CV = contract(1, 1, this.func.ctrl, nu, nv, S, vDivision);
+		//u方向に縮約する。A:分子と分母、AU,AV:それらのu,vについての偏導関数
+		final int inner = (vDivision+1)*S;
+		double[] A = contract(0, 0, C, 1, nu, inner, uDivision);
+		double[] AU = contract(0, 1, C, 1, nu, inner, uDivision);
+		double[] AV = contract(0, 0, CV, 1, nu, inner, uDivision);
+
+		final int pointNum = (uDivision+1)*(vDivision+1);
+		for(int g=0;g<pointNum;g++) {
+			int h = g*S, o = offset+g*3;
+			double w = A[h];
+			//S=A/w、S_u=(A_u-w_u*S)/w、S_v=(A_v-w_v*S)/w
+			double x = A[h+1]/w, y = A[h+2]/w, z = A[h+3]/w;
+			double ux = (AU[h+1] -AU[h]*x)/w, uy = (AU[h+2] -AU[h]*y)/w, uz = (AU[h+3] -AU[h]*z)/w;
+			double vx = (AV[h+1] -AV[h]*x)/w, vy = (AV[h+2] -AV[h]*y)/w, vz = (AV[h+3] -AV[h]*z)/w;
+			double nx = uy*vz -uz*vy, ny = uz*vx -ux*vz, nz = ux*vy -uy*vx;
+			double norm = Math.sqrt(nx*nx +ny*ny +nz*nz);
+			vertex[o] = (float)x;
+			vertex[o+1] = (float)y;
+			vertex[o+2] = (float)z;
+			if(norm == 0) {
+				normal[o] = normal[o+1] = normal[o+2] = 0;
+			}else {
+				normal[o] = (float)(nx/norm);
+				normal[o+1] = (float)(ny/norm);
+				normal[o+2] = (float)(nz/norm);
+			}
+		}
+	}
+
+	/**
+	 * 分割数を検査し、格子点の数を返します。
+	 * */
+	private int checkDivision(int[] division) {
+		if(division == null) {
+			throw new NullPointerException("引数divisionがnullです");
+		}
+		if(division.length != this.basis.parameterNum) {
+			throw new IllegalArgumentException("変数の数が要求される数"+this.basis.parameterNum+"に合いません:"+division.length);
+		}
+		long pointNum = 1;
+		for(int l=0;l<division.length;l++) {
+			if(division[l] < 1) {
+				throw new IllegalArgumentException("分割数division["+l+"]は1以上である必要があります:"+division[l]);
+			}
+			pointNum *= division[l]+1L;
+			if(pointNum*(this.func.dimension+1) > Integer.MAX_VALUE) {
+				throw new IllegalArgumentException("格子点の数が大きすぎます");
+			}
+		}
+		return (int)pointNum;
+	}
+
+	/**
+	 * 全ての変数方向について、後ろの方向から順に縮約します。
+	 * */
+	private double[] contract(int[] division) {
+		final int m = this.basis.parameterNum;
+		int[] shape = this.basis.n.clone();
+		double[] current = this.func.ctrl;
+		for(int l=m-1;l>=0;l--) {
+			int outer = 1, inner = this.func.dimension+1;
+			for(int i=0;i<l;i++) {
+				outer *= shape[i];
+			}
+			for(int i=l+1;i<m;i++) {
+				inner *= shape[i];
+			}
+			current = contract(l, 0, current, outer, shape[l], inner, division[l]);
+			shape[l] = division[l]+1;
+		}
+		return current;
+	}
+
+	/**
+	 * <p>配列fromを(outer,nl,inner)の3次元配列とみなし、変数lの方向(長さnl)を、
+	 * 基底関数のorder階導関数との積和で縮約して、(outer,division+1,inner)の配列を返します。
+	 * 変数lの定義域をdivision等分した点で、ノット範囲毎に前進差分で計算します。
+	 * */
+	private double[] contract(int l, int order, double[] from, int outer, int nl, int inner, int division) {
+		final int p = this.basis.p[l];
+		final int P = p+1;
+		final double[] knot = this.basis.knot[l];
+		final double min = knot[0], max = knot[knot.length-1];
+		final double h = (max -min)/division;
+		//order階導関数の、ノット範囲内の多項式の次数
+		final int degree = p -order;
+		final int L = division+1;
+		double[] next = new double[outer*L*inner];
+		if(degree < 0) {
+			return next;
+		}
+
+		//E[j*P+s]:t0でのs階導関数からj階前進差分への係数 j!S(s,j)h^s/s!
+		//(S(s,j)は第2種スターリング数、j!S(s,j)はs個からj個への全射の数)
+		double[] E = differenceCoefficients(degree, h, P);
+
+		//ノット範囲毎の先頭の変数値のインデックスと、その範囲
+		int[] start = new int[L+1], span = new int[L];
+		int groupNum = 0;
+		KnotSpanLocator.Cursor cursor = this.basis.locator[l].cursor();
+		for(int j=0;j<L;j++) {
+			//計算誤差によりノットの範囲を超えないように、最後は端の値にする
+			double t = (j == division)? max : min +h*j;
+			int k = cursor.locate(t);
+			if(groupNum == 0 || span[groupNum-1] != k) {
+				start[groupNum] = j;
+				span[groupNum] = k;
+				groupNum++;
+			}
+		}
+		start[groupNum] = L;
+
+		double[] ders = new double[P*P], ndu = new double[P*P], a = new double[2*P], left = new double[P], right = new double[P];
+		//D[j*P+i]:j階前進差分について、N{k-p+i}に掛ける係数
+		double[] D = new double[(degree+1)*P];
+		//差分の表。diff[j][c]が列cのj階差分
+		//加算が自動ベクトル化されるよう、階数毎に別の配列にする
+		double[][] diff = new double[degree+1][inner];
+
+		for(int g=0;g<groupNum;g++) {
+			int k = span[g], first = k-p;
+			double t0 = min +h*start[g];
+			NURBSCalculater.basisFunctionDerivatives(knot, p, k, t0, p, ders, ndu, a, left, right);
+			for(int j=0;j<=degree;j++) {
+				for(int i=0;i<P;i++) {
+					double sum = 0;
+					for(int s=j;s<=degree;s++) {
+						sum += E[j*P+s]*ders[(order+s)*P+i];
+					}
+					D[j*P+i] = sum;
+				}
+			}
+
+			int count = start[g+1]-start[g];
+			for(int o=0;o<outer;o++) {
+				//範囲の先頭での差分をコントロールポイントとの積和で求める
+				for(double[] row:diff) {
+					Arrays.fill(row, 0);
+				}
+				for(int i=0;i<P;i++) {
+					int src = (o*nl +first+i)*inner;
+					for(int j=0;j<=degree;j++) {
+						double Dji = D[j*P+i];
+						if(Dji == 0) {
+							continue;
+						}
+						double[] dj = diff[j];
+						for(int c=0;c<inner;c++) {
+							dj[c] += Dji*from[src+c];
+						}
+					}
+				}
+				//範囲内の点を加算だけで順に求める
+				for(int s=0;s<count;s++) {
+					System.arraycopy(diff[0], 0, next, (o*L +start[g]+s)*inner, inner);
+					if(s == count-1) {
+						break;
+					}
+					for(int j=0;j<degree;j++) {
+						double[] dj = diff[j], dj1 = diff[j+1];
+						for(int c=0;c<inner;c++) {
+							dj[c] += dj1[c];
+						}
+					}
+				}
+			}
+		}
+		return next;
+	}
+
+	/**
+	 * j!S(s,j)h^s/s!をE[j*P+s]に格納した配列を返します(0<=j<=s<=degree)。
+	 * */
+	private static double[] differenceCoefficients(int degree, double h, int P) {
+		//surjection[s][j]:s個の要素からj個の要素への全射の数
+		double[][] surjection = new double[degree+1][degree+1];
+		surjection[0][0] = 1;
+		for(int s=1;s<=degree;s++) {
+			for(int j=1;j<=s;j++) {
+				surjection[s][j] = j*(surjection[s-1][j] +surjection[s-1][j-1]);
+			}
+		}
+		double[] E = new double[(degree+1)*P];
+		double hs = 1;
+		for(int s=0;s<=degree;s++) {
+			for(int j=0;j<=s;j++) {
+				E[j*P+s] = surjection[s][j]*hs;
+			}
+			hs *= h/(s+1);
+		}
+		return E;
+	}
+}
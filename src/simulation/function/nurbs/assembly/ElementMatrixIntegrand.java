@@ -0,0 +1,23 @@
+package simulation.function.nurbs.assembly;
+
+import simulation.function.nurbs.quadrature.QuadraturePoint;
+
+/**
+ * {@link NURBSAssembler}で全体行列を組み立てる際の、要素行列の被積分関数。
+ * 複数のスレッドから同時に呼び出されることがあるため、状態を持たないように実装してください。
+ *
+ * @version 2026/10/17 07:05
+ * */
+@FunctionalInterface
+public interface ElementMatrixIntegrand {
+	/**
+	 * <p>積分点での被積分関数の値を計算します。積分の重みは掛けないでください。
+	 * <p>Ke[a*eff+b]に、要素内の局所的な番号a,bの基底関数についての値を格納します。
+	 * (effは{@link QuadraturePoint#giveNumberOfBasis()})
+	 * 全ての要素を上書きしてください。
+	 * @param point 積分点
+	 * @param Ke 値を格納する配列
+	 * @version 2026/10/17 07:05
+	 * */
+	public void value(QuadraturePoint point, double[] Ke);
+}
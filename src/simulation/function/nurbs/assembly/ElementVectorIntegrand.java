@@ -0,0 +1,22 @@
+package simulation.function.nurbs.assembly;
+
+import simulation.function.nurbs.quadrature.QuadraturePoint;
+
+/**
+ * {@link NURBSAssembler}で全体ベクトルを組み立てる際の、要素ベクトルの被積分関数。
+ * 複数のスレッドから同時に呼び出されることがあるため、状態を持たないように実装してください。
+ *
+ * @version 2026/10/17 07:05
+ * */
+@FunctionalInterface
+public interface ElementVectorIntegrand {
+	/**
+	 * <p>積分点での被積分関数の値を計算します。積分の重みは掛けないでください。
+	 * <p>Fe[a]に、要素内の局所的な番号aの基底関数についての値を格納します。
+	 * 全ての要素を上書きしてください。
+	 * @param point 積分点
+	 * @param Fe 値を格納する配列
+	 * @version 2026/10/17 07:05
+	 * */
+	public void value(QuadraturePoint point, double[] Fe);
+}
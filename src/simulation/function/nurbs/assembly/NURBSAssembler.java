@@ -0,0 +1,566 @@
+package simulation.function.nurbs.assembly;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Supplier;
+import java.util.stream.IntStream;
+
+import simulation.function.nurbs.BezierExtraction;
+import simulation.function.nurbs.NURBSBasisFunction;
+import simulation.function.nurbs.NURBSFunction;
+import simulation.function.nurbs.quadrature.NURBSQuadrature;
+import simulation.function.nurbs.quadrature.QuadraturePoint;
+import simulation.solver.CSRMatrix;
+
+/**
+ * <p>NURBSの基底関数組を形状関数として、全体行列を{@link CSRMatrix}に組み立てるクラス。
+ *
+ * <p>非零パターンはノット範囲の連結関係から求めます。2つの基底関数の台が共通の要素を持つ時だけ
+ * 対応する要素が0でない可能性があり、これは各変数方向についての条件の積になります。
+ *
+ * <p>要素の組み立ては要素の彩色により並列化します。変数l方向の要素のインデックスe{l}を
+ * p{l}+1で割った余りの組を色とすると、同じ色の異なる2要素はある変数方向にp+1要素以上離れており、
+ * 0にならない基底関数を共有しません。従って同じ色の要素は全体行列の互いに異なる行にだけ書き込むため、
+ * 排他制御なしに並列に足し込めます。色の順に処理するので、各要素への足し込みの順番は
+ * 並列化の有無に関わらず同じであり、結果は並列化の有無で一致します。
+ * 同じ色の要素は連続したまとまりに分けて並列に処理し、作業用配列はまとまり毎に用意します。
+ *
+ * @version 2026/10/17 07:05
+ * */
+public class NURBSAssembler {
+	private final NURBSQuadrature quadrature;
+	private final BezierExtraction extraction;
+
+	/**
+	 * 基底関数の数(全体行列の行数)、要素で0にならない基底関数の数、要素内の積分点の数
+	 * @version 2026/10/17 07:05
+	 * */
+	private final int ctrlNum, effNum, pointNum;
+
+	/**
+	 * 非零パターン
+	 * @version 2026/10/17 07:05
+	 * */
+	private final int[] rowPtr, colIndex;
+
+	/**
+	 * 色毎の要素の通し番号
+	 * @version 2026/10/17 07:05
+	 * */
+	private final int[][] colors;
+
+	/**
+	 * 基底関数組を指定してインスタンスを生成します。
+	 * 積分は各変数方向に次数+1点のガウス・ルジャンドル則で行い、組み立ては並列に行います。
+	 * @param basis 基底関数組
+	 * @throws NullPointerException basisがnullの場合
+	 * @version 2026/10/17 07:05
+	 * */
+	public NURBSAssembler(NURBSBasisFunction basis) {
+		this(new NURBSQuadrature(basis));
+	}
+
+	/**
+	 * 積分に用いるインスタンスを指定してインスタンスを生成します。
+	 * 組み立ての並列化の有無はquadratureに従います。
+	 * @param quadrature 積分を行うインスタンス
+	 * @throws NullPointerException quadratureがnullの場合
+	 * @version 2026/10/17 07:05
+	 * */
+	public NURBSAssembler(NURBSQuadrature quadrature) {
+		if(quadrature == null) {
+			throw new NullPointerException("引数quadratureがnullです");
+		}
+		this.quadrature = quadrature;
+		this.extraction = quadrature.giveBezierExtraction();
+		NURBSBasisFunction basis = quadrature.giveBasisFunction();
+		this.ctrlNum = basis.givePi_n()[0];
+		this.effNum = quadrature.giveNumberOfBasis();
+		this.pointNum = quadrature.giveNumberOfPoints();
+
+		int[] pattern[] = createPattern(basis, extraction);
+		this.rowPtr = pattern[0];
+		this.colIndex = pattern[1];
+		this.colors = createColors(basis, extraction);
+	}
+
+	/**
+	 * 非零パターン{rowPtr, colIndex}を求める。
+	 * */
+	private static int[][] createPattern(NURBSBasisFunction basis, BezierExtraction extraction) {
+		final int m = basis.parameterNum;
+		final int[] n = basis.giveNumberArrayOfCtrl(), p = basis.giveDegreeArray(), Pi_n = basis.givePi_n();
+
+		//各変数方向について、基底関数iと台が共通の要素を持つ基底関数の範囲[lo[l][i],hi[l][i]]
+		//iを含む要素は連続しているので、範囲も連続する
+		int[][] lo = new int[m][], hi = new int[m][];
+		for(int l=0;l<m;l++) {
+			lo[l] = new int[n[l]];
+			hi[l] = new int[n[l]];
+			for(int i=0;i<n[l];i++) {
+				lo[l][i] = hi[l][i] = i;
+			}
+			for(int e=0;e<extraction.giveNumberOfElements(l);e++) {
+				int k = extraction.giveSpanIndex(l, e);
+				for(int i=k-p[l];i<=k;i++) {
+					lo[l][i] = Math.min(lo[l][i], k-p[l]);
+					hi[l][i] = Math.max(hi[l][i], k);
+				}
+			}
+		}
+
+		final int ctrlNum = Pi_n[0];
+		int[] rowPtr = new int[ctrlNum+1];
+		int[] index = new int[m];
+		for(int i=0;i<ctrlNum;i++) {
+			toIndex(i, Pi_n, index);
+			int count = 1;
+			for(int l=0;l<m;l++) {
+				count *= hi[l][index[l]]-lo[l][index[l]]+1;
+			}
+			rowPtr[i+1] = rowPtr[i]+count;
+		}
+
+		//各行の列は各変数方向の範囲の直積で、辞書式順に並べると通し番号の昇順になる
+		int[] colIndex = new int[rowPtr[ctrlNum]];
+		int[] j = new int[m];
+		for(int i=0;i<ctrlNum;i++) {
+			toIndex(i, Pi_n, index);
+			for(int l=0;l<m;l++) {
+				j[l] = lo[l][index[l]];
+			}
+			for(int c=rowPtr[i];c<rowPtr[i+1];c++) {
+				int global = 0;
+				for(int l=0;l<m;l++) {
+					global += j[l]*Pi_n[l+1];
+				}
+				colIndex[c] = global;
+
+				for(int l=m-1;l>=0;l--) {
+					if(j[l] < hi[l][index[l]]) {
+						j[l]++;
+						break;
+					}
+					j[l] = lo[l][index[l]];
+				}
+			}
+		}
+		return new int[][] {rowPtr, colIndex};
+	}
+
+	/**
+	 * 要素を色毎に分ける。
+	 * */
+	private static int[][] createColors(NURBSBasisFunction basis, BezierExtraction extraction) {
+		final int m = basis.parameterNum;
+		final int[] p = basis.giveDegreeArray();
+		int colorNum = 1;
+		for(int l=0;l<m;l++) {
+			colorNum *= Math.min(p[l]+1, extraction.giveNumberOfElements(l));
+		}
+
+		final int elementNum = extraction.giveNumberOfElements();
+		int[] color = new int[elementNum], count = new int[colorNum];
+		int[] e = new int[m];
+		for(int element=0;element<elementNum;element++) {
+			extraction.giveElementIndex(element, e);
+			int c = 0;
+			for(int l=0;l<m;l++) {
+				c = c*Math.min(p[l]+1, extraction.giveNumberOfElements(l)) +e[l]%(p[l]+1);
+			}
+			color[element] = c;
+			count[c]++;
+		}
+
+		int[][] colors = new int[colorNum][];
+		for(int c=0;c<colorNum;c++) {
+			colors[c] = new int[count[c]];
+			count[c] = 0;
+		}
+		for(int element=0;element<elementNum;element++) {
+			int c = color[element];
+			colors[c][count[c]++] = element;
+		}
+		return colors;
+	}
+
+	private static int[] toIndex(int global, int[] Pi_n, int[] index) {
+		for(int l=0;l<index.length;l++) {
+			index[l] = global/Pi_n[l+1];
+			global %= Pi_n[l+1];
+		}
+		return index;
+	}
+
+	/**
+	 * 積分を行うインスタンスを返します。
+	 * @return 積分を行うインスタンス
+	 * @version 2026/10/17 07:05
+	 * */
+	public NURBSQuadrature giveQuadrature() {
+		return this.quadrature;
+	}
+
+	/**
+	 * 基底関数の数、即ち全体行列の行数を返します。
+	 * @return 基底関数の数
+	 * @version 2026/10/17 07:05
+	 * */
+	public int giveNumberOfBasis() {
+		return this.ctrlNum;
+	}
+
+	/**
+	 * 組み立てに用いる要素の色の数を返します。同じ色の要素が並列に処理されます。
+	 * @return 色の数
+	 * @version 2026/10/17 07:05
+	 * */
+	public int giveNumberOfColors() {
+		return this.colors.length;
+	}
+
+	/**
+	 * <p>基底関数組の非零パターンを持ち、値が全て0の行列を生成します。
+	 * <p>非零パターンの配列はこのインスタンスと共有されます。
+	 * @return 行列
+	 * @version 2026/10/17 07:05
+	 * */
+	public CSRMatrix createMatrix() {
+		return new CSRMatrix(ctrlNum, ctrlNum, rowPtr, colIndex);
+	}
+
+	/**
+	 * 全体行列を組み立てます。
+	 * @param integrand 要素行列の被積分関数
+	 * @return 全体行列
+	 * @throws NullPointerException integrandがnullの場合
+	 * @version 2026/10/17 07:05
+	 * */
+	public CSRMatrix assembleMatrix(ElementMatrixIntegrand integrand) {
+		CSRMatrix K = createMatrix();
+		assembleMatrix(integrand, K);
+		return K;
+	}
+
+	/**
+	 * 全体行列を組み立て、指定した行列に足し込みます。
+	 * @param integrand 要素行列の被積分関数
+	 * @param K 足し込む行列。{@link #createMatrix()}で生成したものであること。
+	 * @throws NullPointerException integrandまたはKがnullの場合
+	 * @throws IllegalArgumentException Kの非零パターンが基底関数組のものでない場合
+	 * @version 2026/10/17 07:05
+	 * */
+	public void assembleMatrix(ElementMatrixIntegrand integrand, CSRMatrix K) {
+		if(integrand == null) {
+			throw new NullPointerException("引数integrandがnullです");
+		}
+		assembleMatrix(() -> integrand, K);
+	}
+
+	/**
+	 * 全体行列を組み立て、指定した行列に足し込む。
+	 * 被積分関数は要素のまとまり毎にintegrandsから取得し、そのまとまりの中でだけ使う。
+	 * */
+	private void assembleMatrix(Supplier<ElementMatrixIntegrand> integrands, CSRMatrix K) {
+		if(K == null) {
+			throw new NullPointerException("引数Kがnullです");
+		}
+		if(K.giveRowPointer_Shallow() != rowPtr || K.giveColumnIndex_Shallow() != colIndex) {
+			throw new IllegalArgumentException("行列の非零パターンが基底関数組のものではありません");
+		}
+		final double[] value = K.giveValues_Shallow();
+		for(int[] color : colors) {
+			forEachBatch(color, (from, to) -> {
+				ElementMatrixIntegrand integrand = integrands.get();
+				double[] Ke = new double[effNum*effNum], Kq = new double[effNum*effNum];
+				//積分点のインスタンスはまとまり毎に1つ生成して使い回す
+				QuadraturePoint point = null;
+				for(int k=from;k<to;k++) {
+					final int element = color[k];
+					Arrays.fill(Ke, 0);
+					for(int q=0;q<pointNum;q++) {
+						point = quadrature.givePoint(element, q, point);
+						integrand.value(point, Kq);
+						double w = point.giveWeight();
+						for(int c=0;c<effNum*effNum;c++) {
+							Ke[c] += w*Kq[c];
+						}
+					}
+
+					point = quadrature.givePoint(element, 0, point);
+					for(int a=0;a<effNum;a++) {
+						int row = point.giveGlobalIndex(a);
+						int start = rowPtr[row], end = rowPtr[row+1];
+						for(int b=0;b<effNum;b++) {
+							int c = Arrays.binarySearch(colIndex, start, end, point.giveGlobalIndex(b));
+							value[c] += Ke[a*effNum+b];
+						}
+					}
+				}
+			});
+		}
+	}
+
+	/**
+	 * 全体ベクトルを組み立てます。
+	 * @param integrand 要素ベクトルの被積分関数
+	 * @return 全体ベクトル。長さは基底関数の数です。
+	 * @throws NullPointerException integrandがnullの場合
+	 * @version 2026/10/17 07:05
+	 * */
+	public double[] assembleVector(ElementVectorIntegrand integrand) {
+		if(integrand == null) {
+			throw new NullPointerException("引数integrandがnullです");
+		}
+		final double[] F = new double[ctrlNum];
+		for(int[] color : colors) {
+			forEachBatch(color, (from, to) -> {
+				double[] Fe = new double[effNum], Fq = new double[effNum];
+				//積分点のインスタンスはまとまり毎に1つ生成して使い回す
+				QuadraturePoint point = null;
+				for(int k=from;k<to;k++) {
+					final int element = color[k];
+					Arrays.fill(Fe, 0);
+					for(int q=0;q<pointNum;q++) {
+						point = quadrature.givePoint(element, q, point);
+						integrand.value(point, Fq);
+						double w = point.giveWeight();
+						for(int a=0;a<effNum;a++) {
+							Fe[a] += w*Fq[a];
+						}
+					}
+
+					point = quadrature.givePoint(element, 0, point);
+					for(int a=0;a<effNum;a++) {
+						F[point.giveGlobalIndex(a)] += Fe[a];
+					}
+				}
+			});
+		}
+		return F;
+	}
+
+	/**
+	 * 色の要素の並びcolorを連続したまとまりに分け、まとまり毎にbatchを呼び出す。
+	 * 並列に計算する場合は、まとまりを並列に処理する。
+	 * */
+	private void forEachBatch(int[] color, Batch batch) {
+		if(!quadrature.isParallel()) {
+			batch.run(0, color.length);
+			return;
+		}
+		//負荷の偏りを均すため、スレッドの数より多めに分ける
+		final int batchNum = Math.max(1, Math.min(color.length, 4*ForkJoinPool.getCommonPoolParallelism()));
+		IntStream.range(0, batchNum).parallel()
+				.forEach(b -> batch.run((int)((long)color.length*b/batchNum), (int)((long)color.length*(b+1)/batchNum)));
+	}
+
+	/**
+	 * 色の要素の並びのうち[from,to)の範囲を処理する。
+	 * */
+	@FunctionalInterface
+	private interface Batch {
+		void run(int from, int to);
+	}
+
+	/**
+	 * 質量行列M{ab}=∫R{a}R{b}dΩを組み立てます。
+	 * @param geometry 形状を表すNURBS関数。基底関数組は組み立てを行うものであること。
+	 * nullの場合は変数tの定義域そのものの上で積分します。
+	 * @return 質量行列
+	 * @throws IllegalArgumentException geometryの基底関数組が組み立てを行うものでない場合
+	 * @version 2026/10/17 07:05
+	 * */
+	public CSRMatrix assembleMass(NURBSFunction geometry) {
+		assertGeometry(geometry);
+		return assembleMatrix(massIntegrand(geometry));
+	}
+
+	/**
+	 * 剛性行列(ラプラス作用素)K{ab}=∫∇R{a}・∇R{b}dΩを組み立てます。
+	 * @param geometry 形状を表すNURBS関数。基底関数組は組み立てを行うものであること。
+	 * nullの場合は変数tの定義域そのものの上で積分します。
+	 * @return 剛性行列
+	 * @throws IllegalArgumentException
+	 * <ul>
+	 * 		<li>geometryの基底関数組が組み立てを行うものでない場合
+	 * 		<li>geometryの次元が変数の数より小さい場合
+	 * </ul>
+	 * @version 2026/10/17 07:05
+	 * */
+	public CSRMatrix assembleStiffness(NURBSFunction geometry) {
+		assertGeometry(geometry);
+		assertStiffnessGeometry(geometry);
+		//作業用配列を持つ被積分関数を要素のまとまり毎に生成する
+		CSRMatrix K = createMatrix();
+		assembleMatrix(() -> new StiffnessIntegrand(geometry), K);
+		return K;
+	}
+
+	private void assertGeometry(NURBSFunction geometry) {
+		if(geometry != null && !geometry.basisFunctionIs(quadrature.giveBasisFunction())) {
+			throw new IllegalArgumentException("指定されたNURBSFunctionの基底関数は組み立てを行う基底関数と同じではありません");
+		}
+	}
+
+	/**
+	 * <p>質量行列の被積分関数R{a}R{b}|dΩ/dt|を返します。
+	 * <p>|dΩ/dt|は{@link QuadraturePoint#measureDensity(NURBSFunction)}です。
+	 * @param geometry 形状を表すNURBS関数。nullの場合は|dΩ/dt|=1とします。
+	 * @return 被積分関数
+	 * @version 2026/10/17 07:05
+	 * */
+	public static ElementMatrixIntegrand massIntegrand(NURBSFunction geometry) {
+		return (point, Ke) -> {
+			final int eff = point.giveNumberOfBasis();
+			double density = (geometry == null)? 1 : point.measureDensity(geometry);
+			for(int a=0;a<eff;a++) {
+				double Ra = point.giveBasisValue(a)*density;
+				for(int b=0;b<eff;b++) {
+					Ke[a*eff+b] = Ra*point.giveBasisValue(b);
+				}
+			}
+		};
+	}
+
+	/**
+	 * <p>剛性行列の被積分関数∇R{a}・∇R{b}|dΩ/dt|を返します。
+	 * <p>形状のヤコビ行列をJ、G=J^T Jとすると、∇R{a}・∇R{b}=(dR{a}/dt)^T G^-1 (dR{b}/dt)です。
+	 * 形状の次元が変数の数より大きい場合(曲面上の問題等)は、これは多様体上の勾配の内積となります。
+	 * @param geometry 形状を表すNURBS関数。次元は変数の数以上であること。nullの場合はJを単位行列とします。
+	 * @return 被積分関数
+	 * @throws IllegalArgumentException geometryの次元が変数の数より小さい場合
+	 * @version 2026/10/17 07:05
+	 * */
+	public static ElementMatrixIntegrand stiffnessIntegrand(NURBSFunction geometry) {
+		assertStiffnessGeometry(geometry);
+		//呼び出し毎に作業用配列を用意するので、複数のスレッドから同時に呼び出せる
+		return (point, Ke) -> new StiffnessIntegrand(geometry).value(point, Ke);
+	}
+
+	private static void assertStiffnessGeometry(NURBSFunction geometry) {
+		if(geometry != null && geometry.dimension < geometry.giveBasisFunction().parameterNum) {
+			throw new IllegalArgumentException("形状の次元が変数の数より小さいです");
+		}
+	}
+
+	/**
+	 * 剛性行列の被積分関数。作業用配列を持つため、1つのインスタンスは1つのスレッドからのみ使う。
+	 * */
+	private static class StiffnessIntegrand implements ElementMatrixIntegrand {
+		private final NURBSFunction geometry;
+		/**
+		 * 作業用配列。形状のヤコビ行列、G^-1、G^-1 dR{a}/dt |dΩ/dt|、Gの逆行列を求める際の作業用
+		 * */
+		private double[] J = new double[0], Ginv, g = new double[0], A;
+
+		StiffnessIntegrand(NURBSFunction geometry) {
+			this.geometry = geometry;
+		}
+
+		@Override
+		public void value(QuadraturePoint point, double[] Ke) {
+			final int eff = point.giveNumberOfBasis(), m = point.giveNumberOfVariables();
+			final int dimension = (geometry == null)? m : geometry.dimension;
+			if(J.length < dimension*m || g.length < m*eff) {
+				J = new double[dimension*m];
+				Ginv = new double[m*m];
+				g = new double[m*eff];
+				A = new double[m*m];
+			}
+			double density;
+			if(geometry == null) {
+				Arrays.fill(Ginv, 0, m*m, 0);
+				for(int i=0;i<m;i++) {
+					Ginv[i*m+i] = 1;
+				}
+				density = 1;
+			}else {
+				point.jacobian(geometry, J);
+				density = inverseGram(J, dimension, m, Ginv, A);
+			}
+
+			//g{a} = G^-1 dR{a}/dt |dΩ/dt|
+			for(int a=0;a<eff;a++) {
+				for(int i=0;i<m;i++) {
+					double s = 0;
+					for(int j=0;j<m;j++) {
+						s += Ginv[i*m+j]*point.giveBasisDerivative(j, a);
+					}
+					g[i*eff+a] = s*density;
+				}
+			}
+			for(int a=0;a<eff;a++) {
+				for(int b=a;b<eff;b++) {
+					double s = 0;
+					for(int i=0;i<m;i++) {
+						s += point.giveBasisDerivative(i, a)*g[i*eff+b];
+					}
+					Ke[a*eff+b] = Ke[b*eff+a] = s;
+				}
+			}
+		}
+	}
+
+	/**
+	 * G=J^T Jの逆行列をGinvに求め、sqrt(det G)を返す。
+	 * 部分ピボット選択付きのガウス・ジョルダン法による。Aは作業用配列。
+	 * */
+	private static double inverseGram(double[] J, int dimension, int m, double[] Ginv, double[] A) {
+		for(int i=0;i<m;i++) {
+			for(int j=i;j<m;j++) {
+				double s = 0;
+				for(int d=0;d<dimension;d++) {
+					s += J[d*m+i]*J[d*m+j];
+				}
+				A[i*m+j] = A[j*m+i] = s;
+			}
+		}
+		Arrays.fill(Ginv, 0, m*m, 0);
+		for(int i=0;i<m;i++) {
+			Ginv[i*m+i] = 1;
+		}
+
+		double det = 1;
+		for(int k=0;k<m;k++) {
+			int pivot = k;
+			for(int i=k+1;i<m;i++) {
+				if(Math.abs(A[i*m+k]) > Math.abs(A[pivot*m+k])) {
+					pivot = i;
+				}
+			}
+			if(A[pivot*m+k] == 0) {
+				throw new IllegalArgumentException("形状のヤコビ行列が退化しています");
+			}
+			if(pivot != k) {
+				swapRow(A, m, k, pivot);
+				swapRow(Ginv, m, k, pivot);
+			}
+			double diag = A[k*m+k];
+			det *= diag;
+			for(int j=0;j<m;j++) {
+				A[k*m+j] /= diag;
+				Ginv[k*m+j] /= diag;
+			}
+			for(int i=0;i<m;i++) {
+				if(i == k) {
+					continue;
+				}
+				double factor = A[i*m+k];
+				for(int j=0;j<m;j++) {
+					A[i*m+j] -= factor*A[k*m+j];
+					Ginv[i*m+j] -= factor*Ginv[k*m+j];
+				}
+			}
+		}
+		return Math.sqrt(Math.abs(det));
+	}
+
+	private static void swapRow(double[] A, int m, int i, int j) {
+		for(int c=0;c<m;c++) {
+			double temp = A[i*m+c];
+			A[i*m+c] = A[j*m+c];
+			A[j*m+c] = temp;
+		}
+	}
+}
@@ -0,0 +1,452 @@
+package simulation.function.nurbs.assembly;
+
+import java.util.Arrays;
+
+import simulation.function.nurbs.NURBSBasisFunction;
+import simulation.function.nurbs.NURBSFunction;
+import simulation.function.nurbs.NURBSFunctionGroup;
+import simulation.function.nurbs.refiner.NURBSRefiner;
+import simulation.solver.CSRMatrix;
+import simulation.solver.LU;
+import simulation.solver.LinearEquationSolver;
+
+/**
+ * <p>NURBSの基底関数組の精細化の階層を用いた幾何マルチグリッド法のソルバー。
+ *
+ * <p>最も粗い基底関数組から、各変数方向に全ての要素を2等分するノット挿入を繰り返して
+ * 基底関数組の階層を作ります。方程式は最も細かい基底関数組の上のものを解きます。
+ * ノット挿入では粗い空間の関数が細かい空間で厳密に表されるので、その係数の変換行列
+ * ({@link NURBSRefiner#createInsertionMatrix(double[], int, double[])}のクロネッカー積を重みで補正したもの)
+ * を補間(プロロンゲーション)P、その転置を制限Rとします。
+ * 粗いレベルの係数行列はガラーキン近似RAPで作るので、粗いレベルで組み立て直す必要はありません。
+ *
+ * <p>各レベルでは対称ガウス・ザイデル法で平滑化し、最も粗いレベルは{@link LU}で直接解きます。
+ * 残差のノルムが右辺項ベクトルのノルムの許容誤差倍以下になるまでVサイクルを繰り返します。
+ * 精細化されたアイソジオメトリック解析の対称正定値な方程式では、
+ * 収束までの反復回数はレベル数(メッシュの細かさ)にほとんど依存しません。
+ *
+ * <p>係数行列を指定せずに解く場合は、前回指定した係数行列から作った階層を再利用します。
+ * このソルバーは指定された配列を変更しません。
+ *
+ * @version 2026/10/17 07:08
+ * */
+public class NURBSMultigrid extends LinearEquationSolver {
+	/**
+	 * 許容誤差の既定値
+	 * @version 2026/10/17 07:08
+	 * */
+	public static final double DEFAULT_TOLERANCE = 1e-10;
+
+	/**
+	 * 最大反復回数の既定値
+	 * @version 2026/10/17 07:08
+	 * */
+	public static final int DEFAULT_MAX_ITERATION = 100;
+
+	/**
+	 * 各レベルの基底関数組。[0]が最も粗い。
+	 * @version 2026/10/17 07:08
+	 * */
+	private final NURBSBasisFunction[] bases;
+
+	/**
+	 * レベルlからl+1への補間P[l]と、その転置R[l]
+	 * @version 2026/10/17 07:08
+	 * */
+	private final CSRMatrix[] P, R;
+
+	private final double tolerance;
+	private final int maxIteration, smoothingNum;
+
+	/**
+	 * 各レベルの係数行列と、その対角要素の位置
+	 * @version 2026/10/17 07:08
+	 * */
+	private CSRMatrix[] A;
+	private int[][] diag;
+
+	/**
+	 * 最も粗いレベルのソルバー
+	 * @version 2026/10/17 07:08
+	 * */
+	private LU coarseSolver;
+
+	/**
+	 * 各レベルの解、右辺項、残差の作業用配列
+	 * @version 2026/10/17 07:08
+	 * */
+	private double[][] x, b, r;
+
+	private int iterationCount;
+	private double residual;
+
+	/**
+	 * 許容誤差と最大反復回数を既定値とし、平滑化を前後2回ずつ行うインスタンスを生成します。
+	 * @param coarse 最も粗い基底関数組
+	 * @param levelNum レベルの数。1の場合はcoarseの上で直接解きます。
+	 * @throws NullPointerException coarseがnullの場合
+	 * @throws IllegalArgumentException levelNumが1未満の場合
+	 * @version 2026/10/17 07:08
+	 * */
+	public NURBSMultigrid(NURBSBasisFunction coarse, int levelNum) {
+		this(coarse, levelNum, DEFAULT_TOLERANCE, DEFAULT_MAX_ITERATION, 2);
+	}
+
+	/**
+	 * 最も粗い基底関数組とレベルの数を指定して、基底関数組の階層と補間を作ります。
+	 * @param coarse 最も粗い基底関数組
+	 * @param levelNum レベルの数。1の場合はcoarseの上で直接解きます。
+	 * @param tolerance 相対残差の許容誤差
+	 * @param maxIteration Vサイクルの最大反復回数
+	 * @param smoothingNum Vサイクルの各レベルで前後に行う平滑化の回数
+	 * @throws NullPointerException coarseがnullの場合
+	 * @throws IllegalArgumentException
+	 * <ul>
+	 * 		<li>levelNumが1未満の場合
+	 * 		<li>toleranceが正でない場合
+	 * 		<li>maxIterationまたはsmoothingNumが1未満の場合
+	 * </ul>
+	 * @version 2026/10/17 07:08
+	 * */
+	public NURBSMultigrid(NURBSBasisFunction coarse, int levelNum, double tolerance, int maxIteration, int smoothingNum) {
+		if(coarse == null) {
+			throw new NullPointerException("引数coarseがnullです");
+		}
+		if(levelNum < 1) {
+			throw new IllegalArgumentException("レベルの数が1未満です");
+		}else if(!(tolerance > 0)) {
+			throw new IllegalArgumentException("許容誤差が正でありません");
+		}else if(maxIteration < 1 || smoothingNum < 1) {
+			throw new IllegalArgumentException("反復回数、平滑化の回数が1未満です");
+		}
+		this.tolerance = tolerance;
+		this.maxIteration = maxIteration;
+		this.smoothingNum = smoothingNum;
+
+		this.bases = new NURBSBasisFunction[levelNum];
+		this.P = new CSRMatrix[levelNum-1];
+		this.R = new CSRMatrix[levelNum-1];
+		this.bases[0] = coarse;
+		NURBSRefiner refiner = new NURBSRefiner();
+		for(int l=0;l<levelNum-1;l++) {
+			double[][] X = bisectingKnots(bases[l]);
+			NURBSFunctionGroup refined = refiner.refineKnot(new NURBSFunctionGroup(bases[l], new NURBSFunction[0]), X);
+			bases[l+1] = refined.basis;
+			P[l] = createProlongation(bases[l], bases[l+1], X);
+			R[l] = P[l].transpose();
+		}
+	}
+
+	/**
+	 * 各変数方向について、空でない全てのノット範囲の中点を返す。
+	 * */
+	private static double[][] bisectingKnots(NURBSBasisFunction basis) {
+		double[][] U = basis.giveKnotVector_Shallow();
+		int[] p = basis.giveDegreeArray(), n = basis.giveNumberArrayOfCtrl();
+		double[][] X = new double[basis.parameterNum][];
+		for(int l=0;l<X.length;l++) {
+			double[] mid = new double[n[l]];
+			int count = 0;
+			for(int i=p[l];i<n[l];i++) {
+				if(U[l][i] < U[l][i+1]) {
+					mid[count++] = (U[l][i]+U[l][i+1])/2;
+				}
+			}
+			X[l] = Arrays.copyOf(mid, count);
+		}
+		return X;
+	}
+
+	/**
+	 * <p>粗い基底関数組の関数の係数を、細かい基底関数組の係数に写す行列を作る。
+	 * <p>同次座標の変換行列をT(各変数方向の挿入行列のクロネッカー積)とすると、
+	 * w{f}u{f}=T(w{c}u{c})であるから、P=diag(1/w{f}) T diag(w{c})となる。
+	 * */
+	private static CSRMatrix createProlongation(NURBSBasisFunction coarse, NURBSBasisFunction fine, double[][] X) {
+		final int m = coarse.parameterNum;
+		double[][] U = coarse.giveKnotVector_Shallow();
+		int[] p = coarse.giveDegreeArray();
+		CSRMatrix[] T = new CSRMatrix[m];
+		for(int l=0;l<m;l++) {
+			T[l] = NURBSRefiner.createInsertionMatrix(U[l], p[l], X[l]);
+		}
+
+		int[] Pi_f = fine.givePi_n(), Pi_c = coarse.givePi_n();
+		final int rows = Pi_f[0];
+		double[] wc = coarse.giveWeightArray_Shallow(), wf = fine.giveWeightArray_Shallow();
+
+		//各行の0でない要素の数は、各変数方向の対応する行の要素の数の積
+		int[] rowPtr = new int[rows+1];
+		int[] i = new int[m];
+		for(int I=0;I<rows;I++) {
+			toIndex(I, Pi_f, i);
+			int count = 1;
+			for(int l=0;l<m;l++) {
+				int[] ptr = T[l].giveRowPointer_Shallow();
+				count *= ptr[i[l]+1]-ptr[i[l]];
+			}
+			rowPtr[I+1] = rowPtr[I]+count;
+		}
+
+		int[] colIndex = new int[rowPtr[rows]];
+		double[] value = new double[rowPtr[rows]];
+		int[] k = new int[m];
+		for(int I=0;I<rows;I++) {
+			toIndex(I, Pi_f, i);
+			for(int l=0;l<m;l++) {
+				k[l] = T[l].giveRowPointer_Shallow()[i[l]];
+			}
+			//各変数方向の要素の組を辞書式順に並べると、列の通し番号の昇順になる
+			for(int c=rowPtr[I];c<rowPtr[I+1];c++) {
+				int J = 0;
+				double v = 1;
+				for(int l=0;l<m;l++) {
+					J += T[l].giveColumnIndex_Shallow()[k[l]]*Pi_c[l+1];
+					v *= T[l].giveValues_Shallow()[k[l]];
+				}
+				colIndex[c] = J;
+				value[c] = v*wc[J]/wf[I];
+
+				for(int l=m-1;l>=0;l--) {
+					if(k[l]+1 < T[l].giveRowPointer_Shallow()[i[l]+1]) {
+						k[l]++;
+						break;
+					}
+					k[l] = T[l].giveRowPointer_Shallow()[i[l]];
+				}
+			}
+		}
+		return new CSRMatrix(rows, Pi_c[0], rowPtr, colIndex, value);
+	}
+
+	private static int[] toIndex(int global, int[] Pi_n, int[] index) {
+		for(int l=0;l<index.length;l++) {
+			index[l] = global/Pi_n[l+1];
+			global %= Pi_n[l+1];
+		}
+		return index;
+	}
+
+	/**
+	 * レベルの数を返します。
+	 * @return レベルの数
+	 * @version 2026/10/17 07:08
+	 * */
+	public int giveNumberOfLevels() {
+		return this.bases.length;
+	}
+
+	/**
+	 * 指定したレベルの基底関数組を返します。
+	 * @param level レベル。0が最も粗く、レベルの数-1が最も細かい。
+	 * @return 基底関数組
+	 * @version 2026/10/17 07:08
+	 * */
+	public NURBSBasisFunction giveBasisFunction(int level) {
+		return this.bases[level];
+	}
+
+	/**
+	 * 方程式を解く、最も細かい基底関数組を返します。係数行列はこの基底関数組で組み立ててください。
+	 * @return 最も細かい基底関数組
+	 * @version 2026/10/17 07:08
+	 * */
+	public NURBSBasisFunction giveFinestBasisFunction() {
+		return this.bases[bases.length-1];
+	}
+
+	/**
+	 * 直前に解いた際のVサイクルの反復回数を返します。
+	 * @return 反復回数
+	 * @version 2026/10/17 07:08
+	 * */
+	public int giveIterationCount() {
+		return this.iterationCount;
+	}
+
+	/**
+	 * 直前に解いた際の、最終的な相対残差|B-Ax|/|B|を返します。
+	 * @return 相対残差
+	 * @version 2026/10/17 07:08
+	 * */
+	public double giveResidual() {
+		return this.residual;
+	}
+
+	/**
+	 * <p>密行列で指定された連立方程式を解きます。
+	 * <p>係数行列は{@link CSRMatrix#valueOf(double[][])}で疎行列に変換してから
+	 * {@link #solve(CSRMatrix, double[])}で解きます。
+	 * @param A 連立方程式の係数行列。前回の係数行列の階層を再利用する場合はnull。
+	 * @param B 連立方程式の右辺項ベクトル
+	 * @throws IllegalArgumentException
+	 * <ul>
+	 * 		<li>Aがnullで、前回の係数行列が無い場合
+	 * 		<li>行列とベクトルの大きさが最も細かい基底関数組の基底関数の数と一致しない場合
+	 * 		<li>最大反復回数までに収束しなかった場合
+	 * </ul>
+	 * @version 2026/10/17 07:08
+	 * */
+	@Override
+	public double[] solve(double[][] A, double[] B) {
+		if(A != null && !matrixIsNormal(A, B)) {
+			throw new IllegalArgumentException("指定された配列は行数、列数が一致していません");
+		}
+		return solve((A == null)? null : CSRMatrix.valueOf(A), B);
+	}
+
+	/**
+	 * 疎行列で指定された連立方程式を解きます。
+	 * @param A 連立方程式の係数行列。前回の係数行列の階層を再利用する場合はnull。
+	 * @param B 連立方程式の右辺項ベクトル
+	 * @return 解
+	 * @throws NullPointerException Bがnullの場合
+	 * @throws IllegalArgumentException
+	 * <ul>
+	 * 		<li>Aがnullで、前回の係数行列が無い場合
+	 * 		<li>行列とベクトルの大きさが最も細かい基底関数組の基底関数の数と一致しない場合
+	 * 		<li>係数行列の対角要素に0がある場合
+	 * 		<li>最大反復回数までに収束しなかった場合
+	 * </ul>
+	 * @version 2026/10/17 07:08
+	 * */
+	public double[] solve(CSRMatrix A, double[] B) {
+		if(B == null) {
+			throw new NullPointerException("引数Bがnullです");
+		}
+		if(A != null) {
+			setUp(A);
+		}else if(this.A == null) {
+			throw new IllegalArgumentException("係数行列が指定されていません");
+		}
+		final int L = bases.length-1, n = this.A[L].giveNumberOfRows();
+		if(B.length != n) {
+			throw new IllegalArgumentException("右辺項ベクトルの大きさが係数行列と一致しません");
+		}
+
+		double normB = norm(B);
+		Arrays.fill(x[L], 0);
+		if(normB == 0) {
+			iterationCount = 0;
+			residual = 0;
+			return x[L].clone();
+		}
+		System.arraycopy(B, 0, b[L], 0, n);
+		for(iterationCount=1;iterationCount<=maxIteration;iterationCount++) {
+			cycle(L);
+			this.A[L].multiply(x[L], r[L]);
+			for(int i=0;i<n;i++) {
+				r[L][i] = B[i]-r[L][i];
+			}
+			residual = norm(r[L])/normB;
+			if(residual <= tolerance) {
+				return x[L].clone();
+			}
+			if(Double.isNaN(residual)) {
+				break;
+			}
+		}
+		throw new IllegalArgumentException("最大反復回数までに収束しませんでした。相対残差:"+residual);
+	}
+
+	/**
+	 * 係数行列の階層と作業用配列を作る。
+	 * */
+	private void setUp(CSRMatrix fine) {
+		final int L = bases.length-1;
+		if(fine.giveNumberOfRows() != bases[L].givePi_n()[0] || fine.giveNumberOfColumns() != fine.giveNumberOfRows()) {
+			throw new IllegalArgumentException("係数行列の大きさが最も細かい基底関数組の基底関数の数と一致しません");
+		}
+		CSRMatrix[] A = new CSRMatrix[L+1];
+		A[L] = fine;
+		for(int l=L-1;l>=0;l--) {
+			A[l] = R[l].multiply(A[l+1].multiply(P[l]));
+		}
+
+		int[][] diag = new int[L+1][];
+		for(int l=1;l<=L;l++) {
+			int n = A[l].giveNumberOfRows();
+			diag[l] = new int[n];
+			for(int i=0;i<n;i++) {
+				diag[l][i] = A[l].indexOf(i, i);
+				if(diag[l][i] < 0 || A[l].giveValues_Shallow()[diag[l][i]] == 0) {
+					throw new IllegalArgumentException("係数行列の対角要素に0があります");
+				}
+			}
+		}
+
+		LU coarseSolver = new LU(true);
+		coarseSolver.solve(A[0].toArray(), new double[A[0].giveNumberOfRows()]);
+
+		this.A = A;
+		this.diag = diag;
+		this.coarseSolver = coarseSolver;
+		this.x = new double[L+1][];
+		this.b = new double[L+1][];
+		this.r = new double[L+1][];
+		for(int l=0;l<=L;l++) {
+			int n = A[l].giveNumberOfRows();
+			x[l] = new double[n];
+			b[l] = new double[n];
+			r[l] = new double[n];
+		}
+	}
+
+	/**
+	 * レベルlで、右辺項b[l]についてx[l]を初期値とするVサイクルを1回行う。
+	 * */
+	private void cycle(int l) {
+		if(l == 0) {
+			double[] solution = coarseSolver.solve(null, b[0].clone());
+			System.arraycopy(solution, 0, x[0], 0, x[0].length);
+			return;
+		}
+		for(int s=0;s<smoothingNum;s++) {
+			smooth(l, true);
+		}
+
+		//残差を粗いレベルに制限し、誤差を解く
+		A[l].multiply(x[l], r[l]);
+		for(int i=0;i<r[l].length;i++) {
+			r[l][i] = b[l][i]-r[l][i];
+		}
+		R[l-1].multiply(r[l], b[l-1]);
+		Arrays.fill(x[l-1], 0);
+		cycle(l-1);
+
+		//粗いレベルの誤差を補間して修正する
+		P[l-1].multiply(x[l-1], r[l]);
+		for(int i=0;i<x[l].length;i++) {
+			x[l][i] += r[l][i];
+		}
+
+		for(int s=0;s<smoothingNum;s++) {
+			smooth(l, false);
+		}
+	}
+
+	/**
+	 * ガウス・ザイデル法による平滑化。前進と後退を前後で使い分けることで、Vサイクルが対称になる。
+	 * */
+	private void smooth(int l, boolean forward) {
+		final int[] rowPtr = A[l].giveRowPointer_Shallow(), colIndex = A[l].giveColumnIndex_Shallow();
+		final double[] value = A[l].giveValues_Shallow(), xl = x[l], bl = b[l];
+		final int n = xl.length;
+		for(int c=0;c<n;c++) {
+			int i = forward? c : n-1-c;
+			double s = bl[i];
+			for(int k=rowPtr[i];k<rowPtr[i+1];k++) {
+				s -= value[k]*xl[colIndex[k]];
+			}
+			xl[i] += s/value[diag[l][i]];
+		}
+	}
+
+	private static double norm(double[] v) {
+		double s = 0;
+		for(double vi:v) {
+			s += vi*vi;
+		}
+		return Math.sqrt(s);
+	}
+}
@@ -0,0 +1,113 @@
+package simulation.function.nurbs.assembly;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+import simulation.function.nurbs.NURBSBasisFunction;
+import simulation.solver.CSRMatrix;
+import simulation.solver.LU;
+
+public class NURBSMultigridTest {
+	/*
+	 * 四分円環(有理、2次)の上のポアソン方程式 -Δu=1、境界で u=0
+	 * */
+	private static final NURBSBasisFunction annulus;
+	static {
+		double s = Math.sqrt(0.5);
+		annulus = new NURBSBasisFunction(new double[][] {{0,0,0,1,1,1},{0,0,0,1,1,1}}, new int[] {2,2},
+				new double[] {1,1,1,s,s,s,1,1,1});
+	}
+
+	/*
+	 * 最も細かいレベルで剛性行列と右辺項を組み立て、境界のポイントの行と列を単位行列に置き換える
+	 * 戻り値の[0]に右辺項、引数Kに係数行列を書き込む
+	 * */
+	private static double[] assemblePoisson(NURBSBasisFunction fine, CSRMatrix[] K) {
+		NURBSAssembler assembler = new NURBSAssembler(fine);
+		CSRMatrix A = assembler.assembleStiffness(null);
+		int[] n = fine.giveNumberArrayOfCtrl();
+		final int N = n[0]*n[1];
+		boolean[] fixed = new boolean[N];
+		for(int i=0;i<n[0];i++) {
+			for(int j=0;j<n[1];j++) {
+				fixed[i*n[1]+j] = i == 0 || i == n[0]-1 || j == 0 || j == n[1]-1;
+			}
+		}
+		int[] rowPointer = A.giveRowPointer_Shallow(), column = A.giveColumnIndex_Shallow();
+		double[] value = A.giveValues_Shallow();
+		for(int i=0;i<N;i++) {
+			for(int k=rowPointer[i];k<rowPointer[i+1];k++) {
+				if(fixed[i] || fixed[column[k]]) {
+					value[k] = (i == column[k])? 1 : 0;
+				}
+			}
+		}
+		double[] F = assembler.assembleVector((point, Fe) -> {
+			for(int i=0;i<point.giveNumberOfBasis();i++) {
+				Fe[i] = point.giveBasisValue(i);
+			}
+		});
+		for(int i=0;i<N;i++) {
+			if(fixed[i]) {
+				F[i] = 0;
+			}
+		}
+		K[0] = A;
+		return F;
+	}
+
+	private static double relativeResidual(CSRMatrix A, double[] x, double[] B) {
+		double[] Ax = A.multiply(x, new double[B.length]);
+		double r = 0, b = 0;
+		for(int i=0;i<B.length;i++) {
+			r += (B[i]-Ax[i])*(B[i]-Ax[i]);
+			b += B[i]*B[i];
+		}
+		return Math.sqrt(r/b);
+	}
+
+	/*
+	 * メッシュを細かくしても、Vサイクルの反復回数は上限(12回)以内で残差は許容誤差以下に下がる
+	 * 最大反復回数を上限にしたインスタンスで解き、収束しない場合は例外になる
+	 * */
+	@Test
+	public void convergesWithinBoundedIterations() {
+		for(int L=2;L<=6;L++) {
+			NURBSMultigrid multigrid = new NURBSMultigrid(annulus, L, 1e-10, 12, 2);
+			CSRMatrix[] K = new CSRMatrix[1];
+			double[] F = assemblePoisson(multigrid.giveFinestBasisFunction(), K);
+			double[] x = multigrid.solve(K[0], F);
+			assertTrue(multigrid.giveIterationCount() <= 12);
+			assertTrue(multigrid.giveResidual() <= 1e-10);
+			assertEquals(multigrid.giveResidual(), relativeResidual(K[0], x, F), 1e-12);
+		}
+	}
+
+	/*
+	 * 1回のVサイクルで残差は1/5以下になる
+	 * */
+	@Test
+	public void oneCycleReducesResidual() {
+		NURBSMultigrid multigrid = new NURBSMultigrid(annulus, 5, 0.2, 1, 2);
+		CSRMatrix[] K = new CSRMatrix[1];
+		double[] F = assemblePoisson(multigrid.giveFinestBasisFunction(), K);
+		double[] x = multigrid.solve(K[0], F);
+		assertEquals(1, multigrid.giveIterationCount());
+		assertTrue(relativeResidual(K[0], x, F) <= 0.2);
+	}
+
+	/*
+	 * 解はLU分解で求めた解と一致し、係数行列を省略すると前回の階層を再利用して同じ解になる
+	 * */
+	@Test
+	public void matchesDirectSolution() {
+		NURBSMultigrid multigrid = new NURBSMultigrid(annulus, 4);
+		CSRMatrix[] K = new CSRMatrix[1];
+		double[] F = assemblePoisson(multigrid.giveFinestBasisFunction(), K);
+		double[] x = multigrid.solve(K[0], F);
+		double[] expected = new LU(false).solve(K[0].toArray(), F.clone());
+		assertArrayEquals(expected, x, 1e-10);
+		assertArrayEquals(x, multigrid.solve((CSRMatrix) null, F), 0);
+	}
+}
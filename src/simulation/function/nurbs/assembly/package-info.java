@@ -0,0 +1,7 @@
+/**
+ * NURBSの基底関数組を用いたアイソジオメトリック解析の全体行列を組み立てるクラス群。
+ * 要素毎の積分を{@link simulation.function.nurbs.quadrature.NURBSQuadrature}で行い、
+ * 結果を{@link simulation.solver.CSRMatrix}に足し込みます。
+ * @version 2026/10/17 07:05
+ */
+package simulation.function.nurbs.assembly;
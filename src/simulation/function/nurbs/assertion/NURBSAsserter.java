@@ -47,12 +47,13 @@ public class NURBSAsserter {
 			return false;
 		}
 
-		double[][] domain = basis.giveDomain();
+		//定義域の配列を生成しないよう、ノットベクトルの両端を直接参照する
+		double[][] knot = basis.giveKnotVector_Shallow();
 
 		//tはNURBS関数の定義域に反していないか
 		for(int i=0;i<basis.parameterNum;i++) {
 			//各変数について対応のノットベクトルの範囲の中にあるかを調べる
-			if(t[i] < domain[i][0] || domain[i][1] < t[i]) {
+			if(t[i] < knot[i][0] || knot[i][knot[i].length-1] < t[i]) {
 				if(assertion) {
 					throw new IllegalArgumentException("指定された変数値t["+i+"]はノットベクトルの範囲を超えています");
 				}
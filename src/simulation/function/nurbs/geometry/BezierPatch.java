@@ -0,0 +1,318 @@
+package simulation.function.nurbs.geometry;
+
+import java.util.Arrays;
+
+import simulation.function.nurbs.BezierExtraction;
+import simulation.function.nurbs.NURBSBasisFunction;
+import simulation.function.nurbs.NURBSFunction;
+
+/**
+ * <p>NURBS関数の1つの要素上の部分を、有理ベジエ関数として表したもの。
+ * <p>同次座標のコントロールポイントPw[a*S+c]を持ちます。aは各変数のインデックスの組
+ * (a0,...,a{m-1})(0&lt;=a{l}&lt;=p{l})についてa{m-1}+a{m-2}*(p{m-1}+1)+...で、
+ * c=0が重み、c&gt;=1が重み付きの座標です(S=次元+1)。
+ * 重みが正であれば、パッチは射影したコントロールポイントの凸包に含まれるので、
+ * その境界箱はパッチの境界箱になります。
+ *
+ * <p>インスタンスは不変です。
+ *
+ * @version 2026/10/17 07:15
+ * */
+public class BezierPatch {
+	/**
+	 * 変数の数、次元
+	 * @version 2026/10/17 07:15
+	 * */
+	public final int parameterNum, dimension;
+
+	/**
+	 * 各変数の次数
+	 * @version 2026/10/17 07:15
+	 * */
+	private final int[] p;
+
+	/**
+	 * 各変数についての、パッチの変数値の範囲
+	 * @version 2026/10/17 07:15
+	 * */
+	private final double[] lower, upper;
+
+	/**
+	 * 同次座標のコントロールポイント
+	 * @version 2026/10/17 07:15
+	 * */
+	private final double[] Pw;
+
+	/**
+	 * 境界箱。初回の問合せ時に求める。
+	 * @version 2026/10/17 07:30
+	 * */
+	private volatile BoundingBox box;
+
+	/**
+	 * 平坦度。初回の問合せ時に求める(負数は未計算)。
+	 * @version 2026/10/17 07:30
+	 * */
+	private volatile double flatness = -1;
+
+	private BezierPatch(int[] p, double[] lower, double[] upper, double[] Pw, int dimension) {
+		this.parameterNum = p.length;
+		this.dimension = dimension;
+		this.p = p;
+		this.lower = lower;
+		this.upper = upper;
+		this.Pw = Pw;
+	}
+
+	/**
+	 * 射影したコントロールポイントと、角のコントロールポイントの多重線形補間との距離の最大値を求める。
+	 * a番目のコントロールポイントは、補間の変数値a{l}/p{l}の点と比べる。
+	 * */
+	private double computeFlatness() {
+		final int m = parameterNum, S = dimension+1, num = Pw.length/S;
+		int[] a = new int[m];
+		double[] interpolated = new double[dimension];
+		double max = 0;
+		for(int i=0;i<num;i++) {
+			for(int l=m-1,rem=i;l>=0;l--) {
+				a[l] = rem%(p[l]+1);
+				rem /= p[l]+1;
+			}
+			Arrays.fill(interpolated, 0);
+			//2^m個の角について、多重線形補間の重みを掛けて足す
+			for(int corner=0;corner<(1<<m);corner++) {
+				double weight = 1;
+				int index = 0;
+				for(int l=0;l<m;l++) {
+					double s = (p[l] == 0)? 0 : (double)a[l]/p[l];
+					boolean high = ((corner>>l)&1) == 1;
+					weight *= high? s : 1-s;
+					index = index*(p[l]+1) +(high? p[l] : 0);
+				}
+				if(weight == 0) {
+					continue;
+				}
+				for(int d=0;d<dimension;d++) {
+					interpolated[d] += weight*Pw[index*S+1+d]/Pw[index*S];
+				}
+			}
+			double s = 0;
+			for(int d=0;d<dimension;d++) {
+				double diff = Pw[i*S+1+d]/Pw[i*S] -interpolated[d];
+				s += diff*diff;
+			}
+			max = Math.max(max, s);
+		}
+		return Math.sqrt(max);
+	}
+
+	/**
+	 * <p>NURBS関数を要素毎のベジエパッチに分解します。
+	 * <p>戻り値の順番は{@link BezierExtraction}の要素の通し番号に従います。
+	 * 同次座標のベジエのコントロールポイントは、抽出演算子CについてQ{j}=ΣC[i][j]Pw{i}です。
+	 * @param func NURBS関数
+	 * @return ベジエパッチの配列
+	 * @throws NullPointerException funcがnullの場合
+	 * @version 2026/10/17 07:15
+	 * */
+	public static BezierPatch[] decompose(NURBSFunction func) {
+		if(func == null) {
+			throw new NullPointerException("引数funcがnullです");
+		}
+		NURBSBasisFunction basis = func.giveBasisFunction();
+		BezierExtraction extraction = new BezierExtraction(basis);
+		final int m = basis.parameterNum, S = func.dimension+1;
+		final int[] p = basis.giveDegreeArray();
+		final int effNum = basis.giveEffectiveCtrlNum();
+		final double[] Pw = func.giveHomogeneousCtrlArray_Shallow();
+
+		BezierPatch[] patches = new BezierPatch[extraction.giveNumberOfElements()];
+		int[] e = new int[m], global = new int[effNum];
+		for(int element=0;element<patches.length;element++) {
+			extraction.giveElementIndex(element, e);
+			extraction.giveGlobalIndices(e, global);
+			double[] current = new double[effNum*S];
+			for(int a=0;a<effNum;a++) {
+				System.arraycopy(Pw, global[a]*S, current, a*S, S);
+			}
+
+			//各変数方向に演算子の転置を作用させる
+			double[] next = new double[effNum*S];
+			int inner = effNum*S;
+			for(int l=0;l<m;l++) {
+				int P = p[l]+1;
+				inner /= P;
+				int outer = effNum*S/(inner*P);
+				double[] C = extraction.giveOperator_Shallow(l, e[l]);
+				for(int o=0;o<outer;o++) {
+					for(int j=0;j<P;j++) {
+						int dst = (o*P+j)*inner;
+						for(int c=0;c<inner;c++) {
+							double s = 0;
+							for(int i=0;i<P;i++) {
+								s += C[i*P+j]*current[(o*P+i)*inner+c];
+							}
+							next[dst+c] = s;
+						}
+					}
+				}
+				double[] temp = current;
+				current = next;
+				next = temp;
+			}
+
+			double[] lower = new double[m], upper = new double[m];
+			for(int l=0;l<m;l++) {
+				lower[l] = extraction.giveLowerBound(l, e[l]);
+				upper[l] = extraction.giveUpperBound(l, e[l]);
+			}
+			patches[element] = new BezierPatch(p.clone(), lower, upper, current, func.dimension);
+		}
+		return patches;
+	}
+
+	/**
+	 * <p>変数l方向の中点でパッチを2つに分割します(ド・カステリョのアルゴリズム)。
+	 * @param l 分割する変数のインデックス
+	 * @return 分割したパッチ。[0]が変数値の小さい側。
+	 * @version 2026/10/17 07:15
+	 * */
+	public BezierPatch[] split(int l) {
+		final int S = dimension+1, P = p[l]+1;
+		int inner = S;
+		for(int i=l+1;i<parameterNum;i++) {
+			inner *= p[i]+1;
+		}
+		final int outer = Pw.length/(inner*P);
+		double[] left = new double[Pw.length], right = new double[Pw.length];
+		double[] work = new double[P];
+		for(int o=0;o<outer;o++) {
+			for(int c=0;c<inner;c++) {
+				int base = o*P*inner+c;
+				for(int i=0;i<P;i++) {
+					work[i] = Pw[base+i*inner];
+				}
+				//r段目の先頭が左側、末尾が右側のコントロールポイントになる
+				for(int r=0;r<P;r++) {
+					left[base+r*inner] = work[0];
+					right[base+(P-1-r)*inner] = work[P-1-r];
+					for(int i=0;i<P-1-r;i++) {
+						work[i] = (work[i]+work[i+1])/2;
+					}
+				}
+			}
+		}
+		double mid = (lower[l]+upper[l])/2;
+		double[] upperLeft = upper.clone(), lowerRight = lower.clone();
+		upperLeft[l] = mid;
+		lowerRight[l] = mid;
+		return new BezierPatch[] {
+				new BezierPatch(p, lower, upperLeft, left, dimension),
+				new BezierPatch(p, lowerRight, upper, right, dimension)
+		};
+	}
+
+	/**
+	 * 変数lの次数を返します。
+	 * @param l 変数のインデックス
+	 * @return 次数
+	 * @version 2026/10/17 07:15
+	 * */
+	public int giveDegree(int l) {
+		return this.p[l];
+	}
+
+	/**
+	 * 変数lについての、パッチの変数値の下端を返します。
+	 * @param l 変数のインデックス
+	 * @return 下端
+	 * @version 2026/10/17 07:15
+	 * */
+	public double giveLowerBound(int l) {
+		return this.lower[l];
+	}
+
+	/**
+	 * 変数lについての、パッチの変数値の上端を返します。
+	 * @param l 変数のインデックス
+	 * @return 上端
+	 * @version 2026/10/17 07:15
+	 * */
+	public double giveUpperBound(int l) {
+		return this.upper[l];
+	}
+
+	/**
+	 * パッチの境界箱を返します。
+	 * @return 境界箱
+	 * @version 2026/10/17 07:15
+	 * */
+	public BoundingBox giveBoundingBox() {
+		//不変な値なので、複数のスレッドが同時に求めても結果は同じ
+		BoundingBox b = this.box;
+		if(b == null) {
+			b = BoundingBox.ofHomogeneous(Pw, dimension+1);
+			this.box = b;
+		}
+		return b;
+	}
+
+	/**
+	 * <p>パッチの平坦度を返します。
+	 * <p>射影したコントロールポイントと、角のコントロールポイントの多重線形補間との距離の最大値です。
+	 * 重みが全て等しい場合は多重線形補間がベジエ関数で厳密に表されるので、
+	 * 凸包性からパッチと多重線形補間の曲面との距離はこの値以下になります。
+	 * @return 平坦度
+	 * @version 2026/10/17 07:15
+	 * */
+	public double giveFlatness() {
+		double f = this.flatness;
+		if(f < 0) {
+			f = computeFlatness();
+			this.flatness = f;
+		}
+		return f;
+	}
+
+	/**
+	 * 同次座標のコントロールポイントを返します。
+	 * 配列の参照を渡すので、要素を変更しないでください。
+	 * @return 同次座標のコントロールポイント
+	 * @version 2026/10/17 07:15
+	 * */
+	public double[] giveHomogeneousCtrlArray_Shallow() {
+		return this.Pw;
+	}
+
+	/**
+	 * <p>コントロールポイントのうち、点xに最も近いものに対応する変数値を返します。
+	 * <p>a番目のコントロールポイントの変数値は、各変数について下端+a{l}/p{l}*(上端-下端)とします。
+	 * ニュートン法等の初期値に用います。
+	 * @param x 点。長さは次元以上であること。
+	 * @param t 変数値を格納する配列。長さは変数の数以上であること。
+	 * @return 引数t
+	 * @version 2026/10/17 07:15
+	 * */
+	public double[] giveNearestParameter(double[] x, double[] t) {
+		final int S = dimension+1;
+		int nearest = 0;
+		double best = Double.POSITIVE_INFINITY;
+		for(int a=0;a<Pw.length/S;a++) {
+			double w = Pw[a*S], s = 0;
+			for(int d=0;d<dimension;d++) {
+				double diff = Pw[a*S+1+d]/w -x[d];
+				s += diff*diff;
+			}
+			if(s < best) {
+				best = s;
+				nearest = a;
+			}
+		}
+		for(int l=parameterNum-1;l>=0;l--) {
+			int al = nearest%(p[l]+1);
+			nearest /= p[l]+1;
+			t[l] = (p[l] == 0)? (lower[l]+upper[l])/2 : lower[l]+(upper[l]-lower[l])*al/p[l];
+		}
+		return t;
+	}
+}
@@ -0,0 +1,138 @@
+package simulation.function.nurbs.geometry;
+
+import java.util.Arrays;
+
+/**
+ * <p>軸平行境界箱(AABB)。
+ * <p>インスタンスは不変です。
+ *
+ * @version 2026/10/17 07:15
+ * */
+public class BoundingBox {
+	/**
+	 * 各成分の最小値と最大値
+	 * @version 2026/10/17 07:15
+	 * */
+	private final double[] min, max;
+
+	/**
+	 * 次元
+	 * @version 2026/10/17 07:15
+	 * */
+	public final int dimension;
+
+	/**
+	 * 各成分の最小値と最大値を指定して境界箱を生成します。配列は複製されます。
+	 * @param min 各成分の最小値
+	 * @param max 各成分の最大値
+	 * @throws NullPointerException minまたはmaxがnullの場合
+	 * @throws IllegalArgumentException minとmaxの長さが異なる場合、またはmin&gt;maxの成分がある場合
+	 * @version 2026/10/17 07:15
+	 * */
+	public BoundingBox(double[] min, double[] max) {
+		if(min == null) {
+			throw new NullPointerException("引数minがnullです");
+		}else if(max == null) {
+			throw new NullPointerException("引数maxがnullです");
+		}
+		if(min.length != max.length) {
+			throw new IllegalArgumentException("minとmaxの次元が異なります");
+		}
+		for(int d=0;d<min.length;d++) {
+			if(!(min[d] <= max[d])) {
+				throw new IllegalArgumentException("minがmaxより大きい成分があります");
+			}
+		}
+		this.min = min.clone();
+		this.max = max.clone();
+		this.dimension = min.length;
+	}
+
+	/**
+	 * 同次座標の点群を包む境界箱を生成します。
+	 * Pw[i*S]が重み、Pw[i*S+1+d]が重み付きの座標です。
+	 * */
+	static BoundingBox ofHomogeneous(double[] Pw, int S) {
+		final int dimension = S-1;
+		double[] min = new double[dimension], max = new double[dimension];
+		Arrays.fill(min, Double.POSITIVE_INFINITY);
+		Arrays.fill(max, Double.NEGATIVE_INFINITY);
+		for(int i=0;i<Pw.length;i+=S) {
+			for(int d=0;d<dimension;d++) {
+				double x = Pw[i+1+d]/Pw[i];
+				min[d] = Math.min(min[d], x);
+				max[d] = Math.max(max[d], x);
+			}
+		}
+		return new BoundingBox(min, max);
+	}
+
+	/**
+	 * 2つの境界箱を包む境界箱を返します。
+	 * @param a 境界箱
+	 * @param b 境界箱
+	 * @return aとbを包む境界箱
+	 * @throws IllegalArgumentException aとbの次元が異なる場合
+	 * @version 2026/10/17 07:15
+	 * */
+	public static BoundingBox union(BoundingBox a, BoundingBox b) {
+		if(a.dimension != b.dimension) {
+			throw new IllegalArgumentException("境界箱の次元が異なります");
+		}
+		double[] min = new double[a.dimension], max = new double[a.dimension];
+		for(int d=0;d<a.dimension;d++) {
+			min[d] = Math.min(a.min[d], b.min[d]);
+			max[d] = Math.max(a.max[d], b.max[d]);
+		}
+		return new BoundingBox(min, max);
+	}
+
+	/**
+	 * 成分dの最小値を返します。
+	 * @param d 成分のインデックス
+	 * @return 最小値
+	 * @version 2026/10/17 07:15
+	 * */
+	public double giveMin(int d) {
+		return this.min[d];
+	}
+
+	/**
+	 * 成分dの最大値を返します。
+	 * @param d 成分のインデックス
+	 * @return 最大値
+	 * @version 2026/10/17 07:15
+	 * */
+	public double giveMax(int d) {
+		return this.max[d];
+	}
+
+	/**
+	 * 対角線の長さを返します。
+	 * @return 対角線の長さ
+	 * @version 2026/10/17 07:15
+	 * */
+	public double giveDiagonal() {
+		double s = 0;
+		for(int d=0;d<dimension;d++) {
+			s += (max[d]-min[d])*(max[d]-min[d]);
+		}
+		return Math.sqrt(s);
+	}
+
+	/**
+	 * 点から境界箱までの距離の2乗を返します。点が境界箱の内部にある場合は0です。
+	 * 境界箱の内部にある曲面上の点までの距離の下限になります。
+	 * @param x 点。長さは次元以上であること。
+	 * @return 距離の2乗
+	 * @version 2026/10/17 07:15
+	 * */
+	public double distanceSquared(double[] x) {
+		double s = 0;
+		for(int d=0;d<dimension;d++) {
+			double diff = (x[d] < min[d])? min[d]-x[d] : (x[d] > max[d])? x[d]-max[d] : 0;
+			s += diff*diff;
+		}
+		return s;
+	}
+}
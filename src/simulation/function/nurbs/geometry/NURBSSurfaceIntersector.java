@@ -0,0 +1,626 @@
+package simulation.function.nurbs.geometry;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.IntStream;
+
+import simulation.function.nurbs.NURBSEvaluator;
+import simulation.function.nurbs.NURBSFunction;
+
+/**
+ * <p>3次元の2変数NURBS関数(曲面)と半直線の交差判定を行うクラス。
+ *
+ * <p>曲面を要素毎のベジエパッチに分解し、平坦になるまで再帰的に分割したものを葉とする
+ * 境界ボリューム階層(BVH)を作ります。境界箱は分割後のコントロールポイントから求め直すので、
+ * 分割する程きつくなります。BVHは最初の交差判定の際に作り、以降は使い回します。
+ *
+ * <p>半直線o+tdは、dに垂直な2つの平面の交線として表します。BVHを手前から辿り、
+ * 境界箱と交わる葉では、パッチの中央の変数値を初期値として、曲面上の点が2平面上にある条件を
+ * ニュートン法で解きます。反復は葉のパッチの範囲に制限し、範囲外に解がある場合はその葉とは交わらない
+ * ものとします(隣の葉で見つかります)。範囲内で発散した場合は、その葉をさらに分割して調べ直します。
+ * 半直線が曲面の接線に近い場合は、1つの葉に2つの解が近接することがあり、
+ * 最も手前の交点でなくその葉のもう一方の解が得られる場合があります。
+ *
+ * <p>複数の半直線をまとめて判定する場合は、{@link #PACKET_SIZE}本ずつの組(パケット)で
+ * BVHを一緒に辿ります。向きと始点の近い半直線の組では、節点の読み込みと分岐が共有されます。
+ * パケットは並列に計算できます。
+ *
+ * <p>インスタンスはスレッドセーフです。
+ *
+ * @version 2026/10/17 07:24
+ * */
+public class NURBSSurfaceIntersector {
+	/**
+	 * パケットの半直線の数
+	 * @version 2026/10/17 07:24
+	 * */
+	public static final int PACKET_SIZE = 16;
+
+	/**
+	 * 既定の分割の深さの上限
+	 * @version 2026/10/17 07:24
+	 * */
+	public static final int DEFAULT_MAX_DEPTH = 10;
+
+	/**
+	 * パッチを平坦と見なす、平坦度の境界箱の対角線の長さに対する比
+	 * @version 2026/10/17 07:24
+	 * */
+	private static final double FLATNESS = 0.02;
+
+	/**
+	 * ニュートン法の最大反復回数
+	 * @version 2026/10/17 07:24
+	 * */
+	private static final int MAX_ITERATION = 10;
+
+	/**
+	 * 葉でニュートン法が収束しない場合に、葉をさらに分割する回数の上限
+	 * @version 2026/10/17 07:24
+	 * */
+	private static final int REFINE_DEPTH = 2;
+
+	/**
+	 * {@link #newton}の結果。解に収束した。
+	 * @version 2026/10/17 07:24
+	 * */
+	private static final int CONVERGED = 0;
+
+	/**
+	 * {@link #newton}の結果。反復がパッチの範囲の端に張り付いたので、解はパッチの外にある。
+	 * @version 2026/10/17 07:24
+	 * */
+	private static final int OUTSIDE = 1;
+
+	/**
+	 * {@link #newton}の結果。ヤコビ行列が特異になったか、反復回数の上限までに収束しなかった。
+	 * @version 2026/10/17 07:24
+	 * */
+	private static final int DIVERGED = 2;
+
+	private final NURBSFunction surface;
+	private final boolean isparallel;
+	private final int maxDepth;
+
+	/**
+	 * 境界ボリューム階層。最初の交差判定で作る。
+	 * @version 2026/10/17 07:24
+	 * */
+	private volatile Hierarchy hierarchy;
+
+	/**
+	 * 並列計算を行い、分割の深さの上限を{@link #DEFAULT_MAX_DEPTH}とするインスタンスを生成します。
+	 * @param surface 3次元の2変数NURBS関数
+	 * @throws NullPointerException surfaceがnullの場合
+	 * @throws IllegalArgumentException surfaceの変数の数が2でない、または次元が3でない場合
+	 * @version 2026/10/17 07:24
+	 * */
+	public NURBSSurfaceIntersector(NURBSFunction surface) {
+		this(surface, true, DEFAULT_MAX_DEPTH);
+	}
+
+	/**
+	 * インスタンスを生成します。BVHはまだ作りません。
+	 * @param surface 3次元の2変数NURBS関数
+	 * @param isparallel 複数の半直線の判定を並列に計算する場合はtrue
+	 * @param maxDepth 要素毎のパッチを各変数方向に2分割する回数の上限
+	 * @throws NullPointerException surfaceがnullの場合
+	 * @throws IllegalArgumentException
+	 * <ul>
+	 * 		<li>surfaceの変数の数が2でない、または次元が3でない場合
+	 * 		<li>maxDepthが負数の場合
+	 * </ul>
+	 * @version 2026/10/17 07:24
+	 * */
+	public NURBSSurfaceIntersector(NURBSFunction surface, boolean isparallel, int maxDepth) {
+		if(surface == null) {
+			throw new NullPointerException("引数surfaceがnullです");
+		}
+		if(surface.giveBasisFunction().parameterNum != 2 || surface.dimension != 3) {
+			throw new IllegalArgumentException("3次元の2変数NURBS関数でありません");
+		}else if(maxDepth < 0) {
+			throw new IllegalArgumentException("分割の深さの上限が負数です");
+		}
+		this.surface = surface;
+		this.isparallel = isparallel;
+		this.maxDepth = maxDepth;
+	}
+
+	/**
+	 * 交差判定を行う曲面を返します。
+	 * @return 3次元の2変数NURBS関数
+	 * @version 2026/10/17 07:24
+	 * */
+	public NURBSFunction giveSurface() {
+		return this.surface;
+	}
+
+	/**
+	 * BVHの葉のパッチの数を返します。BVHが無い場合は作ります。
+	 * @return 葉の数
+	 * @version 2026/10/17 07:24
+	 * */
+	public int giveNumberOfLeaves() {
+		return giveHierarchy().leaves.length;
+	}
+
+	private Hierarchy giveHierarchy() {
+		Hierarchy h = this.hierarchy;
+		if(h == null) {
+			synchronized(this) {
+				h = this.hierarchy;
+				if(h == null) {
+					h = new Hierarchy(BezierPatch.decompose(surface), maxDepth);
+					this.hierarchy = h;
+				}
+			}
+		}
+		return h;
+	}
+
+	/**
+	 * 半直線o+td(t&gt;=0)と曲面の、最も手前の交点を求めます。
+	 * @param origin 始点o
+	 * @param direction 向きd。0ベクトルでないこと。正規化されている必要はありません。
+	 * @return 交点。交わらない場合はnull。
+	 * @throws NullPointerException originまたはdirectionがnullの場合
+	 * @throws IllegalArgumentException originまたはdirectionの長さが3でない場合、またはdirectionが0ベクトルの場合
+	 * @version 2026/10/17 07:24
+	 * */
+	public RayIntersectionResult intersect(double[] origin, double[] direction) {
+		Ray ray = new Ray(origin, direction);
+		Hierarchy h = giveHierarchy();
+		//評価器と作業用配列は判定毎に用意し、その判定の中で使い回す
+		NURBSEvaluator evaluator = new NURBSEvaluator(surface);
+		double[] work = new double[12];
+
+		int[] stack = new int[64];
+		int top = 0;
+		if(h.entry(0, ray, Double.POSITIVE_INFINITY) >= 0) {
+			stack[top++] = 0;
+		}
+		while(top > 0) {
+			int node = stack[--top];
+			if(h.entry(node, ray, ray.best) < 0) {
+				continue;
+			}
+			int child = h.child[node];
+			if(child < 0) {
+				hitLeaf(h.leaves[-child-1], ray, evaluator, work, 0);
+				continue;
+			}
+			//手前の子を後に積み、先に調べる
+			double near = h.entry(child, ray, ray.best), far = h.entry(child+1, ray, ray.best);
+			if(top+2 > stack.length) {
+				stack = Arrays.copyOf(stack, 2*stack.length);
+			}
+			if(near < 0) {
+				if(far >= 0) {
+					stack[top++] = child+1;
+				}
+			}else if(far < 0) {
+				stack[top++] = child;
+			}else if(near <= far) {
+				stack[top++] = child+1;
+				stack[top++] = child;
+			}else {
+				stack[top++] = child;
+				stack[top++] = child+1;
+			}
+		}
+		return ray.result();
+	}
+
+	/**
+	 * <p>複数の半直線と曲面の、それぞれ最も手前の交点を求めます。
+	 * <p>{@link #PACKET_SIZE}本ずつのパケットでBVHを辿ります。
+	 * 並列計算を行うインスタンスでは、パケット毎に並列に計算します。
+	 * @param origins 各半直線の始点
+	 * @param directions 各半直線の向き
+	 * @return 各半直線の交点。交わらない半直線の要素はnull。
+	 * @throws NullPointerException 引数またはその要素がnullの場合
+	 * @throws IllegalArgumentException
+	 * <ul>
+	 * 		<li>originsとdirectionsの長さが異なる場合
+	 * 		<li>始点または向きの長さが3でない場合、または向きが0ベクトルの場合
+	 * </ul>
+	 * @version 2026/10/17 07:24
+	 * */
+	public RayIntersectionResult[] intersect(double[][] origins, double[][] directions) {
+		if(origins == null) {
+			throw new NullPointerException("引数originsがnullです");
+		}else if(directions == null) {
+			throw new NullPointerException("引数directionsがnullです");
+		}else if(origins.length != directions.length) {
+			throw new IllegalArgumentException("始点と向きの数が異なります");
+		}
+		final int num = origins.length;
+		final Ray[] rays = new Ray[num];
+		for(int i=0;i<num;i++) {
+			rays[i] = new Ray(origins[i], directions[i]);
+		}
+		final Hierarchy h = giveHierarchy();
+		RayIntersectionResult[] results = new RayIntersectionResult[num];
+		IntStream packets = IntStream.range(0, (num+PACKET_SIZE-1)/PACKET_SIZE);
+		(isparallel? packets.parallel() : packets).forEach(packet -> {
+			int from = packet*PACKET_SIZE, to = Math.min(from+PACKET_SIZE, num);
+			intersectPacket(h, rays, from, to);
+			for(int i=from;i<to;i++) {
+				results[i] = rays[i].result();
+			}
+		});
+		return results;
+	}
+
+	/**
+	 * rays[from]からrays[to-1]までのパケットでBVHを辿る。
+	 * 各節点について、その境界箱と交わる半直線の集合をビットマスクで持つ。
+	 * 評価器と作業用配列はパケット毎に用意する。
+	 * */
+	private void intersectPacket(Hierarchy h, Ray[] rays, int from, int to) {
+		NURBSEvaluator evaluator = new NURBSEvaluator(surface);
+		double[] work = new double[12];
+		final int size = to-from;
+
+		int[] nodes = new int[64];
+		int[] masks = new int[64];
+		int top = 0;
+		nodes[top] = 0;
+		masks[top++] = (1<<size)-1;
+		while(top > 0) {
+			int node = nodes[--top];
+			int mask = 0;
+			for(int bits=masks[top];bits!=0;bits&=bits-1) {
+				int r = Integer.numberOfTrailingZeros(bits);
+				Ray ray = rays[from+r];
+				if(h.entry(node, ray, ray.best) >= 0) {
+					mask |= 1<<r;
+				}
+			}
+			if(mask == 0) {
+				continue;
+			}
+			int child = h.child[node];
+			if(child < 0) {
+				BezierPatch leaf = h.leaves[-child-1];
+				for(int bits=mask;bits!=0;bits&=bits-1) {
+					hitLeaf(leaf, rays[from+Integer.numberOfTrailingZeros(bits)], evaluator, work, 0);
+				}
+				continue;
+			}
+			if(top+2 > nodes.length) {
+				nodes = Arrays.copyOf(nodes, 2*nodes.length);
+				masks = Arrays.copyOf(masks, 2*masks.length);
+			}
+			//パケットの先頭の半直線の向きで、手前の子を先に調べる
+			Ray first = rays[from+Integer.numberOfTrailingZeros(mask)];
+			boolean nearFirst = h.center(child, first) <= h.center(child+1, first);
+			nodes[top] = nearFirst? child+1 : child;
+			masks[top++] = mask;
+			nodes[top] = nearFirst? child : child+1;
+			masks[top++] = mask;
+		}
+	}
+
+	/**
+	 * <p>葉のパッチについて交点を求める。
+	 * <p>ニュートン法が発散した場合は、パッチを4分割して、境界箱が半直線と交わる子について
+	 * 同じことを繰り返す({@link #REFINE_DEPTH}回まで)。
+	 * 葉の平坦度の基準を満たさない深さの上限のパッチや、半直線が接線に近い場合への対処である。
+	 * 解がパッチの外にある場合は、分割しても子の中に解は無いので調べ直さない。
+	 * */
+	private void hitLeaf(BezierPatch patch, Ray ray, NURBSEvaluator evaluator, double[] D, int depth) {
+		if(newton(patch, ray, evaluator, D) != DIVERGED || depth >= REFINE_DEPTH) {
+			return;
+		}
+		for(BezierPatch half:patch.split(0)) {
+			for(BezierPatch quarter:half.split(1)) {
+				if(entry(quarter.giveBoundingBox(), ray, ray.best) >= 0) {
+					hitLeaf(quarter, ray, evaluator, D, depth+1);
+				}
+			}
+		}
+	}
+
+	/**
+	 * <p>パッチの範囲内でニュートン法により交点を求める。
+	 * <p>半直線をdに垂直な2平面n1・x=c1、n2・x=c2の交線として、
+	 * パッチの中央の変数値を初期値にF(u,v)=(n1・S(u,v)-c1, n2・S(u,v)-c2)=0を解く。
+	 * 反復はパッチの範囲に制限するので、他のパッチの解には収束しない。
+	 * t&gt;=0かつ既知の交点より手前であればrayに記録する。
+	 * @return {@link #CONVERGED}、{@link #OUTSIDE}、{@link #DIVERGED}のいずれか
+	 * */
+	private int newton(BezierPatch patch, Ray ray, NURBSEvaluator evaluator, double[] D) {
+		final double u0 = patch.giveLowerBound(0), u1 = patch.giveUpperBound(0);
+		final double v0 = patch.giveLowerBound(1), v1 = patch.giveUpperBound(1);
+		final double[] t = ray.t;
+		t[0] = (u0+u1)/2;
+		t[1] = (v0+v1)/2;
+		for(int it=0;it<MAX_ITERATION;it++) {
+			//D:[S,S_v,S_u,S_uv]の順
+			evaluator.derivatives(t, 1, D);
+			double f1 = -ray.c1, f2 = -ray.c2, a = 0, b = 0, c = 0, d = 0;
+			for(int k=0;k<3;k++) {
+				f1 += ray.n1[k]*D[k];
+				f2 += ray.n2[k]*D[k];
+				a += ray.n1[k]*D[6+k];
+				b += ray.n1[k]*D[3+k];
+				c += ray.n2[k]*D[6+k];
+				d += ray.n2[k]*D[3+k];
+			}
+			if(Math.abs(f1)+Math.abs(f2) <= ray.epsilon) {
+				double s = 0;
+				for(int k=0;k<3;k++) {
+					s += (D[k]-ray.origin[k])*ray.direction[k];
+				}
+				s /= ray.length2;
+				if(s >= 0 && s < ray.best) {
+					ray.record(s, t[0], t[1], D);
+				}
+				return CONVERGED;
+			}
+			double det = a*d-b*c;
+			if(det == 0 || Double.isNaN(det)) {
+				return DIVERGED;
+			}
+			double nu = Math.max(u0, Math.min(u1, t[0]-(d*f1-b*f2)/det));
+			double nv = Math.max(v0, Math.min(v1, t[1]-(a*f2-c*f1)/det));
+			if(nu == t[0] && nv == t[1]) {
+				//範囲の端に張り付いた。解はこのパッチの外にある
+				return OUTSIDE;
+			}
+			t[0] = nu;
+			t[1] = nv;
+		}
+		return DIVERGED;
+	}
+
+	/**
+	 * 半直線が境界箱に入るtを返す(スラブ法)。[0,limit)の範囲で交わらない場合は-1を返す。
+	 * */
+	private static double entry(double[] box, int offset, Ray ray, double limit) {
+		double tmin = 0, tmax = limit;
+		for(int k=0;k<3;k++) {
+			double min = box[offset+k], max = box[offset+3+k];
+			if(ray.direction[k] == 0) {
+				if(ray.origin[k] < min || max < ray.origin[k]) {
+					return -1;
+				}
+				continue;
+			}
+			double t0 = (min-ray.origin[k])*ray.inverse[k], t1 = (max-ray.origin[k])*ray.inverse[k];
+			if(t0 > t1) {
+				double temp = t0;
+				t0 = t1;
+				t1 = temp;
+			}
+			tmin = Math.max(tmin, t0);
+			tmax = Math.min(tmax, t1);
+			if(tmin > tmax) {
+				return -1;
+			}
+		}
+		return tmin;
+	}
+
+	private static double entry(BoundingBox box, Ray ray, double limit) {
+		return entry(new double[] {
+				box.giveMin(0), box.giveMin(1), box.giveMin(2),
+				box.giveMax(0), box.giveMax(1), box.giveMax(2)}, 0, ray, limit);
+	}
+
+	/**
+	 * 1本の半直線と、その探索の状態
+	 * */
+	private class Ray {
+		final double[] origin, direction, inverse;
+		final double[] n1, n2;
+		final double c1, c2, length2, epsilon;
+		final double[] t = new double[2];
+		double best = Double.POSITIVE_INFINITY, bestU, bestV;
+		double[] point;
+
+		Ray(double[] origin, double[] direction){
+			if(origin == null) {
+				throw new NullPointerException("引数originがnullです");
+			}else if(direction == null) {
+				throw new NullPointerException("引数directionがnullです");
+			}
+			if(origin.length != 3 || direction.length != 3) {
+				throw new IllegalArgumentException("始点または向きの長さが3でありません");
+			}
+			this.length2 = direction[0]*direction[0]+direction[1]*direction[1]+direction[2]*direction[2];
+			if(!(length2 > 0)) {
+				throw new IllegalArgumentException("向きが0ベクトルです");
+			}
+			this.origin = origin.clone();
+			this.direction = direction.clone();
+			this.inverse = new double[3];
+			for(int k=0;k<3;k++) {
+				inverse[k] = 1/direction[k];
+			}
+
+			//dの最大成分を避けてdに垂直なn1を選び、n2=d×n1とする
+			double ax = Math.abs(direction[0]), ay = Math.abs(direction[1]), az = Math.abs(direction[2]);
+			double[] n = (ax > ay && ax > az)? new double[] {direction[1], -direction[0], 0} : new double[] {0, direction[2], -direction[1]};
+			normalize(n);
+			double[] m = {
+					direction[1]*n[2]-direction[2]*n[1],
+					direction[2]*n[0]-direction[0]*n[2],
+					direction[0]*n[1]-direction[1]*n[0]
+			};
+			normalize(m);
+			this.n1 = n;
+			this.n2 = m;
+			this.c1 = n[0]*origin[0]+n[1]*origin[1]+n[2]*origin[2];
+			this.c2 = m[0]*origin[0]+m[1]*origin[1]+m[2]*origin[2];
+
+			this.epsilon = giveHierarchy().epsilon;
+		}
+
+		void record(double s, double u, double v, double[] D) {
+			this.best = s;
+			this.bestU = u;
+			this.bestV = v;
+			this.point = new double[] {D[0], D[1], D[2]};
+		}
+
+		RayIntersectionResult result() {
+			return (point == null)? null : new RayIntersectionResult(bestU, bestV, best, point);
+		}
+	}
+
+	private static void normalize(double[] n) {
+		double norm = Math.sqrt(n[0]*n[0]+n[1]*n[1]+n[2]*n[2]);
+		for(int k=0;k<3;k++) {
+			n[k] /= norm;
+		}
+	}
+
+	/**
+	 * <p>境界ボリューム階層。
+	 * <p>節点kの境界箱はbox[6k..6k+5](最小値3成分、最大値3成分)です。
+	 * child[k]&gt;=0の場合は子がchild[k]とchild[k]+1、child[k]&lt;0の場合は葉leaves[-child[k]-1]です。
+	 * 葉の中心で最も長い軸について中央値で2分します。
+	 * */
+	private static class Hierarchy {
+		final BezierPatch[] leaves;
+		final double[] box;
+		final int[] child;
+		final double epsilon;
+		private int nodeNum = 1;
+
+		Hierarchy(BezierPatch[] roots, int maxDepth) {
+			List<BezierPatch> list = new ArrayList<>();
+			for(BezierPatch root:roots) {
+				subdivide(root, 0, maxDepth, list);
+			}
+			this.leaves = list.toArray(new BezierPatch[list.size()]);
+			final int n = leaves.length;
+			this.box = new double[6*(2*n-1)];
+			this.child = new int[2*n-1];
+
+			double[] center = new double[3*n];
+			int[] index = new int[n];
+			for(int i=0;i<n;i++) {
+				BoundingBox b = leaves[i].giveBoundingBox();
+				for(int k=0;k<3;k++) {
+					center[3*i+k] = (b.giveMin(k)+b.giveMax(k))/2;
+				}
+				index[i] = i;
+			}
+			build(0, index, 0, n, center);
+
+			double diagonal = 0;
+			for(int k=0;k<3;k++) {
+				diagonal += (box[3+k]-box[k])*(box[3+k]-box[k]);
+			}
+			this.epsilon = 1e-12*Math.max(Math.sqrt(diagonal), Double.MIN_NORMAL);
+		}
+
+		private static void subdivide(BezierPatch patch, int depth, int maxDepth, List<BezierPatch> list) {
+			if(depth >= maxDepth || patch.giveFlatness() <= FLATNESS*patch.giveBoundingBox().giveDiagonal()) {
+				list.add(patch);
+				return;
+			}
+			for(BezierPatch half:patch.split(0)) {
+				for(BezierPatch quarter:half.split(1)) {
+					subdivide(quarter, depth+1, maxDepth, list);
+				}
+			}
+		}
+
+		/**
+		 * index[from..to)の葉から節点nodeを作る。
+		 * */
+		private void build(int node, int[] index, int from, int to, double[] center) {
+			for(int k=0;k<3;k++) {
+				box[6*node+k] = Double.POSITIVE_INFINITY;
+				box[6*node+3+k] = Double.NEGATIVE_INFINITY;
+			}
+			for(int i=from;i<to;i++) {
+				BoundingBox b = leaves[index[i]].giveBoundingBox();
+				for(int k=0;k<3;k++) {
+					box[6*node+k] = Math.min(box[6*node+k], b.giveMin(k));
+					box[6*node+3+k] = Math.max(box[6*node+3+k], b.giveMax(k));
+				}
+			}
+			if(to-from == 1) {
+				child[node] = -index[from]-1;
+				return;
+			}
+
+			//中心の広がりが最も大きい軸で、中央値で分ける
+			int axis = 0;
+			double widest = -1;
+			for(int k=0;k<3;k++) {
+				double min = Double.POSITIVE_INFINITY, max = Double.NEGATIVE_INFINITY;
+				for(int i=from;i<to;i++) {
+					min = Math.min(min, center[3*index[i]+k]);
+					max = Math.max(max, center[3*index[i]+k]);
+				}
+				if(max-min > widest) {
+					widest = max-min;
+					axis = k;
+				}
+			}
+			int mid = (from+to)>>>1;
+			select(index, from, to-1, mid, center, axis);
+
+			int left = nodeNum;
+			nodeNum += 2;
+			child[node] = left;
+			build(left, index, from, mid, center);
+			build(left+1, index, mid, to, center);
+		}
+
+		/**
+		 * index[lo..hi]を、center[3*index[i]+axis]についてk番目の要素が正しい位置に来るように並べ替える(クイックセレクト)。
+		 * */
+		private static void select(int[] index, int lo, int hi, int k, double[] center, int axis) {
+			while(lo < hi) {
+				double pivot = center[3*index[(lo+hi)>>>1]+axis];
+				int i = lo, j = hi;
+				while(i <= j) {
+					while(center[3*index[i]+axis] < pivot) {
+						i++;
+					}
+					while(center[3*index[j]+axis] > pivot) {
+						j--;
+					}
+					if(i <= j) {
+						int temp = index[i];
+						index[i++] = index[j];
+						index[j--] = temp;
+					}
+				}
+				if(k <= j) {
+					hi = j;
+				}else if(k >= i) {
+					lo = i;
+				}else {
+					return;
+				}
+			}
+		}
+
+		/**
+		 * 半直線が節点の境界箱に入るtを返す。[0,limit)の範囲で交わらない場合は-1を返す。
+		 * */
+		double entry(int node, Ray ray, double limit) {
+			return NURBSSurfaceIntersector.entry(box, 6*node, ray, limit);
+		}
+
+		/**
+		 * 節点の境界箱の中心の、半直線の向きへの射影(手前の子を決めるのに用いる)
+		 * */
+		double center(int node, Ray ray) {
+			double s = 0;
+			for(int k=0;k<3;k++) {
+				s += (box[6*node+k]+box[6*node+3+k])*ray.direction[k];
+			}
+			return s;
+		}
+	}
+}
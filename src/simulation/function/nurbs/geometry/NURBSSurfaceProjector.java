@@ -0,0 +1,443 @@
+package simulation.function.nurbs.geometry;
+
+import java.util.PriorityQueue;
+import java.util.stream.IntStream;
+
+import simulation.function.nurbs.NURBSBasisFunction;
+import simulation.function.nurbs.NURBSEvaluator;
+import simulation.function.nurbs.NURBSFunction;
+
+/**
+ * <p>2変数のNURBS関数(曲面)への最近点射影、点の逆変換を行うクラス。
+ *
+ * <p>インスタンス化の際に曲面を要素毎のベジエパッチに分解します。各パッチは必要になった時に
+ * 各変数方向に2分割され、分割したパッチは四分木として保持されます。同じ曲面への問合せでは
+ * この分割結果を使い回します。
+ *
+ * <p>点xの射影では、xから境界箱までの距離(曲面までの距離の下限)の小さいパッチから順に調べます。
+ * 平坦でないパッチは分割して子のパッチを調べ、平坦なパッチでは、コントロールポイントのうち
+ * xに最も近いものの変数値を初期値としてニュートン法を行います。
+ * ニュートン法は|S(u,v)-x|^2を、曲面の2階までの偏導関数を用いて、変数値をパッチの範囲に制限して最小化します。
+ * 収束しなかった場合は、そのパッチも分割して調べます。
+ * 見つかった最も近い点までの距離より境界箱までの距離が大きいパッチは調べません。
+ *
+ * <p>インスタンスはスレッドセーフです。複数の点の射影は並列に計算できます。
+ *
+ * @version 2026/10/17 07:15
+ * */
+public class NURBSSurfaceProjector {
+	/**
+	 * ニュートン法の最大反復回数
+	 * @version 2026/10/17 07:15
+	 * */
+	private static final int MAX_ITERATION = 30;
+
+	/**
+	 * 既定の分割の深さの上限
+	 * @version 2026/10/17 07:15
+	 * */
+	public static final int DEFAULT_MAX_DEPTH = 8;
+
+	/**
+	 * パッチを平坦と見なす、平坦度の境界箱の対角線の長さに対する比
+	 * @version 2026/10/17 07:15
+	 * */
+	private static final double FLATNESS = 0.05;
+
+	private final NURBSFunction surface;
+	private final boolean isparallel;
+
+	/**
+	 * 要素毎のベジエパッチを根とする四分木
+	 * @version 2026/10/17 07:15
+	 * */
+	private final PatchNode[] roots;
+
+	/**
+	 * 分割の深さの上限
+	 * @version 2026/10/17 07:15
+	 * */
+	private final int maxDepth;
+
+	/**
+	 * 定義域
+	 * @version 2026/10/17 07:15
+	 * */
+	private final double[] lower, upper;
+
+	/**
+	 * 点が一致したと見なす距離
+	 * @version 2026/10/17 07:15
+	 * */
+	private final double epsilon;
+
+	/**
+	 * 並列計算を行い、分割の深さの上限を{@link #DEFAULT_MAX_DEPTH}とするインスタンスを生成します。
+	 * @param surface 2変数のNURBS関数
+	 * @throws NullPointerException surfaceがnullの場合
+	 * @throws IllegalArgumentException surfaceの変数の数が2でない場合
+	 * @version 2026/10/17 07:15
+	 * */
+	public NURBSSurfaceProjector(NURBSFunction surface) {
+		this(surface, true, DEFAULT_MAX_DEPTH);
+	}
+
+	/**
+	 * 分割の深さの上限を{@link #DEFAULT_MAX_DEPTH}とするインスタンスを生成します。
+	 * @param surface 2変数のNURBS関数
+	 * @param isparallel 複数の点の射影を並列に計算する場合はtrue
+	 * @throws NullPointerException surfaceがnullの場合
+	 * @throws IllegalArgumentException surfaceの変数の数が2でない場合
+	 * @version 2026/10/17 07:15
+	 * */
+	public NURBSSurfaceProjector(NURBSFunction surface, boolean isparallel) {
+		this(surface, isparallel, DEFAULT_MAX_DEPTH);
+	}
+
+	/**
+	 * インスタンスを生成します。
+	 * @param surface 2変数のNURBS関数
+	 * @param isparallel 複数の点の射影を並列に計算する場合はtrue
+	 * @param maxDepth 要素毎のパッチを各変数方向に2分割する回数の上限
+	 * @throws NullPointerException surfaceがnullの場合
+	 * @throws IllegalArgumentException surfaceの変数の数が2でない場合、またはmaxDepthが負数の場合
+	 * @version 2026/10/17 07:15
+	 * */
+	public NURBSSurfaceProjector(NURBSFunction surface, boolean isparallel, int maxDepth) {
+		if(surface == null) {
+			throw new NullPointerException("引数surfaceがnullです");
+		}
+		NURBSBasisFunction basis = surface.giveBasisFunction();
+		if(basis.parameterNum != 2) {
+			throw new IllegalArgumentException("変数の数が2でありません");
+		}else if(maxDepth < 0) {
+			throw new IllegalArgumentException("分割の深さの上限が負数です");
+		}
+		this.surface = surface;
+		this.isparallel = isparallel;
+		this.maxDepth = maxDepth;
+
+		BezierPatch[] patches = BezierPatch.decompose(surface);
+		this.roots = new PatchNode[patches.length];
+		for(int i=0;i<patches.length;i++) {
+			roots[i] = new PatchNode(patches[i], 0);
+		}
+
+		double[][] U = basis.giveKnotVector_Shallow();
+		int[] p = basis.giveDegreeArray(), n = basis.giveNumberArrayOfCtrl();
+		this.lower = new double[] {U[0][p[0]], U[1][p[1]]};
+		this.upper = new double[] {U[0][n[0]], U[1][n[1]]};
+
+		BoundingBox box = patches[0].giveBoundingBox();
+		for(BezierPatch patch:patches) {
+			box = BoundingBox.union(box, patch.giveBoundingBox());
+		}
+		this.epsilon = 1e-12*Math.max(box.giveDiagonal(), Double.MIN_NORMAL);
+	}
+
+	/**
+	 * 射影を行う曲面を返します。
+	 * @return 2変数のNURBS関数
+	 * @version 2026/10/17 07:15
+	 * */
+	public NURBSFunction giveSurface() {
+		return this.surface;
+	}
+
+	/**
+	 * 要素毎のベジエパッチの数を返します。
+	 * @return パッチの数
+	 * @version 2026/10/17 07:15
+	 * */
+	public int giveNumberOfPatches() {
+		return this.roots.length;
+	}
+
+	/**
+	 * これまでの問合せで分割され、保持されているパッチの数を返します。
+	 * @return 要素毎のパッチと、分割によって生成されたパッチの数の和
+	 * @version 2026/10/17 07:15
+	 * */
+	public int giveNumberOfCachedPatches() {
+		int count = 0;
+		for(PatchNode root:roots) {
+			count += root.count();
+		}
+		return count;
+	}
+
+	/**
+	 * 複数の点の射影を並列に計算するかを返します。
+	 * @return 並列に計算する場合はtrue
+	 * @version 2026/10/17 07:15
+	 * */
+	public boolean isParallel() {
+		return this.isparallel;
+	}
+
+	/**
+	 * 点を曲面に射影します。点が曲面上にある場合は、その点の変数値を求めることになります。
+	 * @param x 点。長さは曲面の次元と等しいこと。
+	 * @return 射影の結果
+	 * @throws NullPointerException xがnullの場合
+	 * @throws IllegalArgumentException xの長さが曲面の次元と異なる場合
+	 * @version 2026/10/17 07:15
+	 * */
+	public PointInversionResult project(double[] x) {
+		if(x == null) {
+			throw new NullPointerException("引数xがnullです");
+		}else if(x.length != surface.dimension) {
+			throw new IllegalArgumentException("点の次元が曲面の次元と異なります");
+		}
+		//評価器と作業用配列は射影毎に用意し、ニュートン法の反復の間で使い回す
+		Work w = new Work(surface);
+		NURBSEvaluator evaluator = w.evaluator;
+
+		//境界箱までの距離の小さいものから取り出すヒープ
+		PriorityQueue<Candidate> queue = w.queue;
+		queue.clear();
+		for(PatchNode root:roots) {
+			queue.add(new Candidate(root, root.patch.giveBoundingBox().distanceSquared(x)));
+		}
+
+		double best = Double.POSITIVE_INFINITY, bestU = lower[0], bestV = lower[1];
+		while(!queue.isEmpty()) {
+			Candidate candidate = queue.poll();
+			if(candidate.bound >= best) {
+				break;
+			}
+			PatchNode node = candidate.node;
+			boolean refine = node.depth < maxDepth;
+			if(!refine || node.flat) {
+				node.patch.giveNearestParameter(x, w.t);
+				double f = newton(x, w.t, node.patch, w);
+				if(f < best) {
+					best = f;
+					bestU = w.t[0];
+					bestV = w.t[1];
+					if(Math.sqrt(best) <= epsilon) {
+						break;
+					}
+				}
+				//平坦なパッチで収束した場合は、それをパッチ内の最近点とする
+				refine &= !w.converged;
+			}
+			if(refine) {
+				for(PatchNode child:node.children()) {
+					double bound = child.patch.giveBoundingBox().distanceSquared(x);
+					if(bound < best) {
+						queue.add(new Candidate(child, bound));
+					}
+				}
+			}
+		}
+		w.t[0] = bestU;
+		w.t[1] = bestV;
+		double[] point = evaluator.value(w.t, new double[surface.dimension]);
+		return new PointInversionResult(bestU, bestV, point, Math.sqrt(distanceSquared(point, x)));
+	}
+
+	/**
+	 * 複数の点を曲面に射影します。並列計算を行うインスタンスでは点毎に並列に計算します。
+	 * @param x 点の配列。各点の長さは曲面の次元と等しいこと。
+	 * @return 射影の結果の配列
+	 * @throws NullPointerException xまたはその要素がnullの場合
+	 * @throws IllegalArgumentException 点の長さが曲面の次元と異なる場合
+	 * @version 2026/10/17 07:15
+	 * */
+	public PointInversionResult[] project(double[][] x) {
+		if(x == null) {
+			throw new NullPointerException("引数xがnullです");
+		}
+		PointInversionResult[] results = new PointInversionResult[x.length];
+		IntStream indices = IntStream.range(0, x.length);
+		(isparallel? indices.parallel() : indices).forEach(i -> results[i] = project(x[i]));
+		return results;
+	}
+
+	/**
+	 * <p>変数値tから、|S(t)-x|^2を最小化するニュートン法を行う。tは結果に書き換えられる。
+	 * <p>ヘッセ行列が正定値でない場合はガウス・ニュートン法の近似に切り替え、
+	 * 目的関数が減少するまでステップを半分にする。
+	 * 変数値はパッチの範囲に制限し、境界で勾配が外側を向く変数は固定するので、パッチ内での極小点が求まる。
+	 * @return 最終的な距離の2乗
+	 * */
+	private double newton(double[] x, double[] t, BezierPatch patch, Work w) {
+		final int dim = surface.dimension;
+		final NURBSEvaluator evaluator = w.evaluator;
+		final double[] D = w.D, trial = w.trial, S = w.S;
+		double f = Double.POSITIVE_INFINITY;
+		w.converged = false;
+		for(int it=0;it<MAX_ITERATION;it++) {
+			//D:[S,S_v,S_vv,S_u,S_uv,S_uu(6)]の順
+			evaluator.derivatives(t, 2, D);
+			double gu = 0, gv = 0, uu = 0, uv = 0, vv = 0, ruu = 0, ruv = 0, rvv = 0;
+			f = 0;
+			for(int d=0;d<dim;d++) {
+				double r = D[d]-x[d];
+				double Su = D[3*dim+d], Sv = D[dim+d];
+				f += r*r;
+				gu += Su*r;
+				gv += Sv*r;
+				uu += Su*Su;
+				uv += Su*Sv;
+				vv += Sv*Sv;
+				ruu += D[6*dim+d]*r;
+				ruv += D[4*dim+d]*r;
+				rvv += D[2*dim+d]*r;
+			}
+			if(Math.sqrt(f) <= epsilon) {
+				w.converged = true;
+				break;
+			}
+
+			double Huu = uu+ruu, Huv = uv+ruv, Hvv = vv+rvv;
+			double det = Huu*Hvv-Huv*Huv;
+			if(!(Huu > 0 && det > 0)) {
+				//ガウス・ニュートン近似
+				Huu = uu*(1+1e-12);
+				Huv = uv;
+				Hvv = vv*(1+1e-12);
+				det = Huu*Hvv-Huv*Huv;
+			}
+
+			//パッチの境界にあり、勾配が外側を向く変数は固定する(射影ニュートン法)
+			boolean fixU = (t[0] <= patch.giveLowerBound(0) && gu > 0) || (t[0] >= patch.giveUpperBound(0) && gu < 0);
+			boolean fixV = (t[1] <= patch.giveLowerBound(1) && gv > 0) || (t[1] >= patch.giveUpperBound(1) && gv < 0);
+			double du, dv;
+			if(fixU && fixV) {
+				//パッチの角で極小
+				w.converged = true;
+				break;
+			}else if(fixU) {
+				du = 0;
+				dv = (Hvv > 0)? -gv/Hvv : -gv/Math.max(vv, Double.MIN_NORMAL);
+			}else if(fixV) {
+				du = (Huu > 0)? -gu/Huu : -gu/Math.max(uu, Double.MIN_NORMAL);
+				dv = 0;
+			}else if(det > 0) {
+				du = -(Hvv*gu-Huv*gv)/det;
+				dv = -(Huu*gv-Huv*gu)/det;
+			}else {
+				//退化した点では最急降下方向に進む
+				double scale = (uu+vv > 0)? 1/(uu+vv) : 0;
+				du = -gu*scale;
+				dv = -gv*scale;
+			}
+
+			double step = 1, fNew = f;
+			for(int h=0;h<10;h++) {
+				trial[0] = clamp(t[0]+step*du, patch.giveLowerBound(0), patch.giveUpperBound(0));
+				trial[1] = clamp(t[1]+step*dv, patch.giveLowerBound(1), patch.giveUpperBound(1));
+				fNew = distanceSquared(evaluator.value(trial, S), x);
+				if(fNew <= f) {
+					break;
+				}
+				step /= 2;
+			}
+			if(!(fNew <= f)) {
+				//減少しない場合は極小値の近傍で丸め誤差に達している
+				w.converged = true;
+				break;
+			}
+
+			//パラメータの変化による曲面上の移動量
+			double Du = trial[0]-t[0], Dv = trial[1]-t[1];
+			double move = Math.sqrt(Math.max(Du*Du*uu +2*Du*Dv*uv +Dv*Dv*vv, 0));
+			t[0] = trial[0];
+			t[1] = trial[1];
+			f = fNew;
+			if(move <= epsilon) {
+				w.converged = true;
+				break;
+			}
+		}
+		return f;
+	}
+
+	private static double clamp(double t, double lower, double upper) {
+		return (t < lower)? lower : (t > upper)? upper : t;
+	}
+
+	private static double distanceSquared(double[] a, double[] b) {
+		double s = 0;
+		for(int d=0;d<b.length;d++) {
+			s += (a[d]-b[d])*(a[d]-b[d]);
+		}
+		return s;
+	}
+
+	/**
+	 * 四分木の節点。子は初めて必要になった時に生成し、以降は保持する。
+	 * */
+	private class PatchNode {
+		final BezierPatch patch;
+		final int depth;
+		final boolean flat;
+		private PatchNode[] children;
+
+		PatchNode(BezierPatch patch, int depth) {
+			this.patch = patch;
+			this.depth = depth;
+			this.flat = patch.giveFlatness() <= FLATNESS*patch.giveBoundingBox().giveDiagonal();
+		}
+
+		synchronized PatchNode[] children() {
+			if(children == null) {
+				PatchNode[] nodes = new PatchNode[4];
+				BezierPatch[] halves = patch.split(0);
+				for(int h=0;h<2;h++) {
+					BezierPatch[] quarters = halves[h].split(1);
+					nodes[2*h] = new PatchNode(quarters[0], depth+1);
+					nodes[2*h+1] = new PatchNode(quarters[1], depth+1);
+				}
+				children = nodes;
+			}
+			return children;
+		}
+
+		synchronized int count() {
+			int count = 1;
+			if(children != null) {
+				for(PatchNode child:children) {
+					count += child.count();
+				}
+			}
+			return count;
+		}
+	}
+
+	/**
+	 * 探索の候補。境界箱までの距離の2乗の昇順に並べる。
+	 * */
+	private static class Candidate implements Comparable<Candidate> {
+		final PatchNode node;
+		final double bound;
+
+		Candidate(PatchNode node, double bound) {
+			this.node = node;
+			this.bound = bound;
+		}
+
+		@Override
+		public int compareTo(Candidate o) {
+			return Double.compare(bound, o.bound);
+		}
+	}
+
+	/**
+	 * 1回の射影で用いる評価器と作業用配列
+	 * */
+	private static class Work {
+		final NURBSEvaluator evaluator;
+		final double[] D, S, t = new double[2], trial = new double[2];
+		final PriorityQueue<Candidate> queue = new PriorityQueue<>();
+		boolean converged;
+
+		Work(NURBSFunction surface) {
+			this.evaluator = new NURBSEvaluator(surface);
+			this.D = new double[9*surface.dimension];
+			this.S = new double[surface.dimension];
+		}
+	}
+}
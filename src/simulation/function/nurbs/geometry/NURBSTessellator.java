@@ -0,0 +1,339 @@
+package simulation.function.nurbs.geometry;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+
+import simulation.function.nurbs.NURBSEvaluator;
+import simulation.function.nurbs.NURBSFunction;
+
+/**
+ * <p>3次元の2変数NURBS関数(曲面)を、曲率に応じた細かさの3角形メッシュに分割するクラス。
+ *
+ * <p>曲面を要素毎のベジエパッチに分解し、各パッチを次の何れかを満たす間、変数値の中点で2分割します。
+ * <ul>
+ * 		<li>何れかの変数方向のコントロールポイントの列が、その両端を結ぶ直線から弦の許容誤差より離れている
+ * 		<li>角のコントロールポイントのねじれが弦の許容誤差を超える
+ * 		<li>隣り合う角の法線のなす角が角度の許容誤差を超える
+ * </ul>
+ * 分割する方向は、変数毎の直線からの距離と法線の角度の、許容誤差に対する比が大きい方です。
+ * 一方向にだけ曲がっている部分では、その方向にだけ細かくなります。
+ *
+ * <p>分割の結果は変数値の平面を隙間なく覆う長方形(葉)の集まりで、隣り合う葉の細かさは異なり得ます。
+ * 頂点は変数値の等しいもの同士で共有し、各葉はその辺上にある隣の葉の頂点も含めた多角形として
+ * 3角形に分割するので、T字の接続部でもメッシュに割れ目が生じません。
+ * 頂点毎に1回だけ関数値と偏導関数を評価するので、評価の回数は頂点の数に等しくなります。
+ *
+ * @version 2026/10/17 07:30
+ * */
+public class NURBSTessellator {
+	/**
+	 * 既定の角度の許容誤差(ラジアン)
+	 * @version 2026/10/17 07:30
+	 * */
+	public static final double DEFAULT_ANGLE_TOLERANCE = Math.toRadians(15);
+
+	/**
+	 * 既定の要素毎の分割回数の上限
+	 * @version 2026/10/17 07:30
+	 * */
+	public static final int DEFAULT_MAX_DEPTH = 16;
+
+	private final NURBSFunction surface;
+	private final double chordTolerance, angleTolerance;
+	private final int maxDepth;
+
+	/**
+	 * 角度の許容誤差を{@link #DEFAULT_ANGLE_TOLERANCE}、分割回数の上限を{@link #DEFAULT_MAX_DEPTH}とする
+	 * インスタンスを生成します。
+	 * @param surface 3次元の2変数NURBS関数
+	 * @param chordTolerance 弦の許容誤差。曲面と3角形の距離の目安です。
+	 * @throws NullPointerException surfaceがnullの場合
+	 * @throws IllegalArgumentException surfaceの変数の数が2でない、次元が3でない、または許容誤差が正でない場合
+	 * @version 2026/10/17 07:30
+	 * */
+	public NURBSTessellator(NURBSFunction surface, double chordTolerance) {
+		this(surface, chordTolerance, DEFAULT_ANGLE_TOLERANCE, DEFAULT_MAX_DEPTH);
+	}
+
+	/**
+	 * インスタンスを生成します。
+	 * @param surface 3次元の2変数NURBS関数
+	 * @param chordTolerance 弦の許容誤差。曲面と3角形の距離の目安です。
+	 * @param angleTolerance 角度の許容誤差(ラジアン)。隣り合う頂点の法線のなす角の上限の目安です。
+	 * @param maxDepth 要素毎のパッチを2分割する回数の上限
+	 * @throws NullPointerException surfaceがnullの場合
+	 * @throws IllegalArgumentException
+	 * <ul>
+	 * 		<li>surfaceの変数の数が2でない、または次元が3でない場合
+	 * 		<li>chordToleranceまたはangleToleranceが正でない場合
+	 * 		<li>maxDepthが負数の場合
+	 * </ul>
+	 * @version 2026/10/17 07:30
+	 * */
+	public NURBSTessellator(NURBSFunction surface, double chordTolerance, double angleTolerance, int maxDepth) {
+		if(surface == null) {
+			throw new NullPointerException("引数surfaceがnullです");
+		}
+		if(surface.giveBasisFunction().parameterNum != 2 || surface.dimension != 3) {
+			throw new IllegalArgumentException("3次元の2変数NURBS関数でありません");
+		}else if(!(chordTolerance > 0) || !(angleTolerance > 0)) {
+			throw new IllegalArgumentException("許容誤差が正でありません");
+		}else if(maxDepth < 0) {
+			throw new IllegalArgumentException("分割回数の上限が負数です");
+		}
+		this.surface = surface;
+		this.chordTolerance = chordTolerance;
+		this.angleTolerance = angleTolerance;
+		this.maxDepth = maxDepth;
+	}
+
+	/**
+	 * 曲面を3角形メッシュに分割します。
+	 * @return 3角形メッシュ
+	 * @version 2026/10/17 07:30
+	 * */
+	public TriangleMesh tessellate() {
+		Builder builder = new Builder();
+		for(BezierPatch patch:BezierPatch.decompose(surface)) {
+			builder.subdivide(patch, 0);
+		}
+		return builder.triangulate();
+	}
+
+	/**
+	 * <p>変数l方向の平坦度を求める。
+	 * <p>変数l方向のコントロールポイントの各列について、両端を結ぶ直線とコントロールポイントとの
+	 * 距離の最大値である。凸包性から、各列の表す曲線はその直線からこの距離以内にある。
+	 * 変数値の対応を問わない幾何的な量なので、平面上の不均一なパラメータ付けは分割の理由にならない。
+	 * */
+	private static double directionalFlatness(BezierPatch patch, int l) {
+		final int S = patch.dimension+1;
+		final int p0 = patch.giveDegree(0), p1 = patch.giveDegree(1);
+		final int P = (l == 0)? p0 : p1, rows = (l == 0)? p1+1 : p0+1;
+		final double[] Pw = patch.giveHomogeneousCtrlArray_Shallow();
+		double max = 0;
+		double[] origin = new double[3], chord = new double[3];
+		for(int r=0;r<rows && P>1;r++) {
+			int first = (l == 0)? r : r*(p1+1), last = (l == 0)? p0*(p1+1)+r : r*(p1+1)+p1;
+			double length2 = 0;
+			for(int d=0;d<3;d++) {
+				origin[d] = Pw[first*S+1+d]/Pw[first*S];
+				chord[d] = Pw[last*S+1+d]/Pw[last*S] -origin[d];
+				length2 += chord[d]*chord[d];
+			}
+			for(int a=1;a<P;a++) {
+				int i = (l == 0)? a*(p1+1)+r : r*(p1+1)+a;
+				double[] x = new double[3];
+				double dot = 0;
+				for(int d=0;d<3;d++) {
+					x[d] = Pw[i*S+1+d]/Pw[i*S] -origin[d];
+					dot += x[d]*chord[d];
+				}
+				double s = (length2 == 0)? 0 : Math.max(0, Math.min(1, dot/length2)), dist = 0;
+				for(int d=0;d<3;d++) {
+					double diff = x[d] -s*chord[d];
+					dist += diff*diff;
+				}
+				max = Math.max(max, dist);
+			}
+		}
+		return Math.sqrt(max);
+	}
+
+	/**
+	 * 角のコントロールポイントのねじれ|P00-P10-P01+P11|/4を求める。
+	 * 双線形の面を2つの3角形で近似した際の、対角線の中点同士の距離である。
+	 * */
+	private static double twist(BezierPatch patch) {
+		final int S = patch.dimension+1;
+		final int p0 = patch.giveDegree(0), p1 = patch.giveDegree(1);
+		final double[] Pw = patch.giveHomogeneousCtrlArray_Shallow();
+		final int c00 = 0, c01 = p1, c10 = p0*(p1+1), c11 = c10+p1;
+		double s = 0;
+		for(int d=1;d<=3;d++) {
+			double diff = Pw[c00*S+d]/Pw[c00*S] -Pw[c10*S+d]/Pw[c10*S] -Pw[c01*S+d]/Pw[c01*S] +Pw[c11*S+d]/Pw[c11*S];
+			s += diff*diff;
+		}
+		return Math.sqrt(s)/4;
+	}
+
+	/**
+	 * 1回の分割の作業領域。頂点は、それを通る変数値一定の線毎に、もう一方の変数値で整列して持つ。
+	 * */
+	private class Builder {
+		final NURBSEvaluator evaluator = new NURBSEvaluator(surface);
+		final double[] D = new double[12], t = new double[2];
+
+		/*uLines.get(u).get(v)、vLines.get(v).get(u)が頂点(u,v)のインデックス*/
+		final Map<Double, TreeMap<Double, Integer>> uLines = new HashMap<>(), vLines = new HashMap<>();
+		final List<double[]> leaves = new ArrayList<>();
+
+		float[] vertex = new float[3*64], normal = new float[3*64];
+		double[] parameter = new double[2*64];
+		int vertexNum = 0;
+		int[] index = new int[3*64];
+		int indexNum = 0;
+
+		void subdivide(BezierPatch patch, int depth) {
+			final double u0 = patch.giveLowerBound(0), u1 = patch.giveUpperBound(0);
+			final double v0 = patch.giveLowerBound(1), v1 = patch.giveUpperBound(1);
+			int i00 = vertex(u0, v0), i10 = vertex(u1, v0), i01 = vertex(u0, v1), i11 = vertex(u1, v1);
+			if(depth < maxDepth) {
+				double needU = Math.max(directionalFlatness(patch, 0)/chordTolerance,
+						Math.max(angle(i00, i10), angle(i01, i11))/angleTolerance);
+				double needV = Math.max(directionalFlatness(patch, 1)/chordTolerance,
+						Math.max(angle(i00, i01), angle(i10, i11))/angleTolerance);
+				double needTwist = twist(patch)/chordTolerance;
+				if(Math.max(needTwist, Math.max(needU, needV)) > 1) {
+					//ねじれだけが理由の場合は、3次元で長い方の辺を分ける
+					int l = (needU > 1 || needV > 1)? ((needU >= needV)? 0 : 1)
+							: ((distance2(i00, i10)+distance2(i01, i11) >= distance2(i00, i01)+distance2(i10, i11))? 0 : 1);
+					for(BezierPatch half:patch.split(l)) {
+						subdivide(half, depth+1);
+					}
+					return;
+				}
+			}
+			leaves.add(new double[] {u0, u1, v0, v1});
+		}
+
+		/**
+		 * 頂点(u,v)のインデックスを返す。無ければ評価して追加する。
+		 * */
+		int vertex(double u, double v) {
+			TreeMap<Double, Integer> line = vLines.computeIfAbsent(v, key -> new TreeMap<>());
+			Integer i = line.get(u);
+			if(i != null) {
+				return i;
+			}
+			int added = addVertex(u, v);
+			line.put(u, added);
+			uLines.computeIfAbsent(u, key -> new TreeMap<>()).put(v, added);
+			return added;
+		}
+
+		int addVertex(double u, double v) {
+			if(vertexNum*3 == vertex.length) {
+				vertex = Arrays.copyOf(vertex, 2*vertex.length);
+				normal = Arrays.copyOf(normal, 2*normal.length);
+				parameter = Arrays.copyOf(parameter, 2*parameter.length);
+			}
+			t[0] = u;
+			t[1] = v;
+			//D:[S,S_v,S_u,S_uv]の順
+			evaluator.derivatives(t, 1, D);
+			double nx = D[7]*D[5]-D[8]*D[4], ny = D[8]*D[3]-D[6]*D[5], nz = D[6]*D[4]-D[7]*D[3];
+			double norm = Math.sqrt(nx*nx+ny*ny+nz*nz);
+			if(norm == 0) {
+				norm = Double.POSITIVE_INFINITY;
+			}
+			int k = vertexNum*3;
+			vertex[k] = (float)D[0];
+			vertex[k+1] = (float)D[1];
+			vertex[k+2] = (float)D[2];
+			normal[k] = (float)(nx/norm);
+			normal[k+1] = (float)(ny/norm);
+			normal[k+2] = (float)(nz/norm);
+			parameter[2*vertexNum] = u;
+			parameter[2*vertexNum+1] = v;
+			return vertexNum++;
+		}
+
+		/**
+		 * 頂点i,jの法線のなす角。何れかの法線が定まらない場合は0とする。
+		 * */
+		double angle(int i, int j) {
+			double dot = 0, ni = 0, nj = 0;
+			for(int k=0;k<3;k++) {
+				dot += normal[3*i+k]*normal[3*j+k];
+				ni += normal[3*i+k]*normal[3*i+k];
+				nj += normal[3*j+k]*normal[3*j+k];
+			}
+			if(ni == 0 || nj == 0) {
+				return 0;
+			}
+			return Math.acos(Math.max(-1, Math.min(1, dot/Math.sqrt(ni*nj))));
+		}
+
+		TriangleMesh triangulate() {
+			List<Integer> loop = new ArrayList<>();
+			for(double[] leaf:leaves) {
+				final double u0 = leaf[0], u1 = leaf[1], v0 = leaf[2], v1 = leaf[3];
+				//辺上の頂点を、左下の角から反時計回りに集める。各辺は始点を含み終点を含まない
+				NavigableMap<Double, Integer> bottom = vLines.get(v0).subMap(u0, true, u1, false);
+				NavigableMap<Double, Integer> right = uLines.get(u1).subMap(v0, true, v1, false);
+				NavigableMap<Double, Integer> top = vLines.get(v1).subMap(u0, false, u1, true).descendingMap();
+				NavigableMap<Double, Integer> left = uLines.get(u0).subMap(v0, false, v1, true).descendingMap();
+				loop.clear();
+				loop.addAll(bottom.values());
+				loop.addAll(right.values());
+				loop.addAll(top.values());
+				loop.addAll(left.values());
+				final int n = loop.size();
+				final int c00 = 0, c10 = bottom.size(), c11 = c10+right.size(), c01 = c11+top.size();
+
+				if(n == 4) {
+					//短い方の対角線で分ける
+					if(distance2(loop.get(0), loop.get(2)) <= distance2(loop.get(1), loop.get(3))) {
+						addTriangle(loop.get(0), loop.get(1), loop.get(2));
+						addTriangle(loop.get(0), loop.get(2), loop.get(3));
+					}else {
+						addTriangle(loop.get(0), loop.get(1), loop.get(3));
+						addTriangle(loop.get(1), loop.get(2), loop.get(3));
+					}
+					continue;
+				}
+				//両隣の辺に途中の頂点が無い角からの扇形にすると、つぶれた3角形ができない
+				int corner = -1;
+				if(bottom.size() == 1 && left.size() == 1) {
+					corner = c00;
+				}else if(bottom.size() == 1 && right.size() == 1) {
+					corner = c10;
+				}else if(right.size() == 1 && top.size() == 1) {
+					corner = c11;
+				}else if(top.size() == 1 && left.size() == 1) {
+					corner = c01;
+				}
+				if(corner >= 0) {
+					for(int i=1;i<n-1;i++) {
+						addTriangle(loop.get(corner), loop.get((corner+i)%n), loop.get((corner+i+1)%n));
+					}
+				}else {
+					//中心の頂点からの扇形にする。中心はどの葉の辺上にも無いので、線毎の整列には加えない
+					int center = addVertex((u0+u1)/2, (v0+v1)/2);
+					for(int i=0;i<n;i++) {
+						addTriangle(center, loop.get(i), loop.get((i+1)%n));
+					}
+				}
+			}
+			return new TriangleMesh(
+					Arrays.copyOf(vertex, 3*vertexNum),
+					Arrays.copyOf(normal, 3*vertexNum),
+					Arrays.copyOf(parameter, 2*vertexNum),
+					Arrays.copyOf(index, indexNum));
+		}
+
+		double distance2(int i, int j) {
+			double s = 0;
+			for(int k=0;k<3;k++) {
+				double diff = vertex[3*i+k]-vertex[3*j+k];
+				s += diff*diff;
+			}
+			return s;
+		}
+
+		void addTriangle(int a, int b, int c) {
+			if(indexNum+3 > index.length) {
+				index = Arrays.copyOf(index, 2*index.length);
+			}
+			index[indexNum++] = a;
+			index[indexNum++] = b;
+			index[indexNum++] = c;
+		}
+	}
+}
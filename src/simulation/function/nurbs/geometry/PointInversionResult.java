@@ -0,0 +1,33 @@
+package simulation.function.nurbs.geometry;
+
+/**
+ * {@link NURBSSurfaceProjector}による最近点射影の結果。
+ *
+ * @version 2026/10/17 07:15
+ * */
+public class PointInversionResult {
+	/**
+	 * 最近点の変数値
+	 * @version 2026/10/17 07:15
+	 * */
+	public final double u, v;
+
+	/**
+	 * 曲面上の最近点
+	 * @version 2026/10/17 07:15
+	 * */
+	public final double[] point;
+
+	/**
+	 * 指定された点から最近点までの距離
+	 * @version 2026/10/17 07:15
+	 * */
+	public final double distance;
+
+	PointInversionResult(double u, double v, double[] point, double distance) {
+		this.u = u;
+		this.v = v;
+		this.point = point;
+		this.distance = distance;
+	}
+}
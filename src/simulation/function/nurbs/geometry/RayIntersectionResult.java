@@ -0,0 +1,33 @@
+package simulation.function.nurbs.geometry;
+
+/**
+ * {@link NURBSSurfaceIntersector}による半直線と曲面の交差判定の結果。
+ *
+ * @version 2026/10/17 07:24
+ * */
+public class RayIntersectionResult {
+	/**
+	 * 交点の変数値
+	 * @version 2026/10/17 07:24
+	 * */
+	public final double u, v;
+
+	/**
+	 * 交点の、半直線o+t*dの媒介変数t
+	 * @version 2026/10/17 07:24
+	 * */
+	public final double t;
+
+	/**
+	 * 交点
+	 * @version 2026/10/17 07:24
+	 * */
+	public final double[] point;
+
+	RayIntersectionResult(double u, double v, double t, double[] point) {
+		this.u = u;
+		this.v = v;
+		this.t = t;
+		this.point = point;
+	}
+}
@@ -0,0 +1,82 @@
+package simulation.function.nurbs.geometry;
+
+/**
+ * <p>インデックス付きの3角形メッシュ。
+ * <p>頂点iの座標はvertex[3i..3i+2]、単位法線はnormal[3i..3i+2]、
+ * 曲面上の変数値はparameter[2i..2i+1]です。
+ * 3角形jの頂点はindex[3j..3j+2]で、変数値の平面上で反時計回りに並びます
+ * (法線S_u×S_vの側から見て反時計回りになります)。
+ * 描画に用いるので、座標と法線はfloatで持ちます。
+ *
+ * @version 2026/10/17 07:30
+ * */
+public class TriangleMesh {
+	private final float[] vertex, normal;
+	private final double[] parameter;
+	private final int[] index;
+
+	TriangleMesh(float[] vertex, float[] normal, double[] parameter, int[] index) {
+		this.vertex = vertex;
+		this.normal = normal;
+		this.parameter = parameter;
+		this.index = index;
+	}
+
+	/**
+	 * 頂点の数を返します。
+	 * @return 頂点の数
+	 * @version 2026/10/17 07:30
+	 * */
+	public int giveNumberOfVertices() {
+		return this.vertex.length/3;
+	}
+
+	/**
+	 * 3角形の数を返します。
+	 * @return 3角形の数
+	 * @version 2026/10/17 07:30
+	 * */
+	public int giveNumberOfTriangles() {
+		return this.index.length/3;
+	}
+
+	/**
+	 * 頂点の座標の配列を返します。
+	 * 配列の参照を渡すので、要素を変更しないでください。
+	 * @return 頂点の座標の配列
+	 * @version 2026/10/17 07:30
+	 * */
+	public float[] giveVertexArray_Shallow() {
+		return this.vertex;
+	}
+
+	/**
+	 * 頂点の単位法線の配列を返します。曲面が退化していて法線が定まらない頂点では0ベクトルです。
+	 * 配列の参照を渡すので、要素を変更しないでください。
+	 * @return 頂点の法線の配列
+	 * @version 2026/10/17 07:30
+	 * */
+	public float[] giveNormalArray_Shallow() {
+		return this.normal;
+	}
+
+	/**
+	 * 頂点の変数値の配列を返します。
+	 * 配列の参照を渡すので、要素を変更しないでください。
+	 * @return 頂点の変数値の配列
+	 * @version 2026/10/17 07:30
+	 * */
+	public double[] giveParameterArray_Shallow() {
+		return this.parameter;
+	}
+
+	/**
+	 * 3角形の頂点のインデックスの配列を返します。
+	 * 配列の参照を渡すので、要素を変更しないでください。
+	 * @return インデックスの配列
+	 * @version 2026/10/17 07:30
+	 * */
+	public int[] giveIndexArray_Shallow() {
+		return this.index;
+	}
+}
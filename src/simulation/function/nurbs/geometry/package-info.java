@@ -0,0 +1,7 @@
+/**
+ * NURBS関数の幾何的な問合せを行うクラス群。
+ * 関数をベジエパッチに分解し、コントロールポイントの凸包性から得られる
+ * 軸平行境界箱(AABB)で探索範囲を絞り込みます。
+ * @version 2026/10/17 07:15
+ */
+package simulation.function.nurbs.geometry;
@@ -0,0 +1,100 @@
+package simulation.function.nurbs.hierarchical;
+
+import java.util.Arrays;
+
+/**
+ * <p>{@link THBSplineBasis}のあるレベルの要素(各変数方向の空でないノット範囲の組)を表すクラス。
+ * <p>要素のインデックスは、各変数方向について定義域の左端から数えた空でないノット範囲の番号です。
+ * レベルlの要素eは、レベルl+1では各変数方向について2e、2e+1の要素に分割されます。
+ *
+ * <p>このオブジェクトはimmutableです。
+ * @version 2026/10/17 08:00
+ * */
+public final class THBElement {
+	/**
+	 * 要素のレベル。0が最も粗い。
+	 * @version 2026/10/17 08:00
+	 * */
+	public final int level;
+
+	/**
+	 * 各変数方向の要素のインデックス
+	 * @version 2026/10/17 08:00
+	 * */
+	private final int[] index;
+
+	/**
+	 * レベルと各変数方向のインデックスを指定して要素を生成します。
+	 * @param level 要素のレベル
+	 * @param index 各変数方向の要素のインデックス。配列は複製して保持します。
+	 * @throws NullPointerException indexがnullの場合
+	 * @throws IllegalArgumentException levelまたはindexの要素に負数が含まれる場合
+	 * @version 2026/10/17 08:00
+	 * */
+	public THBElement(int level, int[] index) {
+		if(index == null) {
+			throw new NullPointerException("引数indexがnullです");
+		}
+		if(level < 0) {
+			throw new IllegalArgumentException("レベルが負数です");
+		}
+		for(int e:index) {
+			if(e < 0) {
+				throw new IllegalArgumentException("要素のインデックスに負数が含まれています");
+			}
+		}
+		this.level = level;
+		this.index = index.clone();
+	}
+
+	/**
+	 * 各変数方向の要素のインデックスを返します。
+	 * 配列は複製を渡します。
+	 * @return 各変数方向のインデックス
+	 * @version 2026/10/17 08:00
+	 * */
+	public int[] giveIndex() {
+		return this.index.clone();
+	}
+
+	/**
+	 * 変数ivar方向の要素のインデックスを返します。
+	 * @param ivar 変数のインデックス
+	 * @return 変数ivar方向のインデックス
+	 * @version 2026/10/17 08:00
+	 * */
+	public int giveIndex(int ivar) {
+		return this.index[ivar];
+	}
+
+	/**
+	 * 変数の数を返します。
+	 * @return 変数の数
+	 * @version 2026/10/17 08:00
+	 * */
+	public int giveParameterNum() {
+		return this.index.length;
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		if(this == obj) {
+			return true;
+		}
+		if(!(obj instanceof THBElement)) {
+			return false;
+		}
+		THBElement other = (THBElement) obj;
+		return this.level == other.level && Arrays.equals(this.index, other.index);
+	}
+
+	@Override
+	public int hashCode() {
+		return 31*Arrays.hashCode(this.index)+this.level;
+	}
+
+	@Override
+	public String toString() {
+		return "THBElement[level=" + this.level + ", index=" + Arrays.toString(this.index) + "]";
+	}
+}
@@ -0,0 +1,873 @@
+package simulation.function.nurbs.hierarchical;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import simulation.function.nurbs.NURBSBasisFunction;
+import simulation.function.nurbs.NURBSEvaluator;
+import simulation.function.nurbs.NURBSFunction;
+import simulation.function.nurbs.NURBSFunctionGroup;
+import simulation.function.nurbs.refiner.NURBSRefiner;
+import simulation.solver.CSRMatrix;
+
+/**
+ * <p>切断階層Bスプライン(THB-spline)基底関数の組を表すクラス。
+ *
+ * <p>{@link NURBSRefiner#refineKnot(NURBSFunctionGroup, double[][])}によるノット挿入は
+ * ノット範囲の行(列)全体を分割するため、一部の領域だけを細かくしたい場合でも
+ * 自由度が各変数方向の分割数の積で増えてしまいます。このクラスは、最も粗い基底関数組から
+ * 全ての要素を2等分するノット挿入を繰り返してレベル0,1,...の基底関数組を作り、
+ * 各レベルの領域Ω^0⊇Ω^1⊇...を指定した要素だけに制限することで、
+ * 精細化した要素の周りだけ自由度を増やします。
+ *
+ * <p>Ω^0は定義域全体で、Ω^{l+1}はレベルlで精細化された要素の和です。
+ * レベルlの基底関数は、その台がΩ^lに含まれ、Ω^{l+1}に含まれない場合に有効です。
+ * 有効な関数は、細かいレベルの基底関数で展開したときに台がΩ^{l+1}に含まれる関数の係数を
+ * 0にする切断をレベル毎に繰り返したものとします。これにより基底関数組は1の分割を満たし、
+ * レベル0の関数を厳密に表すことができます({@link THBSplineFunction#valueOf(THBSplineBasis, NURBSFunction)})。
+ *
+ * <p>各要素では、有効な関数はその要素のレベルのBスプライン基底関数(高々(p{0}+1)*...*(p{m-1}+1)個)
+ * の線形結合で表されます。この係数(抽出演算子)を有効な要素毎に生成時に計算して保持するので、
+ * 値の計算はその要素のレベルの{@link NURBSBasisFunction#nonzeroValues(double[], int, int[], double[])}
+ * と行列とベクトルの積だけで済みます。
+ *
+ * <p>最も粗い基底関数組は重みが全て等しいBスプライン基底関数組で、定義域の両端のノットが
+ * 次数+1個重なっていることを前提とします。また、精細化する要素の選び方に制限(許容性)は課しません。
+ *
+ * <p>このオブジェクトはimmutableであり、精細化は新たなインスタンスとして返します。
+ * @version 2026/10/17 08:00
+ * */
+public class THBSplineBasis {
+	/**
+	 * 各レベルの基底関数組。[0]が最も粗い。
+	 * @version 2026/10/17 08:00
+	 * */
+	final NURBSBasisFunction[] levels;
+
+	/**
+	 * レベルlからl+1へ挿入した各変数方向のノットX[l]
+	 * @version 2026/10/17 08:00
+	 * */
+	final double[][][] X;
+
+	/**
+	 * レベルlからl+1への各変数方向のノット挿入行列T[l][ivar]
+	 * @version 2026/10/17 08:00
+	 * */
+	private final CSRMatrix[][] T;
+
+	/**
+	 * 各レベルで精細化された要素のインデックスの集合。
+	 * 最も細かいレベルのものは常に空です。
+	 * @version 2026/10/17 08:00
+	 * */
+	private final BitSet[] refined;
+
+	/**
+	 * 変数の数
+	 * @version 2026/10/17 08:00
+	 * */
+	public final int parameterNum;
+
+	/**
+	 * 各変数の次数と、1つの要素で0にならない各レベルのBスプライン基底関数の数
+	 * @version 2026/10/17 08:00
+	 * */
+	private final int[] p;
+	private final int E;
+
+	/**
+	 * 各レベル、各変数方向の要素eに対応するノット範囲(knot[k]&lt;knot[k+1]となるk)
+	 * @version 2026/10/17 08:00
+	 * */
+	private final int[][][] spanOfElement;
+
+	/**
+	 * 各レベルの基底関数のインデックスの変換に使うPi_n配列
+	 * @version 2026/10/17 08:00
+	 * */
+	private final int[][] Pi_n;
+
+	/**
+	 * 各レベルの有効な関数のインデックス(昇順)と、全体のインデックスでの各レベルの先頭
+	 * @version 2026/10/17 08:00
+	 * */
+	private final int[][] active;
+	private final int[] offset;
+
+	/**
+	 * 有効な要素と、その抽出演算子
+	 * @version 2026/10/17 08:00
+	 * */
+	private final List<THBElement> activeElements;
+	private final Map<THBElement, Extraction> extraction;
+
+	/**
+	 * 要素上で0にならない有効な関数の全体のインデックスと、
+	 * その関数を要素のレベルのBスプライン基底関数で表した係数C[r*E+a]
+	 * */
+	private static final class Extraction {
+		final int[] function;
+		final double[] C;
+
+		Extraction(int[] function, double[] C) {
+			this.function = function;
+			this.C = C;
+		}
+	}
+
+	/**
+	 * 指定された基底関数組だけをレベル0とする、精細化されていない基底関数組を生成します。
+	 * このとき有効な関数はbasisの基底関数と一致します。
+	 * @param basis 最も粗いBスプライン基底関数組
+	 * @throws NullPointerException basisがnullの場合
+	 * @throws IllegalArgumentException basisの重みが全て等しくない(有理関数である)場合
+	 * @version 2026/10/17 08:00
+	 * */
+	public THBSplineBasis(NURBSBasisFunction basis) {
+		this(new NURBSBasisFunction[] {requireBSpline(basis)}, new double[0][][], new CSRMatrix[0][], new BitSet[] {new BitSet()});
+	}
+
+	private static NURBSBasisFunction requireBSpline(NURBSBasisFunction basis) {
+		if(basis == null) {
+			throw new NullPointerException("引数basisがnullです");
+		}
+		if(!basis.isBSpline) {
+			throw new IllegalArgumentException("指定された基底関数組がBスプライン基底関数組でありません");
+		}
+		return basis;
+	}
+
+	private THBSplineBasis(NURBSBasisFunction[] levels, double[][][] X, CSRMatrix[][] T, BitSet[] refined) {
+		this.levels = levels;
+		this.X = X;
+		this.T = T;
+		this.refined = refined;
+		this.parameterNum = levels[0].parameterNum;
+		this.p = levels[0].giveDegreeArray();
+		int E = 1;
+		for(int pi:this.p) {
+			E *= pi+1;
+		}
+		this.E = E;
+
+		final int L = levels.length, m = this.parameterNum;
+		this.spanOfElement = new int[L][m][];
+		this.Pi_n = new int[L][];
+		for(int l=0;l<L;l++) {
+			double[][] U = levels[l].giveKnotVector_Shallow();
+			int[] n = levels[l].giveNumberArrayOfCtrl();
+			for(int d=0;d<m;d++) {
+				int[] span = new int[n[d]];
+				int count = 0;
+				for(int k=this.p[d];k<n[d];k++) {
+					if(U[d][k] < U[d][k+1]) {
+						span[count++] = k;
+					}
+				}
+				this.spanOfElement[l][d] = Arrays.copyOf(span, count);
+			}
+			this.Pi_n[l] = levels[l].givePi_n();
+		}
+
+		//有効な要素をレベル毎に集める
+		int[][] elements = new int[L][];
+		int[] e = new int[m], q = new int[m];
+		for(int l=0;l<L;l++) {
+			int[] found;
+			int count = 0;
+			if(l == 0) {
+				found = new int[elementNum(0)];
+				for(int i=0;i<found.length;i++) {
+					if(!refined[0].get(i)) {
+						found[count++] = i;
+					}
+				}
+			}else {
+				found = new int[refined[l-1].cardinality()<<m];
+				for(int i=refined[l-1].nextSetBit(0);i>=0;i=refined[l-1].nextSetBit(i+1)) {
+					elementIndex(l-1, i, q);
+					for(int c=0;c<(1<<m);c++) {
+						for(int d=0;d<m;d++) {
+							e[d] = 2*q[d]+((c>>(m-1-d))&1);
+						}
+						int child = elementFlat(l, e);
+						if(!refined[l].get(child)) {
+							found[count++] = child;
+						}
+					}
+				}
+			}
+			elements[l] = Arrays.copyOf(found, count);
+			Arrays.sort(elements[l]);
+		}
+
+		//有効な関数は、同じレベルの有効な要素のいずれかで0にならない
+		this.active = new int[L][];
+		this.offset = new int[L+1];
+		int[] a = new int[m], i = new int[m];
+		for(int l=0;l<L;l++) {
+			Set<Integer> tested = new HashSet<>();
+			int[] found = new int[elements[l].length*E];
+			int count = 0;
+			for(int flat:elements[l]) {
+				elementIndex(l, flat, e);
+				for(int r=0;r<E;r++) {
+					localIndex(r, a);
+					for(int d=0;d<m;d++) {
+						i[d] = this.spanOfElement[l][d][e[d]]-this.p[d]+a[d];
+					}
+					int f = functionFlat(l, i);
+					if(tested.add(f) && supportIsIn(l, i) && !supportIsInNext(l, i)) {
+						found[count++] = f;
+					}
+				}
+			}
+			this.active[l] = Arrays.copyOf(found, count);
+			Arrays.sort(this.active[l]);
+			this.offset[l+1] = this.offset[l]+count;
+		}
+
+		List<THBElement> list = new ArrayList<>();
+		Map<THBElement, Extraction> map = new HashMap<>();
+		for(int l=0;l<L;l++) {
+			for(int flat:elements[l]) {
+				elementIndex(l, flat, e);
+				THBElement element = new THBElement(l, e);
+				list.add(element);
+				map.put(element, extract(l, e));
+			}
+		}
+		this.activeElements = Collections.unmodifiableList(list);
+		this.extraction = map;
+	}
+
+	/**
+	 * レベルkの要素eについて、レベル0の祖先から順に、有効な関数をその要素のレベルの
+	 * 局所的なBスプライン基底関数で表した係数を求める。
+	 * レベルを1つ進める毎に係数をノット挿入行列で写し、台がΩ^lに含まれる関数の係数を0にする(切断)。
+	 * */
+	private Extraction extract(int k, int[] e) {
+		final int m = this.parameterNum;
+		int[] span = new int[m], prev = new int[m], a = new int[m], i = new int[m];
+		List<Integer> functions = new ArrayList<>();
+		List<double[]> rows = new ArrayList<>();
+		double[] R = new double[E*E];
+		boolean[] truncated = new boolean[E];
+		for(int l=0;l<=k;l++) {
+			for(int d=0;d<m;d++) {
+				span[d] = this.spanOfElement[l][d][e[d]>>(k-l)];
+			}
+			if(l > 0) {
+				localInsertion(l-1, prev, span, R);
+				for(int r=0;r<E;r++) {
+					localIndex(r, a);
+					for(int d=0;d<m;d++) {
+						i[d] = span[d]-this.p[d]+a[d];
+					}
+					truncated[r] = supportIsIn(l, i);
+				}
+				for(int j=rows.size()-1;j>=0;j--) {
+					double[] old = rows.get(j), row = new double[E];
+					boolean zero = true;
+					for(int r=0;r<E;r++) {
+						if(truncated[r]) {
+							continue;
+						}
+						double s = 0;
+						for(int c=0;c<E;c++) {
+							s += R[r*E+c]*old[c];
+						}
+						row[r] = s;
+						zero &= (s == 0);
+					}
+					if(zero) {
+						//切断により要素上で0になった関数は除く
+						rows.remove(j);
+						functions.remove(j);
+					}else {
+						rows.set(j, row);
+					}
+				}
+			}
+			for(int r=0;r<E;r++) {
+				localIndex(r, a);
+				for(int d=0;d<m;d++) {
+					i[d] = span[d]-this.p[d]+a[d];
+				}
+				int pos = Arrays.binarySearch(this.active[l], functionFlat(l, i));
+				if(pos >= 0) {
+					double[] row = new double[E];
+					row[r] = 1;
+					rows.add(row);
+					functions.add(this.offset[l]+pos);
+				}
+			}
+			System.arraycopy(span, 0, prev, 0, m);
+		}
+
+		int[] function = new int[functions.size()];
+		double[] C = new double[function.length*E];
+		for(int r=0;r<function.length;r++) {
+			function[r] = functions.get(r);
+			System.arraycopy(rows.get(r), 0, C, r*E, E);
+		}
+		return new Extraction(function, C);
+	}
+
+	/**
+	 * レベルlのノット範囲coarseSpanの局所的な関数の係数を、レベルl+1のノット範囲fineSpanの
+	 * 局所的な関数の係数に写す行列R[r*E+c]を、各変数方向のノット挿入行列の部分行列のクロネッカー積として求める。
+	 * */
+	private void localInsertion(int l, int[] coarseSpan, int[] fineSpan, double[] R) {
+		final int m = this.parameterNum;
+		double[][][] M = new double[m][][];
+		for(int d=0;d<m;d++) {
+			M[d] = new double[this.p[d]+1][this.p[d]+1];
+			for(int a=0;a<=this.p[d];a++) {
+				for(int b=0;b<=this.p[d];b++) {
+					M[d][a][b] = this.T[l][d].give(fineSpan[d]-this.p[d]+a, coarseSpan[d]-this.p[d]+b);
+				}
+			}
+		}
+		int[] a = new int[m], b = new int[m];
+		for(int r=0;r<E;r++) {
+			localIndex(r, a);
+			for(int c=0;c<E;c++) {
+				localIndex(c, b);
+				double v = 1;
+				for(int d=0;d<m && v != 0;d++) {
+					v *= M[d][a[d]][b[d]];
+				}
+				R[r*E+c] = v;
+			}
+		}
+	}
+
+	/**
+	 * レベルlの基底関数iの台がΩ^lに含まれるかどうか。
+	 * */
+	private boolean supportIsIn(int l, int[] i) {
+		return l == 0 || allElementsIn(l, i, true);
+	}
+
+	/**
+	 * レベルlの基底関数iの台がΩ^{l+1}に含まれるかどうか。
+	 * */
+	private boolean supportIsInNext(int l, int[] i) {
+		return allElementsIn(l, i, false);
+	}
+
+	/**
+	 * レベルlの基底関数iの台に含まれる全てのレベルlの要素について、
+	 * parentがtrueの場合はその親がrefined[l-1]に、falseの場合はその要素がrefined[l]に含まれるかどうか。
+	 * 関数iの台に含まれる要素eは、対応するノット範囲kがi&lt;=k&lt;=i+pとなるものである。
+	 * */
+	private boolean allElementsIn(int l, int[] i, boolean parent) {
+		final int m = this.parameterNum;
+		int[] lo = new int[m], hi = new int[m], e = new int[m], q = new int[m];
+		for(int d=0;d<m;d++) {
+			lo[d] = lowerBound(this.spanOfElement[l][d], i[d]);
+			hi[d] = lowerBound(this.spanOfElement[l][d], i[d]+this.p[d]+1);
+			if(lo[d] >= hi[d]) {
+				return false;
+			}
+			e[d] = lo[d];
+		}
+		final int level = parent? l-1 : l;
+		BitSet set = this.refined[level];
+		while(true) {
+			for(int d=0;d<m;d++) {
+				q[d] = parent? e[d]>>1 : e[d];
+			}
+			if(!set.get(elementFlat(level, q))) {
+				return false;
+			}
+			int d = m-1;
+			while(d >= 0 && ++e[d] == hi[d]) {
+				e[d] = lo[d];
+				d--;
+			}
+			if(d < 0) {
+				return true;
+			}
+		}
+	}
+
+	/**
+	 * 昇順の配列aで、key以上となる最初のインデックスを返す。
+	 * */
+	private static int lowerBound(int[] a, int key) {
+		int low = 0, high = a.length;
+		while(low < high) {
+			int mid = (low+high) >>> 1;
+			if(a[mid] < key) {
+				low = mid+1;
+			}else {
+				high = mid;
+			}
+		}
+		return low;
+	}
+
+	private int elementNum(int l) {
+		int num = 1;
+		for(int[] span:this.spanOfElement[l]) {
+			num *= span.length;
+		}
+		return num;
+	}
+
+	/**
+	 * 要素のインデックスの組を、最後の変数が最も速く変わる順の通し番号に変換する。
+	 * */
+	private int elementFlat(int l, int[] e) {
+		int flat = 0;
+		for(int d=0;d<this.parameterNum;d++) {
+			flat = flat*this.spanOfElement[l][d].length+e[d];
+		}
+		return flat;
+	}
+
+	private void elementIndex(int l, int flat, int[] e) {
+		for(int d=this.parameterNum-1;d>=0;d--) {
+			int num = this.spanOfElement[l][d].length;
+			e[d] = flat%num;
+			flat /= num;
+		}
+	}
+
+	private int functionFlat(int l, int[] i) {
+		int flat = 0;
+		for(int d=0;d<this.parameterNum;d++) {
+			flat += i[d]*this.Pi_n[l][d+1];
+		}
+		return flat;
+	}
+
+	/**
+	 * 局所的なインデックスr=a{m-1}+a{m-2}*(p{m-1}+1)+...を、変数毎のインデックスaに分解する。
+	 * */
+	private void localIndex(int r, int[] a) {
+		for(int d=this.parameterNum-1;d>=0;d--) {
+			a[d] = r%(this.p[d]+1);
+			r /= this.p[d]+1;
+		}
+	}
+
+	/**
+	 * <p>指定された有効な要素を精細化した基底関数組を返します。
+	 * <p>指定された要素はそれぞれ次のレベルの2^m個(mは変数の数)の要素に分割され、
+	 * その上では次のレベルの基底関数が有効になります。
+	 * 最も細かいレベルの要素が含まれる場合は、そのレベルの全ての要素を2等分するノットを
+	 * {@link NURBSRefiner}で挿入して新たなレベルを作ります。
+	 * このインスタンスの状態は変化しません。
+	 *
+	 * @param marked 精細化する要素
+	 * @return 精細化した基底関数組
+	 * @throws NullPointerException markedまたはその要素がnullの場合
+	 * @throws IllegalArgumentException 有効な要素でないものが含まれる場合
+	 * @version 2026/10/17 08:00
+	 * */
+	public THBSplineBasis refine(Collection<THBElement> marked) {
+		if(marked == null) {
+			throw new NullPointerException("引数markedがnullです");
+		}
+		final int L = this.levels.length;
+		BitSet[] refined = new BitSet[L+1];
+		for(int l=0;l<L;l++) {
+			refined[l] = (BitSet) this.refined[l].clone();
+		}
+		refined[L] = new BitSet();
+		boolean deeper = false;
+		for(THBElement element:marked) {
+			if(element == null) {
+				throw new NullPointerException("精細化する要素にnullが含まれています");
+			}
+			if(!this.extraction.containsKey(element)) {
+				throw new IllegalArgumentException("有効な要素でないものが含まれています:" + element);
+			}
+			refined[element.level].set(elementFlat(element.level, element.giveIndex()));
+			deeper |= (element.level == L-1);
+		}
+		if(!deeper) {
+			return new THBSplineBasis(this.levels, this.X, this.T, Arrays.copyOf(refined, L));
+		}
+
+		NURBSBasisFunction coarse = this.levels[L-1];
+		double[][] x = bisectingKnots(coarse);
+		NURBSBasisFunction fine = new NURBSRefiner().refineKnot(new NURBSFunctionGroup(coarse, new NURBSFunction[0]), x).basis;
+		double[][] U = coarse.giveKnotVector_Shallow();
+		CSRMatrix[] t = new CSRMatrix[this.parameterNum];
+		for(int d=0;d<t.length;d++) {
+			t[d] = NURBSRefiner.createInsertionMatrix(U[d], this.p[d], x[d]);
+		}
+
+		NURBSBasisFunction[] levels = Arrays.copyOf(this.levels, L+1);
+		levels[L] = fine;
+		double[][][] X = Arrays.copyOf(this.X, L);
+		X[L-1] = x;
+		CSRMatrix[][] T = Arrays.copyOf(this.T, L);
+		T[L-1] = t;
+		return new THBSplineBasis(levels, X, T, refined);
+	}
+
+	/**
+	 * 各変数方向について、空でない全てのノット範囲の中点を返す。
+	 * */
+	private static double[][] bisectingKnots(NURBSBasisFunction basis) {
+		double[][] U = basis.giveKnotVector_Shallow();
+		int[] p = basis.giveDegreeArray(), n = basis.giveNumberArrayOfCtrl();
+		double[][] X = new double[basis.parameterNum][];
+		for(int l=0;l<X.length;l++) {
+			double[] mid = new double[n[l]];
+			int count = 0;
+			for(int i=p[l];i<n[l];i++) {
+				if(U[l][i] < U[l][i+1]) {
+					mid[count++] = (U[l][i]+U[l][i+1])/2;
+				}
+			}
+			X[l] = Arrays.copyOf(mid, count);
+		}
+		return X;
+	}
+
+	/**
+	 * 変数値tを含む有効な要素を返します。
+	 * 要素の境界上の点は、各変数方向について右側の要素(定義域の右端では最後の要素)に含めます。
+	 * @param t 変数値
+	 * @return tを含む有効な要素
+	 * @throws NullPointerException tがnullの場合
+	 * @throws IllegalArgumentException 変数の数が一致しない場合、または変数値が定義域外の場合
+	 * @version 2026/10/17 08:00
+	 * */
+	public THBElement locate(double[] t) {
+		if(t == null) {
+			throw new NullPointerException("引数tがnullです");
+		}
+		if(t.length != this.parameterNum) {
+			throw new IllegalArgumentException("変数の数が一致しません");
+		}
+		int[] e = new int[this.parameterNum];
+		for(int l=0;;l++) {
+			for(int d=0;d<e.length;d++) {
+				int k = this.levels[l].giveKnotSpanLocator(d).locate(t[d]);
+				e[d] = Arrays.binarySearch(this.spanOfElement[l][d], k);
+			}
+			if(!this.refined[l].get(elementFlat(l, e))) {
+				return new THBElement(l, e);
+			}
+		}
+	}
+
+	/**
+	 * <p>変数値tで0にならない全ての有効な関数の値と、各変数についてorder階までの
+	 * 全ての偏導関数の値を計算し、呼び出し側が用意した配列に格納します。
+	 * <p>結果の格納順は{@link Evaluator#nonzeroValues(double[], int, int[], double[])}と同じです。
+	 * 呼び出し毎に評価器を生成するので、多数の点で計算する場合は{@link #evaluator()}で得た評価器を使い回してください。
+	 *
+	 * @param t 変数値
+	 * @param order 各変数について計算する偏導関数の最大の階数。値だけが必要な場合は0。
+	 * @param indices 関数のインデックスを格納する配列
+	 * @param values 値を格納する配列
+	 * @return 0にならない関数の数c
+	 * @throws NullPointerException t、indicesまたはvaluesがnullの場合
+	 * @throws IllegalArgumentException
+	 * <ul>
+	 * 		<li>変数値が定義域外、または変数の数が一致しない場合
+	 * 		<li>orderが負数の場合
+	 * 		<li>indicesまたはvaluesの長さが足りない場合
+	 * </ul>
+	 * @version 2026/10/17 08:00
+	 * */
+	public int nonzeroValues(double[] t, int order, int[] indices, double[] values) {
+		return new Evaluator().nonzeroValues(t, order, indices, values);
+	}
+
+	/**
+	 * 有効な関数の値を繰り返し計算する評価器を生成します。
+	 * @return 評価器
+	 * @version 2026/10/17 08:00
+	 * */
+	public Evaluator evaluator() {
+		return new Evaluator();
+	}
+
+	/**
+	 * <p>有効な関数の値を計算する評価器。
+	 * <p>各レベルの{@link NURBSEvaluator}と作業用配列を、必要になったときに生成して使い回します。
+	 * 作業用配列を内部に持つため、スレッドセーフではありません。スレッド毎に用意してください。
+	 * @version 2026/10/17 08:00
+	 * */
+	public class Evaluator {
+		/**
+		 * 作業用配列
+		 * <ul>
+		 * 	<li>span:各変数のノット範囲
+		 * 	<li>evaluators:各レベルの基底関数組の評価器
+		 * 	<li>local:要素のレベルのBスプライン基底関数の値
+		 * </ul>
+		 * */
+		private final int[] span = new int[parameterNum];
+		private final NURBSEvaluator[] evaluators = new NURBSEvaluator[levels.length];
+		private double[] local = new double[0];
+
+		private Evaluator() {
+		}
+
+		/**
+		 * <p>変数値tで0にならない全ての有効な関数の値と、各変数についてorder階までの
+		 * 全ての偏導関数の値を計算し、呼び出し側が用意した配列に格納します。
+		 * <p>関数の全体のインデックスをindices[r]に、偏微分の階数の組に対応する
+		 * K(格納順は{@link NURBSBasisFunction#nonzeroValues(double[], int, int[], double[])}と同じ)
+		 * について、値をvalues[K*c+r]に格納します。ここでcは戻り値の関数の数です。
+		 * indicesとvaluesの長さが{@link THBSplineBasis#giveMaxNonzeroNumber()}(と(order+1)^mの積)以上であれば足ります。
+		 *
+		 * @param t 変数値
+		 * @param order 各変数について計算する偏導関数の最大の階数。値だけが必要な場合は0。
+		 * @param indices 関数のインデックスを格納する配列
+		 * @param values 値を格納する配列
+		 * @return 0にならない関数の数c
+		 * @throws NullPointerException t、indicesまたはvaluesがnullの場合
+		 * @throws IllegalArgumentException
+		 * <ul>
+		 * 		<li>変数値が定義域外、または変数の数が一致しない場合
+		 * 		<li>orderが負数の場合
+		 * 		<li>indicesまたはvaluesの長さが足りない場合
+		 * </ul>
+		 * @version 2026/10/17 08:00
+		 * */
+		public int nonzeroValues(double[] t, int order, int[] indices, double[] values) {
+			if(indices == null || values == null) {
+				throw new NullPointerException("引数indicesまたはvaluesがnullです");
+			}
+			if(order < 0) {
+				throw new IllegalArgumentException("偏導関数の階数が負数です");
+			}
+			THBElement element = locate(t);
+			Extraction ex = extraction.get(element);
+			final int c = ex.function.length;
+			int K = 1;
+			for(int d=0;d<parameterNum;d++) {
+				K *= order+1;
+			}
+			if(indices.length < c || values.length < K*c) {
+				throw new IllegalArgumentException("配列indicesまたはvaluesの長さが足りません");
+			}
+
+			if(this.local.length < K*E) {
+				this.local = new double[K*E];
+			}
+			double[] local = this.local;
+			NURBSEvaluator evaluator = this.evaluators[element.level];
+			if(evaluator == null) {
+				evaluator = this.evaluators[element.level] = new NURBSEvaluator(levels[element.level]);
+			}
+			evaluator.nonzeroValues(t, order, this.span, local);
+			System.arraycopy(ex.function, 0, indices, 0, c);
+			double[] C = ex.C;
+			for(int k=0;k<K;k++) {
+				for(int r=0;r<c;r++) {
+					double s = 0;
+					for(int a=0;a<E;a++) {
+						s += C[r*E+a]*local[k*E+a];
+					}
+					values[k*c+r] = s;
+				}
+			}
+			return c;
+		}
+	}
+
+	/**
+	 * <p>有効な関数indexの変数値tでの値を返します。
+	 * <p>同じ点で複数の関数の値が必要な場合は、{@link #nonzeroValues(double[], int, int[], double[])}で
+	 * まとめて計算してください。
+	 * @param index 関数の全体のインデックス
+	 * @param t 変数値
+	 * @return 関数値
+	 * @throws NullPointerException tがnullの場合
+	 * @throws IllegalArgumentException indexが範囲外の場合、変数値が定義域外の場合、
+	 * または変数の数が一致しない場合
+	 * @version 2026/10/17 08:00
+	 * */
+	public double value(int index, double[] t) {
+		checkFunctionIndex(index);
+		int[] indices = new int[giveMaxNonzeroNumber()];
+		double[] values = new double[indices.length];
+		int c = nonzeroValues(t, 0, indices, values);
+		for(int r=0;r<c;r++) {
+			if(indices[r] == index) {
+				return values[r];
+			}
+		}
+		return 0;
+	}
+
+	private void checkFunctionIndex(int index) {
+		if(index < 0 || index >= giveNumberOfFunctions()) {
+			throw new IllegalArgumentException("関数のインデックスが範囲外です");
+		}
+	}
+
+	/**
+	 * 1点で0にならない有効な関数の数の上限を返します。
+	 * 即ち、レベルの数と(p{0}+1)*...*(p{m-1}+1)の積です。
+	 * @return 0にならない関数の数の上限
+	 * @version 2026/10/17 08:00
+	 * */
+	public int giveMaxNonzeroNumber() {
+		return this.levels.length*E;
+	}
+
+	/**
+	 * 有効な関数の数を返します。
+	 * 関数の全体のインデックスは、レベルの昇順、同じレベルでは
+	 * そのレベルのBスプライン基底関数のインデックスの昇順に振られます。
+	 * @return 有効な関数の数
+	 * @version 2026/10/17 08:00
+	 * */
+	public int giveNumberOfFunctions() {
+		return this.offset[this.levels.length];
+	}
+
+	/**
+	 * 有効な関数indexのレベルを返します。
+	 * @param index 関数の全体のインデックス
+	 * @return 関数のレベル
+	 * @throws IllegalArgumentException indexが範囲外の場合
+	 * @version 2026/10/17 08:00
+	 * */
+	public int giveLevelOf(int index) {
+		checkFunctionIndex(index);
+		int l = 0;
+		while(this.offset[l+1] <= index) {
+			l++;
+		}
+		return l;
+	}
+
+	/**
+	 * 有効な関数indexに対応する、そのレベルの基底関数組での各変数のBスプライン基底関数のインデックスを返します。
+	 * @param index 関数の全体のインデックス
+	 * @return 各変数のBスプライン基底関数のインデックス
+	 * @throws IllegalArgumentException indexが範囲外の場合
+	 * @version 2026/10/17 08:00
+	 * */
+	public int[] giveIndexOf(int index) {
+		int l = giveLevelOf(index);
+		int flat = this.active[l][index-this.offset[l]];
+		int[] i = new int[this.parameterNum];
+		for(int d=0;d<i.length;d++) {
+			i[d] = flat/this.Pi_n[l][d+1];
+			flat %= this.Pi_n[l][d+1];
+		}
+		return i;
+	}
+
+	/**
+	 * レベルの数を返します。
+	 * @return レベルの数
+	 * @version 2026/10/17 08:00
+	 * */
+	public int giveNumberOfLevels() {
+		return this.levels.length;
+	}
+
+	/**
+	 * レベルlのBスプライン基底関数組を返します。
+	 * @param l レベル
+	 * @return レベルlの基底関数組
+	 * @version 2026/10/17 08:00
+	 * */
+	public NURBSBasisFunction giveLevelBasis(int l) {
+		return this.levels[l];
+	}
+
+	/**
+	 * 有効な要素の一覧を返します。要素はレベルの昇順に並びます。
+	 * 変更できないリストを渡します。
+	 * @return 有効な要素のリスト
+	 * @version 2026/10/17 08:00
+	 * */
+	public List<THBElement> giveActiveElements() {
+		return this.activeElements;
+	}
+
+	/**
+	 * 指定された要素が有効な要素かどうかを返します。
+	 * @param element 要素
+	 * @return 有効な要素の場合true
+	 * @version 2026/10/17 08:00
+	 * */
+	public boolean isActive(THBElement element) {
+		return this.extraction.containsKey(element);
+	}
+
+	/**
+	 * 有効な要素の変数範囲を返します。
+	 * 第1インデックスは変数を指定し、第2インデックスの1つ目の要素は最小値、2つ目の要素は最大値です。
+	 * @param element 有効な要素
+	 * @return 要素の変数範囲
+	 * @throws IllegalArgumentException 有効な要素でない場合
+	 * @version 2026/10/17 08:00
+	 * */
+	public double[][] giveElementDomain(THBElement element) {
+		requireActive(element);
+		double[][] U = this.levels[element.level].giveKnotVector_Shallow();
+		double[][] domain = new double[this.parameterNum][2];
+		for(int d=0;d<this.parameterNum;d++) {
+			int k = this.spanOfElement[element.level][d][element.giveIndex(d)];
+			domain[d][0] = U[d][k];
+			domain[d][1] = U[d][k+1];
+		}
+		return domain;
+	}
+
+	/**
+	 * 有効な要素の上で0にならない有効な関数の全体のインデックスを返します。
+	 * 並びは{@link #giveExtractionOperator(THBElement)}の行と対応します。
+	 * @param element 有効な要素
+	 * @return 関数のインデックス
+	 * @throws IllegalArgumentException 有効な要素でない場合
+	 * @version 2026/10/17 08:00
+	 * */
+	public int[] giveNonzeroFunctions(THBElement element) {
+		return requireActive(element).function.clone();
+	}
+
+	/**
+	 * <p>有効な要素の上で0にならない有効な関数を、要素のレベルのBスプライン基底関数で表した係数(抽出演算子)を返します。
+	 * <p>r行a列の要素は、{@link #giveNonzeroFunctions(THBElement)}のr番目の関数の、
+	 * 局所的なインデックスaの基底関数(格納順は{@link NURBSBasisFunction#nonzeroValues(double[], int, int[], double[])}と同じ)
+	 * の係数です。要素毎の積分をそのレベルの基底関数組で行い、この行列で変換する場合に使えます。
+	 * @param element 有効な要素
+	 * @return 抽出演算子
+	 * @throws IllegalArgumentException 有効な要素でない場合
+	 * @version 2026/10/17 08:00
+	 * */
+	public double[][] giveExtractionOperator(THBElement element) {
+		Extraction ex = requireActive(element);
+		double[][] C = new double[ex.function.length][];
+		for(int r=0;r<C.length;r++) {
+			C[r] = Arrays.copyOfRange(ex.C, r*E, (r+1)*E);
+		}
+		return C;
+	}
+
+	private Extraction requireActive(THBElement element) {
+		Extraction ex = this.extraction.get(element);
+		if(ex == null) {
+			throw new IllegalArgumentException("有効な要素でありません:" + element);
+		}
+		return ex;
+	}
+}
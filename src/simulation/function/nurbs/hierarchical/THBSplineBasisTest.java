@@ -0,0 +1,167 @@
+package simulation.function.nurbs.hierarchical;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+import simulation.function.nurbs.NURBSBasisFunction;
+import simulation.function.nurbs.NURBSFunction;
+import simulation.function.nurbs.NURBSTestFunctions;
+
+public class THBSplineBasisTest {
+	/*
+	 * 2変数、2次のBスプライン(定義域[0,4]x[0,4])から始め、
+	 * 中央の領域を2回、その内側をもう1回精細化した階層基底関数組
+	 * */
+	private static final NURBSFunction coarse = NURBSTestFunctions.createFunction(new int[] {2,2}, 3, 2, false, 25);
+
+	private static THBSplineBasis refinedBasis() {
+		THBSplineBasis basis = new THBSplineBasis(coarse.giveBasisFunction());
+		//レベル0の[1,3]x[1,3]
+		basis = basis.refine(elements(basis, 0, 1, 3));
+		//レベル1の[1.5,2.5]x[1.5,2.5]
+		basis = basis.refine(elements(basis, 1, 3, 5));
+		//レベル2の[1.75,2.25]x[1.75,2.25]
+		basis = basis.refine(elements(basis, 2, 7, 9));
+		return basis;
+	}
+
+	/*
+	 * レベルlの有効な要素のうち、全ての変数について要素のインデックスが[from,to)にあるもの
+	 * */
+	private static List<THBElement> elements(THBSplineBasis basis, int l, int from, int to) {
+		List<THBElement> list = new ArrayList<>();
+		for(THBElement element:basis.giveActiveElements()) {
+			boolean inside = element.level == l;
+			for(int d=0;d<element.giveParameterNum();d++) {
+				inside &= from <= element.giveIndex(d) && element.giveIndex(d) < to;
+			}
+			if(inside) {
+				list.add(element);
+			}
+		}
+		assertFalse(list.isEmpty());
+		return list;
+	}
+
+	private static double[][] samplePoints(int num, long seed) {
+		Random random = new Random(seed);
+		double[][] points = new double[num][];
+		for(int i=0;i<num;i++) {
+			points[i] = new double[] {random.nextDouble()*4, random.nextDouble()*4};
+		}
+		//要素の境界と定義域の端も含める
+		points[0] = new double[] {0,0};
+		points[1] = new double[] {4,4};
+		points[2] = new double[] {2,1.75};
+		points[3] = new double[] {1,3};
+		return points;
+	}
+
+	/*
+	 * 精細化を繰り返しても、有効な関数の値の和は1で、偏導関数の和は0
+	 * */
+	@Test
+	public void partitionOfUnity() {
+		THBSplineBasis basis = refinedBasis();
+		assertEquals(4, basis.giveNumberOfLevels());
+		int[] indices = new int[basis.giveMaxNonzeroNumber()];
+		double[] values = new double[indices.length*4];
+		for(double[] t:samplePoints(200, 1)) {
+			int c = basis.nonzeroValues(t, 1, indices, values);
+			for(int K=0;K<4;K++) {
+				double sum = 0;
+				for(int r=0;r<c;r++) {
+					sum += values[K*c+r];
+				}
+				assertEquals(Arrays.toString(t), K == 0? 1 : 0, sum, 1e-12);
+			}
+		}
+	}
+
+	/*
+	 * valueOfはレベル0の関数を精細化後も厳密に表す
+	 * */
+	@Test
+	public void valueOfReproducesCoarseFunction() {
+		THBSplineFunction func = THBSplineFunction.valueOf(refinedBasis(), coarse);
+		for(double[] t:samplePoints(200, 2)) {
+			assertArrayEquals(Arrays.toString(t), coarse.value(t), func.value(t), 1e-12);
+		}
+	}
+
+	/*
+	 * 1変数、2次、ノット{0,0,0,1,2,3,4,4,4}の場合、各レベルの有効な関数は
+	 * 台が精細化した領域に含まれ、更に細かいレベルの領域に含まれないものになる
+	 * */
+	@Test
+	public void numberOfActiveFunctionsPerLevel() {
+		NURBSBasisFunction basis0 = new NURBSBasisFunction(new double[][] {{0,0,0,1,2,3,4,4,4}}, new int[] {2}, new double[] {1,1,1,1,1,1});
+		THBSplineBasis basis = new THBSplineBasis(basis0);
+		assertArrayEquals(new int[] {6}, countPerLevel(basis));
+
+		//[1,3]を精細化すると、レベル1では台が[1,2.5],[1.5,3]の2つが加わり、レベル0の関数は全て残る
+		basis = basis.refine(Arrays.asList(new THBElement(0, new int[] {1}), new THBElement(0, new int[] {2})));
+		assertArrayEquals(new int[] {6,2}, countPerLevel(basis));
+
+		//[1.5,2.5]を精細化すると、レベル2では台が[1.5,2.25],[1.75,2.5]の2つ(インデックス8,9)が加わる
+		basis = basis.refine(Arrays.asList(new THBElement(1, new int[] {3}), new THBElement(1, new int[] {4})));
+		assertArrayEquals(new int[] {6,2,2}, countPerLevel(basis));
+		assertArrayEquals(new int[] {8}, basis.giveIndexOf(8));
+		assertArrayEquals(new int[] {9}, basis.giveIndexOf(9));
+
+		//[0,4]全体を精細化すると、レベル0の関数は全て無効になる
+		List<THBElement> all = new ArrayList<>();
+		for(int e=0;e<4;e++) {
+			all.add(new THBElement(0, new int[] {e}));
+		}
+		basis = new THBSplineBasis(basis0).refine(all);
+		assertArrayEquals(new int[] {0,10}, countPerLevel(basis));
+	}
+
+	private static int[] countPerLevel(THBSplineBasis basis) {
+		int[] count = new int[basis.giveNumberOfLevels()];
+		for(int i=0;i<basis.giveNumberOfFunctions();i++) {
+			count[basis.giveLevelOf(i)]++;
+		}
+		return count;
+	}
+
+	/*
+	 * 1階偏導関数を中心差分と比較する
+	 * 要素の内部の点だけを用いる
+	 * */
+	@Test
+	public void derivativesMatchFiniteDifferences() {
+		THBSplineBasis basis = refinedBasis();
+		THBSplineBasis.Evaluator evaluator = basis.evaluator();
+		final double h = 1e-6;
+		int[] indices = new int[basis.giveMaxNonzeroNumber()];
+		double[] values = new double[indices.length*4];
+		for(double[] t:samplePoints(100, 3)) {
+			if(nearKnot(t[0], h) || nearKnot(t[1], h)) {
+				continue;
+			}
+			int c = evaluator.nonzeroValues(t, 1, indices, values);
+			for(int r=0;r<c;r++) {
+				int i = indices[r];
+				double du = (basis.value(i, new double[] {t[0]+h, t[1]}) - basis.value(i, new double[] {t[0]-h, t[1]}))/(2*h);
+				double dv = (basis.value(i, new double[] {t[0], t[1]+h}) - basis.value(i, new double[] {t[0], t[1]-h}))/(2*h);
+				//K=k1+2*k0
+				assertEquals(du, values[2*c+r], 1e-6);
+				assertEquals(dv, values[1*c+r], 1e-6);
+			}
+		}
+	}
+
+	//最も細かいレベルのノット間隔は1/8
+	private static boolean nearKnot(double x, double h) {
+		double s = x*8;
+		return Math.abs(s-Math.rint(s)) < 8*h*10;
+	}
+}
@@ -0,0 +1,173 @@
+package simulation.function.nurbs.hierarchical;
+
+import java.util.Arrays;
+
+import simulation.function.nurbs.NURBSBasisFunction;
+import simulation.function.nurbs.NURBSFunction;
+import simulation.function.nurbs.NURBSFunctionGroup;
+import simulation.function.nurbs.refiner.NURBSRefiner;
+
+/**
+ * <p>{@link THBSplineBasis}を基底関数組とする関数。
+ * <p>有効な関数毎のコントロールポイントを保持し、関数値はsum{i} P{i}τ{i}(t)で計算します。
+ *
+ * <p>このオブジェクトはimmutableです。
+ * @version 2026/10/17 08:00
+ * */
+public class THBSplineFunction {
+	/**
+	 * この関数の基底関数組
+	 * @version 2026/10/17 08:00
+	 * */
+	private final THBSplineBasis basis;
+
+	/**
+	 * コントロールポイントを連続して並べたもの。
+	 * 関数iのd成分はctrl[i*dimension+d]です。
+	 * @version 2026/10/17 08:00
+	 * */
+	private final double[] ctrl;
+
+	/**
+	 * このインスタンスが扱う関数値の次元数
+	 * @version 2026/10/17 08:00
+	 * */
+	public final int dimension;
+
+	/**
+	 * 基底関数組とコントロールポイントを指定して関数を生成します。
+	 * ctrl[i]は全体のインデックスiの有効な関数のコントロールポイントです。
+	 * 配列は複製して保持します。
+	 * @param ctrl コントロールポイント
+	 * @param basis 基底関数組
+	 * @throws NullPointerException ctrl、その要素、またはbasisがnullの場合
+	 * @throws IllegalArgumentException
+	 * <ul>
+	 * 		<li>ポイントの数と有効な関数の数が一致しない場合
+	 * 		<li>コントロールポイントの次元が0の場合
+	 * 		<li>全てのコントロールポイントの次元が同一でない場合
+	 * </ul>
+	 * @version 2026/10/17 08:00
+	 * */
+	public THBSplineFunction(double[][] ctrl, THBSplineBasis basis) {
+		if(ctrl == null || basis == null) {
+			throw new NullPointerException("引数ctrlまたはbasisがnullです");
+		}
+		if(ctrl.length != basis.giveNumberOfFunctions()) {
+			throw new IllegalArgumentException("コントロールポイントの数と有効な関数の数が一致しません");
+		}
+		if(ctrl[0] == null) {
+			throw new NullPointerException("コントロールポイントにnullが含まれています");
+		}
+		this.dimension = ctrl[0].length;
+		if(this.dimension == 0) {
+			throw new IllegalArgumentException("コントロールポイントの次元が0です");
+		}
+		this.ctrl = new double[ctrl.length*this.dimension];
+		for(int i=0;i<ctrl.length;i++) {
+			if(ctrl[i] == null) {
+				throw new NullPointerException("コントロールポイントにnullが含まれています");
+			}
+			if(ctrl[i].length != this.dimension) {
+				throw new IllegalArgumentException("コントロールポイントの次元が同一でありません");
+			}
+			System.arraycopy(ctrl[i], 0, this.ctrl, i*this.dimension, this.dimension);
+		}
+		this.basis = basis;
+	}
+
+	/**
+	 * <p>レベル0の基底関数組の上の関数を、指定された階層基底関数組で厳密に表した関数を返します。
+	 * <p>各レベルlの有効な関数のコントロールポイントには、coarseを{@link NURBSRefiner}で
+	 * レベルlの基底関数組に精細化したときの、対応するコントロールポイントを用います。
+	 * 切断階層Bスプラインはこの係数でレベル0の関数をそのまま表すことができます。
+	 *
+	 * @param basis 階層基底関数組
+	 * @param coarse basisのレベル0と同じノットベクトルと次数をもつBスプライン関数
+	 * @return coarseと等しい関数
+	 * @throws NullPointerException basisまたはcoarseがnullの場合
+	 * @throws IllegalArgumentException coarseの基底関数組がbasisのレベル0と一致しない場合
+	 * @version 2026/10/17 08:00
+	 * */
+	public static THBSplineFunction valueOf(THBSplineBasis basis, NURBSFunction coarse) {
+		if(basis == null || coarse == null) {
+			throw new NullPointerException("引数basisまたはcoarseがnullです");
+		}
+		NURBSBasisFunction level0 = basis.giveLevelBasis(0), given = coarse.giveBasisFunction();
+		if(!given.isBSpline
+				|| !Arrays.deepEquals(level0.giveKnotVector_Shallow(), given.giveKnotVector_Shallow())
+				|| !Arrays.equals(level0.giveDegreeArray(), given.giveDegreeArray())) {
+			throw new IllegalArgumentException("関数の基底関数組が階層基底関数組のレベル0と一致しません");
+		}
+
+		final int dimension = coarse.dimension, S = dimension+1;
+		double[][] ctrl = new double[basis.giveNumberOfFunctions()][dimension];
+		NURBSRefiner refiner = new NURBSRefiner();
+		NURBSFunction func = coarse;
+		int i = 0;
+		for(int l=0;l<basis.giveNumberOfLevels();l++) {
+			if(l > 0) {
+				func = refiner.refineKnot(new NURBSFunctionGroup(func.giveBasisFunction(), new NURBSFunction[] {func}), basis.X[l-1]).funcs[0];
+			}
+			//重みは全て等しいので、同次座標を重みで割って戻す
+			double[] homogeneous = func.giveHomogeneousCtrlArray_Shallow();
+			int[] Pi_n = func.giveBasisFunction().givePi_n();
+			for(;i<ctrl.length && basis.giveLevelOf(i) == l;i++) {
+				int[] index = basis.giveIndexOf(i);
+				int flat = 0;
+				for(int d=0;d<index.length;d++) {
+					flat += index[d]*Pi_n[d+1];
+				}
+				for(int d=0;d<dimension;d++) {
+					ctrl[i][d] = homogeneous[flat*S+1+d]/homogeneous[flat*S];
+				}
+			}
+		}
+		return new THBSplineFunction(ctrl, basis);
+	}
+
+	/**
+	 * 基底関数組を返します。
+	 * @return 基底関数組
+	 * @version 2026/10/17 08:00
+	 * */
+	public THBSplineBasis giveBasisFunction() {
+		return this.basis;
+	}
+
+	/**
+	 * コントロールポイントの配列を返します。
+	 * 配列は複製を返します。
+	 * @return コントロールポイントの配列
+	 * @version 2026/10/17 08:00
+	 * */
+	public double[][] giveCtrlArray_Deep(){
+		double[][] ctrl = new double[this.ctrl.length/this.dimension][this.dimension];
+		for(int i=0;i<ctrl.length;i++) {
+			System.arraycopy(this.ctrl, i*this.dimension, ctrl[i], 0, this.dimension);
+		}
+		return ctrl;
+	}
+
+	/**
+	 * 変数値tでの関数値を返します。
+	 * @param t 変数値
+	 * @return 関数値
+	 * @throws NullPointerException tがnullの場合
+	 * @throws IllegalArgumentException 変数値が定義域外の場合、または変数の数が一致しない場合
+	 * @version 2026/10/17 08:00
+	 * */
+	public double[] value(double... t) {
+		int[] indices = new int[this.basis.giveMaxNonzeroNumber()];
+		double[] values = new double[indices.length];
+		int c = this.basis.nonzeroValues(t, 0, indices, values);
+		double[] result = new double[this.dimension];
+		for(int r=0;r<c;r++) {
+			int o = indices[r]*this.dimension;
+			for(int d=0;d<this.dimension;d++) {
+				result[d] += values[r]*this.ctrl[o+d];
+			}
+		}
+		return result;
+	}
+}
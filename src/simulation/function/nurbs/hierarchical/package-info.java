@@ -0,0 +1,8 @@
+/**
+ * NURBSの基底関数組を階層的に精細化し、指定した要素の周りだけ自由度を増やす
+ * 切断階層Bスプライン(THB-spline)を扱うクラス群。
+ * 各レベルの基底関数組は{@link simulation.function.nurbs.refiner.NURBSRefiner}による
+ * 全要素の2等分で作り、レベル間の係数の変換にはそのノット挿入行列を用います。
+ * @version 2026/10/17 08:00
+ */
+package simulation.function.nurbs.hierarchical;
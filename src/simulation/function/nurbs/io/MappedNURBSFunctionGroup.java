@@ -0,0 +1,248 @@
+package simulation.function.nurbs.io;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.DoubleBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.file.StandardOpenOption;
+
+import simulation.function.nurbs.NURBSBasisFunction;
+import simulation.function.nurbs.NURBSFunction;
+import simulation.function.nurbs.NURBSFunctionGroup;
+
+/**
+ * <p>{@link NURBSGroupWriter}で書き出したファイルをメモリにマップして読み込んだ、NURBS関数の組。
+ *
+ * <p>ノットベクトル、次数、次元はヘッダと共に読み込みますが、重みとコントロールポイントは
+ * マップした領域をそのまま{@link DoubleBuffer}として参照し、複製しません。
+ * 読み込みの時間はコントロールポイントの数によらず、実際に参照した部分だけがOSによって読み込まれます。
+ *
+ * <p>NURBSの計算は配列上で行うので、評価には{@link #createFunctionGroup()}で
+ * {@link NURBSFunctionGroup}を生成してください。このとき重みとコントロールポイントは配列に一度だけ複製され、
+ * 生成される基底関数組と関数はその配列をそのまま保持します。
+ *
+ * <p>重みと各関数のコントロールポイントはそれぞれ別の領域としてマップするので、
+ * ファイル全体は2GBを超えても構いませんが、各領域は2GB未満である必要があります。
+ * このインスタンスはimmutableです。
+ *
+ * @version 2026/10/17 07:54
+ * */
+public class MappedNURBSFunctionGroup {
+	private final double[][] knot;
+	private final int[] p;
+	private final int[] dimension;
+	private final DoubleBuffer weight;
+	private final DoubleBuffer[] ctrl;
+
+	private MappedNURBSFunctionGroup(double[][] knot, int[] p, int[] dimension, DoubleBuffer weight, DoubleBuffer[] ctrl) {
+		this.knot = knot;
+		this.p = p;
+		this.dimension = dimension;
+		this.weight = weight;
+		this.ctrl = ctrl;
+	}
+
+	/**
+	 * ファイルをメモリにマップして読み込みます。
+	 * ヘッダとノットベクトル以外は読み込まず、参照した時点でOSが読み込みます。
+	 * マップした領域はこのインスタンスが参照されなくなるまで有効です。
+	 *
+	 * @param file {@link NURBSGroupWriter}で書き出したファイル
+	 * @return 読み込んだ関数の組
+	 * @throws NullPointerException fileがnullの場合
+	 * @throws IOException 読み込みに失敗した場合、形式が正しくない場合、またはファイルの大きさが
+	 * ヘッダから求まる大きさに一致しない場合
+	 * @version 2026/10/17 07:37
+	 * */
+	public static MappedNURBSFunctionGroup open(File file) throws IOException {
+		if(file == null) {
+			throw new NullPointerException("引数fileがnullです");
+		}
+		try(FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)){
+			final long size = channel.size();
+			ByteBuffer head = read(channel, 0, 16);
+			if(head.getInt() != NURBSGroupWriter.MAGIC) {
+				throw new IOException("NURBSのファイルではありません:"+file);
+			}
+			int version = head.getInt();
+			if(version != NURBSGroupWriter.VERSION) {
+				throw new IOException("対応していない版です:"+version);
+			}
+			final int m = head.getInt(), F = head.getInt();
+			if(m <= 0 || F < 0) {
+				throw new IOException("変数の数または関数の数が不正です:m="+m+",F="+F);
+			}
+			final long headerSize = NURBSGroupWriter.headerSize(m, F);
+			if(headerSize > size) {
+				throw new IOException("ファイルの大きさが不足しています");
+			}
+			head = read(channel, 16, (int)headerSize-16);
+
+			int[] p = new int[m];
+			int[] knotLength = new int[m];
+			int[] dimension = new int[F];
+			for(int l=0;l<m;l++) {
+				p[l] = head.getInt();
+			}
+			long knotNum = 0, N = 1;
+			for(int l=0;l<m;l++) {
+				knotLength[l] = head.getInt();
+				if(p[l] < 0 || knotLength[l] < p[l]+2) {
+					throw new IOException("次数またはノットベクトルの長さが不正です:変数"+l);
+				}
+				knotNum += knotLength[l];
+				N = Math.multiplyExact(N, (long)(knotLength[l]-p[l]-1));
+			}
+			long expected = Math.addExact(headerSize, Math.multiplyExact(knotNum+N, 8L));
+			for(int f=0;f<F;f++) {
+				dimension[f] = head.getInt();
+				if(dimension[f] <= 0) {
+					throw new IOException("関数"+f+"の次元が不正です:"+dimension[f]);
+				}
+				expected = Math.addExact(expected, Math.multiplyExact(N*8, (long)(dimension[f]+1)));
+			}
+			if(expected != size) {
+				throw new IOException("ファイルの大きさがヘッダに一致しません:期待値"+expected+",実際"+size);
+			}
+
+			long position = headerSize;
+			double[][] knot = new double[m][];
+			ByteBuffer knotBuffer = read(channel, position, (int)(knotNum*8));
+			for(int l=0;l<m;l++) {
+				knot[l] = new double[knotLength[l]];
+				knotBuffer.asDoubleBuffer().get(knot[l]);
+				knotBuffer.position(knotBuffer.position()+knotLength[l]*8);
+			}
+			position += knotNum*8;
+
+			DoubleBuffer weight = map(channel, position, N*8);
+			position += N*8;
+			DoubleBuffer[] ctrl = new DoubleBuffer[F];
+			for(int f=0;f<F;f++) {
+				long bytes = N*8*(dimension[f]+1);
+				ctrl[f] = map(channel, position, bytes);
+				position += bytes;
+			}
+			return new MappedNURBSFunctionGroup(knot, p, dimension, weight, ctrl);
+		}catch(ArithmeticException e) {
+			throw new IOException("ヘッダから求まるファイルの大きさが大きすぎます", e);
+		}
+	}
+
+	private static ByteBuffer read(FileChannel channel, long position, int length) throws IOException {
+		ByteBuffer buffer = ByteBuffer.allocate(length).order(NURBSGroupWriter.ORDER);
+		while(buffer.hasRemaining()) {
+			if(channel.read(buffer, position+buffer.position()) < 0) {
+				throw new IOException("ファイルの大きさが不足しています");
+			}
+		}
+		buffer.flip();
+		return buffer;
+	}
+
+	private static DoubleBuffer map(FileChannel channel, long position, long bytes) throws IOException {
+		if(bytes > Integer.MAX_VALUE) {
+			throw new IOException("2GB以上の領域はマップできません:"+bytes+"バイト");
+		}
+		return channel.map(MapMode.READ_ONLY, position, bytes).order(NURBSGroupWriter.ORDER).asDoubleBuffer();
+	}
+
+	/**
+	 * 関数の数を返します。
+	 * @return 関数の数
+	 * @version 2026/10/17 07:37
+	 * */
+	public int giveNumberOfFunctions() {
+		return this.ctrl.length;
+	}
+
+	/**
+	 * 関数の次元を返します。
+	 * @param f 関数のインデックス
+	 * @return 次元
+	 * @throws IndexOutOfBoundsException fが範囲外の場合
+	 * @version 2026/10/17 07:37
+	 * */
+	public int giveDimension(int f) {
+		return this.dimension[f];
+	}
+
+	/**
+	 * 次数の配列を返します。配列は複製を渡します。
+	 * @return 次数の配列
+	 * @version 2026/10/17 07:37
+	 * */
+	public int[] giveDegreeArray() {
+		return this.p.clone();
+	}
+
+	/**
+	 * ノットベクトルを返します。配列は複製を渡します。
+	 * @return ノットベクトル
+	 * @version 2026/10/17 07:37
+	 * */
+	public double[][] giveKnotVector_Deep() {
+		double[][] copy = new double[this.knot.length][];
+		for(int l=0;l<copy.length;l++) {
+			copy[l] = this.knot[l].clone();
+		}
+		return copy;
+	}
+
+	/**
+	 * 重みを、マップした領域の読み込み専用のビューとして返します。複製はしません。
+	 * ビューの位置は0で、戻り値毎に独立です。
+	 * @return 重み
+	 * @version 2026/10/17 07:37
+	 * */
+	public DoubleBuffer giveWeightBuffer() {
+		return this.weight.asReadOnlyBuffer();
+	}
+
+	/**
+	 * 関数の重み付きコントロールポイントを、マップした領域の読み込み専用のビューとして返します。複製はしません。
+	 * 並びは{@link NURBSFunction#giveHomogeneousCtrlArray_Shallow()}と同じです。
+	 * ビューの位置は0で、戻り値毎に独立です。
+	 * @param f 関数のインデックス
+	 * @return 重み付きコントロールポイント
+	 * @throws IndexOutOfBoundsException fが範囲外の場合
+	 * @version 2026/10/17 07:37
+	 * */
+	public DoubleBuffer giveHomogeneousCtrlBuffer(int f) {
+		return this.ctrl[f].asReadOnlyBuffer();
+	}
+
+	/**
+	 * 基底関数組を生成します。重みは配列に一度だけ複製され、基底関数組はその配列をそのまま保持します。
+	 * ノットベクトルの配列はこのインスタンスと共有します。
+	 * @return 基底関数組
+	 * @throws IllegalArgumentException ノットベクトル、次数、重みが基底関数組として正しくない場合
+	 * @version 2026/10/17 07:54
+	 * */
+	public NURBSBasisFunction createBasisFunction() {
+		double[] w = new double[this.weight.capacity()];
+		this.giveWeightBuffer().get(w);
+		return NURBSBasisFunction.wrap(this.knot, this.p, w);
+	}
+
+	/**
+	 * 関数の組を生成します。重みとコントロールポイントは配列に一度だけ複製され、
+	 * 基底関数組と関数はその配列をそのまま保持します。
+	 * @return 関数の組
+	 * @throws IllegalArgumentException ノットベクトル、次数、重みが基底関数組として正しくない場合、
+	 * またはコントロールポイントに格納された重みが基底関数組の重みと一致しない場合
+	 * @version 2026/10/17 07:54
+	 * */
+	public NURBSFunctionGroup createFunctionGroup() {
+		NURBSBasisFunction basis = this.createBasisFunction();
+		NURBSFunction[] funcs = new NURBSFunction[this.ctrl.length];
+		for(int f=0;f<funcs.length;f++) {
+			double[] h = new double[this.ctrl[f].capacity()];
+			this.giveHomogeneousCtrlBuffer(f).get(h);
+			funcs[f] = NURBSFunction.wrap(h, this.dimension[f], basis);
+		}
+		return new NURBSFunctionGroup(basis, funcs);
+	}
+}
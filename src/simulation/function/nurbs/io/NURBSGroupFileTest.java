@@ -0,0 +1,135 @@
+package simulation.function.nurbs.io;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.DoubleBuffer;
+import java.util.Random;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import simulation.function.nurbs.NURBSFunctionGroup;
+import simulation.function.nurbs.NURBSTestFunctions;
+
+public class NURBSGroupFileTest {
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	static void assertBufferEquals(double[] expected, DoubleBuffer actual) {
+		assertEquals(expected.length, actual.remaining());
+		for(int i=0;i<expected.length;i++) {
+			assertEquals(Double.doubleToRawLongBits(expected[i]), Double.doubleToRawLongBits(actual.get(i)));
+		}
+	}
+
+	@Test
+	public void roundTrip() throws IOException {
+		NURBSFunctionGroup group = NURBSTestFunctions.createGroup(new int[] {2,3,1}, new int[] {3,2,4}, new int[] {3,1,2}, true, 1);
+		File file = folder.newFile();
+		//ヘッダとノットも複数回に分けて書き出されるよう、小さなバッファを使う
+		new NURBSGroupWriter(24).write(group, file);
+
+		MappedNURBSFunctionGroup mapped = MappedNURBSFunctionGroup.open(file);
+		assertEquals(3, mapped.giveNumberOfFunctions());
+		assertArrayEquals(group.basis.giveDegreeArray(), mapped.giveDegreeArray());
+		double[][] knot = group.basis.giveKnotVector_Shallow();
+		double[][] mappedKnot = mapped.giveKnotVector_Deep();
+		for(int l=0;l<knot.length;l++) {
+			assertArrayEquals(knot[l], mappedKnot[l], 0);
+		}
+		assertBufferEquals(group.basis.giveWeightArray_Shallow(), mapped.giveWeightBuffer());
+		for(int f=0;f<3;f++) {
+			assertEquals(group.funcs[f].dimension, mapped.giveDimension(f));
+			assertBufferEquals(group.funcs[f].giveHomogeneousCtrlArray_Shallow(), mapped.giveHomogeneousCtrlBuffer(f));
+		}
+
+		NURBSFunctionGroup loaded = mapped.createFunctionGroup();
+		Random random = new Random(2);
+		for(int i=0;i<100;i++) {
+			double[] t = {random.nextDouble()*4, random.nextDouble()*3, random.nextDouble()*5};
+			double[][] expected = group.value(t), actual = loaded.value(t);
+			for(int f=0;f<3;f++) {
+				assertArrayEquals(expected[f], actual[f], 0);
+			}
+		}
+	}
+
+	@Test
+	public void bufferIsReadOnlyView() throws IOException {
+		NURBSFunctionGroup group = NURBSTestFunctions.createGroup(new int[] {2}, new int[] {2}, new int[] {2}, false, 3);
+		File file = folder.newFile();
+		new NURBSGroupWriter().write(group, file);
+		MappedNURBSFunctionGroup mapped = MappedNURBSFunctionGroup.open(file);
+
+		DoubleBuffer ctrl = mapped.giveHomogeneousCtrlBuffer(0);
+		assertTrue(ctrl.isReadOnly());
+		assertTrue(ctrl.isDirect());
+		ctrl.position(3);
+		assertEquals(0, mapped.giveHomogeneousCtrlBuffer(0).position());
+	}
+
+	@Test
+	public void emptyGroup() throws IOException {
+		NURBSFunctionGroup group = NURBSTestFunctions.createGroup(new int[] {1,1}, new int[] {0,0}, new int[0], true, 4);
+		File file = folder.newFile();
+		new NURBSGroupWriter().write(group, file);
+		MappedNURBSFunctionGroup mapped = MappedNURBSFunctionGroup.open(file);
+		assertEquals(0, mapped.giveNumberOfFunctions());
+		assertBufferEquals(group.basis.giveWeightArray_Shallow(), mapped.giveWeightBuffer());
+	}
+
+	@Test(expected = IOException.class)
+	public void wrongMagic() throws IOException {
+		File file = folder.newFile();
+		try(RandomAccessFile raf = new RandomAccessFile(file, "rw")){
+			raf.write(new byte[64]);
+		}
+		MappedNURBSFunctionGroup.open(file);
+	}
+
+	@Test(expected = IOException.class)
+	public void truncatedFile() throws IOException {
+		NURBSFunctionGroup group = NURBSTestFunctions.createGroup(new int[] {2,2}, new int[] {1,1}, new int[] {3}, true, 5);
+		File file = folder.newFile();
+		new NURBSGroupWriter().write(group, file);
+		try(RandomAccessFile raf = new RandomAccessFile(file, "rw")){
+			raf.setLength(raf.length()-8);
+		}
+		MappedNURBSFunctionGroup.open(file);
+	}
+
+	/*
+	 * openはコントロールポイントを複製せず、ファイルをマップした領域をそのまま参照する
+	 * openの後にファイルを書き換えると、その内容がバッファから見える
+	 * */
+	@Test
+	public void openMapsFileWithoutCopy() throws IOException {
+		NURBSFunctionGroup group = NURBSTestFunctions.createGroup(new int[] {2,2}, new int[] {5,4}, new int[] {3,1}, true, 6);
+		File file = folder.newFile();
+		new NURBSGroupWriter().write(group, file);
+		MappedNURBSFunctionGroup mapped = MappedNURBSFunctionGroup.open(file);
+
+		DoubleBuffer weight = mapped.giveWeightBuffer();
+		assertTrue(weight.isDirect());
+		assertFalse(weight.hasArray());
+		for(int f=0;f<2;f++) {
+			DoubleBuffer ctrl = mapped.giveHomogeneousCtrlBuffer(f);
+			assertTrue(ctrl.isDirect());
+			assertFalse(ctrl.hasArray());
+		}
+
+		//最後の関数のコントロールポイントはファイルの末尾で終わる
+		DoubleBuffer last = mapped.giveHomogeneousCtrlBuffer(1);
+		int index = last.remaining()-1;
+		double value = last.get(index)+1;
+		try(RandomAccessFile raf = new RandomAccessFile(file, "rw")){
+			raf.seek(raf.length()-8);
+			raf.writeLong(Long.reverseBytes(Double.doubleToRawLongBits(value)));
+		}
+		assertEquals(Double.doubleToRawLongBits(value), Double.doubleToRawLongBits(last.get(index)));
+	}
+}
@@ -0,0 +1,186 @@
+package simulation.function.nurbs.io;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+
+import simulation.function.nurbs.NURBSBasisFunction;
+import simulation.function.nurbs.NURBSFunction;
+import simulation.function.nurbs.NURBSFunctionGroup;
+
+/**
+ * <p>{@link NURBSFunctionGroup}をバイナリファイルに書き出すクラス。
+ *
+ * <p>ファイルは全てリトルエンディアンで、次の順に並びます。mは変数の数、Fは関数の数、
+ * Nはコントロールポイントの数、d_fは関数fの次元です。
+ * <ul>
+ * 		<li>ヘッダ(int): 識別子{@link #MAGIC}、版{@link #VERSION}、m、F、
+ * 			次数p_0..p_{m-1}、ノットベクトルの長さ|U_0|..|U_{m-1}|、次元d_0..d_{F-1}。
+ * 			この後、8バイト境界まで0で埋めます。
+ * 		<li>ノットベクトル(double): U_0、U_1、...、U_{m-1}の順
+ * 		<li>重み(double): N個
+ * 		<li>関数毎の重み付きコントロールポイント(double): 関数fについてN*(d_f+1)個。
+ * 			並びは{@link NURBSFunction#giveHomogeneousCtrlArray_Shallow()}と同じです。
+ * </ul>
+ * double の区間は全て8バイト境界から始まるので、マップした領域をそのまま
+ * {@link java.nio.DoubleBuffer}として参照できます。
+ *
+ * <p>書き込みは一定の大きさのバッファを介して少しずつ行うので、
+ * モデルの大きさに比例する一時的なメモリを必要としません。
+ *
+ * @see MappedNURBSFunctionGroup
+ * @version 2026/10/17 07:37
+ * */
+public class NURBSGroupWriter {
+	/**
+	 * ファイルの識別子("NRBS")
+	 * @version 2026/10/17 07:37
+	 * */
+	public static final int MAGIC = 0x4E524253;
+
+	/**
+	 * 形式の版
+	 * @version 2026/10/17 07:37
+	 * */
+	public static final int VERSION = 1;
+
+	/**
+	 * 既定のバッファの大きさ(バイト)
+	 * @version 2026/10/17 07:37
+	 * */
+	public static final int DEFAULT_CHUNK_SIZE = 1<<20;
+
+	static final ByteOrder ORDER = ByteOrder.LITTLE_ENDIAN;
+
+	private final int chunkSize;
+
+	/**
+	 * バッファの大きさを{@link #DEFAULT_CHUNK_SIZE}とするインスタンスを生成します。
+	 * @version 2026/10/17 07:37
+	 * */
+	public NURBSGroupWriter() {
+		this(DEFAULT_CHUNK_SIZE);
+	}
+
+	/**
+	 * バッファの大きさを指定してインスタンスを生成します。
+	 * @param chunkSize バッファの大きさ(バイト)。8の倍数に切り下げます。
+	 * @throws IllegalArgumentException chunkSizeが8未満の場合
+	 * @version 2026/10/17 07:37
+	 * */
+	public NURBSGroupWriter(int chunkSize) {
+		if(chunkSize < 8) {
+			throw new IllegalArgumentException("バッファの大きさは8以上である必要があります:"+chunkSize);
+		}
+		this.chunkSize = chunkSize & ~7;
+	}
+
+	/**
+	 * 関数の組をファイルに書き出します。ファイルが存在する場合は上書きします。
+	 * @param group 書き出す関数の組
+	 * @param file 書き出し先のファイル
+	 * @throws NullPointerException groupまたはfileがnullの場合
+	 * @throws IOException 書き込みに失敗した場合
+	 * @version 2026/10/17 07:37
+	 * */
+	public void write(NURBSFunctionGroup group, File file) throws IOException {
+		if(group == null) {
+			throw new NullPointerException("引数groupがnullです");
+		}else if(file == null) {
+			throw new NullPointerException("引数fileがnullです");
+		}
+		final NURBSBasisFunction basis = group.basis;
+		final double[][] knot = basis.giveKnotVector_Shallow();
+		final int[] p = basis.giveDegreeArray();
+		final int m = p.length, F = group.funcs.length;
+
+		try(FileChannel channel = FileChannel.open(file.toPath(),
+				StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)){
+			Chunk chunk = new Chunk(channel, ByteBuffer.allocateDirect(this.chunkSize).order(ORDER));
+
+			chunk.putInt(MAGIC);
+			chunk.putInt(VERSION);
+			chunk.putInt(m);
+			chunk.putInt(F);
+			for(int l=0;l<m;l++) {
+				chunk.putInt(p[l]);
+			}
+			for(int l=0;l<m;l++) {
+				chunk.putInt(knot[l].length);
+			}
+			for(NURBSFunction f:group.funcs) {
+				chunk.putInt(f.dimension);
+			}
+			if(headerSize(m, F) != headerInts(m, F)*4) {
+				chunk.putInt(0);
+			}
+
+			for(int l=0;l<m;l++) {
+				chunk.putDoubles(knot[l]);
+			}
+			chunk.putDoubles(basis.giveWeightArray_Shallow());
+			for(NURBSFunction f:group.funcs) {
+				chunk.putDoubles(f.giveHomogeneousCtrlArray_Shallow());
+			}
+			chunk.flush();
+		}
+	}
+
+	/**
+	 * ヘッダのintの数を返します。
+	 * */
+	static int headerInts(int m, int F) {
+		return 4+2*m+F;
+	}
+
+	/**
+	 * 8バイト境界まで埋めたヘッダの大きさ(バイト)を返します。
+	 * */
+	static long headerSize(int m, int F) {
+		return ((long)headerInts(m, F)*4+7) & ~7L;
+	}
+
+	/**
+	 * 一杯になる毎にチャネルへ書き出すバッファ
+	 * */
+	private static class Chunk {
+		private final FileChannel channel;
+		private final ByteBuffer buffer;
+
+		Chunk(FileChannel channel, ByteBuffer buffer){
+			this.channel = channel;
+			this.buffer = buffer;
+		}
+
+		void putInt(int value) throws IOException {
+			if(buffer.remaining() < 4) {
+				flush();
+			}
+			buffer.putInt(value);
+		}
+
+		void putDoubles(double[] array) throws IOException {
+			int offset = 0;
+			while(offset < array.length) {
+				if(buffer.remaining() < 8) {
+					flush();
+				}
+				int count = Math.min(array.length-offset, buffer.remaining()/8);
+				buffer.asDoubleBuffer().put(array, offset, count);
+				buffer.position(buffer.position()+count*8);
+				offset += count;
+			}
+		}
+
+		void flush() throws IOException {
+			buffer.flip();
+			while(buffer.hasRemaining()) {
+				channel.write(buffer);
+			}
+			buffer.clear();
+		}
+	}
+}
@@ -0,0 +1,7 @@
+/**
+ * NURBS関数の組をバイナリファイルに保存し、読み込むクラス群。
+ * 読み込みはファイルをメモリにマップし、コントロールポイントの配列を複製せずに参照できます。
+ * 形式は{@link simulation.function.nurbs.io.NURBSGroupWriter}を参照してください。
+ * @version 2026/10/17 07:37
+ */
+package simulation.function.nurbs.io;
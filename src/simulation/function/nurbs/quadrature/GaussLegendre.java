@@ -0,0 +1,102 @@
+package simulation.function.nurbs.quadrature;
+
+/**
+ * <p>区間[-1,1]上のn点ガウス・ルジャンドル則の積分点と重み。
+ * <p>積分点はルジャンドル多項式P_nの零点で、ニュートン法により求めます。
+ * n点の規則は2n-1次までの多項式を厳密に積分します。
+ *
+ * <p>このオブジェクトはimmutableであり、複数のスレッドから共有できます。
+ *
+ * @version 2026/10/17 07:02
+ * */
+public class GaussLegendre {
+	/**
+	 * 積分点。昇順に並んでいます。
+	 * @version 2026/10/17 07:02
+	 * */
+	private final double[] point;
+
+	/**
+	 * 各積分点の重み
+	 * @version 2026/10/17 07:02
+	 * */
+	private final double[] weight;
+
+	/**
+	 * n点の規則を計算します。
+	 * @param n 積分点の数
+	 * @throws IllegalArgumentException nが1未満の場合
+	 * @version 2026/10/17 07:02
+	 * */
+	public GaussLegendre(int n) {
+		if(n < 1) {
+			throw new IllegalArgumentException("積分点の数nが1未満です");
+		}
+		this.point = new double[n];
+		this.weight = new double[n];
+
+		//零点は0について対称なので、半分だけ求める
+		for(int i=0;i<(n+1)/2;i++) {
+			double x = Math.cos(Math.PI*(i+0.75)/(n+0.5));
+			for(int iter=0;iter<100;iter++) {
+				double[] P = legendre(n, x);
+				double dx = P[0]/P[1];
+				x -= dx;
+				if(Math.abs(dx) <= 1e-16) {
+					break;
+				}
+			}
+			double dP = legendre(n, x)[1];
+
+			point[i] = -x;
+			point[n-1-i] = x;
+			weight[i] = weight[n-1-i] = 2/((1 -x*x)*dP*dP);
+		}
+		if(n%2 == 1) {
+			point[n/2] = 0;
+		}
+	}
+
+	/**
+	 * 漸化式によりルジャンドル多項式P_n(x)とその導関数の値を求めます。
+	 * @return {P_n(x), P_n'(x)}
+	 * */
+	private static double[] legendre(int n, double x) {
+		double P0 = 1, P1 = x;
+		for(int k=2;k<=n;k++) {
+			double P2 = ((2*k-1)*x*P1 -(k-1)*P0)/k;
+			P0 = P1;
+			P1 = P2;
+		}
+		return new double[] {P1, n*(x*P1 -P0)/(x*x -1)};
+	}
+
+	/**
+	 * 積分点の数を返します。
+	 * @return 積分点の数
+	 * @version 2026/10/17 07:02
+	 * */
+	public int giveNumberOfPoints() {
+		return this.point.length;
+	}
+
+	/**
+	 * i番目の積分点を返します。
+	 * @param i 積分点のインデックス
+	 * @return [-1,1]上の積分点
+	 * @version 2026/10/17 07:02
+	 * */
+	public double givePoint(int i) {
+		return this.point[i];
+	}
+
+	/**
+	 * i番目の積分点の重みを返します。重みの和は2です。
+	 * @param i 積分点のインデックス
+	 * @return 重み
+	 * @version 2026/10/17 07:02
+	 * */
+	public double giveWeight(int i) {
+		return this.weight[i];
+	}
+}
@@ -0,0 +1,18 @@
+package simulation.function.nurbs.quadrature;
+
+/**
+ * {@link NURBSQuadrature#integrate(Integrand)}で積分するスカラー値の被積分関数。
+ * 複数のスレッドから同時に呼び出されることがあるため、状態を持たないように実装してください。
+ *
+ * @version 2026/10/17 07:02
+ * */
+@FunctionalInterface
+public interface Integrand {
+	/**
+	 * 積分点での被積分関数の値を返します。積分の重みは掛けないでください。
+	 * @param point 積分点
+	 * @return 被積分関数の値
+	 * @version 2026/10/17 07:02
+	 * */
+	public double value(QuadraturePoint point);
+}
@@ -0,0 +1,389 @@
+package simulation.function.nurbs.quadrature;
+
+import java.util.stream.IntStream;
+
+import simulation.function.nurbs.BezierExtraction;
+import simulation.function.nurbs.NURBSBasisFunction;
+import simulation.function.nurbs.NURBSFunction;
+
+/**
+ * <p>NURBS基底関数組の定義域上で数値積分を行うクラス。
+ * <p>空でないノット範囲の組(要素)毎に、各変数方向のガウス・ルジャンドル則のテンソル積で
+ * 積分点を置き、インスタンス化の際に全ての積分点での変数値、積分の重み、
+ * 0にならない基底関数の値とその1階偏導関数の値を計算して連続した配列に保持します。
+ * 基底関数の値は{@link BezierExtraction}により要素単位で求めます。
+ * そのため、同じ基底関数組について繰り返し積分を行う場合、積分の際に基底関数の計算は行われません。
+ *
+ * <p>積分は要素毎に並列に行うことができます。要素毎の積分値を一旦配列に格納し、
+ * 要素の順に足し合わせるので、結果はスレッドの数や実行順序によらず一定です。
+ *
+ * <p>積分点での保持する値の格納順は、積分点の通し番号g(=要素の通し番号*要素内の積分点の数+要素内の番号)について、
+ * <ul>
+ * 	<li>変数値:[g*m+l]
+ * 	<li>重み:[g]
+ * 	<li>基底関数の値:[g*eff+a]
+ * 	<li>基底関数の偏導関数の値:[(g*m+l)*eff+a]
+ * </ul>
+ * です。(mは変数の数、effは要素で0にならない基底関数の数、aは要素内の基底関数の局所的な番号)
+ *
+ * <p>このオブジェクトは積分点の情報を変更しないため、複数のスレッドから共有できます。
+ *
+ * @version 2026/10/17 07:02
+ * */
+public class NURBSQuadrature {
+	/**
+	 * 積分を行う基底関数組
+	 * @version 2026/10/17 07:02
+	 * */
+	private final NURBSBasisFunction basis;
+
+	/**
+	 * 基底関数組のベジエ抽出演算子
+	 * @version 2026/10/17 07:02
+	 * */
+	private final BezierExtraction extraction;
+
+	/**
+	 * 変数の数
+	 * @version 2026/10/17 07:02
+	 * */
+	public final int parameterNum;
+
+	/**
+	 * 要素の数、要素内の積分点の数、要素で0にならない基底関数の数
+	 * @version 2026/10/17 07:02
+	 * */
+	private final int elementNum, pointNum, effNum;
+
+	/**
+	 * 各変数方向の積分点の数
+	 * @version 2026/10/17 07:02
+	 * */
+	private final int[] pointNumArray;
+
+	/**
+	 * 積分点の情報。格納順はクラスの説明を参照。
+	 * @version 2026/10/17 07:02
+	 * */
+	final double[] t, weight, R, dR;
+
+	/**
+	 * 要素で0にならない基底関数の、コントロールポイントの通し番号。[e*eff+a]
+	 * @version 2026/10/17 07:02
+	 * */
+	final int[] global;
+
+	/**
+	 * 要素毎に並列に計算する場合はtrue
+	 * @version 2026/10/17 07:02
+	 * */
+	private final boolean isparallel;
+
+	/**
+	 * 各変数方向の積分点の数を次数+1として、並列に計算するインスタンスを生成します。
+	 * この場合、基底関数の2次式までは(重みによる有理関数の部分を除き)厳密に積分されます。
+	 * @param basis 積分を行う基底関数組
+	 * @throws NullPointerException basisがnullの場合
+	 * @version 2026/10/17 07:02
+	 * */
+	public NURBSQuadrature(NURBSBasisFunction basis) {
+		this(basis, defaultPointNum(basis), true);
+	}
+
+	/**
+	 * 各変数方向の積分点の数を指定して、並列に計算するインスタンスを生成します。
+	 * @param basis 積分を行う基底関数組
+	 * @param pointNum 各変数方向の要素内の積分点の数
+	 * @throws NullPointerException basisまたはpointNumがnullの場合
+	 * @throws IllegalArgumentException pointNumの要素数が変数の数に一致しない場合、または1未満の要素がある場合
+	 * @version 2026/10/17 07:02
+	 * */
+	public NURBSQuadrature(NURBSBasisFunction basis, int[] pointNum) {
+		this(basis, pointNum, true);
+	}
+
+	/**
+	 * 各変数方向の積分点の数と、並列に計算するかどうかを指定してインスタンスを生成します。
+	 * @param basis 積分を行う基底関数組
+	 * @param pointNum 各変数方向の要素内の積分点の数
+	 * @param isparallel trueの時、要素毎に並列に計算する。
+	 * @throws NullPointerException basisまたはpointNumがnullの場合
+	 * @throws IllegalArgumentException pointNumの要素数が変数の数に一致しない場合、または1未満の要素がある場合
+	 * @version 2026/10/17 07:02
+	 * */
+	public NURBSQuadrature(NURBSBasisFunction basis, int[] pointNum, boolean isparallel) {
+		if(basis == null) {
+			throw new NullPointerException("引数basisがnullです");
+		}else if(pointNum == null) {
+			throw new NullPointerException("引数pointNumがnullです");
+		}
+		if(pointNum.length != basis.parameterNum) {
+			throw new IllegalArgumentException("積分点の数の要素数が変数の数に一致しません");
+		}
+		final int m = basis.parameterNum;
+		int Q = 1;
+		for(int l=0;l<m;l++) {
+			if(pointNum[l] < 1) {
+				throw new IllegalArgumentException("積分点の数pointNum["+l+"]が1未満です");
+			}
+			Q *= pointNum[l];
+		}
+
+		this.basis = basis;
+		this.extraction = new BezierExtraction(basis);
+		this.parameterNum = m;
+		this.pointNumArray = pointNum.clone();
+		this.elementNum = extraction.giveNumberOfElements();
+		this.pointNum = Q;
+		this.effNum = basis.giveEffectiveCtrlNum();
+		this.isparallel = isparallel;
+
+		int G = elementNum*Q;
+		this.t = new double[G*m];
+		this.weight = new double[G];
+		this.R = new double[G*effNum];
+		this.dR = new double[G*m*effNum];
+		this.global = new int[elementNum*effNum];
+
+		GaussLegendre[] rule = new GaussLegendre[m];
+		for(int l=0;l<m;l++) {
+			rule[l] = new GaussLegendre(pointNum[l]);
+		}
+
+		//要素毎に基底関数の値を計算する。各要素は配列の重ならない部分にのみ書き込む
+		//評価器は要素毎に生成し、その要素の積分点の間で使い回す
+		elements().forEach(element -> fillElement(element, rule, extraction.evaluator()));
+	}
+
+	private static int[] defaultPointNum(NURBSBasisFunction basis) {
+		int[] pointNum = basis.giveDegreeArray();
+		for(int l=0;l<pointNum.length;l++) {
+			pointNum[l]++;
+		}
+		return pointNum;
+	}
+
+	/**
+	 * 要素の通し番号の列を返します。並列に計算する場合は並列な列です。
+	 * */
+	private IntStream elements() {
+		IntStream stream = IntStream.range(0, elementNum);
+		return isparallel? stream.parallel() : stream;
+	}
+
+	/**
+	 * 1つの要素の全ての積分点について、変数値、重み、基底関数の値を計算して格納します。
+	 * */
+	private void fillElement(int element, GaussLegendre[] rule, BezierExtraction.Evaluator evaluator) {
+		final int m = parameterNum;
+		int[] e = extraction.giveElementIndex(element, new int[m]);
+		int[] local = new int[effNum];
+		extraction.giveGlobalIndices(e, local);
+		System.arraycopy(local, 0, global, element*effNum, effNum);
+
+		double[] xi = new double[m];
+		double[] Rq = new double[effNum], dRq = new double[m*effNum];
+		for(int q=0;q<pointNum;q++) {
+			int g = element*pointNum+q;
+			//要素内の番号qを各変数方向の積分点の番号に分解する(最後の変数が最も速く変わる)
+			double w = 1;
+			for(int l=m-1,rem=q;l>=0;l--) {
+				int il = rem%pointNumArray[l];
+				rem /= pointNumArray[l];
+				double lower = extraction.giveLowerBound(l, e[l]), upper = extraction.giveUpperBound(l, e[l]);
+				//[-1,1]から[0,1]、そして要素へ写す
+				xi[l] = (rule[l].givePoint(il)+1)/2;
+				t[g*m+l] = lower +xi[l]*(upper-lower);
+				w *= rule[l].giveWeight(il)/2*(upper-lower);
+			}
+			weight[g] = w;
+
+			evaluator.basis(e, xi, Rq, dRq);
+			System.arraycopy(Rq, 0, R, g*effNum, effNum);
+			System.arraycopy(dRq, 0, dR, g*m*effNum, m*effNum);
+		}
+	}
+
+	/**
+	 * 積分を行う基底関数組を返します。
+	 * @return 基底関数組
+	 * @version 2026/10/17 07:02
+	 * */
+	public NURBSBasisFunction giveBasisFunction() {
+		return this.basis;
+	}
+
+	/**
+	 * 基底関数組のベジエ抽出演算子を返します。要素の通し番号はこれに従います。
+	 * @return ベジエ抽出演算子
+	 * @version 2026/10/17 07:05
+	 * */
+	public BezierExtraction giveBezierExtraction() {
+		return this.extraction;
+	}
+
+	/**
+	 * <p>指定した要素の、要素内の番号qの積分点を新たに生成して返します。
+	 * 要素毎の計算を独自に行う場合に利用してください。
+	 * <p>多くの積分点を順に参照する場合は、{@link #givePoint(int, int, QuadraturePoint)}で
+	 * 1つのインスタンスを使い回してください。
+	 *
+	 * @param element 要素の通し番号
+	 * @param q 要素内の積分点の番号
+	 * @return 積分点
+	 * @version 2026/10/17 07:02
+	 * */
+	public QuadraturePoint givePoint(int element, int q) {
+		return givePoint(element, q, null);
+	}
+
+	/**
+	 * <p>指定した要素の、要素内の番号qの積分点を、呼び出し側が用意したインスタンスに設定して返します。
+	 * <p>pointがnullの場合は新たに生成します。インスタンスは呼び出し側が所有するものであり、
+	 * 次に同じインスタンスを指定して呼び出すまでの間だけ有効です。
+	 * 複数のスレッドから呼び出す場合は、スレッド毎に別のインスタンスを用意してください。
+	 *
+	 * @param element 要素の通し番号
+	 * @param q 要素内の積分点の番号
+	 * @param point 設定する積分点。nullの場合は新たに生成する。
+	 * @return 引数point、またはnullの場合は生成した積分点
+	 * @throws IllegalArgumentException pointがこのインスタンスの積分点でない場合
+	 * @version 2026/10/17 07:02
+	 * */
+	public QuadraturePoint givePoint(int element, int q, QuadraturePoint point) {
+		if(point == null) {
+			point = new QuadraturePoint(this);
+		}else if(point.quadrature != this) {
+			throw new IllegalArgumentException("指定された積分点はこのインスタンスのものではありません");
+		}
+		point.set(element, q);
+		return point;
+	}
+
+	/**
+	 * 要素の数を返します。
+	 * @return 要素の数
+	 * @version 2026/10/17 07:02
+	 * */
+	public int giveNumberOfElements() {
+		return this.elementNum;
+	}
+
+	/**
+	 * 1つの要素内の積分点の数を返します。
+	 * @return 要素内の積分点の数
+	 * @version 2026/10/17 07:02
+	 * */
+	public int giveNumberOfPoints() {
+		return this.pointNum;
+	}
+
+	/**
+	 * 1つの要素で0にならない基底関数の数を返します。
+	 * @return 要素で0にならない基底関数の数
+	 * @version 2026/10/17 07:02
+	 * */
+	public int giveNumberOfBasis() {
+		return this.effNum;
+	}
+
+	/**
+	 * 要素毎に並列に計算するかどうかを返します。
+	 * @return trueならば並列に計算する
+	 * @version 2026/10/17 07:02
+	 * */
+	public boolean isParallel() {
+		return this.isparallel;
+	}
+
+	/**
+	 * <p>スカラー値の関数を定義域全体で積分します。
+	 * <p>要素毎の積分値を計算した後、要素の順に足し合わせます。
+	 * 積分点のインスタンスは要素毎に生成し、その要素の中で使い回します。
+	 *
+	 * @param integrand 被積分関数
+	 * @return 積分値
+	 * @version 2026/10/17 07:02
+	 * */
+	public double integrate(Integrand integrand) {
+		double[] partial = new double[elementNum];
+		elements().forEach(element -> {
+			QuadraturePoint point = new QuadraturePoint(this);
+			double sum = 0;
+			for(int q=0;q<pointNum;q++) {
+				point.set(element, q);
+				sum += weight[point.index]*integrand.value(point);
+			}
+			partial[element] = sum;
+		});
+
+		double sum = 0;
+		for(int element=0;element<elementNum;element++) {
+			sum += partial[element];
+		}
+		return sum;
+	}
+
+	/**
+	 * <p>ベクトル値の関数を定義域全体で積分します。
+	 * <p>要素毎の積分値を計算した後、要素の順に足し合わせます。
+	 * 積分点のインスタンスは要素毎に生成し、その要素の中で使い回します。
+	 *
+	 * @param size 被積分関数の成分の数
+	 * @param integrand 被積分関数
+	 * @return 各成分の積分値
+	 * @throws IllegalArgumentException sizeが1未満の場合
+	 * @version 2026/10/17 07:02
+	 * */
+	public double[] integrate(int size, VectorIntegrand integrand) {
+		if(size < 1) {
+			throw new IllegalArgumentException("成分の数sizeが1未満です");
+		}
+		double[] partial = new double[elementNum*size];
+		elements().forEach(element -> {
+			QuadraturePoint point = new QuadraturePoint(this);
+			double[] value = new double[size];
+			for(int q=0;q<pointNum;q++) {
+				point.set(element, q);
+				integrand.value(point, value);
+				double w = weight[point.index];
+				for(int i=0;i<size;i++) {
+					partial[element*size+i] += w*value[i];
+				}
+			}
+		});
+
+		double[] sum = new double[size];
+		for(int element=0;element<elementNum;element++) {
+			for(int i=0;i<size;i++) {
+				sum[i] += partial[element*size+i];
+			}
+		}
+		return sum;
+	}
+
+	/**
+	 * <p>NURBS関数が表す図形の大きさを求めます。
+	 * <p>1変数の場合は曲線の長さ、2変数の場合は曲面の面積、3変数の場合は立体の体積です。
+	 * 変数tについてのヤコビ行列Jに対して、グラム行列式sqrt(det(J^T J))を積分します。
+	 * 関数の次元が変数の数と等しい場合は|det J|の積分になります。
+	 *
+	 * @param func 図形を表すNURBS関数。基底関数組はこのインスタンスのものであること。
+	 * @return 図形の大きさ
+	 * @throws IllegalArgumentException
+	 * <ul>
+	 * 		<li>funcの基底関数組がこのインスタンスのものでない場合
+	 * 		<li>funcの次元が変数の数より小さい場合
+	 * </ul>
+	 * @version 2026/10/17 07:02
+	 * */
+	public double measure(NURBSFunction func) {
+		if(!func.basisFunctionIs(this.basis)) {
+			throw new IllegalArgumentException("指定されたNURBSFunctionの基底関数はこのインスタンスの基底関数と同じではありません");
+		}
+		if(func.dimension < parameterNum) {
+			throw new IllegalArgumentException("関数の次元が変数の数より小さいため、大きさを定義できません");
+		}
+		return integrate(point -> point.measureDensity(func));
+	}
+}
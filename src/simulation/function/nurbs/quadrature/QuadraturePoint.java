@@ -0,0 +1,263 @@
+package simulation.function.nurbs.quadrature;
+
+import simulation.function.nurbs.NURBSFunction;
+
+/**
+ * <p>{@link NURBSQuadrature}の1つの積分点を表すもの。
+ * <p>被積分関数には、積分点の変数値、要素で0にならない基底関数の値とその偏導関数の値、
+ * それらのコントロールポイントの通し番号を参照させます。値は全て{@link NURBSQuadrature}が
+ * 予め計算したものであり、ここでは基底関数の計算を行いません。
+ *
+ * <p>インスタンスは積分の際に要素内の積分点の間で使い回されるため、積分点の情報を参照できるのは
+ * 被積分関数の呼び出しの間だけです。参照を保持しないでください。
+ *
+ * @version 2026/10/17 07:02
+ * */
+public class QuadraturePoint {
+	final NURBSQuadrature quadrature;
+	private final int m, effNum;
+
+	/**
+	 * 現在の要素、要素内の積分点の番号、積分点の通し番号
+	 * @version 2026/10/17 07:02
+	 * */
+	int element, q, index;
+
+	/**
+	 * ヤコビ行列とグラム行列の作業用配列。必要になった時に確保する。
+	 * @version 2026/10/17 07:02
+	 * */
+	private double[] J, G;
+
+	QuadraturePoint(NURBSQuadrature quadrature) {
+		this.quadrature = quadrature;
+		this.m = quadrature.parameterNum;
+		this.effNum = quadrature.giveNumberOfBasis();
+	}
+
+	void set(int element, int q) {
+		this.element = element;
+		this.q = q;
+		this.index = element*quadrature.giveNumberOfPoints()+q;
+	}
+
+	/**
+	 * 積分点を含む要素の通し番号を返します。
+	 * @return 要素の通し番号
+	 * @version 2026/10/17 07:02
+	 * */
+	public int giveElement() {
+		return this.element;
+	}
+
+	/**
+	 * 要素内の積分点の番号を返します。
+	 * @return 要素内の積分点の番号
+	 * @version 2026/10/17 07:02
+	 * */
+	public int givePointIndex() {
+		return this.q;
+	}
+
+	/**
+	 * 変数の数を返します。
+	 * @return 変数の数
+	 * @version 2026/10/17 07:05
+	 * */
+	public int giveNumberOfVariables() {
+		return this.m;
+	}
+
+	/**
+	 * 積分点の変数lの値を返します。
+	 * @param l 変数のインデックス
+	 * @return 変数値
+	 * @version 2026/10/17 07:02
+	 * */
+	public double giveVariable(int l) {
+		return quadrature.t[index*m+l];
+	}
+
+	/**
+	 * 積分点の重みを返します。ガウス・ルジャンドル則の重みに要素の大きさを掛けたものです。
+	 * @return 積分の重み
+	 * @version 2026/10/17 07:02
+	 * */
+	public double giveWeight() {
+		return quadrature.weight[index];
+	}
+
+	/**
+	 * 要素で0にならない基底関数の数を返します。
+	 * @return 基底関数の数
+	 * @version 2026/10/17 07:02
+	 * */
+	public int giveNumberOfBasis() {
+		return this.effNum;
+	}
+
+	/**
+	 * 要素内の局所的な番号aの基底関数の、コントロールポイントの通し番号を返します。
+	 * @param a 要素内の基底関数の番号
+	 * @return コントロールポイントの通し番号
+	 * @version 2026/10/17 07:02
+	 * */
+	public int giveGlobalIndex(int a) {
+		return quadrature.global[element*effNum+a];
+	}
+
+	/**
+	 * 要素内の局所的な番号aの基底関数の値を返します。
+	 * @param a 要素内の基底関数の番号
+	 * @return 基底関数の値
+	 * @version 2026/10/17 07:02
+	 * */
+	public double giveBasisValue(int a) {
+		return quadrature.R[index*effNum+a];
+	}
+
+	/**
+	 * 要素内の局所的な番号aの基底関数の、変数lについての偏導関数の値を返します。
+	 * @param l 変数のインデックス
+	 * @param a 要素内の基底関数の番号
+	 * @return 偏導関数の値
+	 * @version 2026/10/17 07:02
+	 * */
+	public double giveBasisDerivative(int l, int a) {
+		return quadrature.dR[(index*m+l)*effNum+a];
+	}
+
+	/**
+	 * <p>積分点でのNURBS関数の値を、保持している基底関数の値から計算します。
+	 * @param func NURBS関数。基底関数組は積分を行うものであること。
+	 * @param result 関数値を格納する配列。長さはfunc.dimension以上であること。
+	 * @return 引数result
+	 * @throws IllegalArgumentException funcの基底関数組が積分を行うものでない場合
+	 * @version 2026/10/17 07:02
+	 * */
+	public double[] value(NURBSFunction func, double[] result) {
+		assertBasis(func);
+		final int dimension = func.dimension, S = dimension+1;
+		final double[] Pw = func.giveHomogeneousCtrlArray_Shallow();
+		for(int d=0;d<dimension;d++) {
+			result[d] = 0;
+		}
+		for(int a=0;a<effNum;a++) {
+			int i = giveGlobalIndex(a)*S;
+			double Ra = quadrature.R[index*effNum+a]/Pw[i];
+			for(int d=0;d<dimension;d++) {
+				result[d] += Ra*Pw[i+1+d];
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * <p>積分点でのNURBS関数の、変数tについてのヤコビ行列を計算します。
+	 * <p>J[d*m+l]が関数値のd成分の変数lについての偏導関数の値です。(mは変数の数)
+	 * @param func NURBS関数。基底関数組は積分を行うものであること。
+	 * @param J ヤコビ行列を格納する配列。長さはfunc.dimension*m以上であること。
+	 * @return 引数J
+	 * @throws IllegalArgumentException funcの基底関数組が積分を行うものでない場合
+	 * @version 2026/10/17 07:02
+	 * */
+	public double[] jacobian(NURBSFunction func, double[] J) {
+		assertBasis(func);
+		final int dimension = func.dimension, S = dimension+1;
+		final double[] Pw = func.giveHomogeneousCtrlArray_Shallow();
+		for(int c=0;c<dimension*m;c++) {
+			J[c] = 0;
+		}
+		for(int a=0;a<effNum;a++) {
+			int i = giveGlobalIndex(a)*S;
+			double w = Pw[i];
+			for(int l=0;l<m;l++) {
+				double dRa = quadrature.dR[(index*m+l)*effNum+a]/w;
+				for(int d=0;d<dimension;d++) {
+					J[d*m+l] += dRa*Pw[i+1+d];
+				}
+			}
+		}
+		return J;
+	}
+
+	/**
+	 * <p>積分点でのNURBS関数のグラム行列式sqrt(det(J^T J))を計算します。
+	 * 変数tの微小な体積要素が、関数によって写される先の体積要素の大きさの比です。
+	 * @param func NURBS関数。基底関数組は積分を行うものであること。
+	 * @return グラム行列式の平方根
+	 * @throws IllegalArgumentException funcの基底関数組が積分を行うものでない場合
+	 * @version 2026/10/17 07:02
+	 * */
+	public double measureDensity(NURBSFunction func) {
+		final int dimension = func.dimension;
+		if(J == null || J.length < dimension*m) {
+			J = new double[dimension*m];
+			G = new double[m*m];
+		}
+		jacobian(func, J);
+
+		//G = J^T J
+		for(int i=0;i<m;i++) {
+			for(int j=i;j<m;j++) {
+				double s = 0;
+				for(int d=0;d<dimension;d++) {
+					s += J[d*m+i]*J[d*m+j];
+				}
+				G[i*m+j] = G[j*m+i] = s;
+			}
+		}
+		return Math.sqrt(Math.max(determinant(G, m), 0));
+	}
+
+	/**
+	 * m*mの対称行列の行列式を、部分ピボット選択付きのガウスの消去法で求めます。
+	 * 配列Aは書き換えられます。
+	 * */
+	private static double determinant(double[] A, int m) {
+		switch(m) {
+		case 1:
+			return A[0];
+		case 2:
+			return A[0]*A[3] -A[1]*A[2];
+		case 3:
+			return A[0]*(A[4]*A[8]-A[5]*A[7]) -A[1]*(A[3]*A[8]-A[5]*A[6]) +A[2]*(A[3]*A[7]-A[4]*A[6]);
+		default:
+			break;
+		}
+		double det = 1;
+		for(int k=0;k<m;k++) {
+			int pivot = k;
+			for(int i=k+1;i<m;i++) {
+				if(Math.abs(A[i*m+k]) > Math.abs(A[pivot*m+k])) {
+					pivot = i;
+				}
+			}
+			if(A[pivot*m+k] == 0) {
+				return 0;
+			}
+			if(pivot != k) {
+				for(int j=0;j<m;j++) {
+					double temp = A[k*m+j];
+					A[k*m+j] = A[pivot*m+j];
+					A[pivot*m+j] = temp;
+				}
+				det = -det;
+			}
+			det *= A[k*m+k];
+			for(int i=k+1;i<m;i++) {
+				double factor = A[i*m+k]/A[k*m+k];
+				for(int j=k;j<m;j++) {
+					A[i*m+j] -= factor*A[k*m+j];
+				}
+			}
+		}
+		return det;
+	}
+
+	private void assertBasis(NURBSFunction func) {
+		if(!func.basisFunctionIs(quadrature.giveBasisFunction())) {
+			throw new IllegalArgumentException("指定されたNURBSFunctionの基底関数は積分を行う基底関数と同じではありません");
+		}
+	}
+}
@@ -0,0 +1,19 @@
+package simulation.function.nurbs.quadrature;
+
+/**
+ * {@link NURBSQuadrature#integrate(int, VectorIntegrand)}で積分するベクトル値の被積分関数。
+ * 質量とモーメントを同時に求める場合等に利用してください。
+ * 複数のスレッドから同時に呼び出されることがあるため、状態を持たないように実装してください。
+ *
+ * @version 2026/10/17 07:02
+ * */
+@FunctionalInterface
+public interface VectorIntegrand {
+	/**
+	 * 積分点での被積分関数の値をresultに格納します。積分の重みは掛けないでください。
+	 * @param point 積分点
+	 * @param result 値を格納する配列。長さは積分の際に指定した成分の数です。
+	 * @version 2026/10/17 07:02
+	 * */
+	public void value(QuadraturePoint point, double[] result);
+}
@@ -0,0 +1,7 @@
+/**
+ * NURBSの定義域上で積分を行うクラス群。
+ * 要素(空でないノット範囲)毎にガウス・ルジャンドル則の積分点を置き、
+ * 積分点での基底関数の値を予め計算して保持します。
+ * @version 2026/10/17 07:02
+ */
+package simulation.function.nurbs.quadrature;
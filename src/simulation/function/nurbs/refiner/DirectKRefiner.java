@@ -4,6 +4,11 @@ import simulation.function.nurbs.NURBSBasisFunction;
 
 /**
  * k法によりNURBSを精細化するクラス。
+ *
+ * @deprecated 連立方程式を解くため計算量が大きく、また実装が完了していません。
+ * ベジエ分解により次数を上げる{@link NURBSRefiner#elevateDegree(simulation.function.nurbs.NURBSFunctionGroup, int[])}、
+ * {@link NURBSRefiner#kRefine(simulation.function.nurbs.NURBSFunctionGroup, int[], double[][])}
+ * を利用してください。
  * */
 @Deprecated
 public class DirectKRefiner implements KRefiner {
@@ -161,11 +166,12 @@ public class DirectKRefiner implements KRefiner {
 	 * @param basis 元の基底関数
 	 * */
 	private static NURBSBasisFunction refineKnot(NURBSBasisFunction basis, double[] X) {
-		double[] knot = basis.knot[0];
-		int p = basis.p[0];
+		double[] knot = basis.giveKnotVector_Shallow()[0];
+		int p = basis.giveDegreeArray()[0];
+		double[] weight = basis.giveWeightArray_Shallow();
 
 		double[] bKnot = new double[knot.length+X.length];
-		double[] bWeight = new double[basis.weight.length+X.length];
+		double[] bWeight = new double[weight.length+X.length];
 
 		int k_bef=-1,i_U=0,i_bU=0;
 
@@ -180,7 +186,7 @@ public class DirectKRefiner implements KRefiner {
 			//--------------------------------------------
 
 			for(int j=k_bef+1 ; j<=k_now ; j++) {
-				bWeight[j] = basis.weight[j-i_X];
+				bWeight[j] = weight[j-i_X];
 			}
 
 			//---------------------------------------------
@@ -197,7 +203,7 @@ public class DirectKRefiner implements KRefiner {
 		}
 
 		for(int i=k_bef+1;i<bWeight.length;i++) {
-			bWeight[i] = basis.weight[i-X.length];
+			bWeight[i] = weight[i-X.length];
 		}
 
 		for(;i_U<knot.length;i_U++,i_bU++) {
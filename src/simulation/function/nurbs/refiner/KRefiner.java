@@ -4,6 +4,10 @@ import simulation.function.nurbs.NURBSBasisFunction;
 
 /**
  * NURBSをk法（次数を上げた後、ノットを挿入する）により精細化するインターフェースです。
+ *
+ * @deprecated 基底関数とNURBS関数を書き換える設計のため実装されていません。
+ * 新しいインスタンスを返す{@link NURBSRefiner#kRefine(simulation.function.nurbs.NURBSFunctionGroup, int[], double[][])}
+ * を利用してください。
  * */
 @Deprecated
 public interface KRefiner {
@@ -0,0 +1,47 @@
+package simulation.function.nurbs.refiner;
+
+import simulation.function.nurbs.NURBSFunctionGroup;
+
+/**
+ * <p>ノット除去の結果をまとめたもの。
+ * <p>除去後のNURBS関数群と、除去したノットの数、
+ * 除去によって生じる関数値の変化量の上限を保持します。
+ *
+ * @see NURBSRefiner#removeKnot(NURBSFunctionGroup, int, double, int, double)
+ * @see NURBSRefiner#reduceKnots(NURBSFunctionGroup, double)
+ * @version 2026/10/17 07:00
+ * */
+public class KnotRemovalResult {
+	/**
+	 * ノットを除去した後のNURBS関数群
+	 * @version 2026/10/17 07:00
+	 * */
+	public final NURBSFunctionGroup group;
+
+	/**
+	 * 除去したノットの数(多重度も数える)
+	 * @version 2026/10/17 07:00
+	 * */
+	public final int removedNum;
+
+	/**
+	 * <p>除去前の関数群と除去後の関数群の、関数値の差の上限。
+	 * <p>全ての変数値と全ての関数について、関数値の差(ユークリッド距離)はこの値以下です。
+	 * 1回の除去毎の上限の和であるため、実際の差より大きめの値になります。
+	 * @version 2026/10/17 07:00
+	 * */
+	public final double errorBound;
+
+	/**
+	 * 結果をまとめます。
+	 * @param group ノットを除去した後のNURBS関数群
+	 * @param removedNum 除去したノットの数
+	 * @param errorBound 関数値の差の上限
+	 * @version 2026/10/17 07:00
+	 * */
+	public KnotRemovalResult(NURBSFunctionGroup group, int removedNum, double errorBound) {
+		this.group = group;
+		this.removedNum = removedNum;
+		this.errorBound = errorBound;
+	}
+}
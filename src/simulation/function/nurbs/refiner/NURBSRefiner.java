@@ -1,20 +1,144 @@
 package simulation.function.nurbs.refiner;
 
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
 import simulation.function.nurbs.NURBSBasisFunction;
 import simulation.function.nurbs.NURBSFunction;
 import simulation.function.nurbs.NURBSFunctionGroup;
 import simulation.function.nurbs.assertion.NURBSAsserter;
+import simulation.solver.CSRMatrix;
 
 /**
- * NURBS関数の形状を変えずにノットや次数を変化させるクラス
+ * <p>NURBS関数の形状を変えずにノットや次数を変化させるクラス。
+ * また、許容誤差の範囲で形状を保ちながらノットを除去することもできます。
+ * <p>ある変数方向へのノット挿入や次数上げは、他の変数のインデックスを固定した
+ * コントロールポイントの列(ファイバー)毎に独立に計算できます。
+ * 並列計算を指定した場合、ファイバーを分割してForkJoinPoolで計算します。
+ * ただし、ファイバーの数がしきい値以下の場合は逐次計算します。
+ * <p>結果の基底関数組と関数は、計算で生成した配列を複製せずにそのまま保持します
+ * ({@link NURBSBasisFunction#wrap(double[][], int[], double[])}、
+ * {@link NURBSFunction#wrap(double[], int, NURBSBasisFunction)})。
+ * 配列を共有する設定({@link #NURBSRefiner(boolean, int, boolean)})では、さらに変化しなかった
+ * ノットベクトルや、変化しなかった1つの関数のコントロールポイントを元の関数群と共有します。
  *
- * @version 2019/02/23 17:59
+ * @version 2026/10/17 07:54
  * */
 public class NURBSRefiner {
 
+	/**
+	 * 並列計算を行う場合はtrue
+	 * @version 2026/10/17 06:55
+	 * */
+	private final boolean isparallel;
+
+	/**
+	 * 1つのタスクで逐次計算するファイバーの数の上限
+	 * @version 2026/10/17 06:55
+	 * */
+	private final int threshold;
+
+	/**
+	 * 変化しなかった配列を元の関数群と共有する場合はtrue
+	 * @version 2026/10/17 07:54
+	 * */
+	private final boolean shareArrays;
+
+	/**
+	 * {@link #NURBSRefiner(boolean)}で用いるしきい値の既定値
+	 * @version 2026/10/17 06:55
+	 * */
+	public static final int DEFAULT_THRESHOLD = 4096;
+
+	/**
+	 * 逐次計算を行うインスタンスを生成します。
+	 * @version 2026/10/17 06:55
+	 * */
+	public NURBSRefiner() {
+		this(false);
+	}
+
+	/**
+	 * 並列計算を行うかどうかを指定してインスタンスを生成します。
+	 * しきい値には{@link #DEFAULT_THRESHOLD}を用います。
+	 *
+	 * @param isparallel trueの時、ファイバーを分割して並列に計算する。
+	 * @version 2026/10/17 06:55
+	 * */
+	public NURBSRefiner(boolean isparallel) {
+		this(isparallel, DEFAULT_THRESHOLD);
+	}
+
+	/**
+	 * 並列計算を行うかどうかと、そのしきい値を指定してインスタンスを生成します。
+	 * 1回のノット挿入で扱うファイバー(重みまたは座標の1成分についての、ある変数方向の
+	 * コントロールポイントの列)の数がthresholdを超える場合に、それらを分割して並列に計算します。
+	 *
+	 * @param isparallel trueの時、ファイバーを分割して並列に計算する。
+	 * @param threshold 1つのタスクで逐次計算するファイバーの数の上限
+	 * @throws IllegalArgumentException thresholdが0以下の場合
+	 * @version 2026/10/17 06:55
+	 * */
+	public NURBSRefiner(boolean isparallel, int threshold) {
+		this(isparallel, threshold, false);
+	}
+
+	/**
+	 * 並列計算の設定に加え、変化しなかった配列を元の関数群と共有するかどうかを指定してインスタンスを生成します。
+	 * <p>shareArraysがtrueの場合、返される関数群は、精細化で変化しなかった変数のノットベクトルの配列を
+	 * 元の基底関数組と共有します。関数群が1つの関数からなり、何も変化しなかった場合は、
+	 * 元の関数のコントロールポイントの配列も共有します。
+	 * 基底関数組と関数はimmutableなので、_Shallowメソッドで得た配列を変更しない限り共有しても結果は変わらず、
+	 * 大きなモデルを繰り返し精細化する際に必要なメモリを抑えられます。
+	 * shareArraysがfalseの場合、返される関数群は指定されたものとは全く異なる参照をもちます。
+	 *
+	 * @param isparallel trueの時、ファイバーを分割して並列に計算する。
+	 * @param threshold 1つのタスクで逐次計算するファイバーの数の上限
+	 * @param shareArrays trueの時、変化しなかった配列を元の関数群と共有する。
+	 * @throws IllegalArgumentException thresholdが0以下の場合
+	 * @version 2026/10/17 07:54
+	 * */
+	public NURBSRefiner(boolean isparallel, int threshold, boolean shareArrays) {
+		if(threshold <= 0) {
+			throw new IllegalArgumentException("しきい値thresholdは正の数でなければなりません");
+		}
+		this.isparallel = isparallel;
+		this.threshold = threshold;
+		this.shareArrays = shareArrays;
+	}
+
+	/**
+	 * このインスタンスが並列計算を行うかどうかを返します。
+	 * @return trueならば並列計算を行う
+	 * @version 2026/10/17 06:55
+	 * */
+	public boolean isParallel() {
+		return this.isparallel;
+	}
+
+	/**
+	 * 1つのタスクで逐次計算するファイバーの数の上限を返します。
+	 * @return しきい値
+	 * @version 2026/10/17 06:55
+	 * */
+	public int giveThreshold() {
+		return this.threshold;
+	}
+
+	/**
+	 * このインスタンスが、変化しなかった配列を元の関数群と共有するかどうかを返します。
+	 * @return trueならば共有する
+	 * @see #NURBSRefiner(boolean, int, boolean)
+	 * @version 2026/10/17 07:54
+	 * */
+	public boolean sharesArrays() {
+		return this.shareArrays;
+	}
+
 	/**
 	 * 指定されたNURBS基底関数に対して、ノットを挿入します。
-	 * 返されるインスタンスは指定されたものとは全く異なる参照をもちます。
+	 * 返されるインスタンスは、配列を共有する設定でない限り指定されたものとは全く異なる参照をもちます。
 	 * また、返されるNURBSFunctionインスタンスの順番は、指定された順番と対応しています。
 	 * また、指定されたNURBS関数の状態は変化しません。
 	 *
@@ -28,7 +152,7 @@ public class NURBSRefiner {
 	 * 		<li>Xが単調増加列の配列の配列で無かった場合
 	 * 		<li>Xの要素数がbasisの変数の数に一致しない場合。
 	 * </ul>
-	 * @version 2019/02/23 17:56
+	 * @version 2026/10/17 06:55
 	 * */
 	public NURBSFunctionGroup refineKnot(NURBSFunctionGroup group, double[][] X) {
 		NURBSAsserter asserter = new NURBSAsserter(true);
@@ -36,85 +160,415 @@ public class NURBSRefiner {
 		asserter.assertInsertedKnotVectorIsValid(group.basis,X);
 
 		NURBSBasisFunction basis = group.basis;
-		NURBSFunction[] funcs = group.funcs;
+		int S = numberOfComponents(group.funcs);
+		double[] ctrl = packCtrl(group, S);
+		int[] n = basis.giveNumberArrayOfCtrl();
 
-		//元のコントロールポイント数
-		int n_All = basis.giveNumberOfAllCtrl();
+		//p:基底関数の次数配列、精細化では次数が変化しないので、
+		//後の関数のインスタンス化でも用いる
+		int[] p = basis.giveDegreeArray();
+		double[][] NewKnot = new double[basis.parameterNum][];
+
+		//新しいポイントとノットを計算する
+		double[] NewCtrl = refineKnot(ctrl, S, n, basis.giveKnotVector_Shallow(), X, NewKnot, p);
+
+		return unpackCtrl(NewCtrl, S, NewKnot, p, group.funcs, this.shareArrays);
+	}
+
+	/**
+	 * <p>指定されたNURBS関数群の形状を変えずに、基底関数の次数を上げます。
+	 * <p>各変数方向について、ノットの挿入によりベジエ曲線の区間に分解し、
+	 * それぞれの区間で次数を閉じた式で上げた後、余分なノットを除去します(PieglとTillerのA5.9)。
+	 * 連立方程式を解かないため、計算量はコントロールポイントの数に概ね比例します。
+	 * <p>次数をt上げた後の各ノットの多重度は、元の多重度+tになります。
+	 * 即ち、関数の各ノットでの連続性は保たれます。
+	 * 返されるインスタンスは、配列を共有する設定でない限り指定されたものとは全く異なる参照をもち、
+	 * 指定されたNURBS関数の状態は変化しません。
+	 *
+	 * @param group NURBS基底関数とコントロールポイントの組
+	 * @param t 各変数方向について上げる次数
+	 * @return 次数を上げたNURBS関数群
+	 * @throws IllegalArgumentException
+	 * <ul>
+	 * 		<li>tの要素数がbasisの変数の数に一致しない場合
+	 * 		<li>tの要素のうちいずれかが負数であった場合
+	 * 		<li>ノットベクトルに多重度が次数を超える内部のノット(関数が不連続になるノット)がある場合
+	 * </ul>
+	 * @version 2026/10/17 06:58
+	 * */
+	public NURBSFunctionGroup elevateDegree(NURBSFunctionGroup group, int[] t) {
+		NURBSBasisFunction basis = group.basis;
+		assertDegreeIncrementIsValid(basis, t);
+
+		int S = numberOfComponents(group.funcs);
+		double[] ctrl = packCtrl(group, S);
 		int[] n = basis.giveNumberArrayOfCtrl();
-		//新しいコントロールポイントの数
-		int Newn_All = 1;
-		for(int varNum=0;varNum<basis.parameterNum;varNum++) {
-			//X[varNum].length:ある変数方向のポイントの増加数
-			Newn_All *= (n[varNum]+X[varNum].length);
-		}
+		int[] p = basis.giveDegreeArray();
+		double[][] NewKnot = new double[basis.parameterNum][];
 
-		//---------------------------------------------------------------------
+		double[] NewCtrl = elevateDegree(ctrl, S, n, basis.giveKnotVector_Shallow(), t, NewKnot, p);
 
-		//ctrl:今のポイントの値をまとめたもの
-		//NewCtrl:新しいポイントを保持するもの
-		//[0][*][0]:重み
-		//[i][1][d]:func[i]の1つ目のポイントのd座標
+		return unpackCtrl(NewCtrl, S, NewKnot, p, group.funcs, this.shareArrays);
+	}
 
-		//メモリ消費量については、
-		//重みは元の配列、ここでctrl用に並び替えたもの、NewWeightで3つ分のメモリが必要
-		//ポイントは元の配列、NewCtrlで2つ分のメモリが必要
-		double[][][] ctrl = new double[funcs.length+1][][];
-		double[][][] NewCtrl = new double[funcs.length+1][Newn_All][];
-		double[] weight = basis.giveWeightArray_Shallow();
+	/**
+	 * <p>k法により精細化します。即ち、次数をt上げた後、ノットXを挿入します。
+	 * <p>{@link #elevateDegree(NURBSFunctionGroup, int[])}の後に
+	 * {@link #refineKnot(NURBSFunctionGroup, double[][])}を行うものと同じ結果になりますが、
+	 * 途中のNURBS関数群をインスタンス化しません。
+	 *
+	 * @param group NURBS基底関数とコントロールポイントの組
+	 * @param t 各変数方向について上げる次数
+	 * @param X 各変数方向のノットベクトルに挿入するノット配列
+	 * @return 精細化したNURBS関数群
+	 * @throws IllegalArgumentException
+	 * <ul>
+	 * 		<li>tの要素のうちいずれかが負数であった場合
+	 * 		<li>Xに含まれる値が、基底関数の定義域外であった場合
+	 * 		<li>Xを追加することによって関数の連続性が保持されない場合
+	 * 		<li>Xが単調増加列の配列の配列で無かった場合
+	 * 		<li>t、Xの要素数がbasisの変数の数に一致しない場合
+	 * 		<li>ノットベクトルに多重度が次数を超える内部のノット(関数が不連続になるノット)がある場合
+	 * </ul>
+	 * @version 2026/10/17 06:58
+	 * */
+	public NURBSFunctionGroup kRefine(NURBSFunctionGroup group, int[] t, double[][] X) {
+		NURBSBasisFunction basis = group.basis;
+		assertDegreeIncrementIsValid(basis, t);
+		//次数を上げても定義域は変わらないので、元の基底関数で調べる
+		new NURBSAsserter(true).assertInsertedKnotVectorIsValid(basis, X);
 
-		ctrl[0] = new double[n_All][1];
-		for(int i=0;i<n_All;i++) {
-			ctrl[0][i][0] = weight[i];
+		int S = numberOfComponents(group.funcs);
+		double[] ctrl = packCtrl(group, S);
+		int[] n = basis.giveNumberArrayOfCtrl();
+		int[] p = basis.giveDegreeArray();
+		double[][] ElevatedKnot = new double[basis.parameterNum][];
+		double[][] NewKnot = new double[basis.parameterNum][];
+
+		double[] ElevatedCtrl = elevateDegree(ctrl, S, n, basis.giveKnotVector_Shallow(), t, ElevatedKnot, p);
+		double[] NewCtrl = refineKnot(ElevatedCtrl, S, n, ElevatedKnot, X, NewKnot, p);
+
+		return unpackCtrl(NewCtrl, S, NewKnot, p, group.funcs, this.shareArrays);
+	}
+
+	/**
+	 * <p>変数variable方向のノットuを、許容誤差の範囲でnum回まで除去します。
+	 * <p>除去は関数群の全ての関数について同時に行われ、いずれかの関数の形状が
+	 * 許容誤差を超えて変化する場合、または重みが正でなくなる場合は、その時点で除去を止めます。
+	 * 1回の除去ではPieglとTillerのRemoveCurveKnot(A5.8)を、他の変数のインデックスを固定した
+	 * ポイントの列毎に同次座標で行い、その変化量の最大値から関数値の差の上限を求めます。
+	 * <p>返されるインスタンスは、配列を共有する設定でない限り指定されたものとは全く異なる参照をもち、
+	 * 指定されたNURBS関数の状態は変化しません。
+	 *
+	 * @param group NURBS基底関数とコントロールポイントの組
+	 * @param variable ノットを除去する変数
+	 * @param u 除去するノットの値
+	 * @param num 除去する最大の回数
+	 * @param tolerance 関数値の差の許容誤差
+	 * @return 除去後の関数群、除去した回数、関数値の差の上限
+	 * @throws IllegalArgumentException
+	 * <ul>
+	 * 		<li>variableが変数の範囲外の場合
+	 * 		<li>uがノットベクトルの内部のノットでない場合
+	 * 		<li>numが1未満の場合
+	 * 		<li>toleranceが負数の場合
+	 * </ul>
+	 * @version 2026/10/17 07:00
+	 * */
+	public KnotRemovalResult removeKnot(NURBSFunctionGroup group, int variable, double u, int num, double tolerance) {
+		NURBSBasisFunction basis = group.basis;
+		if(variable < 0 || basis.parameterNum <= variable) {
+			throw new IllegalArgumentException("変数variableが範囲外です");
 		}
-		for(int i_func=0;i_func<funcs.length;i_func++) {
-			double[][] funcCtrls = funcs[i_func].giveCtrlArray_Shallow();
-			ctrl[i_func] = funcCtrls;
+		if(num < 1) {
+			throw new IllegalArgumentException("除去する回数numが1未満です");
+		}
+		if(tolerance < 0) {
+			throw new IllegalArgumentException("許容誤差toleranceが負数です");
+		}
+		double[] U = basis.giveKnotVector_Shallow()[variable];
+		if(!(U[0] < u && u < U[U.length-1]) || findLastIndex(U, u) < 0) {
+			throw new IllegalArgumentException("uはノットベクトルの内部のノットでありません:"+u);
 		}
 
-		for(int i_func=0;i_func<funcs.length;i_func++) {
-			for(int i=0;i<Newn_All;i++) {
-				NewCtrl[i_func][i] = new double[funcs[i_func].dimension];
+		KnotRemoval removal = new KnotRemoval(group, tolerance, this.shareArrays);
+		for(int i=0;i<num;i++) {
+			if(!removal.remove(variable, u)) {
+				break;
 			}
 		}
+		return removal.result();
+	}
 
+	/**
+	 * <p>許容誤差の範囲で、全ての変数方向の内部のノットをできるだけ除去します。
+	 * <p>変数0から順に、各変数の内部のノットを小さい方から除去できなくなるまで除去します。
+	 * 除去による関数値の差の上限の和が許容誤差を超える除去は行いません。
+	 * 適応的な精細化を繰り返す計算で、不要になったノットを取り除き
+	 * コントロールポイントの数を抑えるために利用してください。
+	 *
+	 * @param group NURBS基底関数とコントロールポイントの組
+	 * @param tolerance 関数値の差の許容誤差
+	 * @return 除去後の関数群、除去した回数、関数値の差の上限
+	 * @throws IllegalArgumentException toleranceが負数の場合
+	 * @see #removeKnot(NURBSFunctionGroup, int, double, int, double)
+	 * @version 2026/10/17 07:00
+	 * */
+	public KnotRemovalResult reduceKnots(NURBSFunctionGroup group, double tolerance) {
+		if(tolerance < 0) {
+			throw new IllegalArgumentException("許容誤差toleranceが負数です");
+		}
+		KnotRemoval removal = new KnotRemoval(group, tolerance, this.shareArrays);
+		double[][] knot = group.basis.giveKnotVector_Shallow();
+		for(int l=0;l<knot.length;l++) {
+			double[] U = knot[l];
+			for(int i=1;i<U.length-1;i++) {
+				if(U[i] == U[i-1] || U[i] == U[0] || U[i] == U[U.length-1]) {
+					continue;
+				}
+				while(removal.remove(l, U[i])) {
+					//除去できなくなるまで続ける
+				}
+			}
+		}
+		return removal.result();
+	}
 
-		//---------------------------------------------------------------------
+	/**
+	 * <p>1変数のBスプライン基底関数のノットベクトルにノットを挿入する際の、
+	 * コントロールポイントの変換行列Tを返します。
+	 * <p>挿入前の(同次座標の)コントロールポイントの列をP、挿入後をQとするとQ=TPです。
+	 * 行数は挿入後のポイントの数、列数は挿入前のポイントの数で、
+	 * Tの各行は高々p+1個の0でない要素を持ちます。計算は行毎に0でない範囲だけを保持して行うので、
+	 * 計算量と記憶量はTの0でない要素の数に比例します。
+	 * 多変数の場合は、各変数方向の変換行列のクロネッカー積が変換行列になります。
+	 *
+	 * @param U ノットベクトル
+	 * @param p 次数
+	 * @param X 挿入するノット。単調増加で、Uの定義域[U[p],U[n]]内の値であること。
+	 * @return 変換行列
+	 * @throws NullPointerException UまたはXがnullの場合
+	 * @throws IllegalArgumentException
+	 * <ul>
+	 * 		<li>pが負数、またはUの長さがp+2未満の場合
+	 * 		<li>Xが単調増加でない場合、または定義域外の値を含む場合
+	 * 		<li>Xを挿入することで関数が不連続になる場合
+	 * </ul>
+	 * @version 2026/10/17 07:08
+	 * */
+	public static CSRMatrix createInsertionMatrix(double[] U, int p, double[] X) {
+		if(U == null) {
+			throw new NullPointerException("引数Uがnullです");
+		}else if(X == null) {
+			throw new NullPointerException("引数Xがnullです");
+		}
+		if(p < 0 || U.length < p+2) {
+			throw new IllegalArgumentException("次数とノットベクトルの長さが合いません");
+		}
+		final int n = U.length-p-1;
+		for(int j=0;j<X.length;j++) {
+			if(X[j] < U[p] || U[n] < X[j] || (j > 0 && X[j] < X[j-1])) {
+				throw new IllegalArgumentException("挿入するノットが単調増加でないか、定義域外の値を含みます");
+			}
+		}
 
-		//curentKnot:現在のノット
-		//NewKnot:新しいノットを保持するもの
-		double[][] currentKnot = basis.giveKnotVector_Shallow();
-		double[][] NewKnot = new double[basis.parameterNum][];
-		for(int varNum=0;varNum<basis.parameterNum;varNum++) {
-			NewKnot[varNum] = new double[currentKnot[varNum].length +X[varNum].length];
+		final int nb = n+X.length;
+		if(X.length == 0) {
+			int[] rowPtr = new int[n+1], colIndex = new int[n];
+			double[] value = new double[n];
+			for(int j=0;j<n;j++) {
+				rowPtr[j+1] = j+1;
+				colIndex[j] = j;
+				value[j] = 1;
+			}
+			return new CSRMatrix(n, n, rowPtr, colIndex, value);
 		}
+		double[] bU = mergeKnot(U, X, p);
 
-		//---------------------------------------------------------------------
+		//単位行列の各列をポイントとみなしてA5.4の挿入を行うと、結果がTになる。
+		//Tの各行の0でない要素は高々p+1個の連続した列にあるので、行毎に0でない範囲だけを
+		//row[i](start[i]列目から)として保持し、密な行列を作らずにA5.4と同じ計算を行う。
+		//row[i]は生成後に変更しないので、行の複製は参照の共有で済ませる
+		final int r = X.length-1;
+		double[][] row = new double[nb][];
+		int[] start = new int[nb];
+		final double[] unit = {1};
+		int a = findSpan(U, p, n, X[0]);
+		int b = findSpan(U, p, n, X[r])+1;
+		for(int j=0;j<=a-p;j++) {
+			row[j] = unit;
+			start[j] = j;
+		}
+		for(int j=b-1;j<n;j++) {
+			row[j+r+1] = unit;
+			start[j+r+1] = j;
+		}
+		int i = b+p-1, k = b+p+r;
+		for(int j=r;j>=0;j--) {
+			while(X[j] <= U[i] && i > a) {
+				row[k-p-1] = unit;
+				start[k-p-1] = i-p-1;
+				k--;
+				i--;
+			}
+			row[k-p-1] = row[k-p];
+			start[k-p-1] = start[k-p];
+			for(int h=1;h<=p;h++) {
+				int ind = k-p+h;
+				double alpha = bU[k+h] -X[j];
+				if(alpha == 0) {
+					row[ind-1] = row[ind];
+					start[ind-1] = start[ind];
+				}else {
+					alpha = alpha/(bU[k+h] -U[i-p+h]);
+					int from = Math.min(start[ind-1], start[ind]);
+					int to = Math.max(start[ind-1]+row[ind-1].length, start[ind]+row[ind].length);
+					double[] blended = new double[to-from];
+					double beta = 1-alpha;
+					for(int c=from;c<to;c++) {
+						blended[c-from] = alpha*entry(row[ind-1], start[ind-1], c) +beta*entry(row[ind], start[ind], c);
+					}
+					row[ind-1] = blended;
+					start[ind-1] = from;
+				}
+			}
+			k--;
+		}
 
-		//p:基底関数の次数配列、精細化では次数が変化しないので、
-		//後の関数のインスタンス化でも用いる
-		int[] p = basis.giveDegreeArray();
+		//0でない要素だけを詰めて格納する
+		int[] rowPtr = new int[nb+1];
+		for(int j=0;j<nb;j++) {
+			int count = 0;
+			for(double v:row[j]) {
+				if(v != 0) {
+					count++;
+				}
+			}
+			rowPtr[j+1] = rowPtr[j]+count;
+		}
+		int[] colIndex = new int[rowPtr[nb]];
+		double[] value = new double[rowPtr[nb]];
+		for(int j=0,e=0;j<nb;j++) {
+			for(int c=0;c<row[j].length;c++) {
+				if(row[j][c] != 0) {
+					colIndex[e] = start[j]+c;
+					value[e++] = row[j][c];
+				}
+			}
+		}
+		return new CSRMatrix(nb, n, rowPtr, colIndex, value);
+	}
 
-		//新しいポイントとノットを計算する
-		refineKnot(ctrl, NewCtrl, currentKnot, X, NewKnot, p);
+	/**
+	 * start列目から始まる行vのc列目の要素を返します。範囲外は0です。
+	 * */
+	private static double entry(double[] v, int start, int c) {
+		return (start <= c && c < start+v.length)? v[c-start] : 0;
+	}
 
-		//---------------------------------------------------------------------
+	/**
+	 * U[k] &lt;= t &lt; U[k+1]となるkを、p&lt;=k&lt;=n-1の範囲で二分探索により探します。
+	 * tがU[n]以上の場合はn-1を返します。
+	 * */
+	private static int findSpan(double[] U, int p, int n, double t) {
+		if(t >= U[n]) {
+			return n-1;
+		}
+		int low = p, high = n;
+		while(high-low > 1) {
+			int mid = (low+high) >>> 1;
+			if(t < U[mid]) {
+				high = mid;
+			}else {
+				low = mid;
+			}
+		}
+		return low;
+	}
 
-		//計算結果から、新しいNURBSBasisFunctionとNURBSFunctionを生成するために、
-		//それらのコンストラクタの引数に必要なものを用意する
-		//具体的にはコントロールポイントを適切な構造に組み替える
+	private static void assertDegreeIncrementIsValid(NURBSBasisFunction basis, int[] t) {
+		if(t.length != basis.parameterNum) {
+			throw new IllegalArgumentException("基底関数の数と上げる次数の数が合いません");
+		}
+		for(int l=0;l<t.length;l++) {
+			if(t[l] < 0) {
+				throw new IllegalArgumentException("次数t["+l+"]が負数です");
+			}
+		}
+	}
 
-		//新しい重みの配列
+	/**
+	 * 重みと全ての関数の重み付きの座標を合わせた、1つのポイントあたりの要素数を返します。
+	 * */
+	private static int numberOfComponents(NURBSFunction[] funcs) {
+		int S = 1;
+		for(NURBSFunction func:funcs) {
+			S += func.dimension;
+		}
+		return S;
+	}
+
+	/**
+	 * 重みと全ての関数の重み付きコントロールポイントを1つの配列にまとめます。
+	 * ポイント毎にS個の要素をもち、[0]が重み、[1]以降がfuncs[0]、funcs[1]、...の重み付きの座標です。
+	 * 関数が1つの場合はその関数の配列が既にこの形式なので、複製せずにそのまま返します。
+	 * 戻り値の配列は読むだけで、変更しないでください。
+	 * */
+	private static double[] packCtrl(NURBSFunctionGroup group, int S) {
+		if(group.funcs.length == 1) {
+			return group.funcs[0].giveHomogeneousCtrlArray_Shallow();
+		}
+		NURBSBasisFunction basis = group.basis;
+		int n_All = basis.giveNumberOfAllCtrl();
+		double[] ctrl = new double[n_All*S];
+		double[] weight = basis.giveWeightArray_Shallow();
+		for(int i=0;i<n_All;i++) {
+			ctrl[i*S] = weight[i];
+		}
+		for(int i_func=0,offset=1;i_func<group.funcs.length;i_func++) {
+			double[] Pw = group.funcs[i_func].giveHomogeneousCtrlArray_Shallow();
+			int Sf = group.funcs[i_func].dimension+1;
+			for(int i=0;i<n_All;i++) {
+				System.arraycopy(Pw, i*Sf+1, ctrl, i*S+offset, Sf-1);
+			}
+			offset += Sf-1;
+		}
+		return ctrl;
+	}
+
+	/**
+	 * {@link #packCtrl(NURBSFunctionGroup, int)}の形式の配列から、
+	 * 新しいNURBSBasisFunctionとNURBSFunctionを生成し、Groupにまとめて返します。
+	 * NewKnotと、ここで生成する重みとコントロールポイントの配列は複製せずにそのまま保持させます。
+	 * 関数が1つの場合はNewCtrlをそのまま関数のコントロールポイントとします。
+	 * ただしNewCtrlが元の関数の配列のまま(何も変化しなかった)で、shareがfalseの場合は複製します。
+	 * */
+	private static NURBSFunctionGroup unpackCtrl(double[] NewCtrl, int S, double[][] NewKnot, int[] p, NURBSFunction[] funcs, boolean share) {
+		int Newn_All = NewCtrl.length/S;
 		double[] NewWeight = new double[Newn_All];
 		for(int i=0;i<Newn_All;i++) {
-			NewWeight[i] = NewCtrl[0][i][0];
+			NewWeight[i] = NewCtrl[i*S];
 		}
+		NURBSBasisFunction NewBasis = NURBSBasisFunction.wrap(NewKnot, p, NewWeight);
 
-		//---------------------------------------------------------------------
-		//NURBSBasisFunctionとNURBSFunctionをインスタンス化し、Groupにまとめて返す
-		NURBSBasisFunction NewBasis = new NURBSBasisFunction(NewKnot, p, NewWeight);
 		NURBSFunction[] NewFuncs = new NURBSFunction[funcs.length];
-		for(int i_func=0;i_func<funcs.length;i_func++) {
-			NewFuncs[i_func] = new NURBSFunction(NewCtrl[i_func], NewBasis);
+		if(funcs.length == 1) {
+			double[] Pw = NewCtrl;
+			if(!share && Pw == funcs[0].giveHomogeneousCtrlArray_Shallow()) {
+				Pw = Pw.clone();
+			}
+			NewFuncs[0] = NURBSFunction.wrap(Pw, funcs[0].dimension, NewBasis);
+			return new NURBSFunctionGroup(NewBasis, NewFuncs);
+		}
+		for(int i_func=0,offset=1;i_func<funcs.length;i_func++) {
+			int dimension = funcs[i_func].dimension;
+			double[] Pw = new double[Newn_All*(dimension+1)];
+			for(int i=0;i<Newn_All;i++) {
+				Pw[i*(dimension+1)] = NewWeight[i];
+				System.arraycopy(NewCtrl, i*S+offset, Pw, i*(dimension+1)+1, dimension);
+			}
+			NewFuncs[i_func] = NURBSFunction.wrap(Pw, dimension, NewBasis);
+			offset += dimension;
 		}
 
 		return new NURBSFunctionGroup(NewBasis, NewFuncs);
@@ -122,98 +576,623 @@ public class NURBSRefiner {
 
 
 	/**
-	 * <p>TODO ポイント計算の実装を完了させる</p>
-	 * <p>TODO 処理のコンテクスト毎にメソッドを分割する</p>
-	 * <p>TODO 並列実装と逐次実装の両方を作る</p>
-	 *
-	 * ノットを精細化します。
+	 * <p>ノットを精細化します。
+	 * <p>変数0から順に、1つの変数方向についてノットを挿入したポイント配列を作ります。
+	 * 各変数方向の挿入はPieglとTillerのRefineKnotVectCurve(A5.4)を、
+	 * 他の変数のインデックスを固定したポイントの列に対して行うものです。
 	 * ctrlとknotとX、そしてpの要素の値は変えません。
-	 * また、NewCtrlとNewKnotは全て初期化しておいてください。
 	 *
 	 * @param ctrl 基底関数の重み、各NURBS関数のコントロールポイントをまとめたもの
-	 * @param NewCtrl 新しいポイントを保存する配列
+	 * @param S ctrlの1つのポイントあたりの要素数
+	 * @param n 各変数方向のポイントの数。新しいポイントの数に書き換えられる。
 	 * @param knot 基底関数のノットベクトル
 	 * @param X 挿入するノット
 	 * @param NewKnot 新しいノットベクトルを保存する配列
 	 * @param p 基底関数の次数
+	 * @return 新しいポイントの配列
 	 *
 	 * @throws IllegalArgumentException ノットを挿入した事により関数の不連続化が起こる場合
-	 * @throws NullPointerException NewCtrl[*]やNewKnot[*]がnullの場合
-	 * @version 2019/02/22 21:57
+	 * @version 2026/10/17 06:55
 	 * */
-	private void refineKnot(double[][][] ctrl, double[][][] NewCtrl, double[][] knot, double[][] X, double[][] NewKnot, int[] p) {
-		//変数の数
-		final int parameterNum = knot.length;
+	private double[] refineKnot(double[] ctrl, int S, int[] n, double[][] knot, double[][] X, double[][] NewKnot, int[] p) {
+		double[] current = ctrl;
+		for(int l=0;l<knot.length;l++) {
+			if(X[l].length == 0) {
+				NewKnot[l] = this.shareArrays? knot[l] : knot[l].clone();
+				continue;
+			}
+
+			//X[l]をknot[l]に挿入した結果をNewKnot[l]に代入する
+			NewKnot[l] = mergeKnot(knot[l], X[l], p[l]);
 
-		for(int l=0;l<parameterNum;l++) {
+			//変数l方向のファイバーについて新しいポイントを計算する
+			int nb = n[l]+X[l].length;
+			current = applyAlongFibers(current, S, n, l, nb, new KnotInsertion(knot[l], NewKnot[l], X[l], p[l], n[l]));
+			n[l] = nb;
+		}
 
-			double[] Ul = knot[l];
-			double[] Xl = X[l];
-			double[] bUl = NewKnot[l];
+		//全てのノットを挿入し終わり、ポイントも計算し終わった
+		return current;
+	}
 
-			//X[l]をknot[l]に挿入した結果をNewKnot[l]に代入する
-			//NewKnot[l]に挿入結果を作りながら、順次新しいポイントを計算していく
-			int k_bef = -1,k_now;
-			int i_Ul = 0, i_bUl = 0;
-			int n_Xl = Xl.length, n_Ul = Ul.length;
-			for(int i_Xl = 0;i_Xl < n_Xl ; i_Xl++) {
-				//x_iXまでbUlを完成させる
-				for(; Ul[i_Ul] <= Xl[i_Xl] ; i_Ul++,i_bUl++) {
-					bUl[i_bUl] = Ul[i_Ul];
+	/**
+	 * <p>次数を上げます。
+	 * <p>変数0から順に、1つの変数方向について次数を上げたポイント配列を作ります。
+	 * 各変数方向の計算はPieglとTillerのDegreeElevateCurve(A5.9)を、
+	 * 他の変数のインデックスを固定したポイントの列に対して行うものです。
+	 * ctrlとknotとtの要素の値は変えません。
+	 *
+	 * @param ctrl 基底関数の重み、各NURBS関数のコントロールポイントをまとめたもの
+	 * @param S ctrlの1つのポイントあたりの要素数
+	 * @param n 各変数方向のポイントの数。新しいポイントの数に書き換えられる。
+	 * @param knot 基底関数のノットベクトル
+	 * @param t 上げる次数
+	 * @param NewKnot 新しいノットベクトルを保存する配列
+	 * @param p 基底関数の次数。新しい次数に書き換えられる。
+	 * @return 新しいポイントの配列
+	 * @version 2026/10/17 06:58
+	 * */
+	private double[] elevateDegree(double[] ctrl, int S, int[] n, double[][] knot, int[] t, double[][] NewKnot, int[] p) {
+		double[] current = ctrl;
+		for(int l=0;l<knot.length;l++) {
+			if(t[l] == 0) {
+				NewKnot[l] = this.shareArrays? knot[l] : knot[l].clone();
+				continue;
+			}
+
+			//各ノットの多重度をt[l]ずつ増やしたものが新しいノットベクトルになる
+			NewKnot[l] = elevateKnot(knot[l], p[l], t[l]);
+
+			int nb = NewKnot[l].length -(p[l]+t[l]) -1;
+			current = applyAlongFibers(current, S, n, l, nb, new DegreeElevation(knot[l], NewKnot[l], p[l], t[l]));
+			n[l] = nb;
+			p[l] += t[l];
+		}
+		return current;
+	}
+
+	/**
+	 * 変数l方向の全てのファイバーに対して計算を行い、新しいポイント配列を返します。
+	 * 並列計算を行う場合、ファイバーの数がしきい値を超えるときはForkJoinPoolで計算します。
+	 *
+	 * @param current 現在のポイント配列
+	 * @param S 1つのポイントあたりの要素数
+	 * @param n 各変数方向の現在のポイントの数
+	 * @param l 計算を行う変数
+	 * @param nb 計算後の変数l方向のポイントの数
+	 * @param operation 1つのファイバーに対する計算
+	 * @return 新しいポイント配列
+	 * */
+	private double[] applyAlongFibers(double[] current, int S, int[] n, int l, int nb, FiberOperation operation) {
+		//outer:変数0からl-1のインデックスの組の数
+		//inner:変数l+1からm-1のインデックスの組の数*S、即ち変数l方向に隣り合うポイントの間隔
+		int outer = 1, inner = S;
+		for(int i=0;i<l;i++) {
+			outer *= n[i];
+		}
+		for(int i=l+1;i<n.length;i++) {
+			inner *= n[i];
+		}
+		double[] next = new double[outer*nb*inner];
+
+		FiberTask task = new FiberTask(operation, current, next, n[l], nb, outer, inner, 0, outer*inner);
+		if(this.isparallel && outer*inner > this.threshold) {
+			ForkJoinPool.commonPool().invoke(task);
+		}else {
+			task.compute();
+		}
+		return next;
+	}
+
+	/**
+	 * ノットベクトルUにXを挿入したものを返します。
+	 * 挿入後に多重度がpを超える内部のノットがある場合は例外を投げます。
+	 * */
+	private static double[] mergeKnot(double[] U, double[] X, int p) {
+		double[] bU = new double[U.length+X.length];
+		int i_U = 0, i_X = 0;
+		for(int i=0;i<bU.length;i++) {
+			if(i_X < X.length && (i_U == U.length || X[i_X] < U[i_U])) {
+				bU[i] = X[i_X++];
+			}else {
+				bU[i] = U[i_U++];
+			}
+		}
+
+		//内部のノットの多重度を調べる
+		int multiplicity = 1;
+		for(int i=1;i<bU.length;i++) {
+			multiplicity = (bU[i] == bU[i-1])? multiplicity+1 : 1;
+			if(multiplicity > p && bU[i] != bU[0] && bU[i] != bU[bU.length-1]) {
+				throw new IllegalArgumentException("ノットを挿入することで関数が不連続になります");
+			}
+		}
+		return bU;
+	}
+
+	/**
+	 * ノットベクトルUの各ノットの多重度をtずつ増やしたものを返します。
+	 * 多重度がpを超える内部のノットがある場合は例外を投げます。
+	 * */
+	private static double[] elevateKnot(double[] U, int p, int t) {
+		int distinct = 1, multiplicity = 1;
+		for(int i=1;i<U.length;i++) {
+			if(U[i] != U[i-1]) {
+				distinct++;
+				multiplicity = 1;
+			}else if(++multiplicity > p && U[i] != U[0] && U[i] != U[U.length-1]) {
+				throw new IllegalArgumentException("不連続なノットを含む関数の次数は上げられません:"+U[i]);
+			}
+		}
+		double[] Uh = new double[U.length+distinct*t];
+		for(int i=0,j=0;i<U.length;i++) {
+			Uh[j++] = U[i];
+			if(i == U.length-1 || U[i] != U[i+1]) {
+				for(int r=0;r<t;r++) {
+					Uh[j++] = U[i];
 				}
-				bUl[i_bUl] = Xl[i_Xl];
-				k_now = i_bUl -1;
-				i_bUl++;
+			}
+		}
+		return Uh;
+	}
+
+	/**
+	 * U[r]==uとなる最後のインデックスrを返します。無い場合は-1を返します。
+	 * */
+	private static int findLastIndex(double[] U, double u) {
+		for(int r=U.length-1;r>=0;r--) {
+			if(U[r] == u) {
+				return r;
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * <p>ノット除去の途中の状態を保持し、1回ずつ除去を試みるもの。
+	 * <p>同次座標での変化量を関数値の差の上限に換算する係数は、
+	 * (1+|P|max)/wminとして求めます(PieglとTiller 5.4節)。ここで|P|maxは全ての関数の
+	 * 座標を並べたポイントの大きさの最大値、wminは重みの最小値です。
+	 * 除去の度にポイントと重みは変化するので、係数は除去の前後のポイントの列から1回毎に求め直します。
+	 * Bスプラインの場合は重みが変化しないので、係数は1です。
+	 * */
+	private static class KnotRemoval {
+		private final NURBSFunction[] funcs;
+		private final int S;
+		private final int[] n, p;
+		private final double[][] knot;
+		private final double tolerance;
+		private final boolean share, rational;
+		private double factor;
+		private double[] ctrl;
+		private int removedNum = 0;
+		private double errorBound = 0;
+
+		KnotRemoval(NURBSFunctionGroup group, double tolerance, boolean share){
+			NURBSBasisFunction basis = group.basis;
+			this.funcs = group.funcs;
+			this.S = numberOfComponents(group.funcs);
+			this.ctrl = packCtrl(group, S);
+			this.n = basis.giveNumberArrayOfCtrl();
+			this.p = basis.giveDegreeArray();
+			this.knot = new double[basis.parameterNum][];
+			//除去の際はノットベクトルを新しい配列に置き換えるので、元の配列は変更しない
+			for(int l=0;l<knot.length;l++) {
+				this.knot[l] = share? basis.giveKnotVector_Shallow()[l] : basis.giveKnotVector_Shallow()[l].clone();
+			}
+			this.tolerance = tolerance;
+			this.share = share;
+
+			this.rational = !basis.isBSpline;
+			this.factor = rational? factor(ctrl, S) : 1;
+		}
 
-				//---------------------------------------------------------------------
+		/**
+		 * 同次座標のポイントの列Pwから、係数(1+|P|max)/wminを求めます。
+		 * 正でない重みがある場合は無限大を返します。
+		 * */
+		private static double factor(double[] Pw, int S) {
+			double wmin = Double.MAX_VALUE, Pmax = 0;
+			for(int i=0;i<Pw.length/S;i++) {
+				double w = Pw[i*S], norm = 0;
+				for(int c=1;c<S;c++) {
+					norm += (Pw[i*S+c]/w)*(Pw[i*S+c]/w);
+				}
+				wmin = Math.min(wmin, w);
+				Pmax = Math.max(Pmax, Math.sqrt(norm));
+			}
+			return (wmin > 0)? (1+Pmax)/wmin : Double.POSITIVE_INFINITY;
+		}
 
-				//x_iXを挿入した事による新しいポイントを計算するのに必要な分だけ、
-				//QiにPiを代入する
+		/**
+		 * 変数l方向のノットuを1回除去することを試みます。
+		 * 関数値の差の上限の和が許容誤差以下に収まる場合にのみ除去します。
+		 * @return 除去した場合true
+		 * */
+		boolean remove(int l, double u) {
+			double[] U = knot[l];
+			int r = findLastIndex(U, u);
+			if(r < 0 || u == U[0] || u == U[U.length-1]) {
+				return false;
+			}
+			int s = 0;
+			while(s <= r && U[r-s] == u) {
+				s++;
+			}
 
-				for(int j = k_bef+1 ; j <= k_now ;j++) {
-					//変数l以外の方向についてループさせる
-					//代入
-					//TODO 未実装
+			int outer = 1, inner = S;
+			for(int i=0;i<l;i++) {
+				outer *= n[i];
+			}
+			for(int i=l+1;i<n.length;i++) {
+				inner *= n[i];
+			}
+			int nl = n[l];
+			double[] next = new double[outer*(nl-1)*inner];
+			double[] temp = new double[(p[l]-s+3)*inner];
+			double error = 0;
+			for(int o=0;o<outer;o++) {
+				error = Math.max(error, removeOnce(ctrl, o*nl*inner, next, o*(nl-1)*inner, inner, nl, U, p[l], u, r, s, temp));
+				if(errorBound +error*factor > tolerance) {
+					return false;
 				}
+			}
+			//除去後のポイントの列でも係数を求め、大きい方を用いる
+			//重みが正でなくなる除去は行わない
+			double nextFactor = rational? factor(next, S) : 1;
+			if(nextFactor == Double.POSITIVE_INFINITY || errorBound +error*Math.max(factor, nextFactor) > tolerance) {
+				return false;
+			}
 
-				//---------------------------------------------------------------------
+			//除去を確定する
+			double[] NewU = new double[U.length-1];
+			System.arraycopy(U, 0, NewU, 0, r);
+			System.arraycopy(U, r+1, NewU, r, U.length-r-1);
+			knot[l] = NewU;
+			n[l] = nl-1;
+			ctrl = next;
+			removedNum++;
+			errorBound += error*Math.max(factor, nextFactor);
+			factor = nextFactor;
+			return true;
+		}
 
-				//新しいポイントを内分計算
+		/**
+		 * <p>1つの変数方向のポイントの列に対して、ノットU[r](=u、多重度s)を1回除去します(A5.8)。
+		 * <p>元のi番目のポイントはPw[src+i*inner]から、新しいポイントはQw[dst+i*inner]から
+		 * inner個の要素を持ちます。inner個の要素はS個ずつ別のポイントの列に属します。
+		 *
+		 * @return 同次座標での変化量の最大値
+		 * */
+		private double removeOnce(double[] Pw, int src, double[] Qw, int dst, int inner, int nl,
+				double[] U, int p, double u, int r, int s, double[] temp) {
+			final int ord = p+1;
+			final int first = r-p, last = r-s, off = first-1;
 
-				for(int j = k_now ; j >= k_now -p[l]+1 ; j--) {
-					double α = (Xl[i_Xl] -bUl[j])/(Ul[j-k_now+i_Ul+p[l]-1] -bUl[j]);
+			//temp[ii]:左右から求めた除去後のポイント。ii=i-offが元のインデックスiに対応する
+			System.arraycopy(Pw, src+off*inner, temp, 0, inner);
+			System.arraycopy(Pw, src+(last+1)*inner, temp, (last+1-off)*inner, inner);
+			int i = first, j = last, ii = 1, jj = last-off;
+			while(j-i > 0) {
+				double alfi = (u-U[i])/(U[i+ord]-U[i]);
+				double alfj = (u-U[j])/(U[j+ord]-U[j]);
+				for(int c=0;c<inner;c++) {
+					temp[ii*inner+c] = (Pw[src+i*inner+c] -(1-alfi)*temp[(ii-1)*inner+c])/alfi;
+					temp[jj*inner+c] = (Pw[src+j*inner+c] -alfj*temp[(jj+1)*inner+c])/(1-alfj);
+				}
+				i++;
+				ii++;
+				j--;
+				jj--;
+			}
 
-					//変数l以外の方向についてループさせる
-					//内分計算
-					//TODO 未実装
+			//左右から求めたポイントの食い違いを、ポイントの列毎に調べる
+			double error = 0;
+			double alfi = (j-i < 0)? 0 : (u-U[i])/(U[i+ord]-U[i]);
+			for(int q=0;q<inner;q+=S) {
+				double dist = 0;
+				for(int c=q;c<q+S;c++) {
+					double diff;
+					if(j-i < 0) {
+						diff = temp[(ii-1)*inner+c] -temp[(jj+1)*inner+c];
+					}else {
+						diff = Pw[src+i*inner+c] -(alfi*temp[(ii+1)*inner+c] +(1-alfi)*temp[(ii-1)*inner+c]);
+					}
+					dist += diff*diff;
+				}
+				error = Math.max(error, Math.sqrt(dist));
+			}
 
+			//除去後のポイントを書き込む。インデックスfoutのポイントが取り除かれる
+			final int fout = (first+last) >> 1;
+			for(int k=0;k<nl-1;k++) {
+				int from = (k < fout)? k : k+1;
+				if((first <= from && from < i) || (j < from && from <= last)) {
+					System.arraycopy(temp, (from-off)*inner, Qw, dst+k*inner, inner);
+				}else {
+					System.arraycopy(Pw, src+from*inner, Qw, dst+k*inner, inner);
 				}
+			}
+			return error;
+		}
 
-				//---------------------------------------------------------------------
+		KnotRemovalResult result() {
+			return new KnotRemovalResult(unpackCtrl(ctrl, S, knot, p, funcs, share), removedNum, errorBound);
+		}
+	}
+
+	/**
+	 * Aのia番目からlen個の要素を、alpha*A+(1-alpha)*Bに置き換えます。
+	 * */
+	private static void blend(double[] A, int ia, double alpha, double[] B, int ib, int len) {
+		double beta = 1-alpha;
+		for(int c=0;c<len;c++) {
+			A[ia+c] = alpha*A[ia+c] +beta*B[ib+c];
+		}
+	}
 
-				k_bef = k_now;
+	/**
+	 * <p>1つの変数方向のファイバーに対する計算。
+	 * <p>元のi番目のポイントはPw[src+i*inner]から、新しいj番目のポイントはQw[dst+j*inner]から
+	 * それぞれlen個の要素を持ちます。ここでlenは、他の変数のインデックスと成分の組のうち、
+	 * 一度にまとめて計算するものの数です。
+	 * */
+	private interface FiberOperation {
+		void apply(double[] Pw, int src, double[] Qw, int dst, int inner, int len);
+	}
 
+	/**
+	 * <p>1つの変数方向の計算を、ファイバーの範囲を指定して行うタスク。
+	 * <p>ファイバーは(変数0からl-1のインデックスの組o, 変数l+1以降のインデックスと成分の組c)で指定され、
+	 * これを1つの数f=o*inner+cに置き換えた範囲[from,to)を受け持ちます。
+	 * 範囲の大きさがしきい値を超える場合は2つに分割します。
+	 * 各タスクは新しいポイント配列の互いに重ならない要素にのみ書き込みます。
+	 * */
+	private class FiberTask extends RecursiveAction {
+		private static final long serialVersionUID = 1L;
+
+		private final FiberOperation operation;
+		private final double[] Pw, Qw;
+		private final int n, nb, outer, inner, from, to;
+
+		FiberTask(FiberOperation operation, double[] Pw, double[] Qw,
+				int n, int nb, int outer, int inner, int from, int to){
+			this.operation = operation;
+			this.Pw = Pw;
+			this.Qw = Qw;
+			this.n = n;
+			this.nb = nb;
+			this.outer = outer;
+			this.inner = inner;
+			this.from = from;
+			this.to = to;
+		}
+
+		@Override
+		protected void compute() {
+			if(isparallel && to-from > threshold) {
+				int mid = (from+to) >>> 1;
+				invokeAll(
+						new FiberTask(operation, Pw, Qw, n, nb, outer, inner, from, mid),
+						new FiberTask(operation, Pw, Qw, n, nb, outer, inner, mid, to));
+				return;
 			}
+			for(int o=from/inner;o<outer && o*inner<to;o++) {
+				int c0 = Math.max(from-o*inner, 0);
+				int c1 = Math.min(to-o*inner, inner);
+				operation.apply(Pw, o*n*inner+c0, Qw, o*nb*inner+c0, inner, c1-c0);
+			}
+		}
+	}
 
-			//X[l]を全て代入し終わった
+	/**
+	 * PieglとTillerのA5.4によるノット挿入
+	 * */
+	private static class KnotInsertion implements FiberOperation {
+		private final double[] U, bU, X;
+		private final int p, n;
+
+		KnotInsertion(double[] U, double[] bU, double[] X, int p, int n){
+			this.U = U;
+			this.bU = bU;
+			this.X = X;
+			this.p = p;
+			this.n = n;
+		}
 
-			//-------------------------------------------------------------------------
+		@Override
+		public void apply(double[] Pw, int src, double[] Qw, int dst, int inner, int len) {
+			final int r = X.length-1;
 
-			//後方の変化しなかったポイントを代入する
-			for(int i=k_bef+1 ; i < n_Ul+n_Xl ; i++) {
-				//TODO 未実装
+			//a,b:挿入によって変化するポイントの範囲を決めるノット範囲
+			int a = findSpan(X[0]);
+			int b = findSpan(X[r])+1;
+
+			//変化しないポイントをコピーする
+			for(int j=0;j<=a-p;j++) {
+				System.arraycopy(Pw, src+j*inner, Qw, dst+j*inner, len);
+			}
+			for(int j=b-1;j<n;j++) {
+				System.arraycopy(Pw, src+j*inner, Qw, dst+(j+r+1)*inner, len);
 			}
 
-			//-------------------------------------------------------------------------
+			int i = b+p-1, k = b+p+r;
+			for(int j=r;j>=0;j--) {
+				while(X[j] <= U[i] && i > a) {
+					System.arraycopy(Pw, src+(i-p-1)*inner, Qw, dst+(k-p-1)*inner, len);
+					k--;
+					i--;
+				}
+				System.arraycopy(Qw, dst+(k-p)*inner, Qw, dst+(k-p-1)*inner, len);
+				for(int h=1;h<=p;h++) {
+					int ind = k-p+h;
+					double alpha = bU[k+h] -X[j];
+					if(alpha == 0) {
+						System.arraycopy(Qw, dst+ind*inner, Qw, dst+(ind-1)*inner, len);
+					}else {
+						alpha = alpha/(bU[k+h] -U[i-p+h]);
+						blend(Qw, dst+(ind-1)*inner, alpha, Qw, dst+ind*inner, len);
+					}
+				}
+				k--;
+			}
+		}
 
-			//残った元のノットを追加する
-			for(;i_Ul < n_Ul ; i_Ul++, i_bUl++) {
-				bUl[i_bUl] = Ul[i_Ul];
+		private int findSpan(double t) {
+			return NURBSRefiner.findSpan(U, p, n, t);
+		}
+	}
+
+	/**
+	 * PieglとTillerのA5.9による次数上げ。
+	 * 新しいノットベクトルUhは予め求めておき、ここではポイントのみを計算します。
+	 * */
+	private static class DegreeElevation implements FiberOperation {
+		private final double[] U, Uh;
+		private final int p, t, ph;
+
+		/**
+		 * bezalfs[i*(p+1)+j]:p次のベジエ曲線のj番目のポイントが、
+		 * ph次のベジエ曲線のi番目のポイントに掛かる係数
+		 * */
+		private final double[] bezalfs;
+
+		DegreeElevation(double[] U, double[] Uh, int p, int t){
+			this.U = U;
+			this.Uh = Uh;
+			this.p = p;
+			this.t = t;
+			this.ph = p+t;
+
+			this.bezalfs = new double[(ph+1)*(p+1)];
+			bezalfs[0] = 1;
+			bezalfs[ph*(p+1)+p] = 1;
+			for(int i=1;i<ph;i++) {
+				double inv = 1/binomial(ph, i);
+				for(int j=Math.max(0, i-t);j<=Math.min(p, i);j++) {
+					bezalfs[i*(p+1)+j] = inv*binomial(p, j)*binomial(t, i-j);
+				}
 			}
+		}
 
+		private static double binomial(int n, int k) {
+			double b = 1;
+			for(int i=1;i<=k;i++) {
+				b = b*(n-k+i)/i;
+			}
+			return b;
 		}
 
-		//全てのノットを挿入し終わり、ポイントも計算し終わった
+		@Override
+		public void apply(double[] Pw, int src, double[] Qw, int dst, int inner, int len) {
+			final int m = U.length-1;
+			//bpts:ベジエ区間のポイント、ebpts:次数を上げたベジエ区間のポイント
+			//Nextbpts:次のベジエ区間の先頭のポイント
+			double[] bpts = new double[(p+1)*len];
+			double[] ebpts = new double[(ph+1)*len];
+			double[] Nextbpts = new double[Math.max(p-1, 1)*len];
+			double[] alfs = new double[Math.max(p-1, 1)];
+
+			int kind = ph+1, r = -1, a = p, b = p+1, cind = 1;
+			double ua = U[0];
+			System.arraycopy(Pw, src, Qw, dst, len);
+			for(int i=0;i<=p;i++) {
+				System.arraycopy(Pw, src+i*inner, bpts, i*len, len);
+			}
+
+			while(b < m) {
+				int i = b;
+				while(b < m && U[b] == U[b+1]) {
+					b++;
+				}
+				int mul = b-i+1;
+				double ub = U[b];
+				int oldr = r;
+				r = p-mul;
+				int lbz = (oldr > 0)? (oldr+2)/2 : 1;
+				int rbz = (r > 0)? ph-(r+1)/2 : ph;
+
+				//ubをr回挿入し、ベジエ区間に分解する
+				if(r > 0) {
+					double numer = ub-ua;
+					for(int k=p;k>mul;k--) {
+						alfs[k-mul-1] = numer/(U[a+k]-ua);
+					}
+					for(int j=1;j<=r;j++) {
+						int save = r-j, s = mul+j;
+						for(int k=p;k>=s;k--) {
+							blend(bpts, k*len, alfs[k-s], bpts, (k-1)*len, len);
+						}
+						System.arraycopy(bpts, p*len, Nextbpts, save*len, len);
+					}
+				}
+
+				//ベジエ区間の次数を上げる
+				for(int ii=lbz;ii<=ph;ii++) {
+					int e = ii*len;
+					for(int c=0;c<len;c++) {
+						ebpts[e+c] = 0;
+					}
+					for(int j=Math.max(0, ii-t);j<=Math.min(p, ii);j++) {
+						double coef = bezalfs[ii*(p+1)+j];
+						int bj = j*len;
+						for(int c=0;c<len;c++) {
+							ebpts[e+c] += coef*bpts[bj+c];
+						}
+					}
+				}
+
+				//uaをoldr回除去する
+				if(oldr > 1) {
+					int first = kind-2, last = kind;
+					double den = ub-ua;
+					double bet = (ub-Uh[kind-1])/den;
+					for(int tr=1;tr<oldr;tr++) {
+						int ii = first, j = last, kj = j-kind+1;
+						while(j-ii > tr) {
+							if(ii < cind) {
+								double alf = (ub-Uh[ii])/(ua-Uh[ii]);
+								blend(Qw, dst+ii*inner, alf, Qw, dst+(ii-1)*inner, len);
+							}
+							if(j >= lbz) {
+								if(j-tr <= kind-ph+oldr) {
+									double gam = (ub-Uh[j-tr])/den;
+									blend(ebpts, kj*len, gam, ebpts, (kj+1)*len, len);
+								}else {
+									blend(ebpts, kj*len, bet, ebpts, (kj+1)*len, len);
+								}
+							}
+							ii++;
+							j--;
+							kj--;
+						}
+						first--;
+						last++;
+					}
+				}
+
+				if(a != p) {
+					kind += ph-oldr;
+				}
+				for(int j=lbz;j<=rbz;j++) {
+					System.arraycopy(ebpts, j*len, Qw, dst+cind*inner, len);
+					cind++;
+				}
+
+				//次のベジエ区間の準備
+				if(b < m) {
+					for(int j=0;j<r;j++) {
+						System.arraycopy(Nextbpts, j*len, bpts, j*len, len);
+					}
+					for(int j=r;j<=p;j++) {
+						System.arraycopy(Pw, src+(b-p+j)*inner, bpts, j*len, len);
+					}
+					a = b;
+					b++;
+					ua = ub;
+				}
+			}
+		}
 	}
 
 }
@@ -0,0 +1,256 @@
+package simulation.function.nurbs.refiner;
+
+import static org.junit.Assert.*;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.Test;
+
+import simulation.function.nurbs.NURBSFunction;
+import simulation.function.nurbs.NURBSFunctionGroup;
+import simulation.function.nurbs.NURBSTestFunctions;
+
+public class NURBSRefinerTest {
+	/*
+	 * テストする次数の組。それぞれBスプラインと有理の場合、逐次と並列の場合を組み合わせる
+	 * 各変数の定義域は[0,4]
+	 * */
+	private static final int[][] degrees = {{1},{3},{2,2},{3,1},{2,1,2}};
+
+	private static NURBSFunctionGroup createGroup(int[] p, boolean rational, long seed) {
+		int[] inner = new int[p.length];
+		Arrays.fill(inner, 3);
+		return NURBSTestFunctions.createGroup(p, inner, new int[] {3,1}, rational, seed);
+	}
+
+	private static NURBSRefiner[] refiners() {
+		//並列計算はしきい値を小さくして必ず分割されるようにする
+		return new NURBSRefiner[] {new NURBSRefiner(), new NURBSRefiner(true, 1)};
+	}
+
+	/*
+	 * 2つの関数群の値が、定義域内の乱数の点と要素の境界で一致することを確かめる
+	 * */
+	static void assertSameValues(NURBSFunctionGroup expected, NURBSFunctionGroup actual, double delta) {
+		Random random = new Random(3);
+		final int m = expected.basis.parameterNum;
+		for(int n=0;n<300;n++) {
+			double[] t = new double[m];
+			for(int l=0;l<m;l++) {
+				//最初の点は端、次の点は内部のノット上の点にする
+				t[l] = (n == 0)? 4 : (n == 1)? 2 : random.nextDouble()*4;
+			}
+			for(int f=0;f<expected.funcs.length;f++) {
+				assertArrayEquals(expected.funcs[f].value(t), actual.funcs[f].value(t), delta);
+			}
+		}
+	}
+
+	/*
+	 * 各変数に挿入するノット。次数が2以上の場合は、既存のノットと重なるものと同じ値を重ねたものを含む
+	 * */
+	private static double[][] insertedKnots(int[] p) {
+		double[][] X = new double[p.length][];
+		for(int l=0;l<p.length;l++) {
+			if(p[l] == 1) {
+				X[l] = new double[] {0.5, 2.25, 3.5};
+			}else {
+				X[l] = (l%2 == 0)? new double[] {0.5, 1, 2.25, 2.25, 3.5} : new double[] {0.1, 3};
+			}
+		}
+		return X;
+	}
+
+	/*
+	 * ノットを挿入しても関数値は変わらず、ポイントの数は挿入したノットの数だけ増える
+	 * */
+	@Test
+	public void refineKnotKeepsValues() {
+		for(int[] p:degrees) {
+			for(boolean rational:new boolean[] {false, true}) {
+				NURBSFunctionGroup group = createGroup(p, rational, 100+p.length*10+p[0]);
+				double[][] X = insertedKnots(p);
+				for(NURBSRefiner refiner:refiners()) {
+					NURBSFunctionGroup refined = refiner.refineKnot(group, X);
+					int[] n = group.basis.giveNumberArrayOfCtrl(), nr = refined.basis.giveNumberArrayOfCtrl();
+					for(int l=0;l<p.length;l++) {
+						assertEquals(n[l]+X[l].length, nr[l]);
+					}
+					assertEquals(rational, !refined.basis.isBSpline);
+					assertSameValues(group, refined, 1e-10);
+				}
+			}
+		}
+	}
+
+	/*
+	 * 並列計算の結果は逐次計算の結果と一致する
+	 * */
+	@Test
+	public void parallelRefineKnotMatchesSerial() {
+		NURBSFunctionGroup group = createGroup(new int[] {2,3}, true, 7);
+		double[][] X = insertedKnots(new int[] {2,3});
+		NURBSFunction serial = new NURBSRefiner().refineKnot(group, X).funcs[0];
+		NURBSFunction parallel = new NURBSRefiner(true, 1).refineKnot(group, X).funcs[0];
+		assertArrayEquals(serial.giveHomogeneousCtrlArray_Shallow(), parallel.giveHomogeneousCtrlArray_Shallow(), 0);
+	}
+
+	/*
+	 * 次数を上げても関数値は変わらず、次数はtだけ上がる
+	 * */
+	@Test
+	public void elevateDegreeKeepsValues() {
+		for(int[] p:degrees) {
+			for(boolean rational:new boolean[] {false, true}) {
+				NURBSFunctionGroup group = createGroup(p, rational, 200+p.length*10+p[0]);
+				int[] t = new int[p.length];
+				for(int l=0;l<t.length;l++) {
+					t[l] = (l == 1)? 0 : l+1;
+				}
+				for(NURBSRefiner refiner:refiners()) {
+					NURBSFunctionGroup elevated = refiner.elevateDegree(group, t);
+					int[] q = elevated.basis.giveDegreeArray();
+					for(int l=0;l<p.length;l++) {
+						assertEquals(p[l]+t[l], q[l]);
+					}
+					assertSameValues(group, elevated, 1e-10);
+				}
+			}
+		}
+	}
+
+	/*
+	 * k法による精細化は、次数を上げてからノットを挿入したものと一致する
+	 * */
+	@Test
+	public void kRefineMatchesElevationThenInsertion() {
+		for(int[] p:degrees) {
+			for(boolean rational:new boolean[] {false, true}) {
+				NURBSFunctionGroup group = createGroup(p, rational, 300+p.length*10+p[0]);
+				int[] t = new int[p.length];
+				Arrays.fill(t, 1);
+				//次数を上げると既存のノットの多重度も上がるので、元の次数に対して選んだノットを挿入する
+				double[][] X = insertedKnots(p);
+				for(NURBSRefiner refiner:refiners()) {
+					NURBSFunctionGroup k = refiner.kRefine(group, t, X);
+					NURBSFunctionGroup expected = refiner.refineKnot(refiner.elevateDegree(group, t), X);
+					assertArrayEquals(expected.basis.giveNumberArrayOfCtrl(), k.basis.giveNumberArrayOfCtrl());
+					for(int f=0;f<group.funcs.length;f++) {
+						assertArrayEquals(expected.funcs[f].giveHomogeneousCtrlArray_Shallow(), k.funcs[f].giveHomogeneousCtrlArray_Shallow(), 1e-10);
+					}
+					assertSameValues(group, k, 1e-10);
+				}
+			}
+		}
+	}
+
+	/*
+	 * 関数値の差の最大値を定義域内の乱数の点で調べる
+	 * */
+	private static double maxDifference(NURBSFunctionGroup a, NURBSFunctionGroup b) {
+		Random random = new Random(5);
+		final int m = a.basis.parameterNum;
+		double max = 0;
+		for(int n=0;n<500;n++) {
+			double[] t = new double[m];
+			for(int l=0;l<m;l++) {
+				t[l] = random.nextDouble()*4;
+			}
+			for(int f=0;f<a.funcs.length;f++) {
+				double[] va = a.funcs[f].value(t), vb = b.funcs[f].value(t);
+				double dist = 0;
+				for(int d=0;d<va.length;d++) {
+					dist += (va[d]-vb[d])*(va[d]-vb[d]);
+				}
+				max = Math.max(max, Math.sqrt(dist));
+			}
+		}
+		return max;
+	}
+
+	/*
+	 * 挿入したノットは全て除去でき、元のノットベクトルとコントロールポイントに戻る
+	 * */
+	@Test
+	public void removeKnotUndoesInsertion() {
+		for(int[] p:degrees) {
+			for(boolean rational:new boolean[] {false, true}) {
+				NURBSFunctionGroup group = createGroup(p, rational, 400+p.length*10+p[0]);
+				double[][] X = insertedKnots(p);
+				NURBSRefiner refiner = new NURBSRefiner();
+				NURBSFunctionGroup current = refiner.refineKnot(group, X);
+				int removed = 0;
+				for(int l=0;l<p.length;l++) {
+					for(double u:X[l]) {
+						KnotRemovalResult result = refiner.removeKnot(current, l, u, 1, 1e-9);
+						assertEquals(1, result.removedNum);
+						assertTrue(result.errorBound <= 1e-9);
+						current = result.group;
+						removed++;
+					}
+				}
+				assertTrue(removed > 0);
+				assertArrayEquals(group.basis.giveNumberArrayOfCtrl(), current.basis.giveNumberArrayOfCtrl());
+				for(int l=0;l<p.length;l++) {
+					assertArrayEquals(group.basis.giveKnotVector_Shallow()[l], current.basis.giveKnotVector_Shallow()[l], 0);
+				}
+				for(int f=0;f<group.funcs.length;f++) {
+					assertArrayEquals(group.funcs[f].giveHomogeneousCtrlArray_Shallow(), current.funcs[f].giveHomogeneousCtrlArray_Shallow(), 1e-9);
+				}
+
+				//reduceKnotsでも挿入したノットの分だけ除去される
+				KnotRemovalResult reduced = refiner.reduceKnots(refiner.refineKnot(group, X), 1e-9);
+				assertTrue(reduced.removedNum >= removed);
+				assertSameValues(group, reduced.group, 1e-8);
+			}
+		}
+	}
+
+	/*
+	 * 形状が変わる除去は許容誤差が小さければ行われず、
+	 * 許容誤差が大きければ行われて、実際の関数値の差はerrorBound以下になる
+	 * */
+	@Test
+	public void removeKnotRespectsTolerance() {
+		for(int[] p:degrees) {
+			for(boolean rational:new boolean[] {false, true}) {
+				NURBSFunctionGroup group = createGroup(p, rational, 500+p.length*10+p[0]);
+				NURBSRefiner refiner = new NURBSRefiner();
+
+				KnotRemovalResult rejected = refiner.removeKnot(group, 0, 2, 1, 1e-6);
+				assertEquals(0, rejected.removedNum);
+				assertEquals(0, rejected.errorBound, 0);
+				assertSameValues(group, rejected.group, 0);
+
+				KnotRemovalResult accepted = refiner.reduceKnots(group, 1e3);
+				assertTrue(accepted.removedNum > 0);
+				assertTrue(accepted.errorBound <= 1e3);
+				assertTrue(maxDifference(group, accepted.group) <= accepted.errorBound);
+			}
+		}
+	}
+
+	/*
+	 * Bスプラインの重みは除去しても1のままで、有理の場合は重みも除去に合わせて変わる
+	 * いずれの場合も、実際の関数値の差はerrorBound以下になる
+	 * */
+	@Test
+	public void removeKnotKeepsBSplineWeights() {
+		NURBSRefiner refiner = new NURBSRefiner();
+		for(boolean rational:new boolean[] {false, true}) {
+			NURBSFunctionGroup group = createGroup(new int[] {3,2}, rational, 600);
+			KnotRemovalResult result = refiner.removeKnot(group, 0, 1, 1, 1e3);
+			assertEquals(1, result.removedNum);
+			assertEquals(rational, !result.group.basis.isBSpline);
+			double[] weight = result.group.basis.giveWeightArray_Deep();
+			for(double w:weight) {
+				if(!rational) {
+					assertEquals(1, w, 1e-12);
+				}
+				assertTrue(w > 0);
+			}
+			assertTrue(maxDifference(group, result.group) <= result.errorBound);
+		}
+	}
+}
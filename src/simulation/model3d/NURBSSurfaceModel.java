@@ -1,9 +1,27 @@
 package simulation.model3d;
 
+import simulation.function.nurbs.KnotSpanLocator;
+import simulation.function.nurbs.NURBSBasisFunction;
+import simulation.function.nurbs.NURBSFloatEvaluator;
+import simulation.function.nurbs.NURBSFunction;
+import simulation.function.nurbs.assertion.NURBSAsserter;
+import simulation.function.nurbs.geometry.NURBSSurfaceIntersector;
+import simulation.function.nurbs.geometry.NURBSSurfaceProjector;
+
+/*
+ * NURBS曲面のモデル
+ * 曲面の形状(次数、ノットベクトル、コントロールポイント)は不変である。コンストラクタで指定された配列は複製して保持するので、
+ * 生成後に呼び出し側の配列を変更してもモデルは変化しない。
+ * uknot、vknot、ctrlは公開しているが、変更してはならない。
+ * giveNURBSFunction()等で生成したインスタンスや描画用のキャッシュは、モデルが変化しないことを前提に使い回す。
+ * */
 public class NURBSSurfaceModel extends Model{
 	public final double[] uknot, vknot;
+	/*(重み、重みをかけたx座標、y座標、z座標)*/
 	public final double[][][] ctrl;
 	public final int p,q;
+	/*u方向、v方向のノット範囲探索*/
+	private final KnotSpanLocator uLocator, vLocator;
 
 	/*
 	 * ctrlsの1番目のインデックスはu方向、2番目のインデックスはv方向の
@@ -35,27 +53,33 @@ public class NURBSSurfaceModel extends Model{
 		/*
 		 * v方向のポイント数は一定になっているか
 		 * ctrlsの各要素は重みと3次元の計4要素の配列になっているか
-		 * また、座標値には先に重みをかけておく
+		 * また、複製した座標値には先に重みをかけておく
 		 */
+		double[][][] weighted = new double[ctrl.length][][];
 		for(int i=0;i<ctrl.length;i++) {
 			if(ctrl[i].length != ctrl[0].length) {
 				throw new IllegalArgumentException("v方向のコントロールポイントの数が一定でありません");
 			}
+			weighted[i] = new double[ctrl[i].length][];
 			for(int j=0;j<ctrl[i].length;j++) {
 				if(ctrl[i][j].length != 4) {
 					throw new IllegalArgumentException("コントロールポイントの値が4要素になっていません");
 				}
+				weighted[i][j] = ctrl[i][j].clone();
 				for(int k=1;k<4;k++) {
-					ctrl[i][j][k] *= ctrl[i][j][0];
+					weighted[i][j][k] *= weighted[i][j][0];
 				}
 			}
 		}
 
 		this.p = p;
 		this.q = q;
-		this.uknot = uknot;
-		this.vknot = vknot;
-		this.ctrl = ctrl;
+		this.uknot = uknot.clone();
+		this.vknot = vknot.clone();
+		this.ctrl = weighted;
+		this.uLocator = new KnotSpanLocator(this.uknot, p);
+		this.vLocator = new KnotSpanLocator(this.vknot, q);
+		this.canGiveNURBSFunction = canGiveNURBSFunction(p, this.uknot, q, this.vknot, this.ctrl);
 	}
 
 	/*
@@ -66,31 +90,9 @@ public class NURBSSurfaceModel extends Model{
 			throw new IllegalArgumentException("u,vの指定がノットの範囲に対して異常です:(u,v)=("+u+","+v+")");
 		}
 
-		int k=0,h=0; //u_k <= u < u_k+1 , v_h <= v < v_h+1
-
-		if(u == uknot[uknot.length-1]) {
-			//uがノットの最後端に等しい時、（値が違う）一つ前のノットを指定する
-			k = uknot.length -p -2;
-		}else {
-			for(int i=0; i<uknot.length;i++) {
-				if(u < uknot[i]) {
-					k = i-1; //直前の位置がk
-					break;
-				}
-			}
-		}
-
-		//vについても同様にしてhを求める
-		if(v == vknot[vknot.length -1]) {
-			h = vknot.length -q -2;
-		}else {
-			for(int i=0; i<vknot.length;i++) {
-				if(v < vknot[i]) {
-					h = i-1;
-					break;
-				}
-			}
-		}
+		//u_k <= u < u_k+1 , v_h <= v < v_h+1
+		//u,vがノットの最後端に等しい時は、（値が違う）一つ前のノットが指定される
+		int k = uLocator.locate(u), h = vLocator.locate(v);
 
 		//先にv方向について和を取り、次にu方向について和を取る
 		//tempC2D[][q][]にu方向について和を取る時に使う結果を保存する
@@ -165,6 +167,147 @@ public class NURBSSurfaceModel extends Model{
 
 	}
 
+	/*このモデルと同じ曲面を表すNURBSFunction。giveNURBSFunction()で初めて生成する*/
+	private NURBSFunction function;
+
+	/*NURBSFunctionに変換できるか。形状は変化しないので、コンストラクタで一度だけ調べる*/
+	private final boolean canGiveNURBSFunction;
+
+	/**
+	 * このモデルを{@link #giveNURBSFunction()}でNURBSFunctionに変換できるかを返す。
+	 * NURBSFunctionは次数が1以上で、ノットベクトルがオープンノットベクトル、重みが正のものに限られる。
+	 * 変換できない場合は、func(u,v)で曲面の点を求めること。
+	 * @return 変換できる場合はtrue
+	 * @version 2026/10/17 07:32
+	 * */
+	public boolean canGiveNURBSFunction() {
+		return this.canGiveNURBSFunction;
+	}
+
+	private static boolean canGiveNURBSFunction(int p, double[] uknot, int q, double[] vknot, double[][][] ctrl) {
+		NURBSAsserter asserter = new NURBSAsserter(false);
+		if(p < 1 || q < 1
+				|| !asserter.assertArrayIsOpenKnotVector(uknot, p)
+				|| !asserter.assertArrayIsOpenKnotVector(vknot, q)) {
+			return false;
+		}
+		for(double[][] row:ctrl) {
+			for(double[] point:row) {
+				if(!(point[0] > 0)) {
+					return false;
+				}
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * このモデルと同じ曲面を表す2変数のNURBSFunctionを返します。
+	 * 変数0がu、変数1がvに対応し、関数値は(x座標,y座標,z座標)です。
+	 * インスタンスは初回の呼び出し時に生成し、以降は同じものを返します。
+	 * @return 2変数3次元のNURBS関数
+	 * @throws IllegalArgumentException 次数が0の場合や、ノットベクトルがオープンノットベクトルでない等、
+	 * NURBSFunctionとして表せない場合。{@link #canGiveNURBSFunction()}で事前に確かめられる。
+	 * @version 2026/10/17 06:45
+	 * */
+	public synchronized NURBSFunction giveNURBSFunction() {
+		if(this.function == null) {
+			int nu = ctrl.length, nv = ctrl[0].length;
+			double[] weight = new double[nu*nv];
+			//ctrlは重み、重み付きの座標値の順に並んでいるので、そのまま連続した配列に並べる
+			double[] homogeneous = new double[nu*nv*4];
+			for(int i=0;i<nu;i++) {
+				for(int j=0;j<nv;j++) {
+					weight[i*nv+j] = ctrl[i][j][0];
+					System.arraycopy(ctrl[i][j], 0, homogeneous, (i*nv+j)*4, 4);
+				}
+			}
+			NURBSBasisFunction basis = new NURBSBasisFunction(new double[][] {uknot, vknot}, new int[] {p, q}, weight);
+			this.function = new NURBSFunction(homogeneous, 3, basis);
+		}
+		return this.function;
+	}
+
+	/*描画用の単精度の評価器。初回の呼び出し時に生成する。*/
+	private NURBSFloatEvaluator floatEvaluator;
+
+	/**
+	 * この曲面モデルの座標と法線を単精度で計算する評価器を返す。
+	 * 描画の格子の計算に用いる。コントロールポイントのfloatへの複製は初回の呼び出し時に一度だけ行う。
+	 * @return 単精度の評価器
+	 * @throws IllegalArgumentException {@link #giveNURBSFunction()}と同じ
+	 * @version 2026/10/17 07:48
+	 * */
+	public synchronized NURBSFloatEvaluator giveFloatEvaluator() {
+		if(this.floatEvaluator == null) {
+			this.floatEvaluator = new NURBSFloatEvaluator(giveNURBSFunction());
+		}
+		return this.floatEvaluator;
+	}
+
+	/*射影に用いるベジエパッチ等を保持するインスタンス。初回の呼び出し時に生成する。*/
+	private NURBSSurfaceProjector projector;
+
+	/**
+	 * 3次元の点をこの曲面モデルに射影し、最近点の(u,v)を求めるインスタンスを返す。
+	 * インスタンスは初回の呼び出し時に生成し、以降は同じものを返すので、
+	 * 同じモデルへの繰り返しの問合せではベジエパッチへの分割結果が使い回される。
+	 * @return 射影を行うインスタンス
+	 * @throws IllegalArgumentException {@link #giveNURBSFunction()}と同じ
+	 * @version 2026/10/17 07:15
+	 * */
+	public synchronized NURBSSurfaceProjector giveProjector() {
+		if(this.projector == null) {
+			this.projector = new NURBSSurfaceProjector(giveNURBSFunction());
+		}
+		return this.projector;
+	}
+
+	/*半直線との交差判定に用いるBVHを保持するインスタンス。初回の呼び出し時に生成する。*/
+	private NURBSSurfaceIntersector intersector;
+
+	/**
+	 * 半直線とこの曲面モデルの交点を求めるインスタンスを返す。
+	 * GLViewFrameでのピッキングや見通しの判定に用いる。
+	 * インスタンスは初回の呼び出し時に生成し、以降は同じものを返すので、BVHは一度だけ構築される。
+	 * @return 交差判定を行うインスタンス
+	 * @throws IllegalArgumentException {@link #giveNURBSFunction()}と同じ
+	 * @version 2026/10/17 07:24
+	 * */
+	public synchronized NURBSSurfaceIntersector giveIntersector() {
+		if(this.intersector == null) {
+			this.intersector = new NURBSSurfaceIntersector(giveNURBSFunction());
+		}
+		return this.intersector;
+	}
+
+	/**
+	 * u,vを指定し、この3次元曲面モデルのその点での単位法線ベクトルを与える。
+	 * 法線は偏導関数S_u,S_vの外積S_u×S_vの向きである。
+	 * @param u 変数u
+	 * @param v 変数v
+	 * @return 単位法線ベクトル。外積が0になる(曲面が退化している)点では{0,0,0}
+	 * @throws IllegalArgumentException {@link #giveNURBSFunction()}と同じ
+	 * @version 2026/10/17 06:45
+	 * */
+	public double[] normal(double u, double v) {
+		//D[0..2]:関数値、D[3..5]:S_v、D[6..8]:S_u、D[9..11]:S_uv
+		double[] D = this.giveNURBSFunction().derivatives(1, u, v);
+		double[] n = {
+				D[7]*D[5] -D[8]*D[4],
+				D[8]*D[3] -D[6]*D[5],
+				D[6]*D[4] -D[7]*D[3]
+		};
+		double norm = Math.sqrt(n[0]*n[0] +n[1]*n[1] +n[2]*n[2]);
+		if(norm == 0) {
+			return new double[3];
+		}
+		for(int d=0;d<3;d++) {
+			n[d] /= norm;
+		}
+		return n;
+	}
+
 	public static void main(String args[]) {
 		double[] uknot = {0,0,1,1},vknot = {0,0,1,1};
 		int p = 1,q = 1;
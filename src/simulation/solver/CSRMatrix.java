@@ -0,0 +1,388 @@
+package simulation.solver;
+
+import java.util.Arrays;
+
+/**
+ * <p>圧縮行格納(CSR)形式の疎行列。
+ * <p>0でない可能性のある要素の位置(非零パターン)をインスタンス化の際に固定し、
+ * その位置の値だけを保持します。i行目の要素は、colIndex[rowPtr[i]]からcolIndex[rowPtr[i+1]-1]
+ * までの列に対応する値value[rowPtr[i]]からvalue[rowPtr[i+1]-1]で、各行の列は昇順に並んでいます。
+ * パターンにない位置の要素は0であり、値を加えることはできません。
+ *
+ * <p>値の変更は同期されません。複数のスレッドから値を加える場合は、
+ * 互いに同じ要素に書き込まないように呼び出し側で分担してください。
+ *
+ * @version 2026/10/17 07:05
+ * */
+public class CSRMatrix {
+	/**
+	 * 行数、列数
+	 * @version 2026/10/17 07:05
+	 * */
+	private final int rows, cols;
+
+	/**
+	 * 各行の先頭の要素の位置。長さはrows+1で、rowPtr[rows]は非零パターンの要素の数です。
+	 * @version 2026/10/17 07:05
+	 * */
+	private final int[] rowPtr;
+
+	/**
+	 * 各要素の列
+	 * @version 2026/10/17 07:05
+	 * */
+	private final int[] colIndex;
+
+	/**
+	 * 各要素の値
+	 * @version 2026/10/17 07:05
+	 * */
+	private final double[] value;
+
+	/**
+	 * 非零パターンを指定し、値が全て0の行列を生成します。
+	 * 配列は複製せずに参照を保持するので、以降変更しないでください。
+	 *
+	 * @param rows 行数
+	 * @param cols 列数
+	 * @param rowPtr 各行の先頭の要素の位置。長さはrows+1であること。
+	 * @param colIndex 各要素の列。各行の中で昇順に並び、重複がないこと。
+	 * @throws NullPointerException rowPtrまたはcolIndexがnullの場合
+	 * @throws IllegalArgumentException
+	 * <ul>
+	 * 		<li>rowsまたはcolsが負数の場合
+	 * 		<li>rowPtrの長さがrows+1でない場合、または単調増加でない場合
+	 * 		<li>colIndexの長さがrowPtr[rows]でない場合
+	 * 		<li>列が範囲外の場合、または各行の中で昇順に並んでいない場合
+	 * </ul>
+	 * @version 2026/10/17 07:05
+	 * */
+	public CSRMatrix(int rows, int cols, int[] rowPtr, int[] colIndex) {
+		assertPattern(rows, cols, rowPtr, colIndex);
+		this.rows = rows;
+		this.cols = cols;
+		this.rowPtr = rowPtr;
+		this.colIndex = colIndex;
+		this.value = new double[colIndex.length];
+	}
+
+	/**
+	 * 非零パターンと値を指定して行列を生成します。
+	 * 配列は複製せずに参照を保持するので、以降変更しないでください。
+	 *
+	 * @param rows 行数
+	 * @param cols 列数
+	 * @param rowPtr 各行の先頭の要素の位置。長さはrows+1であること。
+	 * @param colIndex 各要素の列。各行の中で昇順に並び、重複がないこと。
+	 * @param value 各要素の値。長さはcolIndexと同じであること。
+	 * @throws NullPointerException rowPtr、colIndexまたはvalueがnullの場合
+	 * @throws IllegalArgumentException
+	 * <ul>
+	 * 		<li>{@link #CSRMatrix(int, int, int[], int[])}の条件を満たさない場合
+	 * 		<li>valueの長さがcolIndexと異なる場合
+	 * </ul>
+	 * @version 2026/10/17 07:08
+	 * */
+	public CSRMatrix(int rows, int cols, int[] rowPtr, int[] colIndex, double[] value) {
+		this(rows, cols, rowPtr, colIndex, value, true);
+	}
+
+	private CSRMatrix(int rows, int cols, int[] rowPtr, int[] colIndex, double[] value, boolean check) {
+		if(check) {
+			assertPattern(rows, cols, rowPtr, colIndex);
+			if(value == null) {
+				throw new NullPointerException("引数valueがnullです");
+			}else if(value.length != colIndex.length) {
+				throw new IllegalArgumentException("valueの長さがcolIndexと異なります");
+			}
+		}
+		this.rows = rows;
+		this.cols = cols;
+		this.rowPtr = rowPtr;
+		this.colIndex = colIndex;
+		this.value = value;
+	}
+
+	private static void assertPattern(int rows, int cols, int[] rowPtr, int[] colIndex) {
+		if(rowPtr == null) {
+			throw new NullPointerException("引数rowPtrがnullです");
+		}else if(colIndex == null) {
+			throw new NullPointerException("引数colIndexがnullです");
+		}
+		if(rows < 0 || cols < 0) {
+			throw new IllegalArgumentException("行数、列数が負数です");
+		}
+		if(rowPtr.length != rows+1 || rowPtr[0] != 0 || colIndex.length != rowPtr[rows]) {
+			throw new IllegalArgumentException("rowPtrとcolIndexの長さが行数に合いません");
+		}
+		for(int i=0;i<rows;i++) {
+			if(rowPtr[i] > rowPtr[i+1]) {
+				throw new IllegalArgumentException("rowPtrが単調増加でありません");
+			}
+			for(int k=rowPtr[i];k<rowPtr[i+1];k++) {
+				if(colIndex[k] < 0 || cols <= colIndex[k] || (k > rowPtr[i] && colIndex[k-1] >= colIndex[k])) {
+					throw new IllegalArgumentException(i+"行目の列が範囲外、または昇順に並んでいません");
+				}
+			}
+		}
+	}
+
+	/**
+	 * 密行列から、0でない要素を非零パターンとする行列を生成します。
+	 * @param A 密行列。各行の長さは等しいこと。
+	 * @return 行列
+	 * @throws NullPointerException Aがnullの場合
+	 * @throws IllegalArgumentException Aの各行の長さが等しくない場合
+	 * @version 2026/10/17 07:08
+	 * */
+	public static CSRMatrix valueOf(double[][] A) {
+		if(A == null) {
+			throw new NullPointerException("引数Aがnullです");
+		}
+		final int rows = A.length, cols = (rows == 0)? 0 : A[0].length;
+		int[] rowPtr = new int[rows+1];
+		for(int i=0;i<rows;i++) {
+			if(A[i].length != cols) {
+				throw new IllegalArgumentException("行列の各行の長さが等しくありません");
+			}
+			int count = 0;
+			for(double a:A[i]) {
+				if(a != 0) {
+					count++;
+				}
+			}
+			rowPtr[i+1] = rowPtr[i]+count;
+		}
+		int[] colIndex = new int[rowPtr[rows]];
+		double[] value = new double[rowPtr[rows]];
+		for(int i=0,k=0;i<rows;i++) {
+			for(int j=0;j<cols;j++) {
+				if(A[i][j] != 0) {
+					colIndex[k] = j;
+					value[k++] = A[i][j];
+				}
+			}
+		}
+		return new CSRMatrix(rows, cols, rowPtr, colIndex, value, false);
+	}
+
+	/**
+	 * 行数を返します。
+	 * @return 行数
+	 * @version 2026/10/17 07:05
+	 * */
+	public int giveNumberOfRows() {
+		return this.rows;
+	}
+
+	/**
+	 * 列数を返します。
+	 * @return 列数
+	 * @version 2026/10/17 07:05
+	 * */
+	public int giveNumberOfColumns() {
+		return this.cols;
+	}
+
+	/**
+	 * 非零パターンの要素の数を返します。
+	 * @return 要素の数
+	 * @version 2026/10/17 07:05
+	 * */
+	public int giveNumberOfNonZeros() {
+		return this.value.length;
+	}
+
+	/**
+	 * (i,j)要素の値を格納する位置を返します。非零パターンにない場合は-1を返します。
+	 * @param i 行
+	 * @param j 列
+	 * @return 値の位置
+	 * @version 2026/10/17 07:05
+	 * */
+	public int indexOf(int i, int j) {
+		int k = Arrays.binarySearch(colIndex, rowPtr[i], rowPtr[i+1], j);
+		return (k < 0)? -1 : k;
+	}
+
+	/**
+	 * (i,j)要素の値を返します。非零パターンにない場合は0です。
+	 * @param i 行
+	 * @param j 列
+	 * @return 要素の値
+	 * @version 2026/10/17 07:05
+	 * */
+	public double give(int i, int j) {
+		int k = indexOf(i, j);
+		return (k < 0)? 0 : value[k];
+	}
+
+	/**
+	 * (i,j)要素に値を加えます。
+	 * @param i 行
+	 * @param j 列
+	 * @param v 加える値
+	 * @throws IllegalArgumentException (i,j)が非零パターンにない場合
+	 * @version 2026/10/17 07:05
+	 * */
+	public void add(int i, int j, double v) {
+		int k = indexOf(i, j);
+		if(k < 0) {
+			throw new IllegalArgumentException("("+i+","+j+")要素は非零パターンにありません");
+		}
+		value[k] += v;
+	}
+
+	/**
+	 * 全ての要素の値を0にします。非零パターンは変わりません。
+	 * @version 2026/10/17 07:05
+	 * */
+	public void clear() {
+		Arrays.fill(value, 0);
+	}
+
+	/**
+	 * y=Axを計算します。
+	 * @param x ベクトル。長さは列数以上であること。
+	 * @param y 結果を格納する配列。長さは行数以上であること。xと同じ配列は指定できません。
+	 * @return 引数y
+	 * @version 2026/10/17 07:05
+	 * */
+	public double[] multiply(double[] x, double[] y) {
+		for(int i=0;i<rows;i++) {
+			double s = 0;
+			for(int k=rowPtr[i];k<rowPtr[i+1];k++) {
+				s += value[k]*x[colIndex[k]];
+			}
+			y[i] = s;
+		}
+		return y;
+	}
+
+	/**
+	 * 転置行列を生成します。
+	 * @return 転置行列
+	 * @version 2026/10/17 07:08
+	 * */
+	public CSRMatrix transpose() {
+		final int nnz = value.length;
+		int[] tPtr = new int[cols+1];
+		for(int k=0;k<nnz;k++) {
+			tPtr[colIndex[k]+1]++;
+		}
+		for(int j=0;j<cols;j++) {
+			tPtr[j+1] += tPtr[j];
+		}
+		int[] tCol = new int[nnz], next = Arrays.copyOf(tPtr, cols);
+		double[] tValue = new double[nnz];
+		//行の昇順に走査するので、転置後の各行の列も昇順になる
+		for(int i=0;i<rows;i++) {
+			for(int k=rowPtr[i];k<rowPtr[i+1];k++) {
+				int c = next[colIndex[k]]++;
+				tCol[c] = i;
+				tValue[c] = value[k];
+			}
+		}
+		return new CSRMatrix(cols, rows, tPtr, tCol, tValue, false);
+	}
+
+	/**
+	 * <p>行列の積C=ABを生成します。
+	 * <p>Cの非零パターンは、AとBの非零パターンから積が0でない可能性のある位置として決まります。
+	 * @param B 右から掛ける行列。行数はこの行列の列数と等しいこと。
+	 * @return 行列の積
+	 * @throws NullPointerException Bがnullの場合
+	 * @throws IllegalArgumentException Bの行数がこの行列の列数と異なる場合
+	 * @version 2026/10/17 07:08
+	 * */
+	public CSRMatrix multiply(CSRMatrix B) {
+		if(B == null) {
+			throw new NullPointerException("引数Bがnullです");
+		}else if(B.rows != this.cols) {
+			throw new IllegalArgumentException("行列の大きさが合いません");
+		}
+		final int n = B.cols;
+		//行毎に、Cの各列の値と、その列が現れた行(marker)を作業用配列に保持する
+		int[] marker = new int[n];
+		Arrays.fill(marker, -1);
+		double[] accumulator = new double[n];
+
+		int[] cPtr = new int[rows+1];
+		int[] cCol = new int[Math.max(value.length, B.value.length)];
+		double[] cValue = new double[cCol.length];
+		int nnz = 0;
+		for(int i=0;i<rows;i++) {
+			int start = nnz;
+			for(int k=rowPtr[i];k<rowPtr[i+1];k++) {
+				double a = value[k];
+				int r = colIndex[k];
+				for(int kb=B.rowPtr[r];kb<B.rowPtr[r+1];kb++) {
+					int j = B.colIndex[kb];
+					if(marker[j] != i) {
+						marker[j] = i;
+						accumulator[j] = 0;
+						if(nnz == cCol.length) {
+							cCol = Arrays.copyOf(cCol, 2*nnz);
+							cValue = Arrays.copyOf(cValue, 2*nnz);
+						}
+						cCol[nnz++] = j;
+					}
+					accumulator[j] += a*B.value[kb];
+				}
+			}
+			Arrays.sort(cCol, start, nnz);
+			for(int c=start;c<nnz;c++) {
+				cValue[c] = accumulator[cCol[c]];
+			}
+			cPtr[i+1] = nnz;
+		}
+		return new CSRMatrix(rows, n, cPtr, Arrays.copyOf(cCol, nnz), Arrays.copyOf(cValue, nnz), false);
+	}
+
+	/**
+	 * <p>密行列に変換します。
+	 * <p>{@link LinearEquationSolver#solve(double[][], double[])}に渡す場合等に利用してください。
+	 * 大きな行列では多くのメモリを必要とするので注意してください。
+	 * @return 密行列
+	 * @version 2026/10/17 07:05
+	 * */
+	public double[][] toArray() {
+		double[][] A = new double[rows][cols];
+		for(int i=0;i<rows;i++) {
+			for(int k=rowPtr[i];k<rowPtr[i+1];k++) {
+				A[i][colIndex[k]] = value[k];
+			}
+		}
+		return A;
+	}
+
+	/**
+	 * 各行の先頭の要素の位置を返します。
+	 * 配列の参照を渡すので、要素を変更しないでください。
+	 * @return 各行の先頭の要素の位置
+	 * @version 2026/10/17 07:05
+	 * */
+	public int[] giveRowPointer_Shallow() {
+		return this.rowPtr;
+	}
+
+	/**
+	 * 各要素の列を返します。
+	 * 配列の参照を渡すので、要素を変更しないでください。
+	 * @return 各要素の列
+	 * @version 2026/10/17 07:05
+	 * */
+	public int[] giveColumnIndex_Shallow() {
+		return this.colIndex;
+	}
+
+	/**
+	 * <p>各要素の値を返します。
+	 * <p>配列の参照を渡します。得た配列要素を変更すると行列の値が変化します。
+	 * @return 各要素の値
+	 * @version 2026/10/17 07:05
+	 * */
+	public double[] giveValues_Shallow() {
+		return this.value;
+	}
+}